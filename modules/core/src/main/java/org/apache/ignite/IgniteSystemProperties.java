@@ -1984,6 +1984,39 @@ public final class IgniteSystemProperties {
         "When disabled hash join may be enabled only by index hint", defaults = "false")
     public static final String IGNITE_ENABLE_HASH_JOIN = "IGNITE_ENABLE_HASH_JOIN";
 
+    /**
+     * Enable batch-at-a-time execution of map queries which aggregate a single table without GROUP BY.
+     * Columns are read into primitive vectors and conditions, arithmetic and aggregates are evaluated per batch.
+     * Queries with unsupported expressions are executed row by row.
+     *
+     * Default: false.
+     */
+    @SystemProperty(value = "Enable batch-at-a-time execution of map queries which aggregate a single table " +
+        "without GROUP BY", defaults = "false")
+    public static final String IGNITE_SQL_VECTORIZED_SCAN = "IGNITE_SQL_VECTORIZED_SCAN";
+
+    /**
+     * Maximum number of worker threads a single query may use to merge sorted results of map nodes on the reducer.
+     * When enabled, rows of result pages are also unmarshalled by the threads which receive the pages instead of
+     * the thread which runs the reduce query. Rows buffered by the workers count towards the query memory quota.
+     * The final aggregation of GROUP BY queries still runs on the thread which runs the reduce query.
+     *
+     * Default: 0 (parallel reduce is disabled).
+     */
+    @SystemProperty(value = "Maximum number of worker threads a single query may use to merge sorted results " +
+        "of map nodes on the reducer. 0 disables parallel reduce", type = Integer.class, defaults = "0")
+    public static final String IGNITE_SQL_REDUCE_PARALLELISM = "IGNITE_SQL_REDUCE_PARALLELISM";
+
+    /**
+     * Maximum number of threads merging sorted results of map nodes on the reducer, shared by all queries.
+     * When all the threads are busy, the thread which runs the reduce query merges the results itself.
+     *
+     * Default: number of available processors.
+     */
+    @SystemProperty(value = "Maximum number of threads merging sorted results of map nodes on the reducer, " +
+        "shared by all queries", type = Integer.class, defaults = "Number of available processors")
+    public static final String IGNITE_SQL_REDUCE_POOL_SIZE = "IGNITE_SQL_REDUCE_POOL_SIZE";
+
     /**
      * Threshold timeout for long transactions, if transaction exceeds it, it will be dumped in log with
      * information about how much time did it spent in system time (time while aquiring locks, preparing,
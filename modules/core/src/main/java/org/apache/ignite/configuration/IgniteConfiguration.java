@@ -629,13 +629,80 @@ public class IgniteConfiguration {
     /** 执行保存 log 的方法 */
     private String myLogCls = "";
 
+    /** 保存 log 的文件，为空时保存在工作目录的 my_log 下 */
+    private String myLogPath = "";
+
+    /** 保存 log 的持久化方式：sync、batch、async */
+    private String myLogDurability = "batch";
+
+    /** 批量提交 log 的时间间隔（毫秒） */
+    private long myLogFlushFrequency = 10;
+
+    /** 批量提交 log 的最大条数 */
+    private int myLogFlushSize = 1024;
+
+    /** RPC 服务的端口 */
+    private int rpcPort = 8091;
+
+    /** RPC 服务的 selector 线程数 */
+    private int rpcSelectorThreads = 2;
+
+    /** 同时执行 RPC 请求的最大个数，请求在节点的线程池中执行（dawn-rpc 自定义线程池或者 public 线程池） */
+    private int rpcWorkerThreads = 16;
+
+    /** 等待执行的 RPC 请求的最大个数 */
+    private int rpcQueueSize = 1024;
+
+    /** RPC 请求的最大长度 */
+    private int rpcMaxFrameSize = 16 * 1024 * 1024;
+
+    /** auto_id 的生成方式：sequence 使用集群的序列，snowflake 在本地生成不需要集群协调 */
+    private String autoIdMode = "sequence";
+
+    /** auto_id 每个节点一次从集群预留的个数 */
+    private int autoIdReserveSize = 1000;
+
+    /** auto_id 每个线程一次从节点预留中取出的个数 */
+    private int autoIdSliceSize = 64;
+
+    /** 每个表单独设置的 auto_id 预留个数，key 是表名 */
+    private Map<String, Integer> autoIdReserveSizes;
+
+    /** 每个节点同时执行的定时任务的最大个数 */
+    private int cronMaxConcurrentJobs = 4;
+
+    /** 每个节点保存的定时任务执行记录的条数 */
+    private int cronHistorySize = 1000;
+
+    /** 节点上同时执行的 JDBC 查询的最大个数，0 表示不限制，超过时按租户的 weight 排队 */
+    private int sqlMaxConcurrentQueries = 0;
+
+    /** 每个租户等待执行的查询的最大个数 */
+    private int tenantQueueSize = 1000;
+
+    /** 查询等待执行的最长时间（毫秒） */
+    private long tenantQueueTimeout = 30_000;
+
+    /** 打开的游标占用租户的执行名额，空闲超过这个时间（毫秒）的游标被关闭，0 表示不关闭 */
+    private long tenantCursorIdleTimeout = 60_000;
+
+    /** 没有单独设置的租户使用的限制 */
+    private TenantConfiguration defaultTenantCfg = new TenantConfiguration();
+
+    /** 每个租户的限制，key 是用户组的 userToken */
+    private Map<String, TenantConfiguration> tenantCfg;
+
     /** 是否允许多用户组 */
     private boolean multiUserGroup = true;
 
     /** 超级管理员用户组 token */
     private String root_token = "";
 
-    /** 纯内存模式，默认是不开启的 */
+    /**
+     * 纯内存模式，默认是不开启的
+     * 开启后如果所有的 data region 都不持久化，没有单独设置 pageSize 时使用 16K 的页；
+     * 有持久化的 data region 时不做任何修改，只输出警告
+     * */
     private Boolean isCache = false;
 
     /** 开始执行的程序路径 */
@@ -688,6 +755,195 @@ public class IgniteConfiguration {
         return this;
     }
 
+    public String getMyLogPath() {
+        return myLogPath;
+    }
+
+    public IgniteConfiguration setMyLogPath(String myLogPath) {
+        this.myLogPath = myLogPath;
+        return this;
+    }
+
+    public String getMyLogDurability() {
+        return myLogDurability;
+    }
+
+    public IgniteConfiguration setMyLogDurability(String myLogDurability) {
+        this.myLogDurability = myLogDurability;
+        return this;
+    }
+
+    public long getMyLogFlushFrequency() {
+        return myLogFlushFrequency;
+    }
+
+    public IgniteConfiguration setMyLogFlushFrequency(long myLogFlushFrequency) {
+        this.myLogFlushFrequency = myLogFlushFrequency;
+        return this;
+    }
+
+    public int getMyLogFlushSize() {
+        return myLogFlushSize;
+    }
+
+    public IgniteConfiguration setMyLogFlushSize(int myLogFlushSize) {
+        this.myLogFlushSize = myLogFlushSize;
+        return this;
+    }
+
+    public int getRpcPort() {
+        return rpcPort;
+    }
+
+    public IgniteConfiguration setRpcPort(int rpcPort) {
+        this.rpcPort = rpcPort;
+        return this;
+    }
+
+    public int getRpcSelectorThreads() {
+        return rpcSelectorThreads;
+    }
+
+    public IgniteConfiguration setRpcSelectorThreads(int rpcSelectorThreads) {
+        this.rpcSelectorThreads = rpcSelectorThreads;
+        return this;
+    }
+
+    public int getRpcWorkerThreads() {
+        return rpcWorkerThreads;
+    }
+
+    public IgniteConfiguration setRpcWorkerThreads(int rpcWorkerThreads) {
+        this.rpcWorkerThreads = rpcWorkerThreads;
+        return this;
+    }
+
+    public int getRpcQueueSize() {
+        return rpcQueueSize;
+    }
+
+    public IgniteConfiguration setRpcQueueSize(int rpcQueueSize) {
+        this.rpcQueueSize = rpcQueueSize;
+        return this;
+    }
+
+    public int getRpcMaxFrameSize() {
+        return rpcMaxFrameSize;
+    }
+
+    public IgniteConfiguration setRpcMaxFrameSize(int rpcMaxFrameSize) {
+        this.rpcMaxFrameSize = rpcMaxFrameSize;
+        return this;
+    }
+
+    public String getAutoIdMode() {
+        return autoIdMode;
+    }
+
+    public IgniteConfiguration setAutoIdMode(String autoIdMode) {
+        this.autoIdMode = autoIdMode;
+        return this;
+    }
+
+    public int getAutoIdReserveSize() {
+        return autoIdReserveSize;
+    }
+
+    public IgniteConfiguration setAutoIdReserveSize(int autoIdReserveSize) {
+        this.autoIdReserveSize = autoIdReserveSize;
+        return this;
+    }
+
+    public int getAutoIdSliceSize() {
+        return autoIdSliceSize;
+    }
+
+    public IgniteConfiguration setAutoIdSliceSize(int autoIdSliceSize) {
+        this.autoIdSliceSize = autoIdSliceSize;
+        return this;
+    }
+
+    public Map<String, Integer> getAutoIdReserveSizes() {
+        return autoIdReserveSizes;
+    }
+
+    public IgniteConfiguration setAutoIdReserveSizes(Map<String, Integer> autoIdReserveSizes) {
+        this.autoIdReserveSizes = autoIdReserveSizes;
+        return this;
+    }
+
+    public int getCronMaxConcurrentJobs() {
+        return cronMaxConcurrentJobs;
+    }
+
+    public IgniteConfiguration setCronMaxConcurrentJobs(int cronMaxConcurrentJobs) {
+        this.cronMaxConcurrentJobs = cronMaxConcurrentJobs;
+        return this;
+    }
+
+    public int getCronHistorySize() {
+        return cronHistorySize;
+    }
+
+    public IgniteConfiguration setCronHistorySize(int cronHistorySize) {
+        this.cronHistorySize = cronHistorySize;
+        return this;
+    }
+
+    public int getSqlMaxConcurrentQueries() {
+        return sqlMaxConcurrentQueries;
+    }
+
+    public IgniteConfiguration setSqlMaxConcurrentQueries(int sqlMaxConcurrentQueries) {
+        this.sqlMaxConcurrentQueries = sqlMaxConcurrentQueries;
+        return this;
+    }
+
+    public int getTenantQueueSize() {
+        return tenantQueueSize;
+    }
+
+    public IgniteConfiguration setTenantQueueSize(int tenantQueueSize) {
+        this.tenantQueueSize = tenantQueueSize;
+        return this;
+    }
+
+    public long getTenantQueueTimeout() {
+        return tenantQueueTimeout;
+    }
+
+    public IgniteConfiguration setTenantQueueTimeout(long tenantQueueTimeout) {
+        this.tenantQueueTimeout = tenantQueueTimeout;
+        return this;
+    }
+
+    public long getTenantCursorIdleTimeout() {
+        return tenantCursorIdleTimeout;
+    }
+
+    public IgniteConfiguration setTenantCursorIdleTimeout(long tenantCursorIdleTimeout) {
+        this.tenantCursorIdleTimeout = tenantCursorIdleTimeout;
+        return this;
+    }
+
+    public TenantConfiguration getDefaultTenantConfiguration() {
+        return defaultTenantCfg;
+    }
+
+    public IgniteConfiguration setDefaultTenantConfiguration(TenantConfiguration defaultTenantCfg) {
+        this.defaultTenantCfg = defaultTenantCfg;
+        return this;
+    }
+
+    public Map<String, TenantConfiguration> getTenantConfiguration() {
+        return tenantCfg;
+    }
+
+    public IgniteConfiguration setTenantConfiguration(Map<String, TenantConfiguration> tenantCfg) {
+        this.tenantCfg = tenantCfg;
+        return this;
+    }
+
     public Map<String, TableTemplateConfiguration> getTemplateConfiguration() {
         return templateCfg;
     }
@@ -718,6 +974,27 @@ public class IgniteConfiguration {
         isCache = cfg.getCache();
         root_token = cfg.getRoot_token();
         myLogCls = cfg.getMyLogCls();
+        myLogPath = cfg.getMyLogPath();
+        myLogDurability = cfg.getMyLogDurability();
+        myLogFlushFrequency = cfg.getMyLogFlushFrequency();
+        myLogFlushSize = cfg.getMyLogFlushSize();
+        rpcPort = cfg.getRpcPort();
+        rpcSelectorThreads = cfg.getRpcSelectorThreads();
+        rpcWorkerThreads = cfg.getRpcWorkerThreads();
+        rpcQueueSize = cfg.getRpcQueueSize();
+        rpcMaxFrameSize = cfg.getRpcMaxFrameSize();
+        autoIdMode = cfg.getAutoIdMode();
+        autoIdReserveSize = cfg.getAutoIdReserveSize();
+        autoIdSliceSize = cfg.getAutoIdSliceSize();
+        autoIdReserveSizes = cfg.getAutoIdReserveSizes();
+        cronMaxConcurrentJobs = cfg.getCronMaxConcurrentJobs();
+        cronHistorySize = cfg.getCronHistorySize();
+        sqlMaxConcurrentQueries = cfg.getSqlMaxConcurrentQueries();
+        tenantQueueSize = cfg.getTenantQueueSize();
+        tenantQueueTimeout = cfg.getTenantQueueTimeout();
+        tenantCursorIdleTimeout = cfg.getTenantCursorIdleTimeout();
+        defaultTenantCfg = cfg.getDefaultTenantConfiguration();
+        tenantCfg = cfg.getTenantConfiguration();
         templateCfg = cfg.getTemplateConfiguration();
         startAppCls = cfg.getStartAppCls();
 
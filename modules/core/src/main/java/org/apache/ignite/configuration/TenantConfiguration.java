@@ -0,0 +1,62 @@
+package org.apache.ignite.configuration;
+
+import java.io.Serializable;
+
+/**
+ * 用户组（租户）使用 SQL 资源的限制
+ * maxConcurrentQueries：同时执行的查询的最大个数，0 表示不限制
+ * memoryQuota：所有查询使用内存的总和（字节），0 表示不限制，每个查询最多使用 memoryQuota / maxConcurrentQueries
+ *     maxConcurrentQueries 为 0 时按节点的 sqlMaxConcurrentQueries 分配，节点也不限制时只受全局的 SQL 内存限制
+ * weight：节点上所有的查询位置都被占用时，按 weight 的比例分配给等待的租户，交互式的租户应该设置更大的 weight
+ * name：metric 中的名字，为空时只统计到 sql.admission 中
+ * */
+public class TenantConfiguration implements Serializable {
+    private static final long serialVersionUID = -5476315740231895841L;
+
+    private String name;
+    private int maxConcurrentQueries;
+    private long memoryQuota;
+    private int weight = 1;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getMaxConcurrentQueries() {
+        return maxConcurrentQueries;
+    }
+
+    public void setMaxConcurrentQueries(int maxConcurrentQueries) {
+        this.maxConcurrentQueries = maxConcurrentQueries;
+    }
+
+    public long getMemoryQuota() {
+        return memoryQuota;
+    }
+
+    public void setMemoryQuota(long memoryQuota) {
+        this.memoryQuota = memoryQuota;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    @Override
+    public String toString() {
+        return "TenantConfiguration{" +
+                "name='" + name + '\'' +
+                ", maxConcurrentQueries=" + maxConcurrentQueries +
+                ", memoryQuota=" + memoryQuota +
+                ", weight=" + weight +
+                '}';
+    }
+}
@@ -2040,6 +2040,54 @@ public class IgnitionEx {
 
             if (!cfg.isClientMode() && cfg.getDataStorageConfiguration() == null)
                 cfg.setDataStorageConfiguration(new DataStorageConfiguration());
+
+            if (Boolean.TRUE.equals(cfg.getCache()) && cfg.getDataStorageConfiguration() != null)
+                initializePureMemoryConfiguration(cfg.getDataStorageConfiguration());
+        }
+
+        /**
+         * Defaults page size to {@link DataStorageConfiguration#MAX_PAGE_SIZE} when pure memory mode
+         * ({@link IgniteConfiguration#getCache()}) is on and no data region is persistent. An explicitly set
+         * page size is kept. With a persistent data region nothing is changed and a warning is logged.
+         *
+         * @param dsCfg Data storage configuration.
+         */
+        private void initializePureMemoryConfiguration(DataStorageConfiguration dsCfg) {
+            DataRegionConfiguration persistent = persistentRegion(dsCfg);
+
+            if (persistent != null) {
+                U.warn(log, "Pure memory mode (IgniteConfiguration.cache) is ignored because a data region " +
+                    "is persistent [region=" + persistent.getName() + ']');
+
+                return;
+            }
+
+            if (dsCfg.getPageSize() == 0)
+                dsCfg.setPageSize(DataStorageConfiguration.MAX_PAGE_SIZE);
+
+            if (dsCfg.isWriteThrottlingEnabled())
+                U.warn(log, "Write throttling is enabled but has no effect in pure memory mode " +
+                    "(IgniteConfiguration.cache) because no data region is persistent.");
+        }
+
+        /**
+         * @param dsCfg Data storage configuration.
+         * @return First persistent data region or {@code null} if all regions are in-memory.
+         */
+        @Nullable private DataRegionConfiguration persistentRegion(DataStorageConfiguration dsCfg) {
+            DataRegionConfiguration dfltReg = dsCfg.getDefaultDataRegionConfiguration();
+
+            if (dfltReg != null && dfltReg.isPersistenceEnabled())
+                return dfltReg;
+
+            if (dsCfg.getDataRegionConfigurations() != null) {
+                for (DataRegionConfiguration regCfg : dsCfg.getDataRegionConfigurations()) {
+                    if (regCfg != null && regCfg.isPersistenceEnabled())
+                        return regCfg;
+                }
+            }
+
+            return null;
         }
 
         /**
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ignite.internal.jdbc.thin;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.client.IgniteClient;
+import org.apache.ignite.configuration.ClientConfiguration;
+import org.apache.ignite.internal.util.typedef.internal.U;
+
+/**
+ * Process-wide pool of thin clients used by JDBC connections for client side smart sql commands
+ * (e.g. {@code loadCsv}). Clients are shared by all connections to the same address and
+ * closed when the last connection releases them.
+ */
+final class JdbcThinClientPool {
+    /** Pooled clients by address. */
+    private static final Map<String, Holder> clients = new HashMap<>();
+
+    /**
+     * Private constructor.
+     */
+    private JdbcThinClientPool() {
+        // No-op.
+    }
+
+    /**
+     * Acquires client for the given address, starting it if needed.
+     *
+     * @param addr Address.
+     * @return Thin client.
+     */
+    static IgniteClient acquire(String addr) {
+        synchronized (clients) {
+            Holder holder = clients.get(addr);
+
+            if (holder == null) {
+                holder = new Holder(Ignition.startClient(new ClientConfiguration().setAddresses(addr)));
+
+                clients.put(addr, holder);
+            }
+
+            holder.refCnt++;
+
+            return holder.client;
+        }
+    }
+
+    /**
+     * Releases client acquired by {@link #acquire(String)}, closes it if it is not used anymore.
+     *
+     * @param addr Address.
+     */
+    static void release(String addr) {
+        IgniteClient client = null;
+
+        synchronized (clients) {
+            Holder holder = clients.get(addr);
+
+            if (holder != null && --holder.refCnt == 0) {
+                clients.remove(addr);
+
+                client = holder.client;
+            }
+        }
+
+        if (client != null)
+            U.closeQuiet(client);
+    }
+
+    /**
+     * Reference counted client.
+     */
+    private static class Holder {
+        /** Client. */
+        private final IgniteClient client;
+
+        /** Reference count. */
+        private int refCnt;
+
+        /**
+         * @param client Client.
+         */
+        private Holder(IgniteClient client) {
+            this.client = client;
+        }
+    }
+}
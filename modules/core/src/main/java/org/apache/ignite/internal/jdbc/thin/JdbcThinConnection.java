@@ -73,6 +73,7 @@ import org.apache.ignite.IgniteException;
 import org.apache.ignite.binary.BinaryObjectException;
 import org.apache.ignite.binary.BinaryType;
 import org.apache.ignite.client.ClientException;
+import org.apache.ignite.client.IgniteClient;
 import org.apache.ignite.configuration.BinaryConfiguration;
 import org.apache.ignite.configuration.IgniteConfiguration;
 import org.apache.ignite.internal.MarshallerPlatformIds;
@@ -274,6 +275,46 @@ public class JdbcThinConnection implements Connection {
         return connProps;
     }
 
+    /** Smart sql rewrites of prepared statements. */
+    private final JdbcThinSmartSqlCache smartSqlCache = new JdbcThinSmartSqlCache(JdbcThinSmartSqlCache.DFLT_SIZE);
+
+    /**
+     * @return Smart sql rewrite cache of prepared statements with its hit statistics.
+     */
+    public JdbcThinSmartSqlCache smartSqlCache() {
+        return smartSqlCache;
+    }
+
+    /** Pooled thin client mutex. */
+    private final Object loadClientMux = new Object();
+
+    /** Address of the pooled thin client used by client side smart sql commands, {@code null} if not acquired. */
+    private String loadClientAddr;
+
+    /** Pooled thin client used by client side smart sql commands. */
+    private IgniteClient loadClient;
+
+    /**
+     * Lazily acquires thin client shared by all connections to the same address.
+     * The client is released on connection close.
+     *
+     * @return Thin client or {@code null} if connection has no addresses.
+     */
+    IgniteClient loadClient() {
+        synchronized (loadClientMux) {
+            if (loadClient == null) {
+                HostAndPortRange[] addrs = connProps.getAddresses();
+
+                if (addrs.length > 0) {
+                    loadClientAddr = addrs[0].toString();
+                    loadClient = JdbcThinClientPool.acquire(loadClientAddr);
+                }
+            }
+
+            return loadClient;
+        }
+    }
+
     /**
      * Creates new connection.
      *
@@ -576,6 +617,14 @@ public class JdbcThinConnection implements Connection {
             stmts.clear();
         }
 
+        synchronized (loadClientMux) {
+            if (loadClient != null) {
+                JdbcThinClientPool.release(loadClientAddr);
+
+                loadClient = null;
+            }
+        }
+
         SQLException err = null;
 
         if (partitionAwareness) {
@@ -1037,6 +1086,9 @@ public class JdbcThinConnection implements Connection {
 
                     updateAffinityCache(qryReq, res);
 
+                    if (res.response() instanceof JdbcQueryExecuteResult && cliIo.isSmartSqlVersionSupported())
+                        smartSqlCache.onVersion(((JdbcQueryExecuteResult)res.response()).smartSqlVersion());
+
                     return new JdbcResultWithIo(res.response(), cliIo);
                 }
                 catch (SQLException e) {
@@ -1654,6 +1706,24 @@ public class JdbcThinConnection implements Connection {
         return singleIo.isCustomObjectSupported();
     }
 
+    /**
+     * Whether smart sql can be rewritten and executed by the server within a single request.
+     *
+     * @return True if single round trip smart sql is supported, false otherwise.
+     */
+    boolean isSmartSqlExecSupported() {
+        return singleIo.isSmartSqlExecSupported();
+    }
+
+    /**
+     * Whether the server reports smart sql version in query results.
+     *
+     * @return True if smart sql version is supported, false otherwise.
+     */
+    boolean isSmartSqlVersionSupported() {
+        return singleIo.isSmartSqlVersionSupported();
+    }
+
     /**
      * @param nodeIds Set of node's UUIDs.
      * @return Ignite endpoint to use for request/response transferring.
@@ -71,7 +71,7 @@ public class JdbcThinPreparedStatement extends JdbcThinStatement implements Prep
 
         if (!conn.isStream())
         {
-            this.sql = myExecuteQuery(sql);
+            this.sql = myPrepareQuery(sql);
         }
         else
         {
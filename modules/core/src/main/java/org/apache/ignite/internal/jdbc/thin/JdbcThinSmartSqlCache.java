@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ignite.internal.jdbc.thin;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.ignite.internal.util.tostring.GridToStringExclude;
+import org.apache.ignite.internal.util.typedef.internal.S;
+
+/**
+ * Connection scoped LRU cache of smart sql rewrites used by prepared statements.<p>
+ * Entries are dropped whenever the server reports a different smart sql version, i.e. after a schema
+ * or permission change on the server side. A rewrite is stored only if the version has not changed since
+ * the rewrite was requested, so a rewrite computed before an invalidation is never cached after it.
+ */
+public class JdbcThinSmartSqlCache {
+    /** Default maximum number of cached rewrites. */
+    static final int DFLT_SIZE = 1024;
+
+    /** Unknown version. */
+    private static final long UNKNOWN_VER = -1;
+
+    /** Rewrites. */
+    @GridToStringExclude
+    private final LinkedHashMap<QualifiedSQLQuery, String> cache;
+
+    /** Last smart sql version reported by the server. */
+    private long ver = UNKNOWN_VER;
+
+    /** Hits. */
+    private long hits;
+
+    /** Misses. */
+    private long misses;
+
+    /** Evictions. */
+    private long evictions;
+
+    /** Invalidations caused by version change. */
+    private long invalidations;
+
+    /**
+     * @param size Maximum number of cached rewrites.
+     */
+    JdbcThinSmartSqlCache(int size) {
+        cache = new LinkedHashMap<QualifiedSQLQuery, String>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<QualifiedSQLQuery, String> eldest) {
+                if (size() > size) {
+                    evictions++;
+
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param schema Schema name.
+     * @param sql Original SQL.
+     * @return Rewritten SQL or {@code null} if not cached.
+     */
+    synchronized String get(String schema, String sql) {
+        String res = cache.get(new QualifiedSQLQuery(schema, sql));
+
+        if (res != null)
+            hits++;
+        else
+            misses++;
+
+        return res;
+    }
+
+    /**
+     * @param schema Schema name.
+     * @param sql Original SQL.
+     * @param rewritten Rewritten SQL.
+     * @param rewriteVer Version returned by {@link #version()} before the rewrite was requested.
+     * @return {@code True} if the rewrite was stored, {@code false} if the version has changed since.
+     */
+    synchronized boolean put(String schema, String sql, String rewritten, long rewriteVer) {
+        if (rewriteVer == UNKNOWN_VER || rewriteVer != ver)
+            return false;
+
+        cache.put(new QualifiedSQLQuery(schema, sql), rewritten);
+
+        return true;
+    }
+
+    /**
+     * @return Last smart sql version reported by the server.
+     */
+    synchronized long version() {
+        return ver;
+    }
+
+    /**
+     * Drops all entries if the server reports a different version.
+     *
+     * @param newVer Smart sql version reported by the server.
+     */
+    synchronized void onVersion(long newVer) {
+        if (ver == newVer)
+            return;
+
+        if (!cache.isEmpty()) {
+            cache.clear();
+
+            invalidations++;
+        }
+
+        ver = newVer;
+    }
+
+    /**
+     * @return Number of prepares served from the cache.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return Number of prepares that required a server round trip.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return Hit rate in range [0, 1].
+     */
+    public synchronized double hitRate() {
+        long total = hits + misses;
+
+        return total == 0 ? 0 : (double)hits / total;
+    }
+
+    /**
+     * @return Number of entries evicted due to size limit.
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return Number of times the cache was cleared due to server side version change.
+     */
+    public synchronized long invalidations() {
+        return invalidations;
+    }
+
+    /**
+     * @return Number of cached rewrites.
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override public synchronized String toString() {
+        return S.toString(JdbcThinSmartSqlCache.class, this, "size", cache.size());
+    }
+}
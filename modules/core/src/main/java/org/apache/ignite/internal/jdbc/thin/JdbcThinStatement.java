@@ -32,11 +32,8 @@ import com.google.common.base.Strings;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
-import org.apache.ignite.Ignition;
 import org.apache.ignite.cache.query.Query;
 import org.apache.ignite.client.ClientCache;
-import org.apache.ignite.client.IgniteClient;
-import org.apache.ignite.configuration.ClientConfiguration;
 import org.apache.ignite.internal.processors.cache.query.IgniteQueryErrorCode;
 import org.apache.ignite.internal.processors.odbc.ClientListenerResponse;
 import org.apache.ignite.internal.processors.odbc.SqlStateCode;
@@ -52,6 +49,7 @@ import org.apache.ignite.internal.processors.odbc.jdbc.JdbcQueryExecuteResult;
 import org.apache.ignite.internal.processors.odbc.jdbc.JdbcResult;
 import org.apache.ignite.internal.processors.odbc.jdbc.JdbcResultInfo;
 import org.apache.ignite.internal.processors.odbc.jdbc.JdbcResultWithIo;
+import org.apache.ignite.internal.processors.odbc.jdbc.JdbcSmartQueryExecuteRequest;
 import org.apache.ignite.internal.processors.odbc.jdbc.JdbcStatementType;
 import org.apache.ignite.internal.processors.query.IgniteSQLException;
 import org.apache.ignite.internal.sql.SqlKeyword;
@@ -59,7 +57,6 @@ import org.apache.ignite.internal.sql.SqlParseException;
 import org.apache.ignite.internal.sql.SqlParser;
 import org.apache.ignite.internal.sql.command.SqlCommand;
 import org.apache.ignite.internal.sql.command.SqlSetStreamingCommand;
-import org.apache.ignite.internal.util.HostAndPortRange;
 import org.apache.ignite.internal.util.typedef.F;
 import org.tools.MyLineToBinary;
 
@@ -132,8 +129,6 @@ public class JdbcThinStatement implements Statement {
 
     private IMyLoadScript myLoadScript = getMyLoadScript(); //MyLoadScriptService.getInstance().getMyLoadScript();
 
-    private IgniteClient client;
-
     private IMySqlAst getMySqlAst()
     {
         IMySqlAst mySqlAst = null;
@@ -160,8 +155,13 @@ public class JdbcThinStatement implements Statement {
         return myLoadScript;
     }
 
-    private void saveMlData(final String schema_name, final String table_name, final String value) throws SQLException {
-        myLoadScript.loadCsv(client, schema_name, table_name, value);
+    private void saveMlFile(final String schema_name, final String table_name, final String csv_path) throws SQLException {
+        try {
+            myLoadScript.loadCsvFile(conn.loadClient(), schema_name, table_name, csv_path);
+        }
+        catch (RuntimeException e) {
+            throw new SQLException(e.getMessage(), SqlStateCode.INTERNAL_ERROR, e);
+        }
     }
 
     private List<List<String>> reList(final List<List<String>> lsts) throws SQLException {
@@ -189,15 +189,9 @@ public class JdbcThinStatement implements Statement {
                     Gson gson = new GsonBuilder().enableComplexMapKeySerialization().create();
                     Map<String, String> csvMap = gson.fromJson(sb.toString(), new TypeToken<Hashtable<String, String>>() {}.getType());
 
-                    String code = myLoadScript.loadFromNative(csvMap.get("csv_path"));
-                    String[] vs = code.split("\n|\r");
-                    if (vs.length > 0) {
-                        String schema_name = csvMap.get("schema_name").toLowerCase();
-                        String table_name = csvMap.get("table_name").toLowerCase();
-                        for (String dv : vs) {
-                            saveMlData(schema_name, table_name, dv);
-                        }
-                    }
+                    String schema_name = csvMap.get("schema_name").toLowerCase();
+                    String table_name = csvMap.get("table_name").toLowerCase();
+                    saveMlFile(schema_name, table_name, csvMap.get("csv_path"));
 
                     List<String> lst_3 = new ArrayList<>();
                     lst_3.add("println");
@@ -220,15 +214,9 @@ public class JdbcThinStatement implements Statement {
                     Gson gson = new GsonBuilder().enableComplexMapKeySerialization().create();
                     Map<String, String> csvMap = gson.fromJson(sb.toString(), new TypeToken<Hashtable<String, String>>() {}.getType());
 
-                    String code = myLoadScript.loadFromNative(csvMap.get("csv_path"));
-                    String[] vs = code.split("\n|\r");
-                    if (vs.length > 0) {
-                        String schema_name = csvMap.get("schema_name").toLowerCase();
-                        String table_name = csvMap.get("table_name").toLowerCase();
-                        for (String dv : vs) {
-                            saveMlData(schema_name, table_name, dv);
-                        }
-                    }
+                    String schema_name = csvMap.get("schema_name").toLowerCase();
+                    String table_name = csvMap.get("table_name").toLowerCase();
+                    saveMlFile(schema_name, table_name, csvMap.get("csv_path"));
 
                     List<String> lst_3 = new ArrayList<>();
                     lst_3.add("println");
@@ -285,32 +273,71 @@ public class JdbcThinStatement implements Statement {
         return false;
     }
 
+    /**
+     * Prepares smart sql segments of the statement. Client side commands ({@code loadCsv}, {@code loadFromNative})
+     * are executed here and replaced in the segment list.
+     *
+     * @param sql Sql statement.
+     * @param compact Whether to use compact encoding instead of java serialization, the latter is the only
+     *      format understood by older servers.
+     * @return Serialized segments or {@code null} if the statement must be sent as is.
+     * @throws SQLException On error.
+     */
+    private byte[] mySmartSegments(String sql, boolean compact) throws SQLException {
+        return mySmartSegments(sql, mySqlAst.getSmartSegment(sql), compact);
+    }
+
+    /**
+     * Prepares smart sql segments already parsed from the statement.
+     *
+     * @param sql Sql statement.
+     * @param lstSegment Smart sql segments of the statement.
+     * @param compact Whether to use compact encoding instead of java serialization.
+     * @return Serialized segments or {@code null} if the statement must be sent as is.
+     * @throws SQLException On error.
+     */
+    private byte[] mySmartSegments(String sql, List<List<String>> lstSegment, boolean compact) throws SQLException {
+        if (isStream(lstSegment))
+        {
+            return null;
+        }
+
+        // 如果 mylst 中包括：loadFromNative 函数，则先执行这个函数来提交给服务器
+        if (this.myLoadScript != null) {
+            List<List<String>> myLst = reList(lstSegment);
+            return compact ? MyLineToBinary.objToCompactBytes(myLst) : MyLineToBinary.objToBytes(myLst);
+        }
+
+        return compact ? MyLineToBinary.objToCompactBytes(sql) : MyLineToBinary.objToBytes(sql);
+    }
+
     public String myExecuteQuery(String sql) throws SQLException {
+        return myExecuteQuery(sql, null);
+    }
+
+    /**
+     * @param sql Sql statement.
+     * @param lstSegment Smart sql segments of the statement or {@code null} to parse them here.
+     * @return Rewritten SQL.
+     * @throws SQLException On error.
+     */
+    private String myExecuteQuery(String sql, List<List<String>> lstSegment) throws SQLException {
         if (!Strings.isNullOrEmpty(this.conn.getUserToken())) {
 
             if (this.mySqlAst != null)
             {
-                List<List<String>> lstSegment = mySqlAst.getSmartSegment(sql);
-                if (isStream(lstSegment))
+                byte[] segments = lstSegment == null ? mySmartSegments(sql, false) : mySmartSegments(sql, lstSegment, false);
+                if (segments == null)
                 {
                     return sql;
                 }
 
-                // 如果 mylst 中包括：loadFromNative 函数，则先执行这个函数来提交给服务器
-
                 //String mysql0 = String.format("select smartSql(%s, ?)", this.conn.getGroup_id());
                 String mysql0 = "select smartSql(?,?)";
                 //String mysql0 = "select my_line_inary(?)";
                 List<Object> lst = new ArrayList<Object>();
                 lst.add(MyLineToBinary.objToBytes(this.conn.getUserToken()));
-                if (this.myLoadScript != null) {
-                    List<List<String>> myLst = reList(lstSegment);
-                    lst.add(MyLineToBinary.objToBytes(myLst));
-                }
-                else
-                {
-                    lst.add(MyLineToBinary.objToBytes(sql));
-                }
+                lst.add(segments);
 
                 //lst.add(sql);
                 execute0(JdbcStatementType.SELECT_STATEMENT_TYPE, mysql0, lst);
@@ -337,6 +364,110 @@ public class JdbcThinStatement implements Statement {
         return null;
     }
 
+    /**
+     * Rewrites smart sql statement of a prepared statement. Rewrites of queries are cached by the connection,
+     * so preparing the same statement again does not need a server round trip.
+     *
+     * @param sql Sql statement.
+     * @return Rewritten SQL.
+     * @throws SQLException On error.
+     */
+    String myPrepareQuery(String sql) throws SQLException {
+        // Without version reports from the server cached rewrites could never be invalidated.
+        if (Strings.isNullOrEmpty(this.conn.getUserToken()) || this.mySqlAst == null ||
+            !conn.isSmartSqlVersionSupported())
+            return myExecuteQuery(sql);
+
+        JdbcThinSmartSqlCache cache = conn.smartSqlCache();
+
+        String res = cache.get(schema, sql);
+
+        if (res != null)
+            return res;
+
+        // Version before the rewrite request, the rewrite is not cached if the response reports another one.
+        long ver = cache.version();
+
+        List<List<String>> lstSegment = mySqlAst.getSmartSegment(sql);
+
+        res = myExecuteQuery(sql, lstSegment);
+
+        if (res != null && isSmartQuery(lstSegment))
+            cache.put(schema, sql, res, ver);
+
+        return res;
+    }
+
+    /**
+     * Whether all smart sql segments are queries. Other statements (including client side commands)
+     * may have side effects during rewrite and are never cached.
+     *
+     * @param lst Smart sql segments.
+     * @return {@code true} if all segments are queries.
+     */
+    private static boolean isSmartQuery(List<List<String>> lst) {
+        if (lst == null || lst.isEmpty())
+            return false;
+
+        for (List<String> segment : lst) {
+            if (segment.isEmpty() || !"select".equalsIgnoreCase(segment.get(0)))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Executes smart sql statement. When the server supports it the statement is rewritten and executed
+     * within a single request, otherwise it is rewritten by {@link #myExecuteQuery(String)} and executed
+     * by a separate request.
+     *
+     * @param stmtType Expected statement type.
+     * @param sql0 Sql statement.
+     * @throws SQLException On error.
+     */
+    private void mySmartExecute(JdbcStatementType stmtType, String sql0) throws SQLException {
+        if (conn.isStream())
+        {
+            execute0(stmtType, sql0, null);
+            return;
+        }
+
+        if (Strings.isNullOrEmpty(this.conn.getUserToken()) || this.mySqlAst == null || !conn.isSmartSqlExecSupported())
+        {
+            execute0(stmtType, myExecuteQuery(sql0), null);
+            return;
+        }
+
+        ensureNotClosed();
+
+        if (sql0 == null || sql0.isEmpty())
+            throw new SQLException("SQL query is empty.");
+
+        byte[] segments = mySmartSegments(sql0, true);
+        if (segments == null)
+        {
+            execute0(stmtType, sql0, null);
+            return;
+        }
+
+        closeResults();
+
+        checkStatementBatchEmpty();
+
+        execute0(new JdbcSmartQueryExecuteRequest(
+            stmtType,
+            schema,
+            this.conn.getUserToken(),
+            pageSize,
+            maxRows,
+            conn.getAutoCommit(),
+            explicitTimeout,
+            sql0,
+            segments
+        ));
+    }
+
     /**
      * Creates new statement.
      *
@@ -350,34 +481,16 @@ public class JdbcThinStatement implements Statement {
         this.conn = conn;
         this.resHoldability = resHoldability;
         this.schema = schema;
-
-        HostAndPortRange[] hostAndPortRanges = conn.getConnProps().getAddresses();
-        if (hostAndPortRanges.length > 0) {
-            HostAndPortRange hostAndPortRange = hostAndPortRanges[0];
-            //String host = hostAndPortRange.host();
-            String connStr = hostAndPortRange.toString();
-            ClientConfiguration cfg = new ClientConfiguration().setAddresses(connStr);
-            this.client = Ignition.startClient(cfg);
-        }
     }
 
     /** {@inheritDoc} */
     @Override public ResultSet executeQuery(String sql0) throws SQLException {
-        String sql = "";
-        if (!conn.isStream())
-        {
-            sql = myExecuteQuery(sql0);
-        }
-        else
-        {
-            sql = sql0;
-        }
-        execute0(JdbcStatementType.SELECT_STATEMENT_TYPE, sql, null);
+        mySmartExecute(JdbcStatementType.SELECT_STATEMENT_TYPE, sql0);
 
         ResultSet rs = getResultSet();
 
         if (rs == null)
-            throw new SQLException("The query isn't SELECT query: " + sql, SqlStateCode.PARSING_EXCEPTION);
+            throw new SQLException("The query isn't SELECT query: " + sql0, SqlStateCode.PARSING_EXCEPTION);
 
         return rs;
     }
@@ -473,6 +586,16 @@ public class JdbcThinStatement implements Statement {
             args == null ? null : args.toArray(new Object[args.size()])
         );
 
+        execute0(req);
+    }
+
+    /**
+     * Sends execute request and sets up result sets from the response.
+     *
+     * @param req Execute request.
+     * @throws SQLException On error.
+     */
+    private void execute0(JdbcQueryExecuteRequest req) throws SQLException {
         JdbcResultWithIo resWithIo = conn.sendRequest(req, this, null);
 
         JdbcResult res0 = resWithIo.response();
@@ -811,18 +934,9 @@ public class JdbcThinStatement implements Statement {
 
     /** {@inheritDoc} */
     @Override public boolean execute(String sql0) throws SQLException {
-        String sql = "";
-        if (!conn.isStream())
-        {
-            sql = myExecuteQuery(sql0);
-        }
-        else
-        {
-            sql = sql0;
-        }
         ensureNotClosed();
 
-        execute0(JdbcStatementType.ANY_STATEMENT_TYPE, sql, null);
+        mySmartExecute(JdbcStatementType.ANY_STATEMENT_TYPE, sql0);
 
         return resultSets.get(0).isQuery();
     }
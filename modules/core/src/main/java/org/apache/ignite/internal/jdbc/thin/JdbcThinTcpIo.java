@@ -702,6 +702,24 @@ public class JdbcThinTcpIo {
         return protoCtx.isFeatureSupported(JdbcThinFeature.CUSTOM_OBJECT);
     }
 
+    /**
+     * Whether the server is able to rewrite and execute smart sql within a single request.
+     *
+     * @return {@code true} if single round trip smart sql is supported, {@code false} otherwise.
+     */
+    boolean isSmartSqlExecSupported() {
+        return protoCtx.isFeatureSupported(JdbcThinFeature.SMART_SQL_EXEC);
+    }
+
+    /**
+     * Whether the server reports smart sql version in query results.
+     *
+     * @return {@code true} if smart sql version is supported, {@code false} otherwise.
+     */
+    boolean isSmartSqlVersionSupported() {
+        return protoCtx.isFeatureSupported(JdbcThinFeature.SMART_SQL_VERSION);
+    }
+
     /**
      * Get next server index.
      *
@@ -46,6 +46,8 @@ public class SqlQueryViewWalker implements SystemViewRowAttributeWalker<SqlQuery
         v.accept(13, "distributedJoins", boolean.class);
         v.accept(14, "enforceJoinOrder", boolean.class);
         v.accept(15, "lazy", boolean.class);
+        v.accept(16, "reduceDuration", long.class);
+        v.accept(17, "reduceWaitTime", long.class);
     }
 
     /** {@inheritDoc} */
@@ -66,10 +68,12 @@ public class SqlQueryViewWalker implements SystemViewRowAttributeWalker<SqlQuery
         v.acceptBoolean(13, "distributedJoins", row.distributedJoins());
         v.acceptBoolean(14, "enforceJoinOrder", row.enforceJoinOrder());
         v.acceptBoolean(15, "lazy", row.lazy());
+        v.acceptLong(16, "reduceDuration", row.reduceDuration());
+        v.acceptLong(17, "reduceWaitTime", row.reduceWaitTime());
     }
 
     /** {@inheritDoc} */
     @Override public int count() {
-        return 16;
+        return 18;
     }
 }
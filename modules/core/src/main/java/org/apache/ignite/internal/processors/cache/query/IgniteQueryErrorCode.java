@@ -88,6 +88,9 @@ public final class IgniteQueryErrorCode {
     /** Database is closed by some reasons. */
     public static final int DB_UNRECOVERABLE_ERROR = 3016;
 
+    /** Query rejected by tenant admission control. */
+    public static final int QUERY_REJECTED = 3017;
+
     /* 4xxx - cache related runtime errors */
 
     /** Attempt to INSERT a key that is already in cache. */
@@ -213,6 +216,9 @@ public final class IgniteQueryErrorCode {
             case QUERY_OUT_OF_MEMORY:
                 return SqlStateCode.MEMORY_ALLOCATION_ERROR;
 
+            case QUERY_REJECTED:
+                return SqlStateCode.QUERY_REJECTED;
+
             case CLUSTER_READ_ONLY_MODE_ENABLED:
                 return SqlStateCode.CLUSTER_READ_ONLY_MODE_ENABLED;
 
@@ -50,6 +50,8 @@ import org.apache.ignite.events.ClusterStateChangeStartedEvent;
 import org.apache.ignite.events.DiscoveryEvent;
 import org.apache.ignite.events.Event;
 import org.apache.ignite.events.EventType;
+import org.apache.ignite.failure.FailureContext;
+import org.apache.ignite.failure.FailureType;
 import org.apache.ignite.internal.GridKernalContext;
 import org.apache.ignite.internal.IgniteEx;
 import org.apache.ignite.internal.IgniteFeatures;
@@ -203,6 +205,12 @@ public class GridClusterStateProcessor extends GridProcessorAdapter implements I
     /** Distributed baseline configuration. */
     private DistributedBaselineConfiguration distributedBaselineConfiguration;
 
+    /**
+     * Critical DawnSql initialization of the last activation, SQL clients are not accepted until it is done.
+     * Completed on nodes that did not go through activation.
+     */
+    private volatile IgniteInternalFuture<Void> sqlInitFut = new GridFinishedFuture<>();
+
     /** Minimal IgniteProductVersion supporting BaselineTopology */
     private static final IgniteProductVersion MIN_BLT_SUPPORTING_VER = IgniteProductVersion.fromString("2.4.0");
 
@@ -364,6 +372,15 @@ public class GridClusterStateProcessor extends GridProcessorAdapter implements I
             return new IgniteFinishedFutureImpl<>(globalState.state());
     }
 
+    /**
+     * @return {@code True} if critical DawnSql initialization steps are done and the node can serve SQL clients.
+     */
+    public boolean sqlInitialized() {
+        IgniteInternalFuture<Void> fut = sqlInitFut;
+
+        return fut.isDone() && fut.error() == null;
+    }
+
     /** {@inheritDoc} */
     @Override public boolean publicApiActiveState(boolean waitForTransition) {
         return publicApiActiveStateAsync(waitForTransition).get();
@@ -1607,6 +1624,11 @@ public class GridClusterStateProcessor extends GridProcessorAdapter implements I
 
         checkLocalNodeInBaseline(globalState.baselineTopology());
 
+        // SQL clients are refused from now on until the critical initialization steps are done.
+        GridFutureAdapter<Void> initFut = new GridFutureAdapter<>();
+
+        sqlInitFut = initFut;
+
         ctx.closure().runLocalSafe(new GridPlainRunnable() {
             @Override public void run() {
                 boolean client = ctx.clientNode();
@@ -1631,13 +1653,28 @@ public class GridClusterStateProcessor extends GridProcessorAdapter implements I
                     ctx.txDr().onActivate(ctx);
 
                     log.info("MyInitFuncService initFunc 启动！");
-                    MyInitFuncService.getInstance().getInitFunc().initFunc();
+
+                    try {
+                        MyInitFuncService.getInstance().getInitFunc().initFunc();
+                    }
+                    catch (IgniteException e) {
+                        // Node without DawnSql metadata and functions can not serve SQL, abort its start.
+                        U.error(log, "Critical DawnSql initialization step failed.", e);
+
+                        ctx.failure().process(new FailureContext(FailureType.CRITICAL_ERROR, e));
+
+                        throw e;
+                    }
+
+                    initFut.onDone();
 
                     if (log.isInfoEnabled())
                         log.info("Successfully performed final activation steps [nodeId="
                             + ctx.localNodeId() + ", client=" + client + ", topVer=" + req.topologyVersion() + "]");
                 }
                 catch (Exception ex) {
+                    initFut.onDone(ex);
+
                     throw new IgniteException(ex);
                 }
             }
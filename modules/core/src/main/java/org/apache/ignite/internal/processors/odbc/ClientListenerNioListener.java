@@ -338,6 +338,9 @@ public class ClientListenerNioListener extends GridNioServerListenerAdapter<Clie
 
             ensureClientPermissions(clientType);
 
+            if ((clientType == JDBC_CLIENT || clientType == ODBC_CLIENT) && !this.ctx.state().sqlInitialized())
+                throw new IgniteCheckedException("Node is not ready to serve SQL, initialization is in progress.");
+
             if (connCtx.isVersionSupported(ver)) {
                 connCtx.initializeFromHandshake(ses, ver, reader);
 
@@ -88,4 +88,7 @@ public final class SqlStateCode {
 
     /** Memory allocation error. */
     public static final String MEMORY_ALLOCATION_ERROR = "HY001";
+
+    /** Query rejected because a configured limit was exceeded. */
+    public static final String QUERY_REJECTED = "53400";
 }
@@ -20,8 +20,11 @@ import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.ignite.internal.processors.cache.QueryCursorImpl;
 import org.apache.ignite.internal.processors.query.GridQueryFieldMetadata;
+import org.apache.ignite.internal.processors.query.SqlTenantAdmissionController;
 
 /**
  * SQL listener query fetch result.
@@ -42,6 +45,12 @@ class JdbcQueryCursor extends JdbcCursor {
     /** Query results iterator. */
     private Iterator<List<Object>> iter;
 
+    /** Admission permit held until the cursor is drained or closed. */
+    private final AtomicReference<SqlTenantAdmissionController.Permit> permit = new AtomicReference<>();
+
+    /** Time of the last request to the cursor, {@link System#nanoTime()}. */
+    private volatile long lastAccess = System.nanoTime();
+
     /**
      * @param pageSize Fetch size.
      * @param maxRows Max rows.
@@ -56,6 +65,13 @@ class JdbcQueryCursor extends JdbcCursor {
         this.cur = cur;
     }
 
+    /**
+     * @param permit Admission permit, released when the cursor is drained or closed.
+     */
+    void permit(SqlTenantAdmissionController.Permit permit) {
+        this.permit.set(permit);
+    }
+
     /**
      * Open iterator;
      */
@@ -67,6 +83,8 @@ class JdbcQueryCursor extends JdbcCursor {
      * @return List of the rows.
      */
     List<List<Object>> fetchRows() {
+        lastAccess = System.nanoTime();
+
         int fetchSize = (maxRows > 0) ? (int)Math.min(pageSize, maxRows - fetched) : pageSize;
 
         List<List<Object>> items = new ArrayList<>(fetchSize);
@@ -77,6 +95,9 @@ class JdbcQueryCursor extends JdbcCursor {
             fetched++;
         }
 
+        if (!hasNext())
+            releasePermit();
+
         return items;
     }
 
@@ -84,6 +105,8 @@ class JdbcQueryCursor extends JdbcCursor {
      * @return Query metadata.
      */
     List<JdbcColumnMeta> meta() {
+        lastAccess = System.nanoTime();
+
         List<?> meta = cur.fieldsMeta();
 
         List<JdbcColumnMeta> res = new ArrayList<>();
@@ -110,7 +133,38 @@ class JdbcQueryCursor extends JdbcCursor {
      * Close the cursor.
      */
     @Override public void close() {
-        cur.close();
+        try {
+            cur.close();
+        }
+        finally {
+            releasePermit();
+        }
+    }
+
+    /**
+     * @return {@code True} if the cursor holds an admission slot.
+     */
+    boolean holdsSlot() {
+        SqlTenantAdmissionController.Permit permit0 = permit.get();
+
+        return permit0 != null && permit0.holdsSlot();
+    }
+
+    /**
+     * @return Time since the last request to the cursor in milliseconds.
+     */
+    long idleTime() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastAccess);
+    }
+
+    /**
+     * Releases admission permit, the remaining rows are already fetched or will never be.
+     */
+    private void releasePermit() {
+        SqlTenantAdmissionController.Permit permit0 = permit.getAndSet(null);
+
+        if (permit0 != null)
+            permit0.close();
     }
 
     /**
@@ -71,6 +71,17 @@ public class JdbcQueryExecuteRequest extends JdbcRequest {
         autoCommit = true;
     }
 
+    /**
+     * Constructor for child requests.
+     *
+     * @param type Request type.
+     */
+    protected JdbcQueryExecuteRequest(byte type) {
+        super(type);
+
+        autoCommit = true;
+    }
+
     /**
      * @param stmtType Expected statement type.
      * @param schemaName Cache name.
@@ -82,7 +93,24 @@ public class JdbcQueryExecuteRequest extends JdbcRequest {
      */
     public JdbcQueryExecuteRequest(JdbcStatementType stmtType, String schemaName, String userToken, int pageSize, int maxRows,
         boolean autoCommit, boolean explicitTimeout, String sqlQry, Object[] args) {
-        super(QRY_EXEC);
+        this(QRY_EXEC, stmtType, schemaName, userToken, pageSize, maxRows, autoCommit, explicitTimeout, sqlQry, args);
+    }
+
+    /**
+     * Constructor for child requests.
+     *
+     * @param type Request type.
+     * @param stmtType Expected statement type.
+     * @param schemaName Cache name.
+     * @param pageSize Fetch size.
+     * @param maxRows Max rows.
+     * @param autoCommit Connection auto commit flag state.
+     * @param sqlQry SQL query.
+     * @param args Arguments list.
+     */
+    protected JdbcQueryExecuteRequest(byte type, JdbcStatementType stmtType, String schemaName, String userToken,
+        int pageSize, int maxRows, boolean autoCommit, boolean explicitTimeout, String sqlQry, Object[] args) {
+        super(type);
 
         this.schemaName = F.isEmpty(schemaName) ? null : schemaName;
         this.userToken = F.isEmpty(userToken) ? null : userToken;
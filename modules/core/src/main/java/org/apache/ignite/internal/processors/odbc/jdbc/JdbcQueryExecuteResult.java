@@ -46,6 +46,9 @@ public class JdbcQueryExecuteResult extends JdbcResult {
     /** Partition result. */
     private PartitionResult partRes;
 
+    /** Smart sql version of the server. */
+    private long smartSqlVer;
+
     /**
      * Constructor.
      */
@@ -119,6 +122,20 @@ public class JdbcQueryExecuteResult extends JdbcResult {
         return updateCnt;
     }
 
+    /**
+     * @return Smart sql version of the server.
+     */
+    public long smartSqlVersion() {
+        return smartSqlVer;
+    }
+
+    /**
+     * @param smartSqlVer Smart sql version of the server.
+     */
+    void smartSqlVersion(long smartSqlVer) {
+        this.smartSqlVer = smartSqlVer;
+    }
+
     /** {@inheritDoc} */
     @Override public void writeBinary(BinaryWriterExImpl writer, JdbcProtocolContext protoCtx)
         throws BinaryObjectException {
@@ -141,6 +158,9 @@ public class JdbcQueryExecuteResult extends JdbcResult {
 
         if (protoCtx.isAffinityAwarenessSupported() && partRes != null)
             PartitionResultMarshaler.marshal(writer, partRes);
+
+        if (protoCtx.isFeatureSupported(JdbcThinFeature.SMART_SQL_VERSION))
+            writer.writeLong(smartSqlVer);
     }
 
     /** {@inheritDoc} */
@@ -169,6 +189,9 @@ public class JdbcQueryExecuteResult extends JdbcResult {
         catch (Exception ignored) {
             // TODO: GG-25595 remove when version 8.7.X support ends
         }
+
+        if (protoCtx.isFeatureSupported(JdbcThinFeature.SMART_SQL_VERSION))
+            smartSqlVer = reader.readLong();
     }
 
     /**
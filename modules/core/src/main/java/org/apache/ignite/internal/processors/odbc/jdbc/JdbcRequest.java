@@ -87,6 +87,9 @@ public class JdbcRequest extends ClientListenerRequestNoId implements JdbcRawBin
     /** Update binary type name request. */
     public static final byte BINARY_TYPE_NAME_PUT = 20;
 
+    /** Execute smart sql query request: the server rewrites the statement and executes it. */
+    public static final byte QRY_SMART_EXEC = 21;
+
     /** Request Id generator. */
     private static final AtomicLong REQ_ID_GENERATOR = new AtomicLong();
 
@@ -242,6 +245,11 @@ public class JdbcRequest extends ClientListenerRequestNoId implements JdbcRawBin
 
                 break;
 
+            case QRY_SMART_EXEC:
+                req = new JdbcSmartQueryExecuteRequest();
+
+                break;
+
             default:
                 throw new IgniteException("Unknown SQL listener request ID: [request ID=" + reqType + ']');
         }
@@ -30,9 +30,13 @@ import java.util.SortedSet;
 import java.util.TimeZone;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import javax.cache.configuration.Factory;
+import cn.myservice.MyPlusFuncService;
+import cn.mysuper.service.IMyPlusFunc;
 import org.apache.ignite.IgniteCheckedException;
 import org.apache.ignite.IgniteLogger;
 import org.apache.ignite.cache.query.BulkLoadContextCursor;
@@ -40,6 +44,7 @@ import org.apache.ignite.cache.query.FieldsQueryCursor;
 import org.apache.ignite.cache.query.QueryCancelledException;
 import org.apache.ignite.cache.query.exceptions.SqlCacheException;
 import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.internal.IgniteInternalFuture;
 import org.apache.ignite.internal.IgniteInterruptedCheckedException;
 import org.apache.ignite.internal.IgniteVersionUtils;
 import org.apache.ignite.internal.ThinProtocolFeature;
@@ -71,6 +76,9 @@ import org.apache.ignite.internal.processors.query.IgniteSQLException;
 import org.apache.ignite.internal.processors.query.NestedTxMode;
 import org.apache.ignite.internal.processors.query.QueryUtils;
 import org.apache.ignite.internal.processors.query.SqlClientContext;
+import org.apache.ignite.internal.processors.query.SqlTenantAdmissionController;
+import org.apache.ignite.internal.processors.security.OperationSecurityContext;
+import org.apache.ignite.internal.processors.timeout.GridTimeoutObjectAdapter;
 import org.apache.ignite.internal.sql.optimizer.affinity.PartitionResult;
 import org.apache.ignite.internal.util.GridSpinBusyLock;
 import org.apache.ignite.internal.util.future.GridFutureAdapter;
@@ -82,6 +90,7 @@ import org.apache.ignite.internal.util.worker.GridWorker;
 import org.apache.ignite.lang.IgniteBiTuple;
 import org.apache.ignite.marshaller.MarshallerContext;
 import org.jetbrains.annotations.Nullable;
+import org.tools.MyLineToBinary;
 
 import static org.apache.ignite.internal.processors.odbc.jdbc.JdbcBulkLoadBatchRequest.CMD_CONTINUE;
 import static org.apache.ignite.internal.processors.odbc.jdbc.JdbcBulkLoadBatchRequest.CMD_FINISHED_EOF;
@@ -110,6 +119,7 @@ import static org.apache.ignite.internal.processors.odbc.jdbc.JdbcRequest.QRY_CL
 import static org.apache.ignite.internal.processors.odbc.jdbc.JdbcRequest.QRY_EXEC;
 import static org.apache.ignite.internal.processors.odbc.jdbc.JdbcRequest.QRY_FETCH;
 import static org.apache.ignite.internal.processors.odbc.jdbc.JdbcRequest.QRY_META;
+import static org.apache.ignite.internal.processors.odbc.jdbc.JdbcRequest.QRY_SMART_EXEC;
 
 /**
  * JDBC request handler.
@@ -152,6 +162,9 @@ public class JdbcRequestHandler implements ClientListenerRequestHandler {
     /** Response sender. */
     private final ClientListenerResponseSender sender;
 
+    /** Requests waiting for admission by tenant admission control. */
+    private final Set<IgniteInternalFuture<?>> admissions = ConcurrentHashMap.newKeySet();
+
     /** Automatic close of cursors. */
     private final boolean autoCloseCursors;
 
@@ -280,7 +293,7 @@ public class JdbcRequestHandler implements ClientListenerRequestHandler {
         assert reqId != 0;
 
         synchronized (reqMux) {
-            if (isCancellationSupported() && (cmdType == QRY_EXEC || cmdType == BATCH_EXEC))
+            if (isCancellationSupported() && (cmdType == QRY_EXEC || cmdType == QRY_SMART_EXEC || cmdType == BATCH_EXEC))
                 reqRegister.put(reqId, new JdbcQueryDescriptor());
         }
     }
@@ -320,6 +333,7 @@ public class JdbcRequestHandler implements ClientListenerRequestHandler {
         try {
             switch (req.type()) {
                 case QRY_EXEC:
+                case QRY_SMART_EXEC:
                     resp = executeQuery((JdbcQueryExecuteRequest)req);
                     break;
 
@@ -560,6 +574,9 @@ public class JdbcRequestHandler implements ClientListenerRequestHandler {
             }
         }
 
+        for (IgniteInternalFuture<?> admFut : admissions)
+            admFut.cancel();
+
         for (JdbcCursor cursor : jdbcCursors.values())
             U.close(cursor, log);
 
@@ -578,12 +595,13 @@ public class JdbcRequestHandler implements ClientListenerRequestHandler {
      * @param req Execute query request.
      * @return Response.
      */
-    @SuppressWarnings("unchecked")
     private JdbcResponse executeQuery(JdbcQueryExecuteRequest req) {
         GridQueryCancel cancel = null;
 
         boolean unregisterReq = false;
 
+        boolean submitted = false;
+
         if (isCancellationSupported()) {
             synchronized (reqMux) {
                 JdbcQueryDescriptor desc = reqRegister.get(req.requestId());
@@ -609,51 +627,63 @@ public class JdbcRequestHandler implements ClientListenerRequestHandler {
 
             assert !cliCtx.isStream();
 
-            String sql = req.sqlQuery();
-
-            SqlFieldsQueryEx qry;
-
-            switch (req.expectedStatementType()) {
-                case ANY_STATEMENT_TYPE:
-                    qry = new SqlFieldsQueryEx(sql, null);
-
-                    break;
+            if (req.pageSize() <= 0)
+                return new JdbcResponse(IgniteQueryErrorCode.UNKNOWN, "Invalid fetch size: " + req.pageSize());
 
-                case SELECT_STATEMENT_TYPE:
-                    qry = new SqlFieldsQueryEx(sql, true);
+            // Single threaded MVCC worker handles requests of the connection in order and can not wait for admission.
+            // Admission goes first, smart sql rewrite of a rejected or queued request is not paid for.
+            IgniteInternalFuture<SqlTenantAdmissionController.Permit> admFut = connCtx.kernalContext().query()
+                .tenantAdmission().acquire(req.userToken(), null, worker == null, cancel);
 
-                    break;
+            submitted = true;
 
-                default:
-                    assert req.expectedStatementType() == JdbcStatementType.UPDATE_STMT_TYPE;
+            GridQueryCancel cancel0 = cancel;
 
-                    qry = new SqlFieldsQueryEx(sql, false);
+            if (admFut.isDone())
+                return executeAdmittedQuery(req, admFut, cancel0);
 
-                    if (cliCtx.isSkipReducerOnUpdate())
-                        qry.setSkipReducerOnUpdate(true);
-            }
+            return executeOnAdmission(admFut, req.requestId(), () -> executeAdmittedQuery(req, admFut, cancel0));
+        }
+        catch (Exception e) {
+            clearCursors(req.requestId());
 
-            setupQuery(qry, prepareSchemaName(req.schemaName()));
+            unregisterReq = true;
 
-            qry.setArgs(req.arguments());
-            qry.setAutoCommit(req.autoCommit());
+            return queryError(req, e);
+        }
+        finally {
+            if (!submitted)
+                cleanupQueryCancellationMeta(unregisterReq, req.requestId());
+        }
+    }
 
-            if (req.explicitTimeout()) {
-                // Timeout is handled on a client side, do not handle it on a server side.
-                qry.setTimeout(0, TimeUnit.MILLISECONDS);
-            }
+    /**
+     * Executes query admitted by tenant admission control.
+     *
+     * @param req Execute query request.
+     * @param admFut Completed admission future.
+     * @param cancel Hook for query cancellation.
+     * @return Response.
+     */
+    @SuppressWarnings("unchecked")
+    private JdbcResponse executeAdmittedQuery(
+        JdbcQueryExecuteRequest req,
+        IgniteInternalFuture<SqlTenantAdmissionController.Permit> admFut,
+        GridQueryCancel cancel
+    ) {
+        boolean unregisterReq = false;
 
-            if (req.pageSize() <= 0)
-                return new JdbcResponse(IgniteQueryErrorCode.UNKNOWN, "Invalid fetch size: " + req.pageSize());
+        SqlTenantAdmissionController.Permit permit = null;
 
-            qry.setPageSize(req.pageSize());
+        try {
+            permit = admissionPermit(admFut);
 
-            String schemaName = req.schemaName();
+            String sql = req instanceof JdbcSmartQueryExecuteRequest ?
+                smartSql((JdbcSmartQueryExecuteRequest)req) : req.sqlQuery();
 
-            if (F.isEmpty(schemaName))
-                schemaName = QueryUtils.DFLT_SCHEMA;
+            SqlFieldsQueryEx qry = prepareQuery(req, sql);
 
-            qry.setSchema(schemaName);
+            permit.limitMemory(qry);
 
             List<FieldsQueryCursor<List<?>>> results = connCtx.kernalContext().query().querySqlFields(null, qry,
                 cliCtx, true, protocolVer.compareTo(VER_2_3_0) < 0, cancel);
@@ -678,8 +708,12 @@ public class JdbcRequestHandler implements ClientListenerRequestHandler {
                 JdbcQueryCursor cur = new JdbcQueryCursor(req.pageSize(), req.maxRows(),
                     (QueryCursorImpl)fieldsCur, req.requestId());
 
+                cur.permit(permit.retain());
+
                 jdbcCursors.put(cur.cursorId(), cur);
 
+                reapWhenIdle(cur);
+
                 cur.openIterator();
 
                 JdbcQueryExecuteResult res;
@@ -705,6 +739,9 @@ public class JdbcRequestHandler implements ClientListenerRequestHandler {
                             null);
                 }
 
+                if (connCtx.protocolContext().isFeatureSupported(JdbcThinFeature.SMART_SQL_VERSION))
+                    res.smartSqlVersion(smartSqlVersion());
+
                 if (res.last() && (!res.isQuery() || autoCloseCursors)) {
                     jdbcCursors.remove(cur.cursorId());
 
@@ -728,8 +765,12 @@ public class JdbcRequestHandler implements ClientListenerRequestHandler {
                     if (qryCur.isQuery()) {
                         JdbcQueryCursor cur = new JdbcQueryCursor(req.pageSize(), req.maxRows(), qryCur, req.requestId());
 
+                        cur.permit(permit.retain());
+
                         jdbcCursors.put(cur.cursorId(), cur);
 
+                        reapWhenIdle(cur);
+
                         jdbcRes = new JdbcResultInfo(true, -1, cur.cursorId());
 
                         cur.openIterator();
@@ -754,35 +795,282 @@ public class JdbcRequestHandler implements ClientListenerRequestHandler {
 
             unregisterReq = true;
 
-            if (X.cause(e, QueryCancelledException.class) != null) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Failed to execute SQL query " +
-                        "[reqId=" + req.requestId() +
-                        ", req=" + req +
-                        "]. Error:" + X.getFullStackTrace(e));
-                }
+            return queryError(req, e);
+        }
+        finally {
+            // Cursors keep their own references to the permit.
+            if (permit != null)
+                permit.close();
 
-                return exceptionToResult(new QueryCancelledException());
-            }
-            else if (X.cause(e, IgniteSQLException.class) != null) {
-                IgniteSQLException e0 = X.cause(e, IgniteSQLException.class);
+            cleanupQueryCancellationMeta(unregisterReq, req.requestId());
+        }
+    }
 
-                if (isNeedToNodeLog(e0))
-                    U.warn(log, "Failed to execute SQL query [reqId=" + req.requestId() + ", req=" + req + ']', e);
+    /**
+     * @param req Execute query request.
+     * @param sql SQL, rewritten if the request is a smart sql request.
+     * @return Query.
+     */
+    private SqlFieldsQueryEx prepareQuery(JdbcQueryExecuteRequest req, String sql) {
+        SqlFieldsQueryEx qry;
+
+        switch (req.expectedStatementType()) {
+            case ANY_STATEMENT_TYPE:
+                qry = new SqlFieldsQueryEx(sql, null);
+
+                break;
+
+            case SELECT_STATEMENT_TYPE:
+                qry = new SqlFieldsQueryEx(sql, true);
+
+                break;
+
+            default:
+                assert req.expectedStatementType() == JdbcStatementType.UPDATE_STMT_TYPE;
+
+                qry = new SqlFieldsQueryEx(sql, false);
+
+                if (cliCtx.isSkipReducerOnUpdate())
+                    qry.setSkipReducerOnUpdate(true);
+        }
+
+        setupQuery(qry, prepareSchemaName(req.schemaName()));
+
+        qry.setArgs(req.arguments());
+        qry.setAutoCommit(req.autoCommit());
+
+        if (req.explicitTimeout()) {
+            // Timeout is handled on a client side, do not handle it on a server side.
+            qry.setTimeout(0, TimeUnit.MILLISECONDS);
+        }
+
+        qry.setPageSize(req.pageSize());
+
+        String schemaName = req.schemaName();
+
+        if (F.isEmpty(schemaName))
+            schemaName = QueryUtils.DFLT_SCHEMA;
+
+        qry.setSchema(schemaName);
 
-                return exceptionToResult(e0);
+        return qry;
+    }
+
+    /**
+     * @param req Execute query request.
+     * @param e Error.
+     * @return Error response.
+     */
+    private JdbcResponse queryError(JdbcQueryExecuteRequest req, Exception e) {
+        if (X.cause(e, QueryCancelledException.class) != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to execute SQL query " +
+                    "[reqId=" + req.requestId() +
+                    ", req=" + req +
+                    "]. Error:" + X.getFullStackTrace(e));
             }
-            else {
+
+            return exceptionToResult(new QueryCancelledException());
+        }
+        else if (X.cause(e, IgniteSQLException.class) != null) {
+            IgniteSQLException e0 = X.cause(e, IgniteSQLException.class);
+
+            if (isNeedToNodeLog(e0))
                 U.warn(log, "Failed to execute SQL query [reqId=" + req.requestId() + ", req=" + req + ']', e);
 
-                return exceptionToResult(e);
+            return exceptionToResult(e0);
+        }
+        else {
+            U.warn(log, "Failed to execute SQL query [reqId=" + req.requestId() + ", req=" + req + ']', e);
+
+            return exceptionToResult(e);
+        }
+    }
+
+    /**
+     * @param admFut Completed admission future.
+     * @return Admission permit.
+     * @throws QueryCancelledException If request was cancelled while waiting for admission.
+     * @throws IgniteSQLException If request was rejected.
+     */
+    private static SqlTenantAdmissionController.Permit admissionPermit(
+        IgniteInternalFuture<SqlTenantAdmissionController.Permit> admFut
+    ) throws QueryCancelledException {
+        assert admFut.isDone();
+
+        Throwable err = admFut.error();
+
+        if (err == null)
+            return admFut.result();
+
+        if (err instanceof QueryCancelledException)
+            throw (QueryCancelledException)err;
+
+        if (err instanceof IgniteSQLException)
+            throw (IgniteSQLException)err;
+
+        throw new IgniteSQLException("Failed to admit SQL request.", err);
+    }
+
+    /**
+     * Executes request queued by tenant admission control once it is admitted. The request is executed
+     * in the thin client pool and the response is sent asynchronously, so the client connector thread is not
+     * blocked while the request waits in the tenant queue.
+     *
+     * @param admFut Admission future.
+     * @param reqId Request id.
+     * @param exec Request execution, closes the permit.
+     * @return {@code null}, the response is sent by {@link #sender}.
+     */
+    private JdbcResponse executeOnAdmission(
+        IgniteInternalFuture<SqlTenantAdmissionController.Permit> admFut,
+        long reqId,
+        Supplier<JdbcResponse> exec
+    ) {
+        admissions.add(admFut);
+
+        admFut.listen(f -> {
+            admissions.remove(admFut);
+
+            Runnable task = () -> sender.send(executeAdmitted(admFut, reqId, exec));
+
+            try {
+                connCtx.kernalContext().pools().getThinClientExecutorService().execute(task);
+            }
+            catch (RejectedExecutionException e) {
+                // Do not execute on the thread that freed the slot, it belongs to another request.
+                if (admFut.error() == null)
+                    admFut.result().close();
+
+                cleanupQueryCancellationMeta(true, reqId);
+
+                sender.send(new JdbcResponse(IgniteQueryErrorCode.QUERY_REJECTED,
+                    "Failed to execute admitted JDBC request because the thin client pool is overloaded."));
             }
+        });
+
+        return null;
+    }
+
+    /**
+     * Closes the cursor once it is idle longer than {@link SqlTenantAdmissionController#cursorIdleTimeout()}, so
+     * an abandoned result set does not hold the tenant slot forever. No-op if the cursor does not hold a slot.
+     *
+     * @param cur Cursor.
+     */
+    private void reapWhenIdle(JdbcQueryCursor cur) {
+        long idleTimeout = connCtx.kernalContext().query().tenantAdmission().cursorIdleTimeout();
+
+        if (idleTimeout == 0 || !cur.holdsSlot())
+            return;
+
+        connCtx.kernalContext().timeout().addTimeoutObject(new GridTimeoutObjectAdapter(Math.max(1, idleTimeout - cur.idleTime())) {
+            @Override public void onTimeout() {
+                if (!cur.holdsSlot() || jdbcCursors.get(cur.cursorId()) != cur)
+                    return;
+
+                if (cur.idleTime() < idleTimeout) {
+                    reapWhenIdle(cur);
+
+                    return;
+                }
+
+                if (!jdbcCursors.remove(cur.cursorId(), cur))
+                    return;
+
+                U.warn(log, "Closing JDBC cursor idle longer than tenant cursor idle timeout [cursorId=" +
+                    cur.cursorId() + ", idleTimeout=" + idleTimeout + ']');
+
+                // Closing the query may send cancel requests, keep the timeout worker free.
+                connCtx.kernalContext().closure().runLocalSafe(() -> U.close(cur, log));
+            }
+        });
+    }
+
+    /**
+     * @param admFut Completed admission future.
+     * @param reqId Request id.
+     * @param exec Request execution.
+     * @return Response.
+     */
+    private JdbcResponse executeAdmitted(
+        IgniteInternalFuture<SqlTenantAdmissionController.Permit> admFut,
+        long reqId,
+        Supplier<JdbcResponse> exec
+    ) {
+        if (!busyLock.enterBusy()) {
+            if (admFut.error() == null)
+                admFut.result().close();
+
+            cleanupQueryCancellationMeta(true, reqId);
+
+            return new JdbcResponse(IgniteQueryErrorCode.UNKNOWN,
+                "Failed to handle JDBC request because node is stopping.");
+        }
+
+        if (actx != null)
+            AuthorizationContext.context(actx);
+
+        try (OperationSecurityContext s = connCtx.kernalContext().security().withContext(connCtx.securityContext())) {
+            JdbcResponse resp = exec.get();
+
+            resp.activeTransaction(connCtx.kernalContext().cache().context().tm().inUserTx());
+
+            return resp;
         }
         finally {
-            cleanupQueryCancellationMeta(unregisterReq, req.requestId());
+            AuthorizationContext.clear();
+
+            busyLock.leaveBusy();
         }
     }
 
+    /**
+     * Rewrites smart sql statement on the server side.
+     *
+     * @param req Smart sql execute request.
+     * @return Rewritten SQL or original SQL if rewrite produced nothing.
+     * @throws IgniteSQLException If smart sql segments are malformed.
+     */
+    private String smartSql(JdbcSmartQueryExecuteRequest req) {
+        IMyPlusFunc myPlusFunc = myPlusFunc();
+
+        if (myPlusFunc == null)
+            throw new IgniteSQLException("Smart sql is not available on the node.",
+                IgniteQueryErrorCode.UNSUPPORTED_OPERATION);
+
+        String sql;
+
+        try {
+            sql = myPlusFunc.superSql(MyLineToBinary.objToCompactBytes(req.userToken()), req.smartSegments());
+        }
+        catch (MyLineToBinary.MyFormatException e) {
+            throw new IgniteSQLException("Malformed smart sql segments: " + e.getMessage(),
+                IgniteQueryErrorCode.PARSING, e);
+        }
+
+        return F.isEmpty(sql) ? req.sqlQuery() : sql;
+    }
+
+    /**
+     * @return Cluster wide smart sql version, changes after schema or permission changes and is the same on
+     *      all nodes, so clients connected to several nodes compare it directly.
+     */
+    private long smartSqlVersion() {
+        IMyPlusFunc myPlusFunc = myPlusFunc();
+
+        return myPlusFunc != null ? myPlusFunc.smartSqlVersion() : 0;
+    }
+
+    /**
+     * @return Smart sql functions or {@code null} if they failed to load on the node.
+     */
+    @Nullable private static IMyPlusFunc myPlusFunc() {
+        MyPlusFuncService svc = MyPlusFuncService.getInstance();
+
+        return svc != null ? svc.getiMyPlusFunc() : null;
+    }
+
     /**
      * {@link JdbcQueryCloseRequest} command handler.
      *
@@ -954,10 +1242,39 @@ public class JdbcRequestHandler implements ClientListenerRequestHandler {
             }
         }
 
+        // Ordered batches are answered synchronously by the stream thread and can not wait for admission.
+        IgniteInternalFuture<SqlTenantAdmissionController.Permit> admFut = connCtx.kernalContext().query()
+            .tenantAdmission().acquire(req.userToken(), null, worker == null && req.type() == BATCH_EXEC, cancel);
+
+        if (admFut.isDone())
+            return executeAdmittedBatch(req, admFut, cancel);
+
+        GridQueryCancel cancel0 = cancel;
+
+        return executeOnAdmission(admFut, req.requestId(), () -> executeAdmittedBatch(req, admFut, cancel0));
+    }
+
+    /**
+     * Executes batch admitted by tenant admission control.
+     *
+     * @param req Request.
+     * @param admFut Completed admission future.
+     * @param cancel Hook for query cancellation.
+     * @return Response.
+     */
+    private JdbcResponse executeAdmittedBatch(
+        JdbcBatchExecuteRequest req,
+        IgniteInternalFuture<SqlTenantAdmissionController.Permit> admFut,
+        GridQueryCancel cancel
+    ) {
+        SqlTenantAdmissionController.Permit permit = null;
+
         try {
             String schemaName = prepareSchemaName(req.schemaName());
             String userToken = req.userToken();
 
+            permit = admissionPermit(admFut);
+
             int qryCnt = req.queries().size();
 
             List<Integer> updCntsAcc = new ArrayList<>(qryCnt);
@@ -976,6 +1293,9 @@ public class JdbcRequestHandler implements ClientListenerRequestHandler {
 
                     setupQuery(qry, schemaName);
 
+                    // Every sub-batch is limited by the tenant memory quota.
+                    permit.limitMemory(qry);
+
                     qry.setAutoCommit(req.autoCommit());
                 }
 
@@ -997,10 +1317,13 @@ public class JdbcRequestHandler implements ClientListenerRequestHandler {
                     new JdbcBatchExecuteResult(updCnts, ClientListenerResponse.STATUS_SUCCESS, null)) :
                 resultToResonse(new JdbcBatchExecuteResult(updCnts, firstErr.getKey(), firstErr.getValue()));
         }
-        catch (QueryCancelledException e) {
+        catch (QueryCancelledException | IgniteSQLException e) {
             return exceptionToResult(e);
         }
         finally {
+            if (permit != null)
+                permit.close();
+
             cleanupQueryCancellationMeta(true, req.requestId());
         }
     }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ignite.internal.processors.odbc.jdbc;
+
+import org.apache.ignite.binary.BinaryObjectException;
+import org.apache.ignite.internal.binary.BinaryReaderExImpl;
+import org.apache.ignite.internal.binary.BinaryWriterExImpl;
+import org.apache.ignite.internal.util.tostring.GridToStringExclude;
+import org.apache.ignite.internal.util.typedef.internal.S;
+
+/**
+ * JDBC smart sql execute request.<p>
+ * Carries the user token together with the smart sql segments of the statement, so the server
+ * rewrites the statement and executes the result within a single round trip.
+ * Only sent when the server supports {@link JdbcThinFeature#SMART_SQL_EXEC}.
+ */
+public class JdbcSmartQueryExecuteRequest extends JdbcQueryExecuteRequest {
+    /** Serialized smart sql segments. */
+    @GridToStringExclude
+    private byte[] smartSegments;
+
+    /**
+     * Default constructor.
+     */
+    JdbcSmartQueryExecuteRequest() {
+        super(QRY_SMART_EXEC);
+    }
+
+    /**
+     * @param stmtType Expected statement type.
+     * @param schemaName Cache name.
+     * @param userToken User token.
+     * @param pageSize Fetch size.
+     * @param maxRows Max rows.
+     * @param autoCommit Connection auto commit flag state.
+     * @param explicitTimeout Explicit timeout.
+     * @param sqlQry Original SQL query, used when server returns an empty rewrite.
+     * @param smartSegments Serialized smart sql segments.
+     */
+    public JdbcSmartQueryExecuteRequest(JdbcStatementType stmtType, String schemaName, String userToken, int pageSize,
+        int maxRows, boolean autoCommit, boolean explicitTimeout, String sqlQry, byte[] smartSegments) {
+        super(QRY_SMART_EXEC, stmtType, schemaName, userToken, pageSize, maxRows, autoCommit, explicitTimeout, sqlQry,
+            null);
+
+        this.smartSegments = smartSegments;
+    }
+
+    /**
+     * @return Serialized smart sql segments.
+     */
+    public byte[] smartSegments() {
+        return smartSegments;
+    }
+
+    /** {@inheritDoc} */
+    @Override public void writeBinary(BinaryWriterExImpl writer,
+        JdbcProtocolContext protoCtx) throws BinaryObjectException {
+        super.writeBinary(writer, protoCtx);
+
+        writer.writeByteArray(smartSegments);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void readBinary(BinaryReaderExImpl reader,
+        JdbcProtocolContext protoCtx) throws BinaryObjectException {
+        super.readBinary(reader, protoCtx);
+
+        smartSegments = reader.readByteArray();
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return S.toString(JdbcSmartQueryExecuteRequest.class, this, super.toString());
+    }
+}
@@ -38,7 +38,16 @@ public enum JdbcThinFeature implements ThinProtocolFeature {
     CUSTOM_OBJECT(2),
 
     /** Add ability to set explicit query timeout on the cluster node by the JDBC client. */
-    QUERY_TIMEOUT(3);
+    QUERY_TIMEOUT(3),
+
+    /** Smart sql statements are rewritten and executed by the server within a single request. */
+    SMART_SQL_EXEC(4),
+
+    /**
+     * Server reports smart sql version in query results. The version changes after schema or permission changes,
+     * so the client drops cached smart sql rewrites.
+     */
+    SMART_SQL_VERSION(5);
 
     /** */
     private static final EnumSet<JdbcThinFeature> ALL_FEATURES_AS_ENUM_SET = EnumSet.allOf(JdbcThinFeature.class);
@@ -250,6 +250,9 @@ public class GridQueryProcessor extends GridProcessorAdapter {
     /** Index build statuses. */
     private final IndexBuildStatusStorage idxBuildStatusStorage;
 
+    /** Per tenant admission control of client SQL requests. */
+    private final SqlTenantAdmissionController tenantAdmission;
+
     /**
      * Constructor.
      *
@@ -281,6 +284,8 @@ public class GridQueryProcessor extends GridProcessorAdapter {
         };
 
         idxBuildStatusStorage = new IndexBuildStatusStorage(ctx);
+
+        tenantAdmission = new SqlTenantAdmissionController(ctx);
     }
 
     /** {@inheritDoc} */
@@ -3971,4 +3976,11 @@ public class GridQueryProcessor extends GridProcessorAdapter {
     public IndexBuildStatusStorage getIdxBuildStatusStorage() {
         return idxBuildStatusStorage;
     }
+
+    /**
+     * @return Per tenant admission control of client SQL requests.
+     */
+    public SqlTenantAdmissionController tenantAdmission() {
+        return tenantAdmission;
+    }
 }
@@ -17,6 +17,8 @@
 package org.apache.ignite.internal.processors.query;
 
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.ignite.internal.processors.cache.query.GridCacheQueryType;
 import org.apache.ignite.internal.util.tostring.GridToStringExclude;
 import org.apache.ignite.internal.util.typedef.internal.S;
@@ -74,6 +76,15 @@ public class GridRunningQueryInfo {
     /** Distributed joins flag. */
     private final boolean distributedJoins;
 
+    /** Start time of the reduce phase, {@code 0} if it has not started. */
+    private volatile long rdcStartTime;
+
+    /** End time of the reduce phase, {@code 0} if it has not finished. */
+    private volatile long rdcEndTime;
+
+    /** Time the reducer has been waiting for result pages of map nodes, in nanoseconds. */
+    private final LongAdder rdcWaitTime = new LongAdder();
+
     /**
      * Constructor.
      *
@@ -228,6 +239,50 @@ public class GridRunningQueryInfo {
         return distributedJoins;
     }
 
+    /**
+     * Callback on start of the reduce phase.
+     */
+    public void onReduceStarted() {
+        rdcStartTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Callback on end of the reduce phase.
+     */
+    public void onReduceFinished() {
+        if (rdcStartTime != 0)
+            rdcEndTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @param nanos Time the reducer has been waiting for a result page of a map node, in nanoseconds.
+     */
+    public void onReducePageWait(long nanos) {
+        rdcWaitTime.add(nanos);
+    }
+
+    /**
+     * @return Duration of the reduce phase in milliseconds, {@code -1} if it has not started.
+     */
+    public long reduceDuration() {
+        long start = rdcStartTime;
+
+        if (start == 0)
+            return -1;
+
+        long end = rdcEndTime;
+
+        return (end == 0 ? System.currentTimeMillis() : end) - start;
+    }
+
+    /**
+     * @return Time the reducer has been waiting for result pages of map nodes in milliseconds,
+     * summed over the reducer threads.
+     */
+    public long reduceWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(rdcWaitTime.sum());
+    }
+
     /**{@inheritDoc} */
     @Override public String toString() {
         return S.toString(GridRunningQueryInfo.class, this);
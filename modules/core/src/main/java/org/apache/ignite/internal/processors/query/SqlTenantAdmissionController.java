@@ -0,0 +1,628 @@
+/*
+ * Copyright 2019 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ignite.internal.processors.query;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import org.apache.ignite.cache.query.QueryCancelledException;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.configuration.TenantConfiguration;
+import org.apache.ignite.internal.GridKernalContext;
+import org.apache.ignite.internal.IgniteInternalFuture;
+import org.apache.ignite.internal.processors.cache.query.IgniteQueryErrorCode;
+import org.apache.ignite.internal.processors.cache.query.SqlFieldsQueryEx;
+import org.apache.ignite.internal.processors.metric.GridMetricManager;
+import org.apache.ignite.internal.processors.metric.MetricRegistry;
+import org.apache.ignite.internal.processors.metric.impl.HistogramMetricImpl;
+import org.apache.ignite.internal.processors.metric.impl.LongAdderMetric;
+import org.apache.ignite.internal.processors.timeout.GridTimeoutObjectAdapter;
+import org.apache.ignite.internal.processors.timeout.GridTimeoutProcessor;
+import org.apache.ignite.internal.util.future.GridFinishedFuture;
+import org.apache.ignite.internal.util.future.GridFutureAdapter;
+import org.apache.ignite.internal.util.typedef.F;
+import org.apache.ignite.internal.util.typedef.internal.S;
+import org.jetbrains.annotations.Nullable;
+
+import static org.apache.ignite.internal.processors.metric.impl.MetricUtils.metricName;
+
+/**
+ * Per tenant (user group token) admission control for client SQL requests.
+ * <p>
+ * A request is admitted when both the tenant limit ({@link TenantConfiguration#getMaxConcurrentQueries()}) and
+ * the node limit ({@link IgniteConfiguration#getSqlMaxConcurrentQueries()}) allow it. Otherwise it waits in the
+ * tenant queue. Free slots are handed to the waiting tenant with the smallest virtual time, which grows by
+ * {@code 1 / weight} per admitted request (start time fair queuing). Under contention every tenant gets a share of
+ * the node proportional to its weight and a heavy tenant can not starve interactive ones. Requests are rejected
+ * when the tenant queue is full or the queue timeout expires.
+ * <p>
+ * Waiting does not block the caller: {@link #acquire} returns a future completed by the thread that frees the slot.
+ * A waiting request can be cancelled through its {@link GridQueryCancel} or by cancelling the future.
+ * <p>
+ * Tenant memory quota is split evenly between its concurrent queries and enforced by
+ * {@code QueryMemoryManager} through {@link SqlFieldsQueryEx#setMaxMemory(long)}. A tenant without its own
+ * concurrency limit splits the quota by the node limit, when the node is not limited either only the global
+ * SQL memory quota applies.
+ * <p>
+ * An open JDBC cursor holds the slot of its request until it is drained or closed. Cursors idle longer than
+ * {@link IgniteConfiguration#getTenantCursorIdleTimeout()} are closed by the request handler, so an abandoned
+ * result set frees the slot.
+ */
+public class SqlTenantAdmissionController {
+    /** Metric registry name. */
+    public static final String SQL_ADMISSION_METRICS = "sql.admission";
+
+    /** Wait time histogram bounds in milliseconds. */
+    private static final long[] WAIT_TIME_BOUNDS = new long[] {1, 10, 100, 1000, 10_000};
+
+    /** Permit returned when admission control is not configured. */
+    private static final Permit NO_OP = new Permit(null, null);
+
+    /** Future of the no-op permit. */
+    private static final IgniteInternalFuture<Permit> NO_OP_FUT = new GridFinishedFuture<>(NO_OP);
+
+    /** Timeout processor. */
+    private final GridTimeoutProcessor timeouts;
+
+    /** Metric manager. */
+    private final GridMetricManager metricMgr;
+
+    /** Node concurrency limit, {@code 0} for unlimited. */
+    private final int maxConcurrent;
+
+    /** Max queue size per tenant. */
+    private final int queueSize;
+
+    /** Queue timeout in nanoseconds. */
+    private final long queueTimeout;
+
+    /** Idle timeout of cursors holding a permit in milliseconds, {@code 0} to keep them open. */
+    private final long cursorIdleTimeout;
+
+    /** Default tenant configuration. */
+    private final TenantConfiguration dfltCfg;
+
+    /** Configured tenants. */
+    private final Map<String, TenantConfiguration> tenantCfgs;
+
+    /** Whether admission control is enabled at all. */
+    private final boolean enabled;
+
+    /** Lock. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Tenants with running or waiting requests. */
+    private final Map<String, Tenant> tenants = new HashMap<>();
+
+    /** Running requests on the node. */
+    private volatile int active;
+
+    /** Waiting requests on the node. */
+    private volatile int queued;
+
+    /** Virtual time of the last admitted request. */
+    private double vclock;
+
+    /** Node metrics. */
+    private final Metrics metrics;
+
+    /** Per tenant metrics by tenant name. */
+    private final Map<String, Metrics> tenantMetrics = new HashMap<>();
+
+    /**
+     * @param ctx Kernal context.
+     */
+    public SqlTenantAdmissionController(GridKernalContext ctx) {
+        IgniteConfiguration cfg = ctx.config();
+
+        timeouts = ctx.timeout();
+        metricMgr = ctx.metric();
+        maxConcurrent = Math.max(0, cfg.getSqlMaxConcurrentQueries());
+        queueSize = Math.max(0, cfg.getTenantQueueSize());
+        queueTimeout = TimeUnit.MILLISECONDS.toNanos(Math.max(0, cfg.getTenantQueueTimeout()));
+        cursorIdleTimeout = Math.max(0, cfg.getTenantCursorIdleTimeout());
+        dfltCfg = cfg.getDefaultTenantConfiguration() != null ?
+            cfg.getDefaultTenantConfiguration() : new TenantConfiguration();
+        tenantCfgs = F.isEmpty(cfg.getTenantConfiguration()) ?
+            new HashMap<>() : new HashMap<>(cfg.getTenantConfiguration());
+
+        boolean limited = maxConcurrent > 0 || dfltCfg.getMaxConcurrentQueries() > 0 || dfltCfg.getMemoryQuota() > 0;
+
+        for (TenantConfiguration tenantCfg : tenantCfgs.values())
+            limited |= tenantCfg.getMaxConcurrentQueries() > 0 || tenantCfg.getMemoryQuota() > 0;
+
+        enabled = limited;
+
+        MetricRegistry reg = metricMgr.registry(SQL_ADMISSION_METRICS);
+
+        metrics = new Metrics(reg);
+
+        reg.register("active", () -> active, "Count of admitted client SQL requests in execution.");
+        reg.register("queued", () -> queued, "Count of client SQL requests waiting for admission.");
+    }
+
+    /**
+     * @return Idle timeout of cursors holding a permit in milliseconds, {@code 0} if idle cursors are kept open.
+     */
+    public long cursorIdleTimeout() {
+        return cursorIdleTimeout;
+    }
+
+    /**
+     * Admits request of the tenant. If limits are reached the request is queued and the returned future
+     * completes when a slot is free, the caller thread is not blocked.
+     *
+     * @param token User group token.
+     * @param qry Query, max memory is limited by tenant memory quota. Other queries executed under
+     *      the permit are limited through {@link Permit#limitMemory(SqlFieldsQueryEx)}.
+     * @param queue Whether the request may wait in the tenant queue, otherwise it is rejected at once.
+     * @param cancel Cancel hook of the request, cancels the wait.
+     * @return Future of the permit, the permit must be closed when the request completes. The future fails with
+     *      {@link IgniteSQLException} if the request is rejected or {@link QueryCancelledException} if it is cancelled.
+     */
+    public IgniteInternalFuture<Permit> acquire(
+        @Nullable String token,
+        @Nullable SqlFieldsQueryEx qry,
+        boolean queue,
+        @Nullable GridQueryCancel cancel
+    ) {
+        if (!enabled)
+            return NO_OP_FUT;
+
+        String key = token == null ? "" : token;
+
+        Tenant tenant;
+
+        Waiter waiter;
+
+        lock.lock();
+
+        try {
+            tenant = tenants.computeIfAbsent(key, this::createTenant);
+
+            if (tenant.queue.isEmpty() && canRun(tenant)) {
+                admit(tenant);
+
+                return new GridFinishedFuture<>(onAdmitted(tenant, qry, 0));
+            }
+
+            if (!queue || queueTimeout == 0)
+                return new GridFinishedFuture<Permit>(reject(tenant, "Node or tenant concurrency limit is reached"));
+
+            if (tenant.queue.size() >= queueSize)
+                return new GridFinishedFuture<Permit>(reject(tenant, "Too many queued requests of the tenant [queueSize=" + queueSize + ']'));
+
+            waiter = new Waiter(tenant, qry);
+
+            tenant.queue.addLast(waiter);
+            queued++;
+        }
+        finally {
+            lock.unlock();
+        }
+
+        timeouts.addTimeoutObject(waiter.timeoutObj);
+
+        // Request could be admitted before the timeout was registered.
+        if (waiter.fut.isDone())
+            timeouts.removeTimeoutObject(waiter.timeoutObj);
+
+        if (cancel != null) {
+            try {
+                cancel.add(() -> dequeue(waiter, QueryCancelledException::new));
+            }
+            catch (QueryCancelledException e) {
+                dequeue(waiter, QueryCancelledException::new);
+            }
+        }
+
+        return waiter.fut;
+    }
+
+    /**
+     * Removes waiting request from the queue and fails its future, no-op if the request is already admitted.
+     *
+     * @param waiter Waiter.
+     * @param err Error supplier, called under the lock.
+     */
+    private void dequeue(Waiter waiter, Supplier<? extends Throwable> err) {
+        Throwable e;
+
+        lock.lock();
+
+        try {
+            if (waiter.admitted || !waiter.tenant.queue.remove(waiter))
+                return;
+
+            queued--;
+
+            e = err.get();
+
+            removeIfIdle(waiter.tenant);
+        }
+        finally {
+            lock.unlock();
+        }
+
+        timeouts.removeTimeoutObject(waiter.timeoutObj);
+
+        waiter.fut.onDone(e);
+    }
+
+    /**
+     * @param tenant Tenant.
+     * @param qry Query.
+     * @param waitTime Wait time in milliseconds.
+     * @return Permit.
+     */
+    private Permit onAdmitted(Tenant tenant, @Nullable SqlFieldsQueryEx qry, long waitTime) {
+        metrics.onAdmitted(waitTime);
+
+        if (tenant.metrics != null)
+            tenant.metrics.onAdmitted(waitTime);
+
+        Permit permit = new Permit(this, tenant);
+
+        permit.limitMemory(qry);
+
+        return permit;
+    }
+
+    /**
+     * @param tenant Tenant.
+     */
+    private void release(Tenant tenant) {
+        List<Waiter> admitted;
+
+        lock.lock();
+
+        try {
+            tenant.active--;
+            active--;
+
+            admitted = dispatch();
+
+            removeIfIdle(tenant);
+        }
+        finally {
+            lock.unlock();
+        }
+
+        for (Waiter waiter : admitted) {
+            timeouts.removeTimeoutObject(waiter.timeoutObj);
+
+            long waitTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waiter.start);
+
+            Permit permit = onAdmitted(waiter.tenant, waiter.qry, waitTime);
+
+            if (!waiter.fut.onDone(permit))
+                permit.close();
+        }
+    }
+
+    /**
+     * Hands free slots to waiting tenants in virtual time order.
+     *
+     * @return Admitted waiters, their futures are completed out of the lock.
+     */
+    private List<Waiter> dispatch() {
+        List<Waiter> admitted = Collections.emptyList();
+
+        while (maxConcurrent == 0 || active < maxConcurrent) {
+            Tenant next = null;
+
+            for (Tenant t : tenants.values()) {
+                if (!t.queue.isEmpty() && tenantCanRun(t) && (next == null || t.vtime < next.vtime))
+                    next = t;
+            }
+
+            if (next == null)
+                break;
+
+            Waiter waiter = next.queue.pollFirst();
+
+            queued--;
+
+            admit(next);
+
+            waiter.admitted = true;
+
+            if (admitted.isEmpty())
+                admitted = new ArrayList<>();
+
+            admitted.add(waiter);
+        }
+
+        return admitted;
+    }
+
+    /**
+     * @param tenant Tenant.
+     */
+    private void admit(Tenant tenant) {
+        tenant.active++;
+        active++;
+
+        double start = Math.max(tenant.vtime, vclock);
+
+        tenant.vtime = start + 1.0 / tenant.weight;
+        vclock = start;
+    }
+
+    /**
+     * @param tenant Tenant.
+     * @return {@code True} if both node and tenant limits allow one more request.
+     */
+    private boolean canRun(Tenant tenant) {
+        return (maxConcurrent == 0 || active < maxConcurrent) && tenantCanRun(tenant);
+    }
+
+    /**
+     * @param tenant Tenant.
+     * @return {@code True} if tenant limit allows one more request.
+     */
+    private static boolean tenantCanRun(Tenant tenant) {
+        return tenant.maxConcurrent == 0 || tenant.active < tenant.maxConcurrent;
+    }
+
+    /**
+     * @param tenant Tenant.
+     */
+    private void removeIfIdle(Tenant tenant) {
+        if (tenant.active == 0 && tenant.queue.isEmpty())
+            tenants.remove(tenant.key);
+    }
+
+    /**
+     * @param tenant Tenant.
+     * @param reason Reason.
+     * @return Exception to throw.
+     */
+    private IgniteSQLException reject(Tenant tenant, String reason) {
+        metrics.rejected.increment();
+
+        if (tenant.metrics != null)
+            tenant.metrics.rejected.increment();
+
+        removeIfIdle(tenant);
+
+        return new IgniteSQLException("SQL request rejected by admission control: " + reason,
+            IgniteQueryErrorCode.QUERY_REJECTED);
+    }
+
+    /**
+     * @param key Tenant key.
+     * @return New tenant.
+     */
+    private Tenant createTenant(String key) {
+        TenantConfiguration cfg = tenantCfgs.getOrDefault(key, dfltCfg);
+
+        Metrics m = null;
+
+        if (!F.isEmpty(cfg.getName()))
+            m = tenantMetrics.computeIfAbsent(cfg.getName(),
+                name -> new Metrics(metricMgr.registry(metricName(SQL_ADMISSION_METRICS, "tenant", name))));
+
+        return new Tenant(key, cfg, maxConcurrent, m);
+    }
+
+    /**
+     * Admission permit. The slot is released when every holder closed the permit: the request itself and each
+     * cursor that {@link #retain() retained} it.
+     */
+    public static class Permit implements AutoCloseable {
+        /** Controller. */
+        private final SqlTenantAdmissionController ctrl;
+
+        /** Tenant. */
+        private final Tenant tenant;
+
+        /** Holders. */
+        private final AtomicInteger refs = new AtomicInteger(1);
+
+        /**
+         * @param ctrl Controller.
+         * @param tenant Tenant.
+         */
+        private Permit(SqlTenantAdmissionController ctrl, Tenant tenant) {
+            this.ctrl = ctrl;
+            this.tenant = tenant;
+        }
+
+        /**
+         * Adds a holder of the permit, the holder must close the permit.
+         *
+         * @return This permit.
+         */
+        public Permit retain() {
+            if (ctrl != null)
+                refs.incrementAndGet();
+
+            return this;
+        }
+
+        /**
+         * @return {@code True} if the permit holds a slot, {@code false} if admission control is not configured.
+         */
+        public boolean holdsSlot() {
+            return ctrl != null;
+        }
+
+        /**
+         * Limits max memory of the query by tenant memory quota.
+         *
+         * @param qry Query.
+         */
+        public void limitMemory(@Nullable SqlFieldsQueryEx qry) {
+            if (qry == null || tenant == null || tenant.memPerQry <= 0)
+                return;
+
+            if (qry.getMaxMemory() <= 0 || qry.getMaxMemory() > tenant.memPerQry)
+                qry.setMaxMemory(tenant.memPerQry);
+        }
+
+        /** {@inheritDoc} */
+        @Override public void close() {
+            if (ctrl == null)
+                return;
+
+            int cnt = refs.decrementAndGet();
+
+            assert cnt >= 0 : cnt;
+
+            if (cnt == 0)
+                ctrl.release(tenant);
+        }
+    }
+
+    /**
+     * Tenant state, guarded by controller lock.
+     */
+    private static class Tenant {
+        /** Key. */
+        private final String key;
+
+        /** Concurrency limit. */
+        private final int maxConcurrent;
+
+        /** Max memory per query. */
+        private final long memPerQry;
+
+        /** Weight. */
+        private final int weight;
+
+        /** Metrics, {@code null} for unnamed tenants. */
+        private final Metrics metrics;
+
+        /** Waiting requests. */
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+
+        /** Running requests. */
+        private int active;
+
+        /** Virtual finish time of the last admitted request. */
+        private double vtime;
+
+        /**
+         * @param key Key.
+         * @param cfg Configuration.
+         * @param nodeMaxConcurrent Node concurrency limit, {@code 0} for unlimited.
+         * @param metrics Metrics.
+         */
+        Tenant(String key, TenantConfiguration cfg, int nodeMaxConcurrent, Metrics metrics) {
+            this.key = key;
+            this.metrics = metrics;
+
+            maxConcurrent = Math.max(0, cfg.getMaxConcurrentQueries());
+            weight = Math.max(1, cfg.getWeight());
+
+            // Without any concurrency limit the quota can not be split, queries are bound by the global quota.
+            int slots = maxConcurrent > 0 ? maxConcurrent : nodeMaxConcurrent;
+
+            memPerQry = cfg.getMemoryQuota() <= 0 || slots <= 0 ? 0 : cfg.getMemoryQuota() / slots;
+        }
+
+        /** {@inheritDoc} */
+        @Override public String toString() {
+            return S.toString(Tenant.class, this, "key", null);
+        }
+    }
+
+    /**
+     * Waiting request.
+     */
+    private class Waiter {
+        /** Tenant. */
+        private final Tenant tenant;
+
+        /** Query. */
+        private final SqlFieldsQueryEx qry;
+
+        /** Queue time. */
+        private final long start = System.nanoTime();
+
+        /** Future of the permit, cancelling it removes the request from the queue. */
+        private final GridFutureAdapter<Permit> fut = new GridFutureAdapter<Permit>() {
+            @Override public boolean cancel() {
+                dequeue(Waiter.this, QueryCancelledException::new);
+
+                return isDone();
+            }
+        };
+
+        /** Queue timeout. */
+        private final GridTimeoutObjectAdapter timeoutObj;
+
+        /** Admitted flag, guarded by controller lock. */
+        private boolean admitted;
+
+        /**
+         * @param tenant Tenant.
+         * @param qry Query.
+         */
+        Waiter(Tenant tenant, SqlFieldsQueryEx qry) {
+            this.tenant = tenant;
+            this.qry = qry;
+
+            timeoutObj = new GridTimeoutObjectAdapter(TimeUnit.NANOSECONDS.toMillis(queueTimeout)) {
+                @Override public void onTimeout() {
+                    dequeue(Waiter.this, () -> reject(Waiter.this.tenant, "Request was not admitted within " +
+                        "queue timeout [timeout=" + TimeUnit.NANOSECONDS.toMillis(queueTimeout) + "ms]"));
+                }
+            };
+        }
+    }
+
+    /**
+     * Admission metrics.
+     */
+    private static class Metrics {
+        /** Admitted requests. */
+        private final LongAdderMetric admitted;
+
+        /** Rejected requests. */
+        private final LongAdderMetric rejected;
+
+        /** Wait time. */
+        private final HistogramMetricImpl waitTime;
+
+        /**
+         * @param reg Registry.
+         */
+        Metrics(MetricRegistry reg) {
+            admitted = reg.longAdderMetric("admitted", "Count of admitted client SQL requests.");
+            rejected = reg.longAdderMetric("rejected", "Count of client SQL requests rejected by admission control.");
+            waitTime = reg.histogram("waitTime", WAIT_TIME_BOUNDS,
+                "Time in milliseconds client SQL requests waited for admission.");
+        }
+
+        /**
+         * @param wait Wait time in milliseconds.
+         */
+        void onAdmitted(long wait) {
+            admitted.increment();
+            waitTime.value(wait);
+        }
+    }
+}
@@ -149,4 +149,22 @@ public class SqlQueryView {
     public boolean lazy() {
         return qry.lazy();
     }
+
+    /**
+     * Returns duration of the reduce phase, {@code -1} if the reduce phase has not started.
+     *
+     * @return Duration of the reduce phase in milliseconds.
+     */
+    public long reduceDuration() {
+        return qry.reduceDuration();
+    }
+
+    /**
+     * Returns time the reducer has been waiting for result pages of map nodes.
+     *
+     * @return Time the reducer has been waiting for map nodes in milliseconds.
+     */
+    public long reduceWaitTime() {
+        return qry.reduceWaitTime();
+    }
 }
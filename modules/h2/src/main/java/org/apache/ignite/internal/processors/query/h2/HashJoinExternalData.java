@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.internal.processors.query.h2;
+
+import java.util.List;
+import java.util.Map;
+import org.gridgain.internal.h2.value.Value;
+
+/**
+ * Hash table of the hash join index spilled to disk.
+ */
+public interface HashJoinExternalData extends AutoCloseable {
+    /**
+     * Adds rows to the hash table. Rows are appended to the rows already stored with the same keys,
+     * stored rows are not read back.
+     *
+     * @param rows Rows values grouped by hash key.
+     */
+    void addRows(Map<Value, List<Value[]>> rows);
+
+    /**
+     * @param key Hash key.
+     * @return Values of the rows with the key or {@code null} if there are no such rows.
+     */
+    List<Value[]> rows(Value key);
+
+    /** {@inheritDoc} */
+    @Override void close();
+}
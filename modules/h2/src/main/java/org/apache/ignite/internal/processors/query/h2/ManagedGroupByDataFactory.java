@@ -35,4 +35,14 @@ public interface ManagedGroupByDataFactory {
      * @return Group-by data.
      */
     GroupByData newManagedGroupByData(Session ses, ArrayList<Expression> expressions, boolean isGrpQry, int[] grpIdx);
+
+    /**
+     * Hash join spilled data fabric method.
+     *
+     * @param ses Session.
+     * @return Hash join data stored on disk or {@code null} if offloading is not supported.
+     */
+    default HashJoinExternalData newHashJoinExternalData(Session ses) {
+        return null;
+    }
 }
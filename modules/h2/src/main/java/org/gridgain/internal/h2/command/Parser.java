@@ -7131,6 +7131,12 @@ public class Parser {
                 }
             }
         }
+        // Only the aliases registered as global are resolved from the main
+        // schema, other aliases there stay private to it.
+        Schema mainSchema = database.getMainSchema();
+        if (!mainSchema.getName().equals(schema) && database.isGlobalFunctionAlias(aliasName)) {
+            return mainSchema.findFunction(aliasName);
+        }
         return null;
     }
 
@@ -146,6 +146,18 @@ public class Select extends Query {
     private boolean isForUpdate, isForUpdateMvcc;
     private double cost;
     private boolean isQuickAggregateQuery, isDistinctQuery;
+
+    /**
+     * Whether the query is an aggregate query without GROUP BY over a single
+     * table that may be executed batch-at-a-time.
+     */
+    private boolean isVectorizable;
+
+    /**
+     * Batch-at-a-time plan, compiled on the first execution with vectorized
+     * scan enabled and kept while the statement is cached.
+     */
+    private VectorizedAggregate vectorizedAggregate;
     private boolean isPrepared, checkInit;
     private boolean sortUsingIndex;
 
@@ -497,6 +509,21 @@ public class Select extends Query {
     }
 
     private void queryGroup(int columnCount, LocalResult result, long offset, boolean quickOffset) {
+        if (isVectorizable && session.isVectorizedScanEnabled() && !isForUpdate
+                && getSampleSizeValue(session) == 0) {
+            if (vectorizedAggregate == null) {
+                vectorizedAggregate = VectorizedAggregate.compile(topTableFilter, condition, expressions);
+                isVectorizable = vectorizedAggregate != null;
+            }
+            Value[] row = isVectorizable ? vectorizedAggregate.execute(session) : null;
+            if (row != null) {
+                session.incrementVectorizedScanCount();
+                if (!quickOffset || offset == 0) {
+                    result.addRow(keepOnlyDistinct(row, columnCount));
+                }
+                return;
+            }
+        }
         initGroupData(columnCount);
         try {
             gatherGroup(columnCount, DataAnalysisOperation.STAGE_GROUP);
@@ -1380,6 +1407,9 @@ public class Select extends Query {
                 isGroupSortedQuery = true;
             }
         }
+        isVectorizable = isGroupQuery && !isQuickAggregateQuery && !isWindowQuery && groupIndex == null
+                && havingIndex < 0 && qualifyIndex < 0 && filters.size() == 1;
+        vectorizedAggregate = null;
         expressionArray = expressions.toArray(new Expression[0]);
         isPrepared = true;
     }
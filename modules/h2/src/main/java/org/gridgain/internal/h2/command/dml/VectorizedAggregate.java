@@ -0,0 +1,1390 @@
+/*
+ * Copyright 2019 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gridgain.internal.h2.command.dml;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.gridgain.internal.h2.api.ErrorCode;
+import org.gridgain.internal.h2.engine.Session;
+import org.gridgain.internal.h2.expression.BinaryOperation;
+import org.gridgain.internal.h2.expression.Expression;
+import org.gridgain.internal.h2.expression.ExpressionColumn;
+import org.gridgain.internal.h2.expression.Parameter;
+import org.gridgain.internal.h2.expression.ValueExpression;
+import org.gridgain.internal.h2.expression.aggregate.Aggregate;
+import org.gridgain.internal.h2.expression.aggregate.AggregateType;
+import org.gridgain.internal.h2.expression.condition.Comparison;
+import org.gridgain.internal.h2.expression.condition.ConditionAndOr;
+import org.gridgain.internal.h2.expression.function.Function;
+import org.gridgain.internal.h2.message.DbException;
+import org.gridgain.internal.h2.result.Row;
+import org.gridgain.internal.h2.table.Column;
+import org.gridgain.internal.h2.table.TableFilter;
+import org.gridgain.internal.h2.value.Value;
+import org.gridgain.internal.h2.value.ValueDecimal;
+import org.gridgain.internal.h2.value.ValueDouble;
+import org.gridgain.internal.h2.value.ValueLong;
+import org.gridgain.internal.h2.value.ValueNull;
+
+/**
+ * Batch-at-a-time execution of an aggregate query without GROUP BY over a single table, e.g.
+ * {@code SELECT SUM(A * B), COUNT(*) FROM T WHERE C > ? AND D <= 10}.
+ * <p>
+ * Rows are fetched from the table filter in batches of {@link #BATCH_SIZE}. Columns of the condition are copied
+ * into primitive vectors and the condition is evaluated over the whole batch into a selection vector, the rest of
+ * the columns are copied only for the selected rows, then aggregate arguments and aggregates are evaluated column by
+ * column without creating a value per row and expression.
+ * <p>
+ * Supported are numeric columns, constants, parameters in conditions, {@code + - *} and CAST to DOUBLE in aggregate
+ * arguments, comparisons, IS [NOT] NULL, AND, OR and COUNT, SUM, AVG, MIN, MAX. Result types and overflow errors
+ * are the same as the ones of the row by row execution, any other query is executed row by row.
+ */
+final class VectorizedAggregate {
+    /** Number of rows in a batch. */
+    static final int BATCH_SIZE = 1024;
+
+    /** Table filter. */
+    private final TableFilter filter;
+
+    /** Referenced columns. */
+    private final ColumnVector[] cols;
+
+    /** Condition or {@code null} if there is no condition. */
+    private final BooleanVector cond;
+
+    /** Aggregates in the order of select expressions. */
+    private final AggregateVector[] aggs;
+
+    /**
+     * @param filter Table filter.
+     * @param cols Referenced columns.
+     * @param cond Condition.
+     * @param aggs Aggregates.
+     */
+    private VectorizedAggregate(TableFilter filter, ColumnVector[] cols, BooleanVector cond, AggregateVector[] aggs) {
+        this.filter = filter;
+        this.cols = cols;
+        this.cond = cond;
+        this.aggs = aggs;
+    }
+
+    /**
+     * Compile the query.
+     *
+     * @param filter The only table filter of the query.
+     * @param condition Condition or {@code null}.
+     * @param expressions Select expressions.
+     * @return Compiled query or {@code null} if the query can't be executed batch-at-a-time.
+     */
+    static VectorizedAggregate compile(TableFilter filter, Expression condition, List<Expression> expressions) {
+        if (filter.getJoin() != null || filter.getNestedJoin() != null)
+            return null;
+
+        Compiler c = new Compiler(filter);
+
+        BooleanVector cond = null;
+
+        if (condition != null && (cond = c.condition(condition)) == null)
+            return null;
+
+        c.inCondition = false;
+
+        AggregateVector[] aggs = new AggregateVector[expressions.size()];
+
+        for (int i = 0; i < aggs.length; i++) {
+            Expression e = expressions.get(i).getNonAliasExpression();
+
+            if (!(e instanceof Aggregate) || (aggs[i] = c.aggregate((Aggregate)e)) == null)
+                return null;
+        }
+
+        return new VectorizedAggregate(filter, c.cols.values().toArray(new ColumnVector[0]), cond, aggs);
+    }
+
+    /**
+     * Execute the query. The table filter must be reset.
+     *
+     * @param ses Session.
+     * @return Result row or {@code null} if parameters of this execution are not supported, in this case no rows
+     * were read.
+     */
+    Value[] execute(Session ses) {
+        try {
+            for (ColumnVector col : cols)
+                col.prepare(ses);
+
+            if (cond != null && !cond.prepare(ses))
+                return null;
+
+            for (AggregateVector agg : aggs) {
+                if (!agg.prepare(ses))
+                    return null;
+            }
+
+            Row[] rows = new Row[BATCH_SIZE];
+
+            boolean[] all = new boolean[BATCH_SIZE];
+
+            Arrays.fill(all, true);
+
+            boolean more = true;
+
+            while (more) {
+                ses.checkCanceled();
+
+                int size = 0;
+
+                while (size < BATCH_SIZE && (more = filter.next()))
+                    rows[size++] = filter.get();
+
+                if (size == 0)
+                    break;
+
+                boolean[] sel = all;
+
+                if (cond != null) {
+                    for (ColumnVector col : cols) {
+                        if (col.inCondition)
+                            col.load(rows, size, all);
+                    }
+
+                    cond.eval(size);
+
+                    sel = cond.res;
+                }
+
+                for (ColumnVector col : cols) {
+                    if (!col.inCondition || cond == null)
+                        col.load(rows, size, sel);
+                }
+
+                for (AggregateVector agg : aggs)
+                    agg.add(size, sel);
+            }
+
+            Value[] row = new Value[aggs.length];
+
+            for (int i = 0; i < aggs.length; i++)
+                row[i] = aggs[i].value();
+
+            return row;
+        }
+        finally {
+            for (ColumnVector col : cols)
+                col.release();
+
+            if (cond != null)
+                cond.release();
+
+            for (AggregateVector agg : aggs)
+                agg.release();
+        }
+    }
+
+    /**
+     * @param type Value type.
+     * @return {@code true} if values of the type are kept as longs.
+     */
+    private static boolean isInteger(int type) {
+        return type == Value.BYTE || type == Value.SHORT || type == Value.INT || type == Value.LONG;
+    }
+
+    /**
+     * @param type Value type.
+     * @return {@code true} if values of the type are kept as doubles.
+     */
+    private static boolean isFloating(int type) {
+        return type == Value.FLOAT || type == Value.DOUBLE;
+    }
+
+    /**
+     * @param val Value which caused an overflow.
+     * @return Exception the same as the one of the row by row execution.
+     */
+    private static DbException overflow(long val) {
+        return DbException.get(ErrorCode.NUMERIC_VALUE_OUT_OF_RANGE_1, Long.toString(val));
+    }
+
+    /**
+     * Builds vectors from expressions.
+     */
+    private static final class Compiler {
+        /** Table filter. */
+        private final TableFilter filter;
+
+        /** Referenced columns by column id. */
+        private final Map<Integer, ColumnVector> cols = new HashMap<>();
+
+        /** Whether the condition is compiled now. */
+        private boolean inCondition = true;
+
+        /**
+         * @param filter Table filter.
+         */
+        Compiler(TableFilter filter) {
+            this.filter = filter;
+        }
+
+        /**
+         * @param e Condition.
+         * @return Vector or {@code null} if not supported.
+         */
+        BooleanVector condition(Expression e) {
+            if (e instanceof ConditionAndOr) {
+                BooleanVector l = condition(e.getSubexpression(0));
+                BooleanVector r = l == null ? null : condition(e.getSubexpression(1));
+
+                return r == null ? null : new AndOrVector(((ConditionAndOr)e).getAndOrType(), l, r);
+            }
+
+            if (e instanceof Comparison) {
+                int cmpType = ((Comparison)e).getCompareType();
+
+                switch (cmpType) {
+                    case Comparison.IS_NULL:
+                    case Comparison.IS_NOT_NULL: {
+                        ValueVector arg = operand(e.getSubexpression(0));
+
+                        return arg == null ? null : new IsNullVector(arg, cmpType == Comparison.IS_NOT_NULL);
+                    }
+
+                    case Comparison.EQUAL:
+                    case Comparison.NOT_EQUAL:
+                    case Comparison.BIGGER:
+                    case Comparison.BIGGER_EQUAL:
+                    case Comparison.SMALLER:
+                    case Comparison.SMALLER_EQUAL: {
+                        ValueVector l = operand(e.getSubexpression(0));
+                        ValueVector r = l == null ? null : operand(e.getSubexpression(1));
+
+                        return r == null ? null : new ComparisonVector(cmpType, l, r);
+                    }
+
+                    default:
+                        return null;
+                }
+            }
+
+            if (e instanceof ValueExpression && e.getType().getValueType() == Value.BOOLEAN)
+                return new BooleanConstVector(e);
+
+            return null;
+        }
+
+        /**
+         * Operand of a comparison: a column, a constant or a parameter. Arithmetic is not allowed in conditions since
+         * the row by row execution doesn't evaluate the right part of AND / OR when the result is known, so an
+         * overflow error must not happen for rows where it doesn't happen now.
+         *
+         * @param e Expression.
+         * @return Vector or {@code null} if not supported.
+         */
+        private ValueVector operand(Expression e) {
+            if (e instanceof ExpressionColumn)
+                return column((ExpressionColumn)e);
+
+            if (e instanceof ValueExpression || e instanceof Parameter)
+                return new ConstVector(e);
+
+            return null;
+        }
+
+        /**
+         * @param agg Aggregate.
+         * @return Vector or {@code null} if not supported.
+         */
+        AggregateVector aggregate(Aggregate agg) {
+            if (agg.isDistinct() || agg.getFilterCondition() != null || agg.getOverCondition() != null)
+                return null;
+
+            AggregateType aggType = agg.getAggregateType();
+
+            switch (aggType) {
+                case COUNT_ALL:
+                    return new AggregateVector(aggType, null, agg.getType().getValueType());
+
+                case COUNT:
+                case SUM:
+                case AVG:
+                case MIN:
+                case MAX: {
+                    if (agg.getArgs().length != 1)
+                        return null;
+
+                    ValueVector arg = value(agg.getArgs()[0]);
+
+                    return arg == null ? null : new AggregateVector(aggType, arg, agg.getType().getValueType());
+                }
+
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * Aggregate argument: a column, a literal, {@code + - *} of them and CAST to DOUBLE.
+         *
+         * @param e Expression.
+         * @return Vector or {@code null} if not supported.
+         */
+        private ValueVector value(Expression e) {
+            if (e instanceof ExpressionColumn)
+                return column((ExpressionColumn)e);
+
+            if (e instanceof ValueExpression) {
+                int type = e.getType().getValueType();
+
+                return isInteger(type) || isFloating(type) || type == Value.NULL ? new ConstVector(e) : null;
+            }
+
+            if (e instanceof BinaryOperation) {
+                int type = e.getType().getValueType();
+
+                if (type != Value.INT && type != Value.LONG && !isFloating(type))
+                    return null;
+
+                BinaryOperation.OpType op = ((BinaryOperation)e).getOperationType();
+
+                if (op != BinaryOperation.OpType.PLUS && op != BinaryOperation.OpType.MINUS &&
+                    op != BinaryOperation.OpType.MULTIPLY)
+                    return null;
+
+                ValueVector l = value(e.getSubexpression(0));
+                ValueVector r = l == null ? null : value(e.getSubexpression(1));
+
+                return r == null ? null : new ArithmeticVector(op, l, r, type);
+            }
+
+            if (e instanceof Function && ((Function)e).getFunctionType() == Function.CAST &&
+                e.getType().getValueType() == Value.DOUBLE) {
+                ValueVector arg = value(((Function)e).getArgs()[0]);
+
+                return arg == null ? null : new CastToDoubleVector(arg);
+            }
+
+            return null;
+        }
+
+        /**
+         * @param e Column expression.
+         * @return Vector or {@code null} if not supported.
+         */
+        private ValueVector column(ExpressionColumn e) {
+            if (e.getTableFilter() != filter)
+                return null;
+
+            Column col = e.getColumn();
+
+            int type = col.getType().getValueType();
+
+            if (!isInteger(type) && !isFloating(type))
+                return null;
+
+            ColumnVector vec = cols.computeIfAbsent(col.getColumnId(), id -> new ColumnVector(id, type));
+
+            vec.inCondition |= inCondition;
+
+            return vec;
+        }
+    }
+
+    /**
+     * Vector of numeric values of a batch.
+     */
+    private abstract static class ValueVector {
+        /** Type of the values in this execution, {@link Value#NULL} if all values are NULL. */
+        int type;
+
+        /** Values of integer types. */
+        long[] longs;
+
+        /** Values of floating point types. */
+        double[] doubles;
+
+        /** NULL flags. */
+        boolean[] nulls;
+
+        /**
+         * Resolve the type of values and allocate vectors.
+         *
+         * @param ses Session.
+         * @return {@code false} if the vector can't be evaluated.
+         */
+        abstract boolean prepare(Session ses);
+
+        /**
+         * Evaluate values of the batch.
+         *
+         * @param size Number of rows in the batch.
+         * @param mask Rows to evaluate.
+         */
+        abstract void eval(int size, boolean[] mask);
+
+        /**
+         * Allocate vectors for the current type.
+         */
+        void allocate() {
+            nulls = new boolean[BATCH_SIZE];
+
+            if (isInteger(type))
+                longs = new long[BATCH_SIZE];
+            else if (isFloating(type))
+                doubles = new double[BATCH_SIZE];
+        }
+
+        /**
+         * Release vectors after the execution.
+         */
+        void release() {
+            longs = null;
+            doubles = null;
+            nulls = null;
+        }
+
+        /**
+         * @param i Row.
+         * @param toFloat Whether an integer value must be converted into FLOAT rather than DOUBLE.
+         * @return Value converted into double.
+         */
+        final double doubleValue(int i, boolean toFloat) {
+            if (isFloating(type))
+                return doubles[i];
+
+            return toFloat ? (float)longs[i] : (double)longs[i];
+        }
+    }
+
+    /**
+     * Column values.
+     */
+    private static final class ColumnVector extends ValueVector {
+        /** Column id. */
+        private final int colId;
+
+        /** Column type. */
+        private final int colType;
+
+        /** Whether the column is used by the condition. */
+        private boolean inCondition;
+
+        /**
+         * @param colId Column id.
+         * @param colType Column type.
+         */
+        ColumnVector(int colId, int colType) {
+            this.colId = colId;
+            this.colType = colType;
+        }
+
+        /** {@inheritDoc} */
+        @Override boolean prepare(Session ses) {
+            type = colType;
+
+            // Shared by all expressions referencing the column.
+            if (nulls == null)
+                allocate();
+
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override void eval(int size, boolean[] mask) {
+            // Loaded by load().
+        }
+
+        /**
+         * Copy column values of the rows. Values are read through {@link Row#getRawValue(int)}, so a stored value
+         * of the column type goes to the vector without a {@link Value} created for it, any other value is
+         * converted the same way the row by row execution does.
+         *
+         * @param rows Rows.
+         * @param size Number of rows.
+         * @param mask Rows to copy.
+         */
+        void load(Row[] rows, int size, boolean[] mask) {
+            boolean floating = isFloating(type);
+
+            for (int i = 0; i < size; i++) {
+                if (!mask[i])
+                    continue;
+
+                Object o = rows[i].getRawValue(colId);
+
+                if (o == null) {
+                    nulls[i] = true;
+
+                    continue;
+                }
+
+                nulls[i] = false;
+
+                if (isOfType(o)) {
+                    if (floating)
+                        doubles[i] = ((Number)o).doubleValue();
+                    else
+                        longs[i] = ((Number)o).longValue();
+
+                    continue;
+                }
+
+                Value v = rows[i].getValue(colId);
+
+                if (v.getValueType() != type)
+                    v = v.convertTo(type);
+
+                if (floating)
+                    doubles[i] = v.getDouble();
+                else
+                    longs[i] = v.getLong();
+            }
+        }
+
+        /**
+         * @param o Stored value.
+         * @return {@code true} if the value is of the Java class of the column type.
+         */
+        private boolean isOfType(Object o) {
+            switch (type) {
+                case Value.BYTE:
+                    return o instanceof Byte;
+
+                case Value.SHORT:
+                    return o instanceof Short;
+
+                case Value.INT:
+                    return o instanceof Integer;
+
+                case Value.LONG:
+                    return o instanceof Long;
+
+                case Value.FLOAT:
+                    return o instanceof Float;
+
+                case Value.DOUBLE:
+                    return o instanceof Double;
+
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * Constant or parameter, evaluated once per execution.
+     */
+    private static final class ConstVector extends ValueVector {
+        /** Expression. */
+        private final Expression expr;
+
+        /** Value of DECIMAL type, converted by the comparison. */
+        private BigDecimal dec;
+
+        /**
+         * @param expr Expression.
+         */
+        ConstVector(Expression expr) {
+            this.expr = expr;
+        }
+
+        /** {@inheritDoc} */
+        @Override boolean prepare(Session ses) {
+            Value v = expr.getValue(ses);
+
+            type = v.getValueType();
+
+            if (type == Value.DECIMAL) {
+                dec = v.getBigDecimal();
+
+                nulls = new boolean[BATCH_SIZE];
+
+                return true;
+            }
+
+            if (type != Value.NULL && !isInteger(type) && !isFloating(type))
+                return false;
+
+            allocate();
+
+            if (type == Value.NULL)
+                Arrays.fill(nulls, true);
+            else if (isInteger(type))
+                Arrays.fill(longs, v.getLong());
+            else
+                Arrays.fill(doubles, v.getDouble());
+
+            return true;
+        }
+
+        /**
+         * Convert DECIMAL value into the type of the other operand of the comparison.
+         *
+         * @param otherType Type of the other operand.
+         * @return {@code false} if the value can't be compared with values of the type exactly.
+         */
+        boolean convertDecimal(int otherType) {
+            if (otherType == Value.FLOAT || otherType == Value.DOUBLE) {
+                type = otherType;
+                doubles = new double[BATCH_SIZE];
+
+                Arrays.fill(doubles, otherType == Value.FLOAT ? dec.floatValue() : dec.doubleValue());
+
+                return true;
+            }
+
+            if (!isInteger(otherType))
+                return false;
+
+            try {
+                long l = dec.longValueExact();
+
+                type = Value.LONG;
+                longs = new long[BATCH_SIZE];
+
+                Arrays.fill(longs, l);
+
+                return true;
+            }
+            catch (ArithmeticException ignore) {
+                // Has a fractional part or doesn't fit into long.
+                return false;
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override void eval(int size, boolean[] mask) {
+            // Filled by prepare().
+        }
+    }
+
+    /**
+     * Addition, subtraction or multiplication.
+     */
+    private static final class ArithmeticVector extends ValueVector {
+        /** Operation. */
+        private final BinaryOperation.OpType op;
+
+        /** Left operand. */
+        private final ValueVector l;
+
+        /** Right operand. */
+        private final ValueVector r;
+
+        /** Result type. */
+        private final int resType;
+
+        /**
+         * @param op Operation.
+         * @param l Left operand.
+         * @param r Right operand.
+         * @param resType Result type.
+         */
+        ArithmeticVector(BinaryOperation.OpType op, ValueVector l, ValueVector r, int resType) {
+            this.op = op;
+            this.l = l;
+            this.r = r;
+            this.resType = resType;
+        }
+
+        /** {@inheritDoc} */
+        @Override boolean prepare(Session ses) {
+            if (!l.prepare(ses) || !r.prepare(ses))
+                return false;
+
+            // Operands are converted into the result type, conversion of floating point values into integers rounds.
+            if (!isInteger(resType) && !isFloating(resType) || isInteger(resType) &&
+                (isFloating(l.type) || isFloating(r.type)) || l.type == Value.DECIMAL || r.type == Value.DECIMAL)
+                return false;
+
+            type = resType;
+
+            allocate();
+
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override void eval(int size, boolean[] mask) {
+            l.eval(size, mask);
+            r.eval(size, mask);
+
+            boolean[] ln = l.nulls;
+            boolean[] rn = r.nulls;
+
+            for (int i = 0; i < size; i++) {
+                if (mask[i])
+                    nulls[i] = ln[i] || rn[i];
+            }
+
+            if (isInteger(type))
+                evalLong(size, mask);
+            else
+                evalDouble(size, mask);
+        }
+
+        /**
+         * @param size Number of rows.
+         * @param mask Rows to evaluate.
+         */
+        private void evalLong(int size, boolean[] mask) {
+            long[] a = l.longs;
+            long[] b = r.longs;
+
+            boolean checkInt = type == Value.INT;
+
+            for (int i = 0; i < size; i++) {
+                if (!mask[i] || nulls[i])
+                    continue;
+
+                long x = a[i];
+                long y = b[i];
+                long res;
+
+                // Overflow checks are the same as the ones of ValueLong, INT operands can't overflow long.
+                switch (op) {
+                    case PLUS:
+                        res = x + y;
+
+                        if (((x ^ res) & (y ^ res)) < 0)
+                            throw overflow(x);
+
+                        break;
+
+                    case MINUS:
+                        res = x - y;
+
+                        if (((x ^ y) & (x ^ res)) < 0)
+                            throw overflow(x);
+
+                        break;
+
+                    default:
+                        res = x * y;
+
+                        if ((Math.abs(x) | Math.abs(y)) >>> 31 != 0 && y != 0 &&
+                            (res / y != x || x == Long.MIN_VALUE && y == -1))
+                            throw overflow(x);
+                }
+
+                if (checkInt && (int)res != res)
+                    throw overflow(res);
+
+                longs[i] = res;
+            }
+        }
+
+        /**
+         * @param size Number of rows.
+         * @param mask Rows to evaluate.
+         */
+        private void evalDouble(int size, boolean[] mask) {
+            boolean toFloat = type == Value.FLOAT;
+
+            for (int i = 0; i < size; i++) {
+                if (!mask[i] || nulls[i])
+                    continue;
+
+                double a = l.doubleValue(i, toFloat);
+                double b = r.doubleValue(i, toFloat);
+
+                double res;
+
+                switch (op) {
+                    case PLUS:
+                        res = a + b;
+
+                        break;
+
+                    case MINUS:
+                        res = a - b;
+
+                        break;
+
+                    default:
+                        res = a * b;
+                }
+
+                // Operations on floats computed in doubles and rounded once give the same result.
+                doubles[i] = toFloat ? (float)res : res;
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override void release() {
+            super.release();
+
+            l.release();
+            r.release();
+        }
+    }
+
+    /**
+     * CAST to DOUBLE.
+     */
+    private static final class CastToDoubleVector extends ValueVector {
+        /** Argument. */
+        private final ValueVector arg;
+
+        /**
+         * @param arg Argument.
+         */
+        CastToDoubleVector(ValueVector arg) {
+            this.arg = arg;
+        }
+
+        /** {@inheritDoc} */
+        @Override boolean prepare(Session ses) {
+            if (!arg.prepare(ses) || arg.type == Value.DECIMAL)
+                return false;
+
+            type = Value.DOUBLE;
+
+            allocate();
+
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override void eval(int size, boolean[] mask) {
+            arg.eval(size, mask);
+
+            boolean[] argNulls = arg.nulls;
+
+            for (int i = 0; i < size; i++) {
+                if (!mask[i])
+                    continue;
+
+                nulls[i] = argNulls[i];
+
+                if (!nulls[i])
+                    doubles[i] = arg.doubleValue(i, false);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override void release() {
+            super.release();
+
+            arg.release();
+        }
+    }
+
+    /**
+     * Condition, {@code true} for rows where it's TRUE, {@code false} for FALSE and UNKNOWN. This is enough for the
+     * WHERE clause since neither of supported conditions turns UNKNOWN into TRUE.
+     */
+    private abstract static class BooleanVector {
+        /** Result. */
+        boolean[] res;
+
+        /**
+         * @param ses Session.
+         * @return {@code false} if the condition can't be evaluated.
+         */
+        abstract boolean prepare(Session ses);
+
+        /**
+         * @param size Number of rows in the batch.
+         */
+        abstract void eval(int size);
+
+        /**
+         * Release vectors after the execution.
+         */
+        void release() {
+            res = null;
+        }
+    }
+
+    /**
+     * Comparison.
+     */
+    private static final class ComparisonVector extends BooleanVector {
+        /** Comparison type. */
+        private final int cmpType;
+
+        /** Left operand. */
+        private final ValueVector l;
+
+        /** Right operand. */
+        private final ValueVector r;
+
+        /** Whether the result is TRUE when left operand is smaller, equal and bigger. */
+        private boolean smaller, equal, bigger;
+
+        /** Whether operands are compared as doubles. */
+        private boolean floating;
+
+        /** Whether integer operand is converted into FLOAT. */
+        private boolean toFloat;
+
+        /** Whether one of operands is NULL constant. */
+        private boolean alwaysNull;
+
+        /**
+         * @param cmpType Comparison type.
+         * @param l Left operand.
+         * @param r Right operand.
+         */
+        ComparisonVector(int cmpType, ValueVector l, ValueVector r) {
+            this.cmpType = cmpType;
+            this.l = l;
+            this.r = r;
+        }
+
+        /** {@inheritDoc} */
+        @Override boolean prepare(Session ses) {
+            if (!l.prepare(ses) || !r.prepare(ses))
+                return false;
+
+            res = new boolean[BATCH_SIZE];
+
+            alwaysNull = l.type == Value.NULL || r.type == Value.NULL;
+
+            if (alwaysNull)
+                return true;
+
+            // Values are compared in the higher of two types, DECIMAL constant is converted once.
+            if (l.type == Value.DECIMAL && !(l instanceof ConstVector && ((ConstVector)l).convertDecimal(r.type)))
+                return false;
+
+            if (r.type == Value.DECIMAL && !(r instanceof ConstVector && ((ConstVector)r).convertDecimal(l.type)))
+                return false;
+
+            floating = isFloating(l.type) || isFloating(r.type);
+            toFloat = Value.getHigherOrder(l.type, r.type) == Value.FLOAT;
+
+            smaller = cmpType == Comparison.SMALLER || cmpType == Comparison.SMALLER_EQUAL ||
+                cmpType == Comparison.NOT_EQUAL;
+            equal = cmpType == Comparison.EQUAL || cmpType == Comparison.SMALLER_EQUAL ||
+                cmpType == Comparison.BIGGER_EQUAL;
+            bigger = cmpType == Comparison.BIGGER || cmpType == Comparison.BIGGER_EQUAL ||
+                cmpType == Comparison.NOT_EQUAL;
+
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override void eval(int size) {
+            if (alwaysNull) {
+                Arrays.fill(res, 0, size, false);
+
+                return;
+            }
+
+            boolean[] ln = l.nulls;
+            boolean[] rn = r.nulls;
+
+            if (floating) {
+                for (int i = 0; i < size; i++) {
+                    if (ln[i] || rn[i]) {
+                        res[i] = false;
+
+                        continue;
+                    }
+
+                    int c = Double.compare(l.doubleValue(i, toFloat), r.doubleValue(i, toFloat));
+
+                    res[i] = c < 0 ? smaller : c == 0 ? equal : bigger;
+                }
+            }
+            else {
+                long[] a = l.longs;
+                long[] b = r.longs;
+
+                for (int i = 0; i < size; i++) {
+                    if (ln[i] || rn[i]) {
+                        res[i] = false;
+
+                        continue;
+                    }
+
+                    int c = Long.compare(a[i], b[i]);
+
+                    res[i] = c < 0 ? smaller : c == 0 ? equal : bigger;
+                }
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override void release() {
+            super.release();
+
+            l.release();
+            r.release();
+        }
+    }
+
+    /**
+     * IS [NOT] NULL.
+     */
+    private static final class IsNullVector extends BooleanVector {
+        /** Argument. */
+        private final ValueVector arg;
+
+        /** Whether this is IS NOT NULL. */
+        private final boolean not;
+
+        /**
+         * @param arg Argument.
+         * @param not Whether this is IS NOT NULL.
+         */
+        IsNullVector(ValueVector arg, boolean not) {
+            this.arg = arg;
+            this.not = not;
+        }
+
+        /** {@inheritDoc} */
+        @Override boolean prepare(Session ses) {
+            if (!arg.prepare(ses))
+                return false;
+
+            res = new boolean[BATCH_SIZE];
+
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override void eval(int size) {
+            boolean[] argNulls = arg.nulls;
+
+            for (int i = 0; i < size; i++)
+                res[i] = argNulls[i] != not;
+        }
+
+        /** {@inheritDoc} */
+        @Override void release() {
+            super.release();
+
+            arg.release();
+        }
+    }
+
+    /**
+     * AND or OR.
+     */
+    private static final class AndOrVector extends BooleanVector {
+        /** {@link ConditionAndOr#AND} or {@link ConditionAndOr#OR}. */
+        private final int andOrType;
+
+        /** Left condition. */
+        private final BooleanVector l;
+
+        /** Right condition. */
+        private final BooleanVector r;
+
+        /**
+         * @param andOrType Condition type.
+         * @param l Left condition.
+         * @param r Right condition.
+         */
+        AndOrVector(int andOrType, BooleanVector l, BooleanVector r) {
+            this.andOrType = andOrType;
+            this.l = l;
+            this.r = r;
+        }
+
+        /** {@inheritDoc} */
+        @Override boolean prepare(Session ses) {
+            if (!l.prepare(ses) || !r.prepare(ses))
+                return false;
+
+            res = new boolean[BATCH_SIZE];
+
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override void eval(int size) {
+            l.eval(size);
+            r.eval(size);
+
+            boolean[] a = l.res;
+            boolean[] b = r.res;
+
+            if (andOrType == ConditionAndOr.AND) {
+                for (int i = 0; i < size; i++)
+                    res[i] = a[i] && b[i];
+            }
+            else {
+                for (int i = 0; i < size; i++)
+                    res[i] = a[i] || b[i];
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override void release() {
+            super.release();
+
+            l.release();
+            r.release();
+        }
+    }
+
+    /**
+     * Boolean constant.
+     */
+    private static final class BooleanConstVector extends BooleanVector {
+        /** Expression. */
+        private final Expression expr;
+
+        /**
+         * @param expr Expression.
+         */
+        BooleanConstVector(Expression expr) {
+            this.expr = expr;
+        }
+
+        /** {@inheritDoc} */
+        @Override boolean prepare(Session ses) {
+            Value v = expr.getValue(ses);
+
+            res = new boolean[BATCH_SIZE];
+
+            Arrays.fill(res, v != ValueNull.INSTANCE && v.getBoolean());
+
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override void eval(int size) {
+            // Filled by prepare().
+        }
+    }
+
+    /**
+     * Aggregate.
+     */
+    private static final class AggregateVector {
+        /** Aggregate type. */
+        private final AggregateType aggType;
+
+        /** Argument, {@code null} for COUNT(*). */
+        private final ValueVector arg;
+
+        /** Result type. */
+        private final int resType;
+
+        /** Number of aggregated values. */
+        private long cnt;
+
+        /** Integer sum, minimum or maximum. */
+        private long longVal;
+
+        /** Part of DECIMAL sum which doesn't fit into {@link #longVal}. */
+        private BigDecimal decVal;
+
+        /** Floating point sum, minimum or maximum. */
+        private double doubleVal;
+
+        /**
+         * @param aggType Aggregate type.
+         * @param arg Argument.
+         * @param resType Result type.
+         */
+        AggregateVector(AggregateType aggType, ValueVector arg, int resType) {
+            this.aggType = aggType;
+            this.arg = arg;
+            this.resType = resType;
+        }
+
+        /**
+         * @param ses Session.
+         * @return {@code false} if the aggregate can't be evaluated.
+         */
+        boolean prepare(Session ses) {
+            cnt = 0;
+            decVal = BigDecimal.ZERO;
+
+            if (arg == null)
+                return true;
+
+            if (!arg.prepare(ses))
+                return false;
+
+            int argType = arg.type;
+
+            if (argType == Value.NULL || aggType == AggregateType.COUNT)
+                return argType != Value.DECIMAL;
+
+            switch (aggType) {
+                case SUM:
+                    return resType == Value.LONG && argType != Value.LONG && isInteger(argType) ||
+                        resType == Value.DECIMAL && argType == Value.LONG ||
+                        resType == Value.DOUBLE && isFloating(argType);
+
+                case AVG:
+                    // Sum of LONG values is DECIMAL and division of it has another rounding.
+                    return argType != Value.LONG && isInteger(argType) || isFloating(argType);
+
+                default:
+                    return isInteger(argType) || isFloating(argType);
+            }
+        }
+
+        /**
+         * Add values of the selected rows.
+         *
+         * @param size Number of rows.
+         * @param sel Selected rows.
+         */
+        void add(int size, boolean[] sel) {
+            if (arg == null) {
+                for (int i = 0; i < size; i++) {
+                    if (sel[i])
+                        cnt++;
+                }
+
+                return;
+            }
+
+            arg.eval(size, sel);
+
+            boolean[] nulls = arg.nulls;
+
+            if (arg.type == Value.NULL)
+                return;
+
+            if (aggType == AggregateType.COUNT) {
+                for (int i = 0; i < size; i++) {
+                    if (sel[i] && !nulls[i])
+                        cnt++;
+                }
+
+                return;
+            }
+
+            if (isFloating(arg.type)) {
+                double[] vals = arg.doubles;
+
+                for (int i = 0; i < size; i++) {
+                    if (sel[i] && !nulls[i])
+                        addDouble(vals[i]);
+                }
+            }
+            else {
+                long[] vals = arg.longs;
+
+                for (int i = 0; i < size; i++) {
+                    if (sel[i] && !nulls[i])
+                        addLong(vals[i]);
+                }
+            }
+        }
+
+        /**
+         * @param v Value.
+         */
+        private void addLong(long v) {
+            if (cnt++ == 0) {
+                longVal = v;
+
+                return;
+            }
+
+            switch (aggType) {
+                case MIN:
+                    if (v < longVal)
+                        longVal = v;
+
+                    break;
+
+                case MAX:
+                    if (v > longVal)
+                        longVal = v;
+
+                    break;
+
+                default:
+                    long s = longVal + v;
+
+                    if (((longVal ^ s) & (v ^ s)) < 0) {
+                        if (resType != Value.DECIMAL)
+                            throw overflow(longVal);
+
+                        decVal = decVal.add(BigDecimal.valueOf(longVal));
+
+                        s = v;
+                    }
+
+                    longVal = s;
+            }
+        }
+
+        /**
+         * @param v Value.
+         */
+        private void addDouble(double v) {
+            if (cnt++ == 0) {
+                doubleVal = v;
+
+                return;
+            }
+
+            switch (aggType) {
+                case MIN:
+                    if (Double.compare(v, doubleVal) < 0)
+                        doubleVal = v;
+
+                    break;
+
+                case MAX:
+                    if (Double.compare(v, doubleVal) > 0)
+                        doubleVal = v;
+
+                    break;
+
+                default:
+                    doubleVal += v;
+            }
+        }
+
+        /**
+         * @return Aggregated value.
+         */
+        Value value() {
+            if (aggType == AggregateType.COUNT_ALL || aggType == AggregateType.COUNT)
+                return ValueLong.get(cnt).convertTo(resType);
+
+            if (cnt == 0)
+                return ValueNull.INSTANCE;
+
+            Value v;
+
+            if (isFloating(arg.type))
+                v = ValueDouble.get(aggType == AggregateType.AVG ? doubleVal / cnt : doubleVal);
+            else if (aggType == AggregateType.AVG)
+                v = ValueLong.get(longVal / cnt);
+            else if (resType == Value.DECIMAL)
+                v = ValueDecimal.get(decVal.add(BigDecimal.valueOf(longVal)));
+            else
+                v = ValueLong.get(longVal);
+
+            return v.convertTo(resType);
+        }
+
+        /**
+         * Release vectors after the execution.
+         */
+        void release() {
+            if (arg != null)
+                arg.release();
+        }
+    }
+}
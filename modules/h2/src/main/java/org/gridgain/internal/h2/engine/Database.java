@@ -144,6 +144,7 @@ public class Database implements DataHandler {
     private final HashMap<String, UserAggregate> aggregates = new HashMap<>();
     private final HashMap<String, Comment> comments = new HashMap<>();
     private final HashMap<String, TableEngine> tableEngines = new HashMap<>();
+    private final Set<String> globalFunctionAliases = ConcurrentHashMap.newKeySet();
 
     private final Set<Session> userSessions =
             Collections.synchronizedSet(new HashSet<Session>());
@@ -1699,6 +1700,28 @@ public class Database implements DataHandler {
         return mainSchema;
     }
 
+    /**
+     * Allows the function alias of the main schema to be resolved from any
+     * schema. Other aliases of the main schema are only visible in it.
+     *
+     * @param aliasName the unquoted alias name
+     */
+    public void addGlobalFunctionAlias(String aliasName) {
+        globalFunctionAliases.add(dbSettings.databaseToUpper ? StringUtils.toUpperEnglish(aliasName)
+                : dbSettings.databaseToLower ? StringUtils.toLowerEnglish(aliasName) : aliasName);
+    }
+
+    /**
+     * Checks if the function alias of the main schema is resolved from any
+     * schema.
+     *
+     * @param aliasName the alias name
+     * @return true if the alias is global
+     */
+    public boolean isGlobalFunctionAlias(String aliasName) {
+        return globalFunctionAliases.contains(aliasName);
+    }
+
     public ArrayList<UserAggregate> getAllAggregates() {
         return new ArrayList<>(aggregates.values());
     }
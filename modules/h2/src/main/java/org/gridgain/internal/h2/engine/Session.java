@@ -187,6 +187,12 @@ public class Session extends SessionWithState implements TransactionStore.Rollba
     /** Max size of the table when HASH JOIN is allowed. */
     private int hashJoinMaxTableSize = Constants.HASH_JOIN_MAX_TABLE_SIZE_DFLT;
 
+    /** Enable batch-at-a-time execution of simple aggregate queries. */
+    private boolean vectorizedScanEnabled;
+
+    /** Number of aggregate queries executed batch-at-a-time in this session. */
+    private long vectorizedScanCount;
+
 
     public Session(Database database, User user, int id) {
         this.database = database;
@@ -2008,6 +2014,22 @@ public class Session extends SessionWithState implements TransactionStore.Rollba
         this.hashJoinMaxTableSize = hashJoinMaxTableSize;
     }
 
+    public boolean isVectorizedScanEnabled() {
+        return vectorizedScanEnabled;
+    }
+
+    public void setVectorizedScanEnabled(boolean enable) {
+        vectorizedScanEnabled = enable;
+    }
+
+    public long getVectorizedScanCount() {
+        return vectorizedScanCount;
+    }
+
+    public void incrementVectorizedScanCount() {
+        vectorizedScanCount++;
+    }
+
     @Override
     public boolean isSupportsGeneratedKeys() {
         return true;
@@ -460,6 +460,15 @@ public class BinaryOperation extends Expression {
         return 2;
     }
 
+    /**
+     * Returns the type of the operation.
+     *
+     * @return the type of the operation
+     */
+    public OpType getOperationType() {
+        return opType;
+    }
+
     @Override
     public Expression getSubexpression(int index) {
         switch (index) {
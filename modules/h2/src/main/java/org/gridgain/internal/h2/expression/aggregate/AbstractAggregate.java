@@ -71,6 +71,33 @@ public abstract class AbstractAggregate extends DataAnalysisOperation {
         this.filterCondition = filterCondition;
     }
 
+    /**
+     * Returns the FILTER condition.
+     *
+     * @return FILTER condition, or {@code null}
+     */
+    public Expression getFilterCondition() {
+        return filterCondition;
+    }
+
+    /**
+     * Returns the arguments.
+     *
+     * @return the arguments
+     */
+    public Expression[] getArgs() {
+        return args;
+    }
+
+    /**
+     * Checks whether this is a DISTINCT aggregate.
+     *
+     * @return true if this is a DISTINCT aggregate
+     */
+    public boolean isDistinct() {
+        return distinct;
+    }
+
     @Override
     public TypeInfo getType() {
         return type;
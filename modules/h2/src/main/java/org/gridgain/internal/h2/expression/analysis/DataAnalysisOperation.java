@@ -99,6 +99,15 @@ public abstract class DataAnalysisOperation extends Expression {
         this.over = over;
     }
 
+    /**
+     * Returns the OVER condition.
+     *
+     * @return OVER condition, or {@code null}
+     */
+    public Window getOverCondition() {
+        return over;
+    }
+
     /**
      * Checks whether this expression is an aggregate function.
      *
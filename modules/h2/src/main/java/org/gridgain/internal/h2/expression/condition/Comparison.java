@@ -667,6 +667,15 @@ public class Comparison extends Condition {
         return compareType == IS_NULL || compareType == IS_NOT_NULL ? 1 : 2;
     }
 
+    /**
+     * Returns the comparison type.
+     *
+     * @return the comparison type, see constants of this class
+     */
+    public int getCompareType() {
+        return compareType;
+    }
+
     @Override
     public Expression getSubexpression(int index) {
         switch (index) {
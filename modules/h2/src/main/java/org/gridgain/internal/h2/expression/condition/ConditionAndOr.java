@@ -298,6 +298,15 @@ public class ConditionAndOr extends Condition {
         return 2;
     }
 
+    /**
+     * Returns the condition type.
+     *
+     * @return {@link #AND} or {@link #OR}
+     */
+    public int getAndOrType() {
+        return andOrType;
+    }
+
     @Override
     public Expression getSubexpression(int index) {
         switch (index) {
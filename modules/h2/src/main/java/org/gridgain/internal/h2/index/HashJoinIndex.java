@@ -24,6 +24,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.apache.ignite.internal.processors.query.h2.H2MemoryTracker;
+import org.apache.ignite.internal.processors.query.h2.HashJoinExternalData;
+import org.apache.ignite.internal.processors.query.h2.ManagedGroupByDataFactory;
 import org.gridgain.internal.h2.command.dml.AllColumnsForPlan;
 import org.gridgain.internal.h2.engine.Constants;
 import org.gridgain.internal.h2.engine.DbObject;
@@ -72,6 +74,12 @@ public class HashJoinIndex extends BaseIndex {
     /** Memory tracker. */
     private H2MemoryTracker tracker;
 
+    /** Hash table spilled to disk, {@code null} if the hash table fits into memory. */
+    private HashJoinExternalData external;
+
+    /** {@code true} if the hash table can't be spilled to disk. */
+    private boolean spillUnsupported;
+
     /**
      * @param tbl Table to build temporary hash join index.
      */
@@ -238,7 +246,7 @@ public class HashJoinIndex extends BaseIndex {
         if (!hashKey(first).equals(hashKey(last)))
             return Cursor.EMPTY;
 
-        List<Row> res = hashTbl.get(key);
+        List<Row> res = external != null ? spilledRows(key) : hashTbl.get(key);
 
         if (res == null)
             return Cursor.EMPTY;
@@ -445,7 +453,13 @@ public class HashJoinIndex extends BaseIndex {
 
                     size += Constants.MEMORY_POINTER + r.getMemory();
 
-                    tracker.reserve(size);
+                    if (!tracker.reserve(size) && spill(ses)) {
+                        keyRows = null;
+
+                        // Spill released the whole reservation, the current row stays in memory.
+                        tracker.reserve(40 /*HashMap entry*/ + key.getMemory() + Constants.MEMORY_ARRAY +
+                            Constants.MEMORY_POINTER + r.getMemory());
+                    }
                 }
 
                 if (keyRows == null) {
@@ -458,14 +472,85 @@ public class HashJoinIndex extends BaseIndex {
             }
         }
 
+        if (external != null && !hashTbl.isEmpty())
+            spill(ses);
+
         Trace t = ses.getTrace();
 
         if (t.isDebugEnabled()) {
-            t.debug("Build hash table for {0}, size={1}. Duration={2} ms",
-                    table.getName(), hashTbl.size(), System.currentTimeMillis() - t0);
+            t.debug("Build hash table for {0}, size={1}, spilled={2}. Duration={3} ms",
+                    table.getName(), hashTbl.size(), external != null, System.currentTimeMillis() - t0);
         }
     }
 
+    /**
+     * Moves the rows of in-memory hash table to disk.
+     *
+     * @param ses Session.
+     * @return {@code true} if the rows were moved to disk.
+     */
+    private boolean spill(Session ses) {
+        if (external == null) {
+            if (spillUnsupported)
+                return false;
+
+            ManagedGroupByDataFactory factory = ses.groupByDataFactory();
+
+            external = factory != null ? factory.newHashJoinExternalData(ses) : null;
+
+            if (external == null) {
+                spillUnsupported = true;
+
+                return false;
+            }
+        }
+
+        Map<Value, List<Value[]>> rows = new HashMap<>(hashTbl.size());
+
+        int colCnt = table.getColumns().length;
+
+        for (Map.Entry<Value, List<Row>> e : hashTbl.entrySet()) {
+            List<Value[]> keyRows = new ArrayList<>(e.getValue().size());
+
+            for (Row r : e.getValue()) {
+                Value[] vals = new Value[colCnt];
+
+                for (int i = 0; i < colCnt; i++)
+                    vals[i] = r.getValue(i);
+
+                keyRows.add(vals);
+            }
+
+            rows.put(e.getKey(), keyRows);
+        }
+
+        external.addRows(rows);
+
+        hashTbl.clear();
+
+        tracker.release(tracker.reserved());
+
+        return true;
+    }
+
+    /**
+     * @param key Hash key.
+     * @return Rows with the key read from disk or {@code null} if there are no such rows.
+     */
+    private List<Row> spilledRows(Value key) {
+        List<Value[]> vals = external.rows(key);
+
+        if (vals == null)
+            return null;
+
+        List<Row> res = new ArrayList<>(vals.size());
+
+        for (Value[] v : vals)
+            res.add(table.createRow(v, Row.MEMORY_CALCULATE));
+
+        return res;
+    }
+
     /**
      * @param r Row.
      * @return Hash key.
@@ -507,6 +592,11 @@ public class HashJoinIndex extends BaseIndex {
     public void clearHashTable(Session session) {
         hashTbl = null;
 
+        if (external != null)
+            external.close();
+
+        external = null;
+
         if (tracker != null)
             tracker.close();
 
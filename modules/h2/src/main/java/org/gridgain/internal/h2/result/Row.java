@@ -7,6 +7,7 @@ package org.gridgain.internal.h2.result;
 
 import org.gridgain.internal.h2.store.Data;
 import org.gridgain.internal.h2.value.Value;
+import org.gridgain.internal.h2.value.ValueNull;
 
 /**
  * Represents a row in a table.
@@ -66,4 +67,18 @@ public interface Row extends SearchRow {
      */
     boolean hasSharedData(Row other);
 
+    /**
+     * Get the value of the column as it is stored, without wrapping it into
+     * a {@link Value}. Used by batch-at-a-time execution that copies numeric
+     * columns into primitive vectors. The returned object is not necessarily
+     * of the column type.
+     *
+     * @param index the column index
+     * @return the value, or {@code null} for SQL NULL
+     */
+    default Object getRawValue(int index) {
+        Value v = getValue(index);
+        return v == null || v == ValueNull.INSTANCE ? null : v.getObject();
+    }
+
 }
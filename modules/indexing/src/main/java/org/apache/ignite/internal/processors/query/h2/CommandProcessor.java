@@ -415,8 +415,11 @@ public class CommandProcessor {
         if (cmdNative != null) {
             assert cmdH2 == null;
 
-            if (isDdl(cmdNative))
+            if (isDdl(cmdNative)) {
                 runCommandNativeDdl(sql, cmdNative);
+
+                idx.onSchemaChanged();
+            }
             else if (cmdNative instanceof SqlBulkLoadCommand) {
                 res = processBulkLoadCommand((SqlBulkLoadCommand) cmdNative, qryId);
 
@@ -433,6 +436,8 @@ public class CommandProcessor {
             assert cmdH2 != null;
 
             runCommandH2(sql, cmdH2);
+
+            idx.onSchemaChanged();
         }
 
         return new CommandResult(res, unregister);
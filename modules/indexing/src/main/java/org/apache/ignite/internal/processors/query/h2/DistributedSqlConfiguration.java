@@ -29,6 +29,7 @@ import org.apache.ignite.internal.IgniteInternalFuture;
 import org.apache.ignite.internal.processors.configuration.distributed.DistributePropertyListener;
 import org.apache.ignite.internal.processors.configuration.distributed.DistributedBooleanProperty;
 import org.apache.ignite.internal.processors.configuration.distributed.DistributedConfigurationLifecycleListener;
+import org.apache.ignite.internal.processors.configuration.distributed.DistributedLongProperty;
 import org.apache.ignite.internal.processors.configuration.distributed.DistributedPropertyDispatcher;
 import org.apache.ignite.internal.processors.configuration.distributed.SimpleDistributedProperty;
 import org.apache.ignite.internal.processors.metastorage.ReadableDistributedMetaStorage;
@@ -89,6 +90,18 @@ public class DistributedSqlConfiguration {
     private final DistributedBooleanProperty disableCreateLuceneIndexForStringValueType =
         DistributedBooleanProperty.detachedBooleanProperty("sql.disableCreateLuceneIndexForStringValueType");
 
+    /**
+     * Schema version. Incremented by the node that executed a DDL statement, so unlike node local counters
+     * it's the same on every node and can be compared across nodes.
+     */
+    private final DistributedLongProperty schemaVer = DistributedLongProperty.detachedLongProperty("sql.schemaVersion");
+
+    /**
+     * Version of DawnSql metadata (MY_META schema data). Incremented by the coordinator after the metadata changed,
+     * so it's the same on every node.
+     */
+    private final DistributedLongProperty metaVer = DistributedLongProperty.detachedLongProperty("sql.metaVersion");
+
     /** Context. */
     private final GridKernalContext ctx;
 
@@ -115,6 +128,7 @@ public class DistributedSqlConfiguration {
 
                     dispatcher.registerProperties(disabledSqlFuncs, timeZone, dfltQueryTimeout);
                     dispatcher.registerProperties(disableCreateLuceneIndexForStringValueType);
+                    dispatcher.registerProperties(schemaVer, metaVer);
                 }
 
                 @Override public void onReadyToWrite() {
@@ -144,6 +158,8 @@ public class DistributedSqlConfiguration {
                         disabledSqlFuncs.localUpdate(null);
                         dfltQueryTimeout.localUpdate((int)ctx.config().getSqlConfiguration().getDefaultQueryTimeout());
                         disableCreateLuceneIndexForStringValueType.localUpdate(false);
+                        schemaVer.localUpdate(0L);
+                        metaVer.localUpdate(0L);
                     }
                 }
             }
@@ -255,4 +271,77 @@ public class DistributedSqlConfiguration {
         throws IgniteCheckedException {
         return disableCreateLuceneIndexForStringValueType.propagateAsync(disableCreateIdx);
     }
+
+    /**
+     * @return Cluster wide schema version.
+     */
+    public long schemaVersion() {
+        Long ver = schemaVer.get();
+
+        return ver != null ? ver : 0;
+    }
+
+    /**
+     * Increments cluster wide schema version.
+     *
+     * @return New schema version.
+     * @throws IgniteCheckedException If failed.
+     */
+    public long incrementSchemaVersion() throws IgniteCheckedException {
+        if (!ReadableDistributedMetaStorage.isSupported(ctx)) {
+            long ver = schemaVersion() + 1;
+
+            schemaVer.localUpdate(ver);
+
+            return ver;
+        }
+
+        while (true) {
+            Long cur = schemaVer.get();
+
+            long ver = (cur != null ? cur : 0) + 1;
+
+            if (Boolean.TRUE.equals(schemaVer.propagateAsync(cur, ver).get()))
+                return ver;
+        }
+    }
+
+    /** */
+    public void listenSchemaVersion(DistributePropertyListener<? super Long> lsnr) {
+        schemaVer.addListener(lsnr);
+    }
+
+    /**
+     * @return Cluster wide metadata version.
+     */
+    public long metaVersion() {
+        Long ver = metaVer.get();
+
+        return ver != null ? ver : 0;
+    }
+
+    /**
+     * Increments cluster wide metadata version.
+     *
+     * @return New metadata version.
+     * @throws IgniteCheckedException If failed.
+     */
+    public long incrementMetaVersion() throws IgniteCheckedException {
+        if (!ReadableDistributedMetaStorage.isSupported(ctx)) {
+            long ver = metaVersion() + 1;
+
+            metaVer.localUpdate(ver);
+
+            return ver;
+        }
+
+        while (true) {
+            Long cur = metaVer.get();
+
+            long ver = (cur != null ? cur : 0) + 1;
+
+            if (Boolean.TRUE.equals(metaVer.propagateAsync(cur, ver).get()))
+                return ver;
+        }
+    }
 }
@@ -112,6 +112,7 @@ import org.jetbrains.annotations.Nullable;
 import static java.sql.ResultSetMetaData.columnNullableUnknown;
 import static org.apache.ignite.IgniteSystemProperties.IGNITE_ENABLE_HASH_JOIN;
 import static org.apache.ignite.IgniteSystemProperties.IGNITE_HASH_JOIN_MAX_TABLE_SIZE;
+import static org.apache.ignite.IgniteSystemProperties.IGNITE_SQL_VECTORIZED_SCAN;
 import static org.apache.ignite.internal.processors.query.QueryUtils.KEY_COL;
 import static org.apache.ignite.internal.processors.query.QueryUtils.KEY_FIELD_NAME;
 import static org.apache.ignite.internal.processors.query.QueryUtils.VAL_FIELD_NAME;
@@ -165,6 +166,10 @@ public class H2Utils {
     private static boolean enableHashJoin
         = IgniteSystemProperties.getBoolean(IGNITE_ENABLE_HASH_JOIN, false);
 
+    /** Enable batch-at-a-time execution of aggregate map queries (not final for tests). */
+    private static boolean enableVectorizedScan
+        = IgniteSystemProperties.getBoolean(IGNITE_SQL_VECTORIZED_SCAN, false);
+
     /**
      * @param c1 First column.
      * @param c2 Second column.
@@ -450,6 +455,15 @@ public class H2Utils {
         setupConnection(conn, qctx, distributedJoins, enforceJoinOrder, false);
     }
 
+    /**
+     * Enable batch-at-a-time execution of aggregate queries for the connection set up for a map query.
+     *
+     * @param conn Connection.
+     */
+    public static void enableVectorizedScan(H2PooledConnection conn) {
+        session(conn).setVectorizedScanEnabled(enableVectorizedScan);
+    }
+
     /**
      * @param conn Connection to use.
      * @param qctx Query context.
@@ -471,6 +485,7 @@ public class H2Utils {
         s.setLazyQueryExecution(lazy);
         s.setHashJoinMaxTableSize(hashJoinMaxTableSize);
         s.setHashJoinEnabled(enableHashJoin && !distributedJoins);
+        s.setVectorizedScanEnabled(false);
 
         H2QueryContext oldCtx = s.getQueryContext();
 
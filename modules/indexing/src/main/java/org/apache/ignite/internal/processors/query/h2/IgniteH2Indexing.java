@@ -24,11 +24,15 @@ import java.sql.Statement;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import javax.cache.CacheException;
 
 import cn.myservice.MyInsertKvService;
+import cn.smart.service.IMyInsertKv;
+import cn.smart.service.IMyInsertKvPlan;
+import cn.smart.service.MyInsertKvBatch;
 import org.apache.ignite.IgniteCheckedException;
 import org.apache.ignite.IgniteDataStreamer;
 import org.apache.ignite.IgniteException;
@@ -43,6 +47,7 @@ import org.apache.ignite.cluster.ClusterNode;
 import org.apache.ignite.events.DiscoveryEvent;
 import org.apache.ignite.events.EventType;
 import org.apache.ignite.internal.GridKernalContext;
+import org.apache.ignite.internal.GridKernalState;
 import org.apache.ignite.internal.GridTopic;
 import org.apache.ignite.internal.IgniteInternalFuture;
 import org.apache.ignite.internal.binary.BinaryMarshaller;
@@ -139,6 +144,12 @@ import org.apache.ignite.internal.processors.query.h2.opt.GridH2Table;
 import org.apache.ignite.internal.processors.query.h2.opt.H2Row;
 import org.apache.ignite.internal.processors.query.h2.opt.QueryContext;
 import org.apache.ignite.internal.processors.query.h2.opt.QueryContextRegistry;
+import org.apache.ignite.internal.processors.query.h2.sql.GridApproxCountDistinctFunction;
+import org.apache.ignite.internal.processors.query.h2.sql.GridApproxCountDistinctMergeFunction;
+import org.apache.ignite.internal.processors.query.h2.sql.GridApproxCountDistinctSketchFunction;
+import org.apache.ignite.internal.processors.query.h2.sql.GridApproxPercentileFunction;
+import org.apache.ignite.internal.processors.query.h2.sql.GridApproxPercentileMergeFunction;
+import org.apache.ignite.internal.processors.query.h2.sql.GridApproxPercentileSketchFunction;
 import org.apache.ignite.internal.processors.query.h2.sql.GridFirstValueFunction;
 import org.apache.ignite.internal.processors.query.h2.sql.GridLastValueFunction;
 import org.apache.ignite.internal.processors.query.h2.sql.GridSqlStatement;
@@ -348,6 +359,9 @@ public class IgniteH2Indexing implements GridQueryIndexing {
     /** Index rebuilding futures for caches. Mapping: cacheId -> rebuild indexes future. */
     private final Map<Integer, SchemaIndexCacheFuture> idxRebuildFuts = new ConcurrentHashMap<>();
 
+    /** Schema version increment after a cache start or stop is scheduled and not started yet. */
+    private final AtomicBoolean schemaVerIncScheduled = new AtomicBoolean();
+
     /**
      * @return Kernal context.
      */
@@ -749,35 +763,38 @@ public class IgniteH2Indexing implements GridQueryIndexing {
             return zeroBatchedStreamedUpdateResult(params.size());
         }
 
-        List<Hashtable<String, Object>> lst;
-        if (params != null && params.size() > 0)
-        {
-            lst = MyInsertKvService.getInstance().getMyInsertKv().getInsertKvAgrs(userToken, qry, params.get(0));
-        }
-        else
-        {
-            lst = MyInsertKvService.getInstance().getMyInsertKv().getInsertKvAgrs(userToken, qry, null);
-        }
+        if (F.isEmpty(params))
+            return Collections.emptyList();
 
-        List<Long> ress = new ArrayList<>();
-        if (lst.size() > 0) {
-            Hashtable<String, Object> ht = lst.get(0);
-            String cacheName = ht.get("cache_name").toString();
+        IMyInsertKv insertKv = MyInsertKvService.getInstance().getMyInsertKv();
 
-            IgniteDataStreamer streamer = cliCtx.streamerForCache(cacheName);
+        // Compiled once per batch, implementations that really compile the statement can cache the plan themselves.
+        IMyInsertKvPlan plan = insertKv.getInsertKvPlan(userToken, qry);
 
-            streamer.allowOverwrite(true);
+        MyInsertKvBatch batch = new MyInsertKvBatch(params.size());
 
-            for (Hashtable<String, Object> m : lst) {
-                streamer.addData(m.get("key"), m.get("value"));
-            }
+        for (int i = 0; i < params.size(); i++)
+            plan.addTo(batch, i, params.get(i));
+
+        for (MyInsertKvBatch.MyCacheKvs kvs : batch.getCaches()) {
+            IgniteDataStreamer streamer = cliCtx.streamerForCache(kvs.getCacheName());
+
+            if (!streamer.allowOverwrite())
+                streamer.allowOverwrite(true);
+
+            List<Object> keys = kvs.getKeys();
+            List<Object> vals = kvs.getValues();
+
+            for (int i = 0; i < keys.size(); i++)
+                streamer.addData(keys.get(i), vals.get(i));
         }
 
-//        for (int i = 0; i < params.size(); i++) {
-//            long res = streamQuery0(qry, schemaName, streamer, dml, params.get(i), qryInitiatorId);
-//
-//            ress.add(res);
-//        }
+        long[] cnts = batch.getCounts();
+
+        List<Long> ress = new ArrayList<>(cnts.length);
+
+        for (long cnt : cnts)
+            ress.add(cnt);
 
         return ress;
     }
@@ -2642,6 +2659,9 @@ public class IgniteH2Indexing implements GridQueryIndexing {
         if (mapQryExec != null)
             mapQryExec.stop();
 
+        if (rdcQryExec != null)
+            rdcQryExec.stop();
+
         qryCtxRegistry.clearSharedOnLocalNodeStop();
 
         if (runningQryMgr != null)
@@ -2701,6 +2721,8 @@ public class IgniteH2Indexing implements GridQueryIndexing {
         rowCache.onCacheRegistered(cacheInfo);
 
         schemaMgr.onCacheCreated(cacheName, schemaName, cacheInfo.config().getSqlFunctionClasses());
+
+        scheduleSchemaVersionIncrement();
     }
 
     /** {@inheritDoc} */
@@ -2720,6 +2742,8 @@ public class IgniteH2Indexing implements GridQueryIndexing {
 
         // Clear query cache.
         clearPlanCache();
+
+        scheduleSchemaVersionIncrement();
     }
 
     /** {@inheritDoc} */
@@ -2806,6 +2830,68 @@ public class IgniteH2Indexing implements GridQueryIndexing {
         parser.clearCache();
     }
 
+    /**
+     * @return Cluster wide schema version. Changes after every DDL statement, so results derived from
+     * the schema (e.g. rewritten smart sql) can be invalidated. The version is the same on all nodes.
+     */
+    public long schemaVersion() {
+        return distrCfg.schemaVersion();
+    }
+
+    /**
+     * @return Cluster wide version of DawnSql metadata stored in MY_META schema. The version is the same on all nodes.
+     */
+    public long metaVersion() {
+        return distrCfg.metaVersion();
+    }
+
+    /**
+     * Increments cluster wide metadata version after MY_META data changed. Blocks until the new version
+     * is propagated, so it must not be called from a system thread.
+     */
+    public void onMetaChanged() {
+        try {
+            distrCfg.incrementMetaVersion();
+        }
+        catch (IgniteCheckedException e) {
+            U.warn(log, "Failed to increment SQL metadata version: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Increments cluster wide schema version after a DDL statement executed by this node.
+     */
+    void onSchemaChanged() {
+        try {
+            distrCfg.incrementSchemaVersion();
+        }
+        catch (IgniteCheckedException e) {
+            U.warn(log, "Failed to increment SQL schema version: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Increments cluster wide schema version after a cache started or stopped not by DDL, e.g. through the Java API.
+     * Caches are registered on every node from the exchange, so only the coordinator increments the version and
+     * does it asynchronously. Several caches started at once result in a single increment.
+     */
+    private void scheduleSchemaVersionIncrement() {
+        // Rewrite results of the starting node are not cached yet.
+        if (ctx.gateway().getState() != GridKernalState.STARTED)
+            return;
+
+        ClusterNode crd = U.oldest(ctx.discovery().aliveServerNodes(), null);
+
+        if (crd == null || !crd.isLocal() || !schemaVerIncScheduled.compareAndSet(false, true))
+            return;
+
+        ctx.closure().runLocalSafe(() -> {
+            schemaVerIncScheduled.set(false);
+
+            onSchemaChanged();
+        });
+    }
+
     /** {@inheritDoc} */
     @Override public IndexingQueryFilter backupFilter(@Nullable final AffinityTopologyVersion topVer,
         @Nullable final int[] parts) {
@@ -3507,6 +3593,14 @@ public class IgniteH2Indexing implements GridQueryIndexing {
     private void registerAggregateFunctions() throws IgniteCheckedException {
         registerAggregateFunction(GridFirstValueFunction.NAME, GridFirstValueFunction.class);
         registerAggregateFunction(GridLastValueFunction.NAME, GridLastValueFunction.class);
+        registerAggregateFunction(GridApproxCountDistinctFunction.NAME, GridApproxCountDistinctFunction.class);
+        registerAggregateFunction(GridApproxCountDistinctSketchFunction.NAME,
+            GridApproxCountDistinctSketchFunction.class);
+        registerAggregateFunction(GridApproxCountDistinctMergeFunction.NAME,
+            GridApproxCountDistinctMergeFunction.class);
+        registerAggregateFunction(GridApproxPercentileFunction.NAME, GridApproxPercentileFunction.class);
+        registerAggregateFunction(GridApproxPercentileSketchFunction.NAME, GridApproxPercentileSketchFunction.class);
+        registerAggregateFunction(GridApproxPercentileMergeFunction.NAME, GridApproxPercentileMergeFunction.class);
     }
 
     /**
@@ -32,6 +32,7 @@ import org.apache.ignite.internal.processors.cache.persistence.file.RandomAccess
 import org.apache.ignite.internal.processors.query.GridQueryMemoryMetricProvider;
 import org.apache.ignite.internal.processors.query.h2.disk.ExternalResultData;
 import org.apache.ignite.internal.processors.query.h2.disk.GroupedExternalResult;
+import org.apache.ignite.internal.processors.query.h2.disk.HashJoinExternalResult;
 import org.apache.ignite.internal.processors.query.h2.disk.PlainExternalResult;
 import org.apache.ignite.internal.processors.query.h2.disk.SortedExternalResult;
 import org.apache.ignite.internal.processors.query.h2.disk.TrackableFileIoFactory;
@@ -446,6 +447,14 @@ public class QueryMemoryManager implements H2MemoryTracker, ManagedGroupByDataFa
         return new H2ManagedGroupByData(ses, grpIdx);
     }
 
+    /** {@inheritDoc} */
+    @Override public HashJoinExternalData newHashJoinExternalData(Session ses) {
+        if (!offloadingEnabled)
+            return null;
+
+        return new HashJoinExternalResult(ses);
+    }
+
     /**
      * @param ses Session.
      * @return Plain external result.
@@ -203,8 +203,9 @@ public class ExternalResultData<T> implements AutoCloseable {
      * Stores rows into the file.
      *
      * @param rows Rows to store.
+     * @return Chunk with the stored rows.
      */
-    public void store(Collection<Map.Entry<ValueRow, T[]>> rows) {
+    public Chunk store(Collection<Map.Entry<ValueRow, T[]>> rows) {
         long initFilePos = lastWrittenPos;
 
         setFilePosition(lastWrittenPos);
@@ -212,7 +213,11 @@ public class ExternalResultData<T> implements AutoCloseable {
         for (Map.Entry<ValueRow, T[]> row : rows)
             writeToFile(row);
 
-        chunks.add(new Chunk(initFilePos, lastWrittenPos));
+        Chunk chunk = new Chunk(initFilePos, lastWrittenPos);
+
+        chunks.add(chunk);
+
+        return chunk;
     }
 
     /**
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2019 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.internal.processors.query.h2.disk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.ignite.internal.processors.query.h2.H2Utils;
+import org.apache.ignite.internal.processors.query.h2.HashJoinExternalData;
+import org.apache.ignite.lang.IgniteBiTuple;
+import org.gridgain.internal.h2.engine.Session;
+import org.gridgain.internal.h2.value.Value;
+import org.gridgain.internal.h2.value.ValueNull;
+import org.gridgain.internal.h2.value.ValueRow;
+
+/**
+ * Hash join hash table spilled to disk (grace hash join). Rows are distributed between partitions by the hash
+ * of the key. Every spilled batch is appended to the file as one chunk per partition, so spilling never reads
+ * or rewrites the rows stored before. A probe loads the whole partition of its key with a sequential read
+ * and keeps it in memory while the query quota allows, so the next probes of the partition don't touch the disk.
+ * <p>
+ * Probe rows come from the outer table of the nested loops join one by one and can't be partitioned,
+ * so the loaded partitions are evicted in LRU order.
+ */
+public class HashJoinExternalResult extends AbstractExternalResult<Value> implements HashJoinExternalData {
+    /** Partitions count, power of two. */
+    private static final int PARTS_CNT = 64;
+
+    /** Chunks of every partition, one chunk per spilled batch. */
+    private final List<List<ExternalResultData<Value>.Chunk>> parts = new ArrayList<>(PARTS_CNT);
+
+    /** Partitions loaded into memory in access order. */
+    private final LinkedHashMap<Integer, Partition> loaded = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param ses Session.
+     */
+    public HashJoinExternalResult(Session ses) {
+        super(ses, false, 0, Value.class);
+
+        for (int i = 0; i < PARTS_CNT; i++)
+            parts.add(new ArrayList<>());
+    }
+
+    /** {@inheritDoc} */
+    @Override public void addRows(Map<Value, List<Value[]>> rows) {
+        List<List<Map.Entry<ValueRow, Value[]>>> batches = new ArrayList<>(PARTS_CNT);
+
+        for (int i = 0; i < PARTS_CNT; i++)
+            batches.add(new ArrayList<>());
+
+        for (Map.Entry<Value, List<Value[]>> e : rows.entrySet()) {
+            ValueRow key = ValueRow.get(new Value[] {e.getKey()});
+
+            List<Map.Entry<ValueRow, Value[]>> batch = batches.get(partition(e.getKey()));
+
+            for (Value[] row : e.getValue()) {
+                Value[] vals = new Value[row.length];
+
+                // Stored row ends at the first null value.
+                for (int i = 0; i < row.length; i++)
+                    vals[i] = row[i] == null ? ValueNull.INSTANCE : row[i];
+
+                batch.add(new IgniteBiTuple<>(key, vals));
+            }
+
+            size += e.getValue().size();
+        }
+
+        for (int i = 0; i < PARTS_CNT; i++) {
+            List<Map.Entry<ValueRow, Value[]>> batch = batches.get(i);
+
+            if (batch.isEmpty())
+                continue;
+
+            parts.get(i).add(data.store(batch));
+
+            // Loaded partition doesn't contain new rows.
+            Partition part = loaded.remove(i);
+
+            if (part != null)
+                memTracker.release(part.mem);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public List<Value[]> rows(Value key) {
+        int p = partition(key);
+
+        Partition part = loaded.get(p);
+
+        if (part == null)
+            part = load(p);
+
+        return part.rows.get(key);
+    }
+
+    /**
+     * Reads the partition from disk and evicts the least recently used partitions if the quota is exceeded.
+     *
+     * @param p Partition.
+     * @return Loaded partition.
+     */
+    private Partition load(int p) {
+        Partition part = new Partition();
+
+        for (ExternalResultData<Value>.Chunk chunk : parts.get(p)) {
+            chunk.reset();
+
+            while (chunk.next()) {
+                Map.Entry<ValueRow, Value[]> row = chunk.currentRow();
+
+                Value key = row.getKey().getList()[0];
+
+                part.rows.computeIfAbsent(key, k -> new ArrayList<>()).add(row.getValue());
+
+                part.mem += H2Utils.calculateMemoryDelta(null, null, row.getValue());
+            }
+        }
+
+        memTracker.reserve(part.mem);
+
+        // The partition being loaded is kept even if it doesn't fit into the quota alone.
+        Iterator<Partition> it = loaded.values().iterator();
+
+        while (needToSpill() && it.hasNext()) {
+            Partition evicted = it.next();
+
+            it.remove();
+
+            memTracker.release(evicted.mem);
+        }
+
+        loaded.put(p, part);
+
+        return part;
+    }
+
+    /**
+     * @param key Hash key.
+     * @return Partition of the key.
+     */
+    private static int partition(Value key) {
+        int h = key.hashCode();
+
+        return (h ^ (h >>> 16)) & (PARTS_CNT - 1);
+    }
+
+    /** {@inheritDoc} */
+    @Override protected void onClose() {
+        for (Partition part : loaded.values())
+            memTracker.release(part.mem);
+
+        loaded.clear();
+
+        super.onClose();
+    }
+
+    /**
+     * Partition loaded into memory.
+     */
+    private static class Partition {
+        /** Rows by key. */
+        private final Map<Value, List<Value[]>> rows = new HashMap<>();
+
+        /** Reserved memory. */
+        private long mem;
+    }
+}
@@ -101,6 +101,23 @@ public class H2CacheRow extends H2Row implements CacheDataRow {
         }
     }
 
+    /** {@inheritDoc} */
+    @Override public Object getRawValue(int col) {
+        if (removedRow() || col < QueryUtils.DEFAULT_COLUMNS_COUNT || desc.isKeyAliasColumn(col) ||
+            desc.isValueAliasColumn(col))
+            return super.getRawValue(col);
+
+        col -= QueryUtils.DEFAULT_COLUMNS_COUNT;
+
+        Value v = getCached(col);
+
+        if (v != null)
+            return v == ValueNull.INSTANCE ? null : v.getObject();
+
+        // Field value as stored in the binary object, not wrapped and not cached.
+        return desc.columnValue(row.key(), row.value(), col);
+    }
+
     /**
      * Get real column value.
      *
@@ -25,6 +25,7 @@ import java.util.Arrays;
 import org.apache.ignite.IgniteLogger;
 import org.apache.ignite.IgniteSystemProperties;
 import org.apache.ignite.internal.processors.query.stat.ColumnStatistics;
+import org.apache.ignite.internal.processors.query.stat.Histogram;
 import org.apache.ignite.internal.processors.query.stat.ObjectStatisticsImpl;
 import org.apache.ignite.internal.util.typedef.F;
 import org.apache.ignite.internal.util.typedef.internal.LT;
@@ -798,6 +799,19 @@ public abstract class H2IndexCostedBase extends BaseIndex {
                         if (colStats != null && equalNull == Boolean.FALSE)
                             rowsCost = Math.max(Math.round(rowsCost * (1 - nulls(colStats))), 1);
 
+                        double eqFraction = equalFraction(colStats, equalValue);
+
+                        if (eqFraction >= 0) {
+                            // Same cardinality as the distinct count branch (one row per key of unique column),
+                            // so the next columns of a composite index are costed against the narrowed rows.
+                            long nonNulls = colStats.total() - colStats.nulls();
+                            double cardinality = nonNulls == 0 ? 1 : 1 / Math.max(1, nonNulls * eqFraction);
+                            totalCardinality = 1 - (1 - totalCardinality) * (1 - cardinality);
+
+                            rowsCost = Math.min(5 + Math.round(rowsCost * eqFraction), rowsCost - (i > 0 ? 1 : 0));
+                            continue;
+                        }
+
                         long distinctRows;
                         if (colStats == null) {
                             double cardinality = (double)column.getSelectivity() / 100;
@@ -1019,6 +1033,11 @@ public abstract class H2IndexCostedBase extends BaseIndex {
          * @return Percent of total rows, selected with specified conditions (0-100).
          */
         private int estimatePercent(ColumnStatistics colStat, Value min, Value max) {
+            int histPercent = estimatePercentByHistogram(colStat, min, max);
+
+            if (histPercent >= 0)
+                return histPercent;
+
             if (colStat == null || colStat.min() == null || colStat.max() == null)
                 // Fall back to previous behaviour without statistics, even without min/max testing
                 return estimatePercentFallback(min, max);
@@ -1060,6 +1079,56 @@ public abstract class H2IndexCostedBase extends BaseIndex {
             return result > 100 ? 100 : result;
         }
 
+        /**
+         * Estimate percent of selected rows by specified min/max conditions using column histogram.
+         *
+         * @param colStat Column statistics to use, if exists.
+         * @param min The lower border.
+         * @param max The higher border.
+         * @return Percent of total rows (0-100) or {@code -1} if there is no histogram or borders can't be placed on it.
+         *      Default selectivity if the range is outside of the histogram.
+         */
+        private int estimatePercentByHistogram(ColumnStatistics colStat, Value min, Value max) {
+            Histogram hist = colStat == null ? null : colStat.histogram();
+
+            if (hist == null || (min == null && max == null))
+                return -1;
+
+            Double lo = min == null ? null : Histogram.toDouble(min);
+            Double hi = max == null ? null : Histogram.toDouble(max);
+
+            if ((min != null && lo == null) || (max != null && hi == null))
+                return -1;
+
+            double fraction = hist.fraction(lo, hi);
+
+            // Range is outside of sampled values, statistics may be stale: don't assume that nothing is selected.
+            if (fraction < 0)
+                return estimatePercentFallback(min, max);
+
+            long result = Math.round(fraction * (1 - nulls(colStat)) * 100);
+
+            return (int)Math.min(100, result);
+        }
+
+        /**
+         * Estimate fraction of non null rows equal to the specified value using column histogram.
+         *
+         * @param colStat Column statistics to use, if exists.
+         * @param val Value.
+         * @return Fraction of non null rows (0-1) or {@code -1} if it should be estimated by number of distinct values.
+         */
+        private double equalFraction(ColumnStatistics colStat, Value val) {
+            Histogram hist = colStat == null ? null : colStat.histogram();
+
+            if (hist == null || val == null || val.getValueType() == Value.NULL)
+                return -1;
+
+            Double d = Histogram.toDouble(val);
+
+            return d == null ? -1 : hist.equalFraction(d, colStat.distinct());
+        }
+
         /**
          * Fallback percent estimation.
          *
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ignite.internal.processors.query.h2.sql;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+import org.apache.ignite.internal.processors.query.stat.Hasher;
+import org.apache.ignite.internal.processors.query.stat.hll.HLL;
+import org.gridgain.internal.h2.api.AggregateFunction;
+
+/**
+ * SQL aggregate function to estimate the number of distinct values with HyperLogLog.
+ * For not collocated data map nodes build HLL sketches with {@link GridApproxCountDistinctSketchFunction}
+ * and reducer merges them with {@link GridApproxCountDistinctMergeFunction}, so only sketches of a few kilobytes
+ * are sent over the network instead of all distinct values.
+ */
+public class GridApproxCountDistinctFunction implements AggregateFunction {
+    /** */
+    public static final String NAME = "APPROX_COUNT_DISTINCT";
+
+    /** Log2 of the number of HLL registers, gives about 1.6% error. */
+    private static final int LOG2M = 13;
+
+    /** HLL register width. */
+    private static final int REGWIDTH = 5;
+
+    /** Arguments are HLL sketches to merge. */
+    private final boolean mergeSketches;
+
+    /** Return HLL sketch instead of the estimation. */
+    private final boolean sketchRes;
+
+    /** */
+    private final Hasher hash = new Hasher();
+
+    /** */
+    private HLL hll;
+
+    /** */
+    public GridApproxCountDistinctFunction() {
+        this(false, false);
+    }
+
+    /**
+     * @param mergeSketches Arguments are HLL sketches to merge.
+     * @param sketchRes Return HLL sketch instead of the estimation.
+     */
+    protected GridApproxCountDistinctFunction(boolean mergeSketches, boolean sketchRes) {
+        this.mergeSketches = mergeSketches;
+        this.sketchRes = sketchRes;
+    }
+
+    /** {@inheritDoc}  */
+    @Override public void init(Connection conn) throws SQLException {
+
+    }
+
+    /** {@inheritDoc}  */
+    @Override public int getType(int[] inputTypes) throws SQLException {
+        if (inputTypes.length != 1)
+            throw new SQLException("Aggregation function should have exactly one argument.");
+
+        return sketchRes ? Types.VARBINARY : Types.BIGINT;
+    }
+
+    /** {@inheritDoc}  */
+    @Override public void add(Object value) throws SQLException {
+        if (value == null)
+            return;
+
+        if (mergeSketches) {
+            if (!(value instanceof byte[]))
+                throw new SQLException("HyperLogLog sketch expected: " + value.getClass().getName());
+
+            HLL other = HLL.fromBytes((byte[])value);
+
+            if (hll == null)
+                hll = other;
+            else
+                hll.union(other);
+
+            return;
+        }
+
+        if (hll == null)
+            hll = new HLL(LOG2M, REGWIDTH);
+
+        hll.addRaw(hash.fastHash(bytes(value)));
+    }
+
+    /** {@inheritDoc}  */
+    @Override public Object getResult() throws SQLException {
+        if (sketchRes)
+            return hll == null ? null : hll.toBytes();
+
+        return hll == null ? 0L : hll.cardinality();
+    }
+
+    /**
+     * Get bytes to hash the value by. Equal values of the same column give the same bytes on all nodes.
+     *
+     * @param val Value.
+     * @return Bytes.
+     */
+    private static byte[] bytes(Object val) {
+        if (val instanceof byte[])
+            return (byte[])val;
+
+        if (val instanceof String)
+            return ((String)val).getBytes(StandardCharsets.UTF_8);
+
+        if (val instanceof Byte || val instanceof Short || val instanceof Integer || val instanceof Long)
+            return ByteBuffer.allocate(8).putLong(((Number)val).longValue()).array();
+
+        if (val instanceof Float || val instanceof Double)
+            return ByteBuffer.allocate(8).putLong(Double.doubleToLongBits(((Number)val).doubleValue())).array();
+
+        if (val instanceof BigDecimal) {
+            BigDecimal dec = (BigDecimal)val;
+
+            return (dec.signum() == 0 ? "0" : dec.stripTrailingZeros().toPlainString()).getBytes(StandardCharsets.UTF_8);
+        }
+
+        if (val instanceof Timestamp)
+            return ByteBuffer.allocate(12).putLong(((Date)val).getTime()).putInt(((Timestamp)val).getNanos()).array();
+
+        if (val instanceof Date)
+            return ByteBuffer.allocate(8).putLong(((Date)val).getTime()).array();
+
+        return val.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
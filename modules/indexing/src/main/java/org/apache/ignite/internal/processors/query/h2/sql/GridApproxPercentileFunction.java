@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ignite.internal.processors.query.h2.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Date;
+import org.apache.ignite.internal.processors.query.stat.QuantileSketch;
+import org.gridgain.internal.h2.api.AggregateFunction;
+
+/**
+ * SQL aggregate function to estimate percentile of numeric values with KLL quantile sketch:
+ * {@code APPROX_PERCENTILE(x, p)}, where {@code p} is between 0 and 1.
+ * For not collocated data map nodes build sketches with {@link GridApproxPercentileSketchFunction}
+ * and reducer merges them with {@link GridApproxPercentileMergeFunction}.
+ */
+public class GridApproxPercentileFunction implements AggregateFunction {
+    /** */
+    public static final String NAME = "APPROX_PERCENTILE";
+
+    /** Arguments are sketches to merge. */
+    private final boolean mergeSketches;
+
+    /** Return sketch instead of the percentile. */
+    private final boolean sketchRes;
+
+    /** */
+    private QuantileSketch sketch;
+
+    /** Percentile. */
+    private Double p;
+
+    /** */
+    public GridApproxPercentileFunction() {
+        this(false, false);
+    }
+
+    /**
+     * @param mergeSketches Arguments are sketches to merge.
+     * @param sketchRes Return sketch instead of the percentile.
+     */
+    protected GridApproxPercentileFunction(boolean mergeSketches, boolean sketchRes) {
+        this.mergeSketches = mergeSketches;
+        this.sketchRes = sketchRes;
+    }
+
+    /** {@inheritDoc}  */
+    @Override public void init(Connection conn) throws SQLException {
+
+    }
+
+    /** {@inheritDoc}  */
+    @Override public int getType(int[] inputTypes) throws SQLException {
+        if (sketchRes) {
+            if (inputTypes.length != 1)
+                throw new SQLException("Aggregation function should have exactly one argument.");
+
+            return Types.VARBINARY;
+        }
+
+        if (inputTypes.length != 2)
+            throw new SQLException("Aggregation function should have exactly two arguments.");
+
+        return Types.DOUBLE;
+    }
+
+    /** {@inheritDoc}  */
+    @Override public void add(Object value) throws SQLException {
+        Object val = value;
+
+        if (!sketchRes) {
+            Object[] arr = (Object[])value;
+
+            val = arr[0];
+
+            if (p == null)
+                p = percentile(arr[1]);
+            else if (!(arr[1] instanceof Number) || ((Number)arr[1]).doubleValue() != p)
+                throw new SQLException("Percentile should be the same for all rows: " + arr[1]);
+        }
+
+        if (val == null)
+            return;
+
+        if (mergeSketches) {
+            if (!(val instanceof byte[]))
+                throw new SQLException("Quantile sketch expected: " + val.getClass().getName());
+
+            QuantileSketch other = QuantileSketch.fromBytes((byte[])val);
+
+            if (sketch == null)
+                sketch = other;
+            else
+                sketch.merge(other);
+
+            return;
+        }
+
+        if (sketch == null)
+            sketch = new QuantileSketch(QuantileSketch.DFLT_K);
+
+        sketch.add(toDouble(val));
+    }
+
+    /** {@inheritDoc}  */
+    @Override public Object getResult() throws SQLException {
+        if (sketch == null || sketch.count() == 0)
+            return null;
+
+        return sketchRes ? sketch.toBytes() : sketch.quantile(p);
+    }
+
+    /**
+     * @param val Percentile argument.
+     * @return Percentile.
+     * @throws SQLException If percentile is not a number between 0 and 1.
+     */
+    static double percentile(Object val) throws SQLException {
+        if (!(val instanceof Number))
+            throw new SQLException("Percentile should be a number between 0 and 1: " + val);
+
+        double p = ((Number)val).doubleValue();
+
+        if (!(p >= 0 && p <= 1))
+            throw new SQLException("Percentile should be a number between 0 and 1: " + val);
+
+        return p;
+    }
+
+    /**
+     * @param val Value.
+     * @return Double value.
+     * @throws SQLException If value is not numeric.
+     */
+    private static double toDouble(Object val) throws SQLException {
+        if (val instanceof Number)
+            return ((Number)val).doubleValue();
+
+        if (val instanceof Date)
+            return ((Date)val).getTime();
+
+        throw new SQLException("Numeric argument expected: " + val.getClass().getName());
+    }
+}
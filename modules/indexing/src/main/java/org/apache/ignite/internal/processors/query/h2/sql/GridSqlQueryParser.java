@@ -2370,6 +2370,16 @@ public class GridSqlQueryParser {
             for (Expression arg : args)
                 fun.addChild(parseExpression(arg, calcTypes));
 
+            if (GridApproxPercentileFunction.NAME.equalsIgnoreCase(userAgg.getName()) && fun.size() == 2 &&
+                fun.child(1) instanceof GridSqlConst) {
+                try {
+                    GridApproxPercentileFunction.percentile(((GridSqlConst)fun.child(1)).value().getObject());
+                }
+                catch (SQLException e) {
+                    throw new IgniteSQLException(e.getMessage(), IgniteQueryErrorCode.PARSING);
+                }
+            }
+
             return fun;
         }
 
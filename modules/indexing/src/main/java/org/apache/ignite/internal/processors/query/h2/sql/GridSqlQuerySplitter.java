@@ -46,6 +46,7 @@ import org.apache.ignite.internal.processors.query.h2.affinity.PartitionExtracto
 import org.apache.ignite.internal.processors.query.h2.opt.GridH2Table;
 import org.apache.ignite.internal.processors.query.h2.opt.QueryContext;
 import org.apache.ignite.internal.util.typedef.F;
+import org.apache.ignite.internal.util.typedef.T2;
 import org.apache.ignite.internal.util.typedef.internal.U;
 import org.gridgain.internal.h2.command.Prepared;
 import org.gridgain.internal.h2.command.dml.Query;
@@ -58,6 +59,7 @@ import static org.apache.ignite.internal.processors.query.h2.sql.GridSqlFunction
 import static org.apache.ignite.internal.processors.query.h2.sql.GridSqlFunctionType.COUNT;
 import static org.apache.ignite.internal.processors.query.h2.sql.GridSqlFunctionType.GROUP_CONCAT;
 import static org.apache.ignite.internal.processors.query.h2.sql.GridSqlFunctionType.SUM;
+import static org.apache.ignite.internal.processors.query.h2.sql.GridSqlFunctionType.UNKNOWN_FUNCTION;
 import static org.apache.ignite.internal.processors.query.h2.sql.GridSqlJoin.LEFT_TABLE_CHILD;
 import static org.apache.ignite.internal.processors.query.h2.sql.GridSqlJoin.ON_CHILD;
 import static org.apache.ignite.internal.processors.query.h2.sql.GridSqlJoin.RIGHT_TABLE_CHILD;
@@ -91,6 +93,16 @@ public class GridSqlQuerySplitter {
     /** */
     private static final String EXPR_ALIAS_PREFIX = "__X";
 
+    /** Approximate aggregates computed with mergeable sketches: name -> (map sketch aggregate, reduce merge aggregate). */
+    private static final Map<String, T2<String, String>> SKETCH_AGGREGATES = new HashMap<>();
+
+    static {
+        SKETCH_AGGREGATES.put(GridApproxCountDistinctFunction.NAME,
+            new T2<>(GridApproxCountDistinctSketchFunction.NAME, GridApproxCountDistinctMergeFunction.NAME));
+        SKETCH_AGGREGATES.put(GridApproxPercentileFunction.NAME,
+            new T2<>(GridApproxPercentileSketchFunction.NAME, GridApproxPercentileMergeFunction.NAME));
+    }
+
     /** */
     private int nextExprAliasId;
 
@@ -1883,8 +1895,44 @@ public class GridSqlQuerySplitter {
 
                 break;
 
-            case UNKNOWN_FUNCTION:
-                throw new IgniteSQLException("Custom aggregation function is not supported for not collocated data.", IgniteQueryErrorCode.UNSUPPORTED_OPERATION);
+            case UNKNOWN_FUNCTION: // APPROX_X_MERGE( APPROX_X_SKETCH(x), args... ) or APPROX_X(x, args...)
+                T2<String, String> sketchAgg = SKETCH_AGGREGATES.get(agg.name().toUpperCase());
+
+                if (sketchAgg == null) {
+                    throw new IgniteSQLException("Custom aggregation function is not supported for not collocated data.",
+                        IgniteQueryErrorCode.UNSUPPORTED_OPERATION);
+                }
+
+                // The rest arguments (e.g. percentile) are evaluated on reducer, they can't depend on the row.
+                for (int i = 1; i < agg.size(); i++) {
+                    GridSqlAst arg = agg.child(i);
+
+                    if (!(arg instanceof GridSqlConst) && !(arg instanceof GridSqlParameter)) {
+                        throw new IgniteSQLException("Argument " + (i + 1) + " of " + agg.name() +
+                            " should be a constant or a query parameter: " + arg.getSQL(), IgniteQueryErrorCode.PARSING);
+                    }
+                }
+
+                if (hasDistinctAggregate) {
+                    mapAgg = agg.child();
+
+                    rdcAgg = new GridSqlAggregateFunction(UNKNOWN_FUNCTION, agg.name(), agg.distinct());
+                }
+                else {
+                    // Map nodes send compact mergeable sketches instead of the values.
+                    mapAgg = new GridSqlAggregateFunction(UNKNOWN_FUNCTION, sketchAgg.get1(), false)
+                        .resultType(GridSqlType.BYTES).addChild(agg.child());
+
+                    rdcAgg = new GridSqlAggregateFunction(UNKNOWN_FUNCTION, sketchAgg.get2(), false);
+                }
+
+                rdcAgg.resultType(agg.resultType()).addChild(SplitterUtils.column(mapAggAlias.alias()));
+
+                // Reducer needs the rest arguments as is.
+                for (int i = 1; i < agg.size(); i++)
+                    rdcAgg.addChild(agg.child(i));
+
+                break;
 
             default:
                 throw new IgniteException("Unsupported aggregate: " + agg.type());
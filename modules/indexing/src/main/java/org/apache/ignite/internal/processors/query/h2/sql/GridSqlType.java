@@ -52,6 +52,10 @@ public final class GridSqlType {
     public static final GridSqlType STRING = new GridSqlType(Value.STRING, 0, 0,
         -1, "VARCHAR");
 
+    /** */
+    public static final GridSqlType BYTES = new GridSqlType(Value.BYTES, 0, Integer.MAX_VALUE,
+        -1, "VARBINARY");
+
     /** */
     public static final GridSqlType RESULT_SET = new GridSqlType(Value.RESULT_SET, 0,
         Integer.MAX_VALUE, Integer.MAX_VALUE, "");
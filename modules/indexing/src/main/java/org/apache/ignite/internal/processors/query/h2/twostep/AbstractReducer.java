@@ -24,12 +24,14 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import javax.cache.CacheException;
 import org.apache.ignite.IgniteException;
 import org.apache.ignite.cluster.ClusterNode;
 import org.apache.ignite.internal.GridKernalContext;
+import org.apache.ignite.internal.processors.query.GridRunningQueryInfo;
 import org.apache.ignite.internal.processors.query.h2.H2MemoryTracker;
 import org.apache.ignite.internal.processors.query.h2.twostep.messages.GridQueryNextPageResponse;
 import org.apache.ignite.internal.processors.tracing.MTC;
@@ -102,6 +104,15 @@ public abstract class AbstractReducer implements Reducer {
     /** */
     protected H2MemoryTracker memTracker;
 
+    /** Executor to run merge workers, {@code null} if parallel reduce is disabled. */
+    protected Executor rdcExec;
+
+    /** Max number of merge workers. */
+    protected int rdcParallelism;
+
+    /** Running query to report reduce statistics to. */
+    private volatile GridRunningQueryInfo runningQry;
+
     /**
      * Constructor.
      *
@@ -331,6 +342,19 @@ public abstract class AbstractReducer implements Reducer {
         return memTracker;
     }
 
+    /** {@inheritDoc} */
+    @Override public void parallelReduce(Executor exec, int parallelism) {
+        assert srcNodes == null;
+
+        rdcExec = exec;
+        rdcParallelism = parallelism;
+    }
+
+    /** {@inheritDoc} */
+    @Override public void runningQuery(@Nullable GridRunningQueryInfo qry) {
+        runningQry = qry;
+    }
+
     /**
      * @param queue Queue to poll.
      * @param iter Current iterator.
@@ -364,6 +388,8 @@ public abstract class AbstractReducer implements Reducer {
         try (TraceSurroundings ignored = MTC.support(ctx.tracing().create(SQL_PAGE_WAIT, MTC.span()))) {
             ReduceResultPage page;
 
+            long start = System.nanoTime();
+
             for (;;) {
                 try {
                     page = queue.poll(500, TimeUnit.MILLISECONDS);
@@ -378,6 +404,11 @@ public abstract class AbstractReducer implements Reducer {
                 checkSourceNodesAlive();
             }
 
+            GridRunningQueryInfo qry = runningQry;
+
+            if (qry != null)
+                qry.onReducePageWait(System.nanoTime() - start);
+
             return page;
         }
     }
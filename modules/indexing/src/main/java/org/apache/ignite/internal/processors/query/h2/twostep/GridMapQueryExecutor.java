@@ -446,6 +446,8 @@ public class GridMapQueryExecutor {
                     lazy
                 );
 
+                H2Utils.enableVectorizedScan(conn);
+
                 MapQueryResult res = new MapQueryResult(h2, mainCctx, node.id(), qry, params, conn, log);
 
                 qryResults.addResult(qryIdx, res);
@@ -31,6 +31,7 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
@@ -47,6 +48,7 @@ import org.apache.ignite.cache.query.QueryRetryException;
 import org.apache.ignite.cache.query.exceptions.SqlCacheException;
 import org.apache.ignite.cache.query.exceptions.SqlMemoryQuotaExceededException;
 import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.configuration.IgniteConfiguration;
 import org.apache.ignite.events.DiscoveryEvent;
 import org.apache.ignite.internal.GridKernalContext;
 import org.apache.ignite.internal.GridTopic;
@@ -59,6 +61,7 @@ import org.apache.ignite.internal.processors.cache.query.GridCacheTwoStepQuery;
 import org.apache.ignite.internal.processors.cache.query.IgniteQueryErrorCode;
 import org.apache.ignite.internal.processors.query.GridQueryCacheObjectsIterator;
 import org.apache.ignite.internal.processors.query.GridQueryCancel;
+import org.apache.ignite.internal.processors.query.GridRunningQueryInfo;
 import org.apache.ignite.internal.processors.query.IgniteSQLException;
 import org.apache.ignite.internal.processors.query.IgniteSQLMapStepException;
 import org.apache.ignite.internal.processors.query.QueryUtils;
@@ -91,6 +94,7 @@ import org.apache.ignite.internal.util.typedef.internal.U;
 import org.apache.ignite.lang.IgniteBiClosure;
 import org.apache.ignite.lang.IgniteFuture;
 import org.apache.ignite.plugin.extensions.communication.Message;
+import org.apache.ignite.thread.IgniteThreadPoolExecutor;
 import org.apache.ignite.transactions.TransactionAlreadyCompletedException;
 import org.apache.ignite.transactions.TransactionException;
 import org.gridgain.internal.h2.command.ddl.CreateTableData;
@@ -104,6 +108,8 @@ import org.jetbrains.annotations.Nullable;
 
 import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
+import static org.apache.ignite.IgniteSystemProperties.IGNITE_SQL_REDUCE_PARALLELISM;
+import static org.apache.ignite.IgniteSystemProperties.IGNITE_SQL_REDUCE_POOL_SIZE;
 import static org.apache.ignite.IgniteSystemProperties.IGNITE_SQL_RETRY_TIMEOUT;
 import static org.apache.ignite.internal.processors.cache.mvcc.MvccUtils.checkActive;
 import static org.apache.ignite.internal.processors.cache.mvcc.MvccUtils.tx;
@@ -168,6 +174,12 @@ public class GridReduceQueryExecutor {
     /** Partition mapper. */
     private ReducePartitionMapper mapper;
 
+    /** Max number of merge workers of a single query, {@code 0} if parallel reduce is disabled. */
+    private final int rdcParallelism = IgniteSystemProperties.getInteger(IGNITE_SQL_REDUCE_PARALLELISM, 0);
+
+    /** Pool of merge workers, {@code null} if parallel reduce is disabled. */
+    private IgniteThreadPoolExecutor rdcPool;
+
     /**
      * @param ctx Context.
      * @param h2 H2 Indexing.
@@ -180,6 +192,30 @@ public class GridReduceQueryExecutor {
         log = ctx.log(GridReduceQueryExecutor.class);
 
         mapper = new ReducePartitionMapper(ctx, log);
+
+        if (rdcParallelism > 0) {
+            int poolSize = IgniteSystemProperties.getInteger(IGNITE_SQL_REDUCE_POOL_SIZE,
+                Runtime.getRuntime().availableProcessors());
+
+            // Workers block until the reducer takes their results, so they must never wait in a queue for a thread.
+            // Rejected workers are merged by the reducer thread itself, see SortedReducer.
+            rdcPool = new IgniteThreadPoolExecutor("sql-reduce",
+                ctx.igniteInstanceName(),
+                0,
+                Math.max(poolSize, 1),
+                IgniteConfiguration.DFLT_THREAD_KEEP_ALIVE_TIME,
+                new SynchronousQueue<>(),
+                GridIoPolicy.UNDEFINED,
+                ctx.uncaughtExceptionHandler());
+        }
+    }
+
+    /**
+     * Stop reduce query executor.
+     */
+    public void stop() {
+        if (rdcPool != null)
+            U.shutdownNow(GridReduceQueryExecutor.class, rdcPool, log);
     }
 
     /**
@@ -303,6 +339,10 @@ public class GridReduceQueryExecutor {
                         }
                     }
                 };
+
+                // Pages of different map nodes are unmarshalled concurrently by the threads receiving them.
+                if (rdcPool != null)
+                    page.unmarshalRows();
             }
             catch (Exception e) {
                 U.error(log, "Error in message.", e);
@@ -403,6 +443,8 @@ public class GridReduceQueryExecutor {
         final long retryTimeout = retryTimeout(timeoutMillis);
         final long qryStartTime = U.currentTimeMillis();
 
+        final GridRunningQueryInfo runningQry = qryId == null ? null : h2.runningQueryManager().runningQueryInfo(qryId);
+
         ReduceQueryRun lastRun = null;
 
         for (int attempt = 0;; attempt++) {
@@ -443,6 +485,8 @@ public class GridReduceQueryExecutor {
                 final ReduceQueryRun r = createReduceQueryRun(conn, mapQueries, nodes,
                     pageSize, nodeToSegmentsCnt, skipMergeTbl, qry.explain(), dataPageScanEnabled);
 
+                r.reducers().forEach(reducer -> reducer.runningQuery(runningQry));
+
                 runs.put(qryReqId, r);
 
                 try {
@@ -506,6 +550,9 @@ public class GridReduceQueryExecutor {
 
                     Iterator<List<?>> resIter;
 
+                    if (runningQry != null)
+                        runningQry.onReduceStarted();
+
                     if (skipMergeTbl) {
                         resIter = new ReduceIndexIterator(this,
                             nodes,
@@ -513,7 +560,8 @@ public class GridReduceQueryExecutor {
                             qryReqId,
                             qry.distributedJoins(),
                             mvccTracker,
-                            ctx.tracing());
+                            ctx.tracing(),
+                            runningQry);
 
                         release = false;
 
@@ -554,6 +602,9 @@ public class GridReduceQueryExecutor {
                             maxMem
                         );
 
+                        if (runningQry != null)
+                            runningQry.onReduceFinished();
+
                         resIter = new H2FieldsIterator(
                             res,
                             mvccTracker,
@@ -575,6 +626,9 @@ public class GridReduceQueryExecutor {
                 catch (IgniteCheckedException | RuntimeException e) {
                     release = true;
 
+                    if (runningQry != null)
+                        runningQry.onReduceFinished();
+
                     if (e instanceof CacheException) {
                         if (QueryUtils.wasCancelled(e))
                             throw new CacheException("Failed to run reduce query locally.",
@@ -801,6 +855,9 @@ public class GridReduceQueryExecutor {
                 fakeTable(conn, tblIdx++).innerTable(tbl);
             }
 
+            if (rdcPool != null)
+                reducer.parallelReduce(rdcPool, rdcParallelism);
+
             // If the query has only replicated tables, we have to run it on a single node only.
             if (!mapQry.isPartitioned()) {
                 ClusterNode node = F.rand(nodes);
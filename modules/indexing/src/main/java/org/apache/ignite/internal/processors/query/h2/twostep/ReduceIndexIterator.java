@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import org.apache.ignite.cluster.ClusterNode;
 import org.apache.ignite.internal.processors.cache.mvcc.MvccQueryTracker;
+import org.apache.ignite.internal.processors.query.GridRunningQueryInfo;
 import org.gridgain.internal.h2.index.Cursor;
 import org.gridgain.internal.h2.result.Row;
 import org.apache.ignite.internal.processors.tracing.MTC;
@@ -69,6 +70,9 @@ public class ReduceIndexIterator implements Iterator<List<?>>, AutoCloseable {
     /** Tracing processor. */
     private final Tracing tracing;
 
+    /** Running query to report the end of the reduce phase to. */
+    private final GridRunningQueryInfo runningQry;
+
     /**
      * Constructor.
      *
@@ -78,6 +82,7 @@ public class ReduceIndexIterator implements Iterator<List<?>>, AutoCloseable {
      * @param qryReqId Query request ID.
      * @param distributedJoins Distributed joins.
      * @param tracing Tracing processor.
+     * @param runningQry Running query.
      */
     public ReduceIndexIterator(GridReduceQueryExecutor rdcExec,
         Collection<ClusterNode> nodes,
@@ -85,7 +90,8 @@ public class ReduceIndexIterator implements Iterator<List<?>>, AutoCloseable {
         long qryReqId,
         boolean distributedJoins,
         @Nullable MvccQueryTracker mvccTracker,
-        Tracing tracing
+        Tracing tracing,
+        @Nullable GridRunningQueryInfo runningQry
     ) {
         this.rdcExec = rdcExec;
         this.nodes = nodes;
@@ -94,6 +100,7 @@ public class ReduceIndexIterator implements Iterator<List<?>>, AutoCloseable {
         this.distributedJoins = distributedJoins;
         this.mvccTracker = mvccTracker;
         this.tracing = tracing;
+        this.runningQry = runningQry;
 
         rdcIter = run.reducers().iterator();
 
@@ -178,6 +185,9 @@ public class ReduceIndexIterator implements Iterator<List<?>>, AutoCloseable {
             }
             finally {
                 released = true;
+
+                if (runningQry != null)
+                    runningQry.onReduceFinished();
             }
         }
     }
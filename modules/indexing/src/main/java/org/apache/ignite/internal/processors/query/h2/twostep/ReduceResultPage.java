@@ -16,9 +16,11 @@
 
 package org.apache.ignite.internal.processors.query.h2.twostep;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.RandomAccess;
 import java.util.UUID;
@@ -168,6 +170,20 @@ public class ReduceResultPage {
         return r;
     }
 
+    /**
+     * Unmarshal all the rows of the page in the current thread, so the reducer gets ready rows.
+     */
+    public void unmarshalRows() {
+        if (res == null || res.plainRows() != null || rowsInPage == 0)
+            return;
+
+        List<Value[]> unmarshalled = new ArrayList<>(rowsInPage);
+
+        rows.forEachRemaining(unmarshalled::add);
+
+        rows = unmarshalled.iterator();
+    }
+
     /**
      * @return Result source node ID.
      */
@@ -19,9 +19,11 @@ package org.apache.ignite.internal.processors.query.h2.twostep;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import javax.cache.CacheException;
 import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.internal.processors.query.GridRunningQueryInfo;
 import org.apache.ignite.internal.processors.query.h2.H2MemoryTracker;
 import org.gridgain.internal.h2.index.Cursor;
 import org.gridgain.internal.h2.index.Index;
@@ -113,4 +115,19 @@ interface Reducer {
      * @return Memory tracker.
      */
     H2MemoryTracker memoryTracker();
+
+    /**
+     * Allow the reducer to merge its sources in parallel. Must be called before {@link #setSources(Map)}.
+     *
+     * @param exec Executor to run merge workers.
+     * @param parallelism Max number of merge workers.
+     */
+    void parallelReduce(Executor exec, int parallelism);
+
+    /**
+     * Set running query to report reduce statistics to.
+     *
+     * @param qry Running query or {@code null} if the query is not registered.
+     */
+    void runningQuery(@Nullable GridRunningQueryInfo qry);
 }
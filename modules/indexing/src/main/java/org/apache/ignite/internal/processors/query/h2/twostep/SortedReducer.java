@@ -16,6 +16,7 @@
 
 package org.apache.ignite.internal.processors.query.h2.twostep;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -24,10 +25,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import javax.cache.CacheException;
 import org.apache.ignite.cluster.ClusterNode;
 import org.apache.ignite.internal.GridKernalContext;
 import org.apache.ignite.internal.processors.query.h2.H2Utils;
@@ -47,8 +52,27 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * Sorted merge index.
+ * <p>
+ * In parallel reduce mode the sources are merged by workers of the reduce pool. Rows buffered by a worker are charged
+ * to the memory tracker of the query until the reducer takes them. The final aggregation of GROUP BY queries is not
+ * split between workers: it runs in the H2 session of the reduce query on the reducer thread.
  */
 public class SortedReducer extends AbstractReducer {
+    /** Min number of streams merged by a single worker in parallel reduce. */
+    private static final int MIN_STREAMS_PER_WORKER = 4;
+
+    /** Number of rows a merge worker passes to the reducer at once. */
+    private static final int WORKER_BATCH_SIZE = 256;
+
+    /**
+     * Number of batches a merge worker may buffer. When the reducer falls behind, the worker stops
+     * fetching pages, so map nodes don't send more results until the reducer catches up.
+     */
+    private static final int WORKER_BUF_BATCHES = 4;
+
+    /** Marker of the end of merge worker results. */
+    private static final Object WORKER_END = new Object();
+
     /** */
     @SuppressWarnings("ComparatorMethodParameterNotUsed")
     protected final Comparator<SearchRow> firstRowCmp = (rowInList, searchRow) -> {
@@ -66,7 +90,7 @@ public class SortedReducer extends AbstractReducer {
     };
 
     /** */
-    private final Comparator<RowStream> streamCmp = (o1, o2) -> {
+    private final Comparator<Stream> streamCmp = (o1, o2) -> {
         if (o1 == o2) // both nulls
             return 0;
 
@@ -92,7 +116,7 @@ public class SortedReducer extends AbstractReducer {
     private Map<UUID, RowStream[]> streamsMap;
 
     /** */
-    private ReduceResultPage failPage;
+    private volatile ReduceResultPage failPage;
 
     /** */
     private MergeStreamIterator it;
@@ -144,7 +168,29 @@ public class SortedReducer extends AbstractReducer {
                 throw new IllegalStateException();
         }
 
-        it = new MergeStreamIterator(streams);
+        int workers = rdcExec == null ? 0 : Math.min(rdcParallelism, streams.length / MIN_STREAMS_PER_WORKER);
+
+        it = new MergeStreamIterator(workers > 1 ? mergeWorkers(streams, workers) : streams);
+    }
+
+    /**
+     * Split streams between merge workers, so the reducer merges already merged results of the workers.
+     *
+     * @param streams Streams.
+     * @param workers Number of workers.
+     * @return Streams of the workers.
+     */
+    private Stream[] mergeWorkers(RowStream[] streams, int workers) {
+        Stream[] res = new Stream[workers];
+
+        for (int w = 0; w < workers; w++) {
+            int from = (int)((long)streams.length * w / workers);
+            int to = (int)((long)streams.length * (w + 1) / workers);
+
+            res[w] = new WorkerStream(new MergeStreamIterator(Arrays.copyOfRange(streams, from, to, Stream[].class)));
+        }
+
+        return res;
     }
 
     /** {@inheritDoc} */
@@ -231,12 +277,12 @@ public class SortedReducer extends AbstractReducer {
         private boolean hasNext;
 
         /** */
-        private final RowStream[] streams;
+        private final Stream[] streams;
 
         /**
          * @param streams Streams.
          */
-        MergeStreamIterator(RowStream[] streams) {
+        MergeStreamIterator(Stream[] streams) {
             assert !F.isEmpty(streams);
 
             this.streams = streams;
@@ -257,8 +303,11 @@ public class SortedReducer extends AbstractReducer {
 
             first = false;
 
+            for (Stream s : streams)
+                s.start();
+
             for (int i = 0; i < streams.length; i++) {
-                RowStream s = streams[i];
+                Stream s = streams[i];
 
                 if (!s.next()) {
                     streams[i] = null;
@@ -312,10 +361,32 @@ public class SortedReducer extends AbstractReducer {
         }
     }
 
+    /**
+     * Sorted stream of rows.
+     */
+    private interface Stream {
+        /**
+         * Start fetching rows in background if supported.
+         */
+        default void start() {
+            // No-op.
+        }
+
+        /**
+         * @return {@code true} If we successfully switched to the next row.
+         */
+        boolean next();
+
+        /**
+         * @return Current row.
+         */
+        Row get();
+    }
+
     /**
      * Row stream.
      */
-    private final class RowStream implements Pollable<ReduceResultPage> {
+    private final class RowStream implements Stream, Pollable<ReduceResultPage> {
         /** */
         private Iterator<Value[]> iter = emptyIterator();
 
@@ -379,10 +450,8 @@ public class SortedReducer extends AbstractReducer {
             }
         }
 
-        /**
-         * @return {@code true} If we successfully switched to the next row.
-         */
-        private boolean next() {
+        /** {@inheritDoc} */
+        @Override public boolean next() {
             cur = null;
 
             iter = pollNextIterator(this, iter);
@@ -395,16 +464,223 @@ public class SortedReducer extends AbstractReducer {
             return true;
         }
 
+        /** {@inheritDoc} */
+        @Override public Row get() {
+            assert cur != null;
+
+            return cur;
+        }
+    }
+
+    /**
+     * Stream of rows merged by a worker from a part of the sources.
+     */
+    private final class WorkerStream implements Stream {
+        /** Merged sources. */
+        private final MergeStreamIterator src;
+
+        /** Batches of rows, {@link #WORKER_END} or error of the worker. */
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(WORKER_BUF_BATCHES);
+
+        /** */
+        private Iterator<Row> batch = emptyIterator();
+
+        /** */
+        private Row cur;
+
+        /** */
+        private boolean done;
+
+        /** Worker has stopped. */
+        private volatile boolean stopped;
+
+        /** The pool has no free threads, the sources are merged by the reducer thread. */
+        private boolean inline;
+
         /**
-         * @return Current row.
+         * @param src Merged sources.
+         */
+        WorkerStream(MergeStreamIterator src) {
+            this.src = src;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void start() {
+            try {
+                rdcExec.execute(this::merge);
+            }
+            catch (RejectedExecutionException ignored) {
+                inline = true;
+            }
+        }
+
+        /**
+         * Merge the sources and pass the rows to the reducer.
+         */
+        private void merge() {
+            try {
+                RowBatch rows = new RowBatch();
+
+                while (src.hasNext()) {
+                    Row row = src.next();
+
+                    if (memTracker != null) {
+                        memTracker.reserve(row.getMemory());
+
+                        rows.mem += row.getMemory();
+                    }
+
+                    rows.add(row);
+
+                    if (rows.size() == WORKER_BATCH_SIZE) {
+                        if (!offer(rows))
+                            return;
+
+                        rows = new RowBatch();
+                    }
+                }
+
+                if (!rows.isEmpty() && !offer(rows))
+                    return;
+
+                offer(WORKER_END);
+            }
+            catch (Throwable e) {
+                try {
+                    offer(e);
+                }
+                catch (InterruptedException ignored) {
+                    // No-op.
+                }
+
+                if (e instanceof Error)
+                    throw (Error)e;
+            }
+            finally {
+                stopped = true;
+            }
+        }
+
+        /**
+         * Wait until the reducer takes previous results.
+         *
+         * @param res Result.
+         * @return {@code false} If the query has failed or was closed and the reducer won't take results anymore.
+         * @throws InterruptedException If interrupted.
          */
-        private Row get() {
+        private boolean offer(Object res) throws InterruptedException {
+            while (!queue.offer(res, 500, TimeUnit.MILLISECONDS)) {
+                if (failPage != null)
+                    return false;
+            }
+
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override public boolean next() {
+            cur = null;
+
+            if (inline) {
+                if (!src.hasNext())
+                    return false;
+
+                cur = src.next();
+
+                return true;
+            }
+
+            if (!batch.hasNext()) {
+                if (done)
+                    return false;
+
+                Object res = take();
+
+                if (res == WORKER_END) {
+                    done = true;
+
+                    return false;
+                }
+
+                if (res instanceof RuntimeException)
+                    throw (RuntimeException)res;
+
+                if (res instanceof Error)
+                    throw (Error)res;
+
+                if (res instanceof Throwable)
+                    throw new CacheException("Failed to merge results of map nodes.", (Throwable)res);
+
+                RowBatch rows = (RowBatch)res;
+
+                // The rows are charged again when the reducer fetches them.
+                if (memTracker != null && !memTracker.closed())
+                    memTracker.release(rows.mem);
+
+                batch = rows.iterator();
+            }
+
+            cur = batch.next();
+
+            return true;
+        }
+
+        /**
+         * @return Next result of the worker.
+         */
+        private Object take() {
+            try {
+                for (;;) {
+                    Object res = queue.poll(500, TimeUnit.MILLISECONDS);
+
+                    if (res != null)
+                        return res;
+
+                    if (stopped) {
+                        // The last result may be added right before the worker has stopped.
+                        res = queue.poll();
+
+                        if (res != null)
+                            return res;
+
+                        ReduceResultPage fail = failPage;
+
+                        if (fail != null)
+                            fail.fetchNextPage(); // Throws the failure of the query.
+
+                        throw new CacheException("Reduce merge worker has stopped unexpectedly.");
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                throw new CacheException("Query execution was interrupted.", e);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override public Row get() {
             assert cur != null;
 
             return cur;
         }
     }
 
+    /**
+     * Rows merged by a worker and passed to the reducer at once.
+     */
+    private static final class RowBatch extends ArrayList<Row> {
+        /** */
+        private static final long serialVersionUID = 0L;
+
+        /** Memory reserved for the rows by the worker. */
+        private long mem;
+
+        /** */
+        RowBatch() {
+            super(WORKER_BATCH_SIZE);
+        }
+    }
+
     /**
      * Fetching cursor.
      */
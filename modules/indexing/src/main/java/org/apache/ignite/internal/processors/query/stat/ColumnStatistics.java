@@ -52,6 +52,9 @@ public class ColumnStatistics {
     /** Created at time, milliseconds. */
     private final long createdAt;
 
+    /** Histogram of non null values or {@code null} if there is no histogram for column. */
+    private final Histogram hist;
+
     /**
      * Constructor.
      *
@@ -75,6 +78,35 @@ public class ColumnStatistics {
         byte[] raw,
         long ver,
         long createdAt
+    ) {
+        this(min, max, nulls, distinct, total, size, raw, ver, createdAt, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param min Min value in column or {@code null}.
+     * @param max Max value in column or {@code null}.
+     * @param nulls Number of null values in column.
+     * @param distinct Number of distinct values in column.
+     * @param total Total number of values in column.
+     * @param size Average size in bytes, for variable size only.
+     * @param raw Raw data to aggregate statistics.
+     * @param ver Statistics version.
+     * @param createdAt Created at time, milliseconds.
+     * @param hist Histogram of non null values or {@code null}.
+     */
+    public ColumnStatistics(
+        Value min,
+        Value max,
+        long nulls,
+        long distinct,
+        long total,
+        int size,
+        byte[] raw,
+        long ver,
+        long createdAt,
+        Histogram hist
     ) {
         this.min = min;
         this.max = max;
@@ -85,6 +117,7 @@ public class ColumnStatistics {
         this.raw = raw;
         this.ver = ver;
         this.createdAt = createdAt;
+        this.hist = hist;
     }
 
     /**
@@ -150,6 +183,13 @@ public class ColumnStatistics {
         return createdAt;
     }
 
+    /**
+     * @return Histogram of non null values or {@code null} if there is no histogram for column.
+     */
+    public Histogram histogram() {
+        return hist;
+    }
+
     /** {@inheritDoc} */
     @Override public boolean equals(Object o) {
         if (this == o) return true;
@@ -163,12 +203,13 @@ public class ColumnStatistics {
                 createdAt == that.createdAt &&
                 Objects.equals(min, that.min) &&
                 Objects.equals(max, that.max) &&
+                Objects.equals(hist, that.hist) &&
                 Arrays.equals(raw, that.raw);
     }
 
     /** {@inheritDoc} */
     @Override public int hashCode() {
-        int result = Objects.hash(min, max, nulls, distinct, total, size, ver, createdAt);
+        int result = Objects.hash(min, max, nulls, distinct, total, size, ver, createdAt, hist);
         result = 31 * result + Arrays.hashCode(raw);
         return result;
     }
@@ -17,8 +17,10 @@ package org.apache.ignite.internal.processors.query.stat;
 
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.ignite.internal.processors.query.stat.config.StatisticsColumnOverrides;
 import org.apache.ignite.internal.processors.query.stat.hll.HLL;
@@ -34,6 +36,9 @@ import static org.apache.ignite.internal.processors.query.h2.H2Utils.isNullValue
  * Collector to compute statistic by single column.
  */
 public class ColumnStatisticsCollector {
+    /** Max number of values in sample to build histogram. */
+    private static final int SAMPLE_SIZE = 1024;
+
     /** Column. */
     private final Column col;
 
@@ -67,6 +72,15 @@ public class ColumnStatisticsCollector {
     /** Version. */
     private final long ver;
 
+    /** Reservoir sample of non null values or {@code null} if column type doesn't support histogram. */
+    private final double[] sample;
+
+    /** Number of values in sample. */
+    private int sampleSize;
+
+    /** Number of values offered to sample. */
+    private long sampleSeen;
+
     /**
      * Constructor.
      *
@@ -93,6 +107,8 @@ public class ColumnStatisticsCollector {
         complexType = colTypeInfo == TypeInfo.TYPE_ARRAY || colTypeInfo == TypeInfo.TYPE_ENUM_UNDEFINED
                 || colTypeInfo == TypeInfo.TYPE_JAVA_OBJECT || colTypeInfo == TypeInfo.TYPE_RESULT_SET
                 || colTypeInfo == TypeInfo.TYPE_UNKNOWN;
+
+        sample = Histogram.isSupported(colTypeInfo.getValueType()) ? new double[SAMPLE_SIZE] : null;
     }
 
     /**
@@ -108,9 +124,15 @@ public class ColumnStatisticsCollector {
                 return strVal.getBytes(StandardCharsets.UTF_8);
             case Value.BOOLEAN:
                 return val.getBoolean() ? new byte[]{1} : new byte[]{0};
-            case Value.DECIMAL:
             case Value.DOUBLE:
             case Value.FLOAT:
+                // NaN and infinity have no decimal representation.
+                if (Double.isNaN(val.getDouble()) || Double.isInfinite(val.getDouble()))
+                    return BigInteger.valueOf(Double.doubleToLongBits(val.getDouble())).toByteArray();
+
+                return U.join(val.getBigDecimal().unscaledValue().toByteArray(),
+                        BigInteger.valueOf(val.getBigDecimal().scale()).toByteArray());
+            case Value.DECIMAL:
                 return U.join(val.getBigDecimal().unscaledValue().toByteArray(),
                         BigInteger.valueOf(val.getBigDecimal().scale()).toByteArray());
             case Value.TIME:
@@ -150,6 +172,32 @@ public class ColumnStatisticsCollector {
             if (null == max || comp.compare(val, max) > 0)
                 max = val;
         }
+
+        if (sample != null)
+            addToSample(val);
+    }
+
+    /**
+     * Add value to reservoir sample. NaN and infinite values have no place among histogram bounds and are skipped.
+     *
+     * @param val Not null value.
+     */
+    private void addToSample(Value val) {
+        Double d = Histogram.toDouble(val);
+
+        if (d == null || d.isNaN() || d.isInfinite())
+            return;
+
+        sampleSeen++;
+
+        if (sampleSize < sample.length)
+            sample[sampleSize++] = d;
+        else {
+            long idx = ThreadLocalRandom.current().nextLong(sampleSeen);
+
+            if (idx < sample.length)
+                sample[(int)idx] = d;
+        }
     }
 
     /**
@@ -161,8 +209,11 @@ public class ColumnStatisticsCollector {
 
         int averageSize = averageSize(size, total, nullsCnt);
 
+        Histogram hist = (sample == null) ? null : Histogram.build(sample, sampleSize, total - nullsCnt,
+            Histogram.DFLT_BUCKETS);
+
         return new ColumnStatistics(min, max, nullsCnt, hll.cardinality(), total, averageSize, hll.toBytes(), ver,
-            U.currentTimeMillis());
+            U.currentTimeMillis(), hist);
     }
 
     /**
@@ -215,6 +266,9 @@ public class ColumnStatisticsCollector {
         // Total size in bytes
         long totalSize = 0;
 
+        // Partition histograms to merge, null if some partition with values has no histogram.
+        List<Histogram> hists = new ArrayList<>(partStats.size());
+
         ColumnStatistics firstStat = F.first(partStats);
         long ver = firstStat.version();
         long createdAt = firstStat.createdAt();
@@ -239,6 +293,13 @@ public class ColumnStatisticsCollector {
 
             if (createdAt < partStat.createdAt())
                 createdAt = partStat.createdAt();
+
+            if (hists != null) {
+                if (partStat.histogram() != null)
+                    hists.add(partStat.histogram());
+                else if (partStat.total() > partStat.nulls())
+                    hists = null;
+            }
         }
 
         Integer overrideSize = (overrides == null) ? null : overrides.size();
@@ -252,7 +313,10 @@ public class ColumnStatisticsCollector {
         Long overrideTotal = (overrides == null) ? null : overrides.total();
         total = (overrideTotal == null) ? total : overrideTotal;
 
-        return new ColumnStatistics(min, max, nulls, distinct, total, averageSize, hll.toBytes(), ver, createdAt);
+        Histogram hist = F.isEmpty(hists) ? null : Histogram.merge(hists, Histogram.DFLT_BUCKETS);
+
+        return new ColumnStatistics(min, max, nulls, distinct, total, averageSize, hll.toBytes(), ver, createdAt,
+            hist);
     }
 
     /**
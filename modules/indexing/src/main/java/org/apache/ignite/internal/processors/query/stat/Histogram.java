@@ -0,0 +1,416 @@
+/*
+ * Copyright 2020 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.internal.processors.query.stat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ignite.internal.util.typedef.internal.S;
+import org.gridgain.internal.h2.value.Value;
+
+/**
+ * Equi-depth histogram of non null column values.
+ * Each bucket covers range [bounds[i], bounds[i + 1]], values are considered to be uniformly distributed inside it.
+ * Bucket with equal bounds holds a single frequent value.
+ */
+public class Histogram {
+    /** Default number of buckets. */
+    public static final int DFLT_BUCKETS = 64;
+
+    /** Bucket bounds, {@code counts.length + 1} ascending values. */
+    private final double[] bounds;
+
+    /** Number of values in each bucket. */
+    private final long[] counts;
+
+    /** Total number of values. */
+    private final long total;
+
+    /**
+     * Constructor.
+     *
+     * @param bounds Bucket bounds.
+     * @param counts Number of values in each bucket.
+     */
+    public Histogram(double[] bounds, long[] counts) {
+        assert bounds.length == counts.length + 1;
+
+        this.bounds = bounds;
+        this.counts = counts;
+
+        long t = 0;
+
+        for (long cnt : counts)
+            t += cnt;
+
+        total = t;
+    }
+
+    /**
+     * @return Total number of values.
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * @return Number of buckets.
+     */
+    public int buckets() {
+        return counts.length;
+    }
+
+    /**
+     * Estimate fraction of values in the specified range, bounds are inclusive.
+     *
+     * @param lo Lower bound or {@code null} if there is no lower bound.
+     * @param hi Upper bound or {@code null} if there is no upper bound.
+     * @return Fraction of values (0-1) or {@code -1} if the range is outside of sampled values: histogram is built
+     * by a sample and may be stale, so it can't tell that there are no such values.
+     */
+    public double fraction(Double lo, Double hi) {
+        if (total == 0)
+            return -1;
+
+        double from = lo == null ? Double.NEGATIVE_INFINITY : lo;
+        double to = hi == null ? Double.POSITIVE_INFINITY : hi;
+
+        if (from > to)
+            return 0;
+
+        if (to < bounds[0] || from > bounds[bounds.length - 1])
+            return -1;
+
+        double res = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            double a = bounds[i];
+            double b = bounds[i + 1];
+
+            if (b < from || a > to)
+                continue;
+
+            if (a == b || (from <= a && b <= to))
+                res += counts[i];
+            else
+                res += counts[i] * (Math.min(b, to) - Math.max(a, from)) / (b - a);
+        }
+
+        return Math.min(1, res / total);
+    }
+
+    /**
+     * Estimate fraction of values equal to the specified one. Values held by single value buckets are estimated by
+     * their buckets, other values share the rest of rows evenly.
+     *
+     * @param val Value.
+     * @param distinct Number of distinct values.
+     * @return Fraction of values (0-1) or {@code -1} if histogram doesn't know anything more than number of
+     * distinct values, e.g. the value is outside of sampled values.
+     */
+    public double equalFraction(double val, long distinct) {
+        if (total == 0 || val < bounds[0] || val > bounds[bounds.length - 1])
+            return -1;
+
+        long freq = 0;
+        long freqTotal = 0;
+        int freqVals = 0;
+        double prev = Double.NaN;
+
+        for (int i = 0; i < counts.length; i++) {
+            if (bounds[i] != bounds[i + 1])
+                continue;
+
+            if (bounds[i] == val)
+                freq += counts[i];
+
+            freqTotal += counts[i];
+
+            if (bounds[i] != prev)
+                freqVals++;
+
+            prev = bounds[i];
+        }
+
+        if (freq > 0)
+            return (double)freq / total;
+
+        if (freqVals == 0)
+            return -1;
+
+        return (double)(total - freqTotal) / total / Math.max(1, distinct - freqVals);
+    }
+
+    /**
+     * Build histogram by sample of values.
+     *
+     * @param sample Sample, will be sorted.
+     * @param sampleSize Number of values in sample.
+     * @param total Total number of values the sample was taken from.
+     * @param buckets Max number of buckets.
+     * @return Histogram or {@code null} if sample is empty.
+     */
+    public static Histogram build(double[] sample, int sampleSize, long total, int buckets) {
+        if (sampleSize == 0)
+            return null;
+
+        Arrays.sort(sample, 0, sampleSize);
+
+        int b = Math.min(buckets, sampleSize);
+
+        double[] bounds = new double[b + 1];
+        long[] counts = new long[b];
+
+        for (int i = 0; i < b; i++) {
+            bounds[i] = sample[(int)((long)i * sampleSize / b)];
+            counts[i] = scaled(i + 1, b, total) - scaled(i, b, total);
+        }
+
+        bounds[b] = sample[sampleSize - 1];
+
+        return new Histogram(bounds, counts);
+    }
+
+    /**
+     * Merge histograms into a single one with the same bucket depth.
+     *
+     * @param hists Histograms to merge.
+     * @param buckets Max number of buckets.
+     * @return Merged histogram or {@code null} if there are no values.
+     */
+    public static Histogram merge(List<Histogram> hists, int buckets) {
+        int pointsCnt = 0;
+        long total = 0;
+
+        for (Histogram h : hists) {
+            pointsCnt += h.bounds.length;
+            total += h.total;
+        }
+
+        if (total == 0)
+            return null;
+
+        double[] points = new double[pointsCnt];
+        int pos = 0;
+
+        for (Histogram h : hists) {
+            System.arraycopy(h.bounds, 0, points, pos, h.bounds.length);
+            pos += h.bounds.length;
+        }
+
+        Arrays.sort(points);
+
+        int uniq = 0;
+
+        for (int i = 0; i < points.length; i++) {
+            if (i == 0 || points[i] != points[uniq - 1])
+                points[uniq++] = points[i];
+        }
+
+        points = Arrays.copyOf(points, uniq);
+
+        // Merged distribution function is linear between points and may jump at points with single value buckets.
+        double[] slopeDelta = new double[uniq];
+        double[] jump = new double[uniq];
+
+        for (Histogram h : hists) {
+            for (int i = 0; i < h.counts.length; i++) {
+                int a = Arrays.binarySearch(points, h.bounds[i]);
+
+                if (h.bounds[i] == h.bounds[i + 1])
+                    jump[a] += h.counts[i];
+                else {
+                    int b = Arrays.binarySearch(points, h.bounds[i + 1]);
+                    double density = h.counts[i] / (h.bounds[i + 1] - h.bounds[i]);
+
+                    slopeDelta[a] += density;
+                    slopeDelta[b] -= density;
+                }
+            }
+        }
+
+        // Values of distribution function before and after each point.
+        double[] left = new double[uniq];
+        double[] right = new double[uniq];
+        double slope = 0;
+
+        for (int i = 0; i < uniq; i++) {
+            left[i] = i == 0 ? 0 : right[i - 1] + slope * (points[i] - points[i - 1]);
+            right[i] = left[i] + jump[i];
+            slope += slopeDelta[i];
+        }
+
+        int b = (int)Math.min(buckets, total);
+
+        double[] bounds = new double[b + 1];
+        long[] counts = new long[b];
+
+        bounds[0] = points[0];
+        bounds[b] = points[uniq - 1];
+
+        int j = 0;
+
+        for (int k = 1; k < b; k++) {
+            double q = (double)total * k / b;
+
+            while (j < uniq - 1 && right[j] < q)
+                j++;
+
+            if (j > 0 && q <= left[j] && left[j] > right[j - 1]) {
+                double part = (q - right[j - 1]) / (left[j] - right[j - 1]);
+
+                bounds[k] = points[j - 1] + part * (points[j] - points[j - 1]);
+            }
+            else
+                bounds[k] = points[j];
+        }
+
+        for (int k = 0; k < b; k++)
+            counts[k] = scaled(k + 1, b, total) - scaled(k, b, total);
+
+        return new Histogram(bounds, counts);
+    }
+
+    /**
+     * @param i Bucket index.
+     * @param buckets Number of buckets.
+     * @param total Total number of values.
+     * @return Number of values in buckets before the specified one.
+     */
+    private static long scaled(int i, int buckets, long total) {
+        return Math.round((double)total * i / buckets);
+    }
+
+    /**
+     * Check if histogram can be built for values of the specified type.
+     *
+     * @param type Value type.
+     * @return {@code true} if values of the specified type can be converted into double.
+     */
+    public static boolean isSupported(int type) {
+        switch (type) {
+            case Value.BOOLEAN:
+            case Value.BYTE:
+            case Value.SHORT:
+            case Value.INT:
+            case Value.LONG:
+            case Value.DECIMAL:
+            case Value.DOUBLE:
+            case Value.FLOAT:
+            case Value.DATE:
+            case Value.TIME:
+            case Value.TIMESTAMP:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Convert value into double to place it into histogram.
+     *
+     * @param val Value.
+     * @return Double value or {@code null} if value of such type can't be placed into histogram.
+     */
+    public static Double toDouble(Value val) {
+        switch (val.getValueType()) {
+            case Value.BOOLEAN:
+                return val.getBoolean() ? 1d : 0d;
+
+            case Value.BYTE:
+            case Value.SHORT:
+            case Value.INT:
+            case Value.LONG:
+            case Value.DECIMAL:
+            case Value.DOUBLE:
+            case Value.FLOAT:
+                return val.getDouble();
+
+            case Value.DATE:
+                return (double)val.getDate().getTime();
+
+            case Value.TIME:
+                return (double)val.getTime().getTime();
+
+            case Value.TIMESTAMP:
+                return (double)val.getTimestamp().getTime();
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return Histogram serialized into byte array.
+     */
+    public byte[] toBytes() {
+        ByteBuffer buf = ByteBuffer.allocate(4 + bounds.length * 8 + counts.length * 8);
+
+        buf.putInt(counts.length);
+
+        for (double bound : bounds)
+            buf.putDouble(bound);
+
+        for (long cnt : counts)
+            buf.putLong(cnt);
+
+        return buf.array();
+    }
+
+    /**
+     * @param bytes Histogram serialized by {@link #toBytes()}.
+     * @return Histogram or {@code null} if bytes are {@code null}.
+     */
+    public static Histogram fromBytes(byte[] bytes) {
+        if (bytes == null)
+            return null;
+
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+
+        int b = buf.getInt();
+
+        double[] bounds = new double[b + 1];
+        long[] counts = new long[b];
+
+        for (int i = 0; i <= b; i++)
+            bounds[i] = buf.getDouble();
+
+        for (int i = 0; i < b; i++)
+            counts[i] = buf.getLong();
+
+        return new Histogram(bounds, counts);
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Histogram that = (Histogram) o;
+        return Arrays.equals(bounds, that.bounds) && Arrays.equals(counts, that.counts);
+    }
+
+    /** {@inheritDoc} */
+    @Override public int hashCode() {
+        return 31 * Arrays.hashCode(bounds) + Arrays.hashCode(counts);
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return S.toString(Histogram.class, this);
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2020 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.internal.processors.query.stat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.ignite.internal.util.typedef.internal.S;
+
+/**
+ * Mergeable quantile sketch (KLL). Values are kept in a hierarchy of compactors, value at level {@code h} stands
+ * for {@code 2^h} original values. When a level is full it's sorted and every other value is promoted
+ * to the next level, so the sketch size is {@code O(k)} regardless of the number of values and sketches built
+ * over different parts of data can be merged into a sketch of all the data.
+ */
+public class QuantileSketch {
+    /** Default capacity of the top level, rank error is about {@code 1.7 / k}. */
+    public static final int DFLT_K = 200;
+
+    /** Minimal capacity of a level. */
+    private static final int MIN_CAPACITY = 8;
+
+    /** Capacity decay of lower levels. */
+    private static final double DECAY = 2d / 3;
+
+    /** Capacity of the top level. */
+    private final int k;
+
+    /** Values of each level. */
+    private double[][] levels;
+
+    /** Number of values at each level. */
+    private int[] sizes;
+
+    /** Number of values added to the sketch. */
+    private long cnt;
+
+    /** Min value. */
+    private double min = Double.NaN;
+
+    /** Max value. */
+    private double max = Double.NaN;
+
+    /**
+     * Constructor.
+     *
+     * @param k Capacity of the top level.
+     */
+    public QuantileSketch(int k) {
+        assert k >= MIN_CAPACITY : k;
+
+        this.k = k;
+
+        levels = new double[][] {new double[k]};
+        sizes = new int[1];
+    }
+
+    /**
+     * @return Number of values added to the sketch.
+     */
+    public long count() {
+        return cnt;
+    }
+
+    /**
+     * Add value to sketch.
+     *
+     * @param val Value.
+     */
+    public void add(double val) {
+        if (Double.isNaN(val))
+            return;
+
+        if (cnt == 0 || val < min)
+            min = val;
+
+        if (cnt == 0 || val > max)
+            max = val;
+
+        cnt++;
+
+        append(0, val);
+
+        compress();
+    }
+
+    /**
+     * Merge other sketch into this one.
+     *
+     * @param other Sketch to merge.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.cnt == 0)
+            return;
+
+        if (cnt == 0 || other.min < min)
+            min = other.min;
+
+        if (cnt == 0 || other.max > max)
+            max = other.max;
+
+        cnt += other.cnt;
+
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++)
+                append(h, other.levels[h][i]);
+        }
+
+        compress();
+    }
+
+    /**
+     * Estimate quantile.
+     *
+     * @param q Quantile (0-1).
+     * @return Estimated value or {@code NaN} if the sketch is empty.
+     */
+    public double quantile(double q) {
+        assert q >= 0 && q <= 1 : q;
+
+        if (cnt == 0)
+            return Double.NaN;
+
+        if (q == 0)
+            return min;
+
+        if (q == 1)
+            return max;
+
+        int total = 0;
+
+        for (int size : sizes)
+            total += size;
+
+        double[] vals = new double[total];
+        long[] weights = new long[total];
+        long weight = 0;
+        int pos = 0;
+
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                vals[pos] = levels[h][i];
+                weights[pos++] = 1L << h;
+            }
+
+            weight += (long)sizes[h] << h;
+        }
+
+        sortTogether(vals, weights);
+
+        double rank = q * weight;
+        long cum = 0;
+
+        for (int i = 0; i < total; i++) {
+            cum += weights[i];
+
+            if (cum >= rank)
+                return Math.max(min, Math.min(max, vals[i]));
+        }
+
+        return max;
+    }
+
+    /**
+     * Append value to the level, the level is created if needed.
+     *
+     * @param h Level.
+     * @param val Value.
+     */
+    private void append(int h, double val) {
+        if (h >= levels.length) {
+            levels = Arrays.copyOf(levels, h + 1);
+            sizes = Arrays.copyOf(sizes, h + 1);
+
+            for (int i = 0; i <= h; i++) {
+                if (levels[i] == null)
+                    levels[i] = new double[capacity(i)];
+            }
+        }
+
+        if (sizes[h] == levels[h].length)
+            levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+
+        levels[h][sizes[h]++] = val;
+    }
+
+    /**
+     * Compact full levels from the bottom until the sketch fits into its capacity.
+     */
+    private void compress() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] < capacity(h))
+                continue;
+
+            double[] lvl = levels[h];
+            int size = sizes[h];
+
+            Arrays.sort(lvl, 0, size);
+
+            // Odd value stays on its level, otherwise weight of the level won't be preserved.
+            int keep = size & 1;
+            int off = keep + ThreadLocalRandom.current().nextInt(2);
+
+            for (int i = off; i < size; i += 2)
+                append(h + 1, lvl[i]);
+
+            sizes[h] = keep;
+        }
+    }
+
+    /**
+     * @param h Level.
+     * @return Capacity of the level, the top level has the largest one.
+     */
+    private int capacity(int h) {
+        int depth = levels.length - 1 - h;
+
+        return Math.max(MIN_CAPACITY, (int)Math.ceil(k * Math.pow(DECAY, Math.max(0, depth))));
+    }
+
+    /**
+     * Sort values along with their weights.
+     *
+     * @param vals Values.
+     * @param weights Weights.
+     */
+    private static void sortTogether(double[] vals, long[] weights) {
+        Integer[] idx = new Integer[vals.length];
+
+        for (int i = 0; i < idx.length; i++)
+            idx[i] = i;
+
+        Arrays.sort(idx, (a, b) -> Double.compare(vals[a], vals[b]));
+
+        double[] sortedVals = new double[vals.length];
+        long[] sortedWeights = new long[weights.length];
+
+        for (int i = 0; i < idx.length; i++) {
+            sortedVals[i] = vals[idx[i]];
+            sortedWeights[i] = weights[idx[i]];
+        }
+
+        System.arraycopy(sortedVals, 0, vals, 0, vals.length);
+        System.arraycopy(sortedWeights, 0, weights, 0, weights.length);
+    }
+
+    /**
+     * @return Sketch serialized into byte array.
+     */
+    public byte[] toBytes() {
+        int total = 0;
+
+        for (int size : sizes)
+            total += size;
+
+        ByteBuffer buf = ByteBuffer.allocate(4 + 8 + 8 + 8 + 4 + levels.length * 4 + total * 8);
+
+        buf.putInt(k);
+        buf.putLong(cnt);
+        buf.putDouble(min);
+        buf.putDouble(max);
+        buf.putInt(levels.length);
+
+        for (int h = 0; h < levels.length; h++) {
+            buf.putInt(sizes[h]);
+
+            for (int i = 0; i < sizes[h]; i++)
+                buf.putDouble(levels[h][i]);
+        }
+
+        return buf.array();
+    }
+
+    /**
+     * @param bytes Sketch serialized by {@link #toBytes()}.
+     * @return Sketch or {@code null} if bytes are {@code null}.
+     */
+    public static QuantileSketch fromBytes(byte[] bytes) {
+        if (bytes == null)
+            return null;
+
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+
+        QuantileSketch sketch = new QuantileSketch(buf.getInt());
+
+        sketch.cnt = buf.getLong();
+        sketch.min = buf.getDouble();
+        sketch.max = buf.getDouble();
+
+        int lvls = buf.getInt();
+
+        sketch.levels = new double[lvls][];
+        sketch.sizes = new int[lvls];
+
+        for (int h = 0; h < lvls; h++) {
+            int size = buf.getInt();
+
+            double[] lvl = new double[Math.max(size, sketch.capacity(h))];
+
+            for (int i = 0; i < size; i++)
+                lvl[i] = buf.getDouble();
+
+            sketch.levels[h] = lvl;
+            sketch.sizes[h] = size;
+        }
+
+        return sketch;
+    }
+
+    /** {@inheritDoc} */
+    @Override public String toString() {
+        return S.toString(QuantileSketch.class, this);
+    }
+}
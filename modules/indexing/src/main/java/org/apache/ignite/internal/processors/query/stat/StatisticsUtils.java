@@ -44,7 +44,8 @@ public class StatisticsUtils {
         GridH2ValueMessage msgMax = stat.max() == null ? null : GridH2ValueMessageFactory.toMessage(stat.max());
 
         return new StatisticsColumnData(msgMin, msgMax, stat.nulls(), stat.distinct(),
-            stat.total(), stat.size(), stat.raw(), stat.version(), stat.createdAt());
+            stat.total(), stat.size(), stat.raw(), stat.version(), stat.createdAt(),
+            stat.histogram() == null ? null : stat.histogram().toBytes());
     }
 
     /**
@@ -63,7 +64,8 @@ public class StatisticsUtils {
         Value max = (data.max() == null) ? null : data.max().value(ctx);
 
         return new ColumnStatistics(min, max, data.nulls(), data.distinct(),
-            data.total(), data.size(), data.rawData(), data.version(), data.createdAt());
+            data.total(), data.size(), data.rawData(), data.version(), data.createdAt(),
+            Histogram.fromBytes(data.histogram()));
     }
 
     /**
@@ -59,6 +59,9 @@ public class StatisticsColumnData implements Message {
     /** Created at time, milliseconds. */
     private long createdAt;
 
+    /** Serialized histogram. */
+    private byte[] hist;
+
     /**
      * Default constructor.
      */
@@ -77,6 +80,7 @@ public class StatisticsColumnData implements Message {
      * @param rawData Raw data to make statistics aggregate.
      * @param ver Statistics version.
      * @param createdAt Created at time, milliseconds.
+     * @param hist Serialized histogram.
      */
     public StatisticsColumnData(
         GridH2ValueMessage min,
@@ -87,7 +91,8 @@ public class StatisticsColumnData implements Message {
         int size,
         byte[] rawData,
         long ver,
-        long createdAt
+        long createdAt,
+        byte[] hist
     ) {
         this.min = min;
         this.max = max;
@@ -98,6 +103,7 @@ public class StatisticsColumnData implements Message {
         this.rawData = rawData;
         this.ver = ver;
         this.createdAt = createdAt;
+        this.hist = hist;
     }
 
     /**
@@ -163,6 +169,13 @@ public class StatisticsColumnData implements Message {
         return createdAt;
     }
 
+    /**
+     * @return Serialized histogram.
+     */
+    public byte[] histogram() {
+        return hist;
+    }
+
     /** {@inheritDoc} */
     @Override public boolean writeTo(ByteBuffer buf, MessageWriter writer) {
         writer.setBuffer(buf);
@@ -229,6 +242,12 @@ public class StatisticsColumnData implements Message {
 
                 writer.incrementState();
 
+            case 9:
+                if (!writer.writeByteArray("hist", hist))
+                    return false;
+
+                writer.incrementState();
+
         }
 
         return true;
@@ -314,6 +333,14 @@ public class StatisticsColumnData implements Message {
 
                 reader.incrementState();
 
+            case 9:
+                hist = reader.readByteArray("hist");
+
+                if (!reader.isLastRead())
+                    return false;
+
+                reader.incrementState();
+
         }
 
         return reader.afterMessageRead(StatisticsColumnData.class);
@@ -326,7 +353,7 @@ public class StatisticsColumnData implements Message {
 
     /** {@inheritDoc} */
     @Override public byte fieldsCount() {
-        return 9;
+        return 10;
     }
 
     /** {@inheritDoc} */
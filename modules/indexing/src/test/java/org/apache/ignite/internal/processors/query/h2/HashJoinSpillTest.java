@@ -0,0 +1,272 @@
+/*
+ * Copyright 2020 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.internal.processors.query.h2;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cache.query.FieldsQueryCursor;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.configuration.SqlConfiguration;
+import org.apache.ignite.internal.IgniteEx;
+import org.apache.ignite.internal.processors.metric.impl.LongAdderMetric;
+import org.apache.ignite.internal.util.typedef.internal.U;
+import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
+import org.apache.ignite.spi.discovery.tcp.ipfinder.vm.TcpDiscoveryVmIpFinder;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.apache.ignite.internal.metric.SqlMemoryStatisticsHolder.SQL_QUOTAS_REG_NAME;
+import static org.apache.ignite.internal.processors.query.h2.QueryMemoryManager.DISK_SPILL_DIR;
+import static org.gridgain.internal.h2.index.HashJoinIndex.HASH_JOIN_IDX;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a hash join whose build side exceeds the query memory quota is spilled to disk and returns the same
+ * rows as the nested loops join, and that the spill files are removed when the query is closed.
+ */
+public class HashJoinSpillTest {
+    /** Rows of the probe (outer) table. */
+    private static final int PROBE_ROWS = 2000;
+
+    /** Rows of the build (inner) table. */
+    private static final int BUILD_ROWS = 4000;
+
+    /** Distinct join keys of the build table. */
+    private static final int BUILD_KEYS = 500;
+
+    /** Query memory quota, the build side takes a few megabytes. */
+    private static final String QRY_QUOTA = "256K";
+
+    /** Hash join forced by the hint. */
+    private static final String HINT_SQL = "SELECT P.ID, B.ID, B.PAD FROM HJ_PROBE P, HJ_BUILD B USE INDEX (" +
+        HASH_JOIN_IDX + ") WHERE P.K = B.K";
+
+    /** Join without hint, the optimizer chooses the join index. */
+    private static final String PLAIN_SQL = "SELECT P.ID, B.ID, B.PAD FROM HJ_PROBE P, HJ_BUILD B WHERE P.K = B.K";
+
+    /** Node. */
+    private static IgniteEx ignite;
+
+    /**
+     * Start the node and load the data.
+     */
+    @BeforeClass
+    public static void startNode() {
+        TcpDiscoveryVmIpFinder ipFinder = new TcpDiscoveryVmIpFinder()
+            .setAddresses(Collections.singletonList("127.0.0.1:47500..47509"));
+
+        ignite = (IgniteEx)Ignition.start(new IgniteConfiguration()
+            .setIgniteInstanceName("hash-join-spill")
+            .setDiscoverySpi(new TcpDiscoverySpi().setIpFinder(ipFinder))
+            .setSqlConfiguration(new SqlConfiguration()
+                .setSqlQueryMemoryQuota(QRY_QUOTA)
+                .setSqlOffloadingEnabled(true)));
+
+        sql("CREATE TABLE HJ_PROBE (ID INT PRIMARY KEY, K INT)");
+        sql("CREATE TABLE HJ_BUILD (ID INT PRIMARY KEY, K INT, PAD VARCHAR)");
+
+        // Every tenth probe key and every seventh build key is NULL, NULL keys never match.
+        for (int id = 0; id < PROBE_ROWS; id++)
+            sql("INSERT INTO HJ_PROBE VALUES (?, ?)", id, id % 10 == 0 ? null : id % (2 * BUILD_KEYS));
+
+        String pad = new String(new char[500]).replace('\0', 'x');
+
+        for (int id = 0; id < BUILD_ROWS; id++)
+            sql("INSERT INTO HJ_BUILD VALUES (?, ?, ?)", id, id % 7 == 0 ? null : id % BUILD_KEYS, pad + id);
+    }
+
+    /**
+     * Stop the node.
+     */
+    @AfterClass
+    public static void stopNode() throws Exception {
+        try {
+            if (ignite != null)
+                ignite.close();
+        }
+        finally {
+            setHashJoinEnabled(false);
+        }
+    }
+
+    /**
+     * Spilled hash join returns the same rows as the nested loops join, NULL keys included in both tables.
+     */
+    @Test
+    public void testSameAsNestedLoops() {
+        long written = offloadingWritten();
+
+        List<List<?>> exp = sorted(sql(PLAIN_SQL));
+        List<List<?>> res = sorted(sql(HINT_SQL));
+
+        assertEquals(expectedCount(), exp.size());
+        assertEquals(exp, res);
+
+        assertTrue("Build side must be spilled to disk.", offloadingWritten() > written);
+        assertTrue("Spill files must be removed.", spillFiles().isEmpty());
+    }
+
+    /**
+     * The optimizer uses the hash join only when it is enabled or hinted, the spilled result is the same either way.
+     */
+    @Test
+    public void testOptimizerChoice() throws Exception {
+        assertFalse(plan(PLAIN_SQL).contains(HASH_JOIN_IDX));
+        assertTrue(plan(HINT_SQL).contains(HASH_JOIN_IDX));
+
+        List<List<?>> exp = sorted(sql(PLAIN_SQL));
+
+        setHashJoinEnabled(true);
+
+        try {
+            // No index on the join column, hashing the build table is cheaper than scanning it per probe row.
+            assertTrue(plan(PLAIN_SQL).contains(HASH_JOIN_IDX));
+
+            assertEquals(exp, sorted(sql(PLAIN_SQL)));
+        }
+        finally {
+            setHashJoinEnabled(false);
+        }
+
+        assertTrue("Spill files must be removed.", spillFiles().isEmpty());
+    }
+
+    /**
+     * Spill files exist while the lazy query is open and are removed when the cursor is closed before the end.
+     */
+    @Test
+    public void testSpillFilesRemovedOnClose() {
+        assertTrue(spillFiles().isEmpty());
+
+        SqlFieldsQuery qry = new SqlFieldsQuery(HINT_SQL).setSchema("PUBLIC").setEnforceJoinOrder(true).setLazy(true)
+            .setPageSize(16);
+
+        try (FieldsQueryCursor<List<?>> cur = ignite.context().query().querySqlFields(qry, false)) {
+            Iterator<List<?>> it = cur.iterator();
+
+            assertTrue(it.hasNext());
+
+            it.next();
+
+            assertFalse("Spill files must exist while the query is open.", spillFiles().isEmpty());
+        }
+
+        assertTrue("Spill files must be removed.", spillFiles().isEmpty());
+    }
+
+    /**
+     * @return Expected rows count of the join.
+     */
+    private static int expectedCount() {
+        int cnt = 0;
+
+        for (int p = 0; p < PROBE_ROWS; p++) {
+            if (p % 10 == 0)
+                continue;
+
+            int k = p % (2 * BUILD_KEYS);
+
+            for (int b = 0; b < BUILD_ROWS; b++) {
+                if (b % 7 != 0 && b % BUILD_KEYS == k)
+                    cnt++;
+            }
+        }
+
+        return cnt;
+    }
+
+    /**
+     * @param sql Query.
+     * @return Plan of the map query.
+     */
+    private static String plan(String sql) {
+        return sql("EXPLAIN " + sql).get(0).get(0).toString();
+    }
+
+    /**
+     * @param rows Rows.
+     * @return Rows ordered by probe and build ids.
+     */
+    private static List<List<?>> sorted(List<List<?>> rows) {
+        List<List<?>> res = new ArrayList<>(rows);
+
+        res.sort(Comparator.<List<?>>comparingInt(r -> (Integer)r.get(0)).thenComparingInt(r -> (Integer)r.get(1)));
+
+        return res;
+    }
+
+    /**
+     * @return Bytes written to disk by offloaded queries on the node.
+     */
+    private static long offloadingWritten() {
+        LongAdderMetric m = ignite.context().metric().registry(SQL_QUOTAS_REG_NAME).findMetric("OffloadingWritten");
+
+        return m.value();
+    }
+
+    /**
+     * @return Spill files of the node.
+     */
+    private static List<File> spillFiles() {
+        try {
+            File dir = U.resolveWorkDirectory(ignite.configuration().getWorkDirectory(), DISK_SPILL_DIR, false);
+
+            File[] files = dir.listFiles((d, name) -> name.startsWith("spill_" + ignite.localNode().id()));
+
+            return files == null ? Collections.emptyList() : Arrays.asList(files);
+        }
+        catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Enables the hash join for the optimizer, it is disabled by default and is read from the system property once.
+     *
+     * @param enable Enable flag.
+     */
+    private static void setHashJoinEnabled(boolean enable) throws Exception {
+        Field f = H2Utils.class.getDeclaredField("enableHashJoin");
+
+        f.setAccessible(true);
+
+        f.setBoolean(null, enable);
+    }
+
+    /**
+     * Runs the statement with the join order as written, so the build table is always the inner one.
+     *
+     * @param sql Statement.
+     * @param args Arguments.
+     * @return Rows.
+     */
+    private static List<List<?>> sql(String sql, Object... args) {
+        SqlFieldsQuery qry = new SqlFieldsQuery(sql).setSchema("PUBLIC").setEnforceJoinOrder(true).setArgs(args);
+
+        return ignite.context().query().querySqlFields(qry, false).getAll();
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2020 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.internal.processors.query.h2;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.gridgain.internal.h2.Driver;
+import org.gridgain.internal.h2.engine.Session;
+import org.gridgain.internal.h2.jdbc.JdbcConnection;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that batch-at-a-time execution of aggregate queries returns the same results as the row by row execution
+ * and that it is used exactly for the queries it supports.
+ */
+public class VectorizedAggregateTest {
+    /** Number of rows, several full batches and a partial one. */
+    private static final int ROWS = 5000;
+
+    /** Numeric columns, {@code N} is always NULL. */
+    private static final String[] COLS = {"B", "S", "I", "L", "R", "D", "N"};
+
+    /** Aggregates with an argument. */
+    private static final String[] AGGS = {"COUNT", "SUM", "AVG", "MIN", "MAX"};
+
+    /** Connection. */
+    private static Connection conn;
+
+    /**
+     * Create and fill the table.
+     */
+    @BeforeClass
+    public static void createTable() throws SQLException {
+        Driver.load();
+
+        // Results must not be reused, otherwise the second execution of a query returns the result of the first one.
+        conn = DriverManager.getConnection("jdbc:gg-h2:mem:vectorizedAggregateTest;OPTIMIZE_REUSE_RESULTS=FALSE");
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE T(ID INT PRIMARY KEY, B TINYINT, S SMALLINT, I INT, L BIGINT, R REAL, " +
+                "D DOUBLE, N INT)");
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO T VALUES (?, ?, ?, ?, ?, ?, ?, NULL)")) {
+            for (int id = 0; id < ROWS; id++) {
+                stmt.setInt(1, id);
+                stmt.setObject(2, id % 11 == 0 ? null : (byte)(id % 100));
+                stmt.setObject(3, id % 13 == 0 ? null : (short)(id % 1000 - 500));
+                stmt.setObject(4, id % 7 == 0 ? null : id * 7 - 1000);
+                stmt.setObject(5, id % 5 == 0 ? null : id * 100_000L);
+                stmt.setObject(6, id % 17 == 0 ? null : id / 4f);
+                stmt.setObject(7, id % 3 == 0 ? null : id * 0.25 - 100);
+
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Close the connection, the in-memory database is dropped with it.
+     */
+    @AfterClass
+    public static void dropTable() throws SQLException {
+        if (conn != null)
+            conn.close();
+    }
+
+    /**
+     * Every supported aggregate over every numeric column type, including a column of NULLs only.
+     */
+    @Test
+    public void testAggregates() throws SQLException {
+        for (String col : COLS) {
+            for (String agg : AGGS) {
+                String sql = "SELECT " + agg + "(" + col + ") FROM T WHERE ID >= 0";
+
+                // Sum of BIGINT values is DECIMAL, so AVG of them is rounded differently and is left row by row.
+                if ("AVG".equals(agg) && "L".equals(col))
+                    checkRowByRow(sql);
+                else
+                    checkSame(sql);
+            }
+        }
+
+        checkSame("SELECT COUNT(*), COUNT(I), SUM(I), AVG(I), MIN(I), MAX(I) FROM T WHERE ID >= 0");
+    }
+
+    /**
+     * Comparisons, IS [NOT] NULL, AND, OR and parameters in the condition, NULL operands of comparisons.
+     */
+    @Test
+    public void testConditions() throws SQLException {
+        checkSame("SELECT COUNT(*), SUM(L), AVG(D) FROM T WHERE I > ? AND D <= 10", 500);
+        checkSame("SELECT COUNT(*), SUM(I), MIN(R) FROM T WHERE L IS NULL OR S < 0");
+        checkSame("SELECT COUNT(*), MAX(B), AVG(S) FROM T WHERE D IS NOT NULL AND R > 100");
+        checkSame("SELECT COUNT(*), SUM(D) FROM T WHERE I = ?", 13);
+        checkSame("SELECT COUNT(*), SUM(I) FROM T WHERE D > ? OR B <> 5", 512.5);
+        checkSame("SELECT COUNT(*), SUM(I) FROM T WHERE N IS NULL AND S >= -10");
+        checkSame("SELECT COUNT(*), SUM(I) FROM T WHERE N > 0 OR N IS NOT NULL");
+        checkSame("SELECT COUNT(*), SUM(I), AVG(D) FROM T WHERE I > ?", (Object)null);
+    }
+
+    /**
+     * No rows selected: COUNT is 0, other aggregates are NULL.
+     */
+    @Test
+    public void testEmpty() throws SQLException {
+        for (String agg : AGGS)
+            checkSame("SELECT COUNT(*), " + agg + "(I), " + agg + "(D) FROM T WHERE ID < 0");
+    }
+
+    /**
+     * Arithmetic and CAST to DOUBLE in aggregate arguments, NULLs propagate through them.
+     */
+    @Test
+    public void testArguments() throws SQLException {
+        checkSame("SELECT SUM(I * 2 + L), AVG(R - D), MAX(L * 3) FROM T WHERE ID >= 0");
+        checkSame("SELECT SUM(CAST(I AS DOUBLE) * D), AVG(CAST(S AS DOUBLE)) FROM T WHERE ID >= 0");
+        checkSame("SELECT SUM(I + 1), SUM(N + I) FROM T WHERE I < ?", 1000);
+
+        // Arithmetic of TINYINT and SMALLINT values overflows at their own bounds, it is left row by row.
+        checkRowByRow("SELECT SUM(I * 2 + L), MIN(S - B) FROM T WHERE ID >= 0");
+        checkRowByRow("SELECT COUNT(B * S) FROM T WHERE I < ?", 1000);
+    }
+
+    /**
+     * Overflow fails both executions with the same error.
+     */
+    @Test
+    public void testOverflow() throws SQLException {
+        // The failed batch-at-a-time execution doesn't produce a row, so it isn't counted.
+        compare("SELECT SUM(L * L) FROM T WHERE ID >= 0");
+        compare("SELECT SUM(L * 100000000) FROM T WHERE ID >= 0");
+    }
+
+    /**
+     * DISTINCT, FILTER and OVER aggregates, grouping, DECIMAL parameters and unsupported functions are executed row
+     * by row even when batch-at-a-time execution is enabled.
+     */
+    @Test
+    public void testNotVectorized() throws SQLException {
+        checkRowByRow("SELECT COUNT(DISTINCT I) FROM T WHERE ID >= 0");
+        checkRowByRow("SELECT SUM(DISTINCT S), COUNT(*) FROM T WHERE ID >= 0");
+        checkRowByRow("SELECT SUM(I) FILTER (WHERE D > 0) FROM T WHERE ID >= 0");
+        checkRowByRow("SELECT COUNT(*), MAX(L) FILTER (WHERE B IS NULL) FROM T WHERE ID >= 0");
+        checkRowByRow("SELECT ID, SUM(I) OVER () FROM T WHERE ID < 10");
+        checkRowByRow("SELECT COUNT(*) OVER (ORDER BY ID) FROM T WHERE ID < 10");
+        checkRowByRow("SELECT B, SUM(I) FROM T WHERE ID < 100 GROUP BY B");
+        checkRowByRow("SELECT COUNT(*), SUM(I) FROM T WHERE ID >= 0 HAVING COUNT(*) > 0");
+        checkRowByRow("SELECT COUNT(*), SUM(I) FROM T WHERE I > ?", new BigDecimal("0.5"));
+        checkRowByRow("SELECT SUM(ABS(I)) FROM T WHERE ID >= 0");
+        checkRowByRow("SELECT COUNT(*) FROM T WHERE ID IN (1, 2, 3)");
+    }
+
+    /**
+     * Execute the query row by row and batch-at-a-time, compare results, check that batch-at-a-time execution was
+     * used.
+     *
+     * @param sql Query.
+     * @param args Arguments.
+     */
+    private static void checkSame(String sql, Object... args) throws SQLException {
+        assertTrue("Not vectorized: " + sql, compare(sql, args));
+    }
+
+    /**
+     * Execute the query row by row and with batch-at-a-time execution enabled, compare results, check that
+     * batch-at-a-time execution was not used.
+     *
+     * @param sql Query.
+     * @param args Arguments.
+     */
+    private static void checkRowByRow(String sql, Object... args) throws SQLException {
+        assertFalse("Vectorized: " + sql, compare(sql, args));
+    }
+
+    /**
+     * Execute the query row by row and with batch-at-a-time execution enabled, compare results.
+     *
+     * @param sql Query.
+     * @param args Arguments.
+     * @return Whether the second execution was batch-at-a-time.
+     */
+    private static boolean compare(String sql, Object... args) throws SQLException {
+        long cnt = session().getVectorizedScanCount();
+
+        List<Object> exp = execute(sql, false, args);
+
+        assertEquals("Vectorized while disabled: " + sql, cnt, session().getVectorizedScanCount());
+
+        List<Object> res = execute(sql, true, args);
+
+        assertEquals(sql, exp, res);
+
+        long scans = session().getVectorizedScanCount() - cnt;
+
+        assertTrue(sql, scans <= 1);
+
+        return scans == 1;
+    }
+
+    /**
+     * @return Session of the connection.
+     */
+    private static Session session() {
+        return (Session)((JdbcConnection)conn).getSession();
+    }
+
+    /**
+     * @param sql Query.
+     * @param vectorized Whether batch-at-a-time execution is enabled.
+     * @param args Arguments.
+     * @return Values of the single result row with their classes, or the error code if the query failed.
+     */
+    private static List<Object> execute(String sql, boolean vectorized, Object... args) throws SQLException {
+        session().setVectorizedScanEnabled(vectorized);
+
+        List<Object> res = new ArrayList<>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++)
+                stmt.setObject(i + 1, args[i]);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                        Object val = rs.getObject(i);
+
+                        res.add(val);
+                        res.add(val == null ? null : val.getClass());
+                    }
+                }
+            }
+        }
+        catch (SQLException e) {
+            res.add("error " + e.getErrorCode());
+        }
+        finally {
+            session().setVectorizedScanEnabled(false);
+        }
+
+        return res;
+    }
+}
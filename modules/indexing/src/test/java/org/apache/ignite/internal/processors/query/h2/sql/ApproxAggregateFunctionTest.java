@@ -0,0 +1,200 @@
+/*
+ * Copyright 2020 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.internal.processors.query.h2.sql;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import org.apache.ignite.internal.processors.query.stat.QuantileSketch;
+import org.gridgain.internal.h2.api.AggregateFunction;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for approximate aggregates: sketches built by map nodes and merged by reducer must give the same
+ * estimation as the sketch built by all values.
+ */
+public class ApproxAggregateFunctionTest {
+    /** Number of values. */
+    private static final int ROWS = 100_000;
+
+    /** Number of map nodes. */
+    private static final int NODES = 4;
+
+    /** Relative error of distinct values count. */
+    private static final double DISTINCT_DELTA = 0.05;
+
+    /** Rank error of percentile. */
+    private static final double RANK_DELTA = 0.02;
+
+    /**
+     * Check that merged HLL sketches give the same count as the single sketch.
+     */
+    @Test
+    public void testCountDistinctMerge() throws SQLException {
+        List<Object> vals = new ArrayList<>();
+
+        for (int i = 0; i < ROWS; i++)
+            vals.add((long)(i % 30_000));
+
+        Collections.shuffle(vals, new Random(0));
+
+        long exp = (Long)aggregate(new GridApproxCountDistinctFunction(), vals);
+
+        assertEquals(30_000, exp, 30_000 * DISTINCT_DELTA);
+
+        List<Object> sketches = mapSketches(GridApproxCountDistinctSketchFunction::new, vals);
+
+        assertEquals(exp, aggregate(new GridApproxCountDistinctMergeFunction(), sketches));
+
+        assertEquals(0L, aggregate(new GridApproxCountDistinctFunction(), Collections.singletonList(null)));
+        assertNull(aggregate(new GridApproxCountDistinctSketchFunction(), Collections.emptyList()));
+    }
+
+    /**
+     * Check that percentile estimated by merged quantile sketches is within the rank error.
+     */
+    @Test
+    public void testPercentileMerge() throws SQLException {
+        List<Object> vals = new ArrayList<>();
+
+        for (int i = 0; i < ROWS; i++)
+            vals.add((double)i);
+
+        Collections.shuffle(vals, new Random(0));
+
+        List<Object> sketches = mapSketches(GridApproxPercentileSketchFunction::new, vals);
+
+        for (double p : new double[] {0, 0.1, 0.5, 0.9, 1}) {
+            double single = (Double)aggregate(new GridApproxPercentileFunction(), withArg(vals, p));
+            double merged = (Double)aggregate(new GridApproxPercentileMergeFunction(), withArg(sketches, p));
+
+            assertEquals("p=" + p, p * (ROWS - 1), single, ROWS * RANK_DELTA);
+            assertEquals("p=" + p, p * (ROWS - 1), merged, ROWS * RANK_DELTA);
+        }
+
+        assertNull(aggregate(new GridApproxPercentileFunction(), withArg(Collections.singletonList(null), 0.5)));
+    }
+
+    /**
+     * Check that the sketch sent by map node is restored by reducer as is.
+     */
+    @Test
+    public void testQuantileSketchBytes() {
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.DFLT_K);
+
+        for (int i = 0; i < ROWS; i++)
+            sketch.add(i % 1000);
+
+        QuantileSketch restored = QuantileSketch.fromBytes(sketch.toBytes());
+
+        assertEquals(sketch.count(), restored.count());
+
+        for (double q = 0; q <= 1; q += 0.05)
+            assertEquals(sketch.quantile(q), restored.quantile(q), 0);
+
+        QuantileSketch empty = QuantileSketch.fromBytes(new QuantileSketch(QuantileSketch.DFLT_K).toBytes());
+
+        assertEquals(0, empty.count());
+        assertEquals(Double.NaN, empty.quantile(0.5), 0);
+    }
+
+    /**
+     * Check that percentile out of [0, 1] or different for some rows fails the query.
+     */
+    @Test
+    public void testPercentileValidation() throws SQLException {
+        for (Object p : new Object[] {-0.1, 1.5, Double.NaN, "0.5", null}) {
+            try {
+                aggregate(new GridApproxPercentileFunction(), withArg(Collections.singletonList(1d), p));
+
+                fail("Invalid percentile: " + p);
+            }
+            catch (SQLException ignored) {
+                // Expected.
+            }
+        }
+
+        GridApproxPercentileFunction fn = new GridApproxPercentileFunction();
+
+        fn.add(new Object[] {1d, 0.5});
+
+        try {
+            fn.add(new Object[] {2d, 0.9});
+
+            fail("Percentile must be the same for all rows.");
+        }
+        catch (SQLException ignored) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Build a sketch per map node, values are distributed between nodes by index.
+     *
+     * @param fnFactory Sketch function factory.
+     * @param vals Values.
+     * @return Sketches.
+     */
+    private static List<Object> mapSketches(Supplier<AggregateFunction> fnFactory, List<Object> vals) throws SQLException {
+        List<Object> sketches = new ArrayList<>();
+
+        for (int node = 0; node < NODES; node++) {
+            List<Object> part = new ArrayList<>();
+
+            for (int i = node; i < vals.size(); i += NODES)
+                part.add(vals.get(i));
+
+            sketches.add(aggregate(fnFactory.get(), part));
+        }
+
+        return sketches;
+    }
+
+    /**
+     * @param vals Values.
+     * @param arg Second argument of the function.
+     * @return Rows of two arguments.
+     */
+    private static List<Object> withArg(List<Object> vals, Object arg) {
+        List<Object> rows = new ArrayList<>(vals.size());
+
+        for (Object val : vals)
+            rows.add(new Object[] {val, arg});
+
+        return rows;
+    }
+
+    /**
+     * @param fn Function.
+     * @param rows Rows.
+     * @return Aggregation result.
+     */
+    private static Object aggregate(AggregateFunction fn, List<Object> rows) throws SQLException {
+        fn.init(null);
+
+        for (Object row : rows)
+            fn.add(row);
+
+        return fn.getResult();
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.internal.processors.query.h2.twostep;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteDataStreamer;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+import org.apache.ignite.cache.query.annotations.QuerySqlField;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.internal.processors.cache.query.IgniteQueryErrorCode;
+import org.apache.ignite.internal.processors.query.IgniteSQLException;
+import org.apache.ignite.internal.processors.query.h2.sql.GridApproxCountDistinctSketchFunction;
+import org.apache.ignite.internal.processors.query.h2.sql.GridApproxPercentileMergeFunction;
+import org.apache.ignite.internal.processors.query.h2.sql.GridApproxPercentileSketchFunction;
+import org.apache.ignite.internal.util.typedef.X;
+import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
+import org.apache.ignite.spi.discovery.tcp.ipfinder.vm.TcpDiscoveryVmIpFinder;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.apache.ignite.cache.CacheMode.PARTITIONED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for approximate aggregates over not collocated data: map nodes send sketches, reducer merges them.
+ */
+public class ApproxAggregateSplitTest {
+    /** Cache name. */
+    private static final String CACHE_NAME = "approx";
+
+    /** Number of rows. */
+    private static final int ROWS = 20_000;
+
+    /** Number of distinct values. */
+    private static final int VALS = 1000;
+
+    /** Number of groups. */
+    private static final int GROUPS = 4;
+
+    /** Number of server nodes. */
+    private static final int SERVERS = 3;
+
+    /** Relative error of distinct values count. */
+    private static final double DISTINCT_DELTA = 0.05;
+
+    /** Error of percentile, values are uniformly distributed, so it's the rank error by the number of values. */
+    private static final double PERCENTILE_DELTA = 0.02 * VALS;
+
+    /** IP finder shared by the nodes of the test. */
+    private static final TcpDiscoveryVmIpFinder IP_FINDER =
+        new TcpDiscoveryVmIpFinder().setAddresses(Collections.singletonList("127.0.0.1:47500..47509"));
+
+    /** Server nodes. */
+    private static final List<Ignite> servers = new ArrayList<>();
+
+    /**
+     * Start the nodes and load the data.
+     */
+    @BeforeClass
+    public static void startNodes() {
+        for (int i = 0; i < SERVERS; i++)
+            servers.add(Ignition.start(config("server-" + i)));
+
+        IgniteCache<Integer, Val> cache = servers.get(0).getOrCreateCache(new CacheConfiguration<Integer, Val>(CACHE_NAME)
+            .setCacheMode(PARTITIONED)
+            .setIndexedTypes(Integer.class, Val.class));
+
+        try (IgniteDataStreamer<Integer, Val> streamer = servers.get(0).dataStreamer(cache.getName())) {
+            for (int i = 0; i < ROWS; i++)
+                streamer.addData(i, new Val(i % GROUPS, i % VALS));
+        }
+    }
+
+    /**
+     * Stop the nodes.
+     */
+    @AfterClass
+    public static void stopNodes() {
+        for (Ignite ignite : servers)
+            ignite.close();
+    }
+
+    /**
+     * Check that map queries build sketches and reducer merges them.
+     */
+    @Test
+    public void testSplit() {
+        String plan = query("EXPLAIN SELECT APPROX_COUNT_DISTINCT(val), APPROX_PERCENTILE(val, 0.5) FROM Val")
+            .toString();
+
+        assertTrue(plan, plan.contains(GridApproxCountDistinctSketchFunction.NAME));
+        assertTrue(plan, plan.contains(GridApproxPercentileSketchFunction.NAME));
+        assertTrue(plan, plan.contains(GridApproxPercentileMergeFunction.NAME));
+
+        List<?> row = query("SELECT APPROX_COUNT_DISTINCT(val), APPROX_PERCENTILE(val, 0.5), " +
+            "APPROX_PERCENTILE(val, ?) FROM Val", 0.9).get(0);
+
+        assertEquals(VALS, ((Number)row.get(0)).doubleValue(), VALS * DISTINCT_DELTA);
+        assertEquals(0.5 * VALS, ((Number)row.get(1)).doubleValue(), PERCENTILE_DELTA);
+        assertEquals(0.9 * VALS, ((Number)row.get(2)).doubleValue(), PERCENTILE_DELTA);
+    }
+
+    /**
+     * Check that sketches are merged per group.
+     */
+    @Test
+    public void testGroupBy() {
+        List<List<?>> rows = query("SELECT grp, APPROX_COUNT_DISTINCT(val), APPROX_PERCENTILE(val, 1) FROM Val " +
+            "GROUP BY grp ORDER BY grp");
+
+        assertEquals(GROUPS, rows.size());
+
+        for (int grp = 0; grp < GROUPS; grp++) {
+            List<?> row = rows.get(grp);
+
+            assertEquals(grp, row.get(0));
+            assertEquals(VALS / GROUPS, ((Number)row.get(1)).doubleValue(), VALS / GROUPS * DISTINCT_DELTA);
+
+            // Max value is always kept by the sketch.
+            assertEquals(VALS - GROUPS + grp, ((Number)row.get(2)).doubleValue(), 0);
+        }
+    }
+
+    /**
+     * Check that the arguments evaluated by reducer must be constants and the percentile is checked on parsing.
+     */
+    @Test
+    public void testInvalidArguments() {
+        checkParsingError("SELECT APPROX_PERCENTILE(val, val / 1000.0) FROM Val");
+        checkParsingError("SELECT APPROX_PERCENTILE(val, 1.5) FROM Val");
+        checkParsingError("SELECT APPROX_PERCENTILE(val, -0.5) FROM Val");
+    }
+
+    /**
+     * @param sql Query.
+     */
+    private static void checkParsingError(String sql) {
+        try {
+            query(sql);
+
+            fail("Query must fail: " + sql);
+        }
+        catch (Exception e) {
+            IgniteSQLException cause = X.cause(e, IgniteSQLException.class);
+
+            assertNotNull(X.getFullStackTrace(e), cause);
+            assertEquals(X.getFullStackTrace(e), IgniteQueryErrorCode.PARSING, cause.statusCode());
+        }
+    }
+
+    /**
+     * @param sql Query.
+     * @param args Arguments.
+     * @return Rows.
+     */
+    private static List<List<?>> query(String sql, Object... args) {
+        IgniteCache<Integer, Val> cache = servers.get(0).cache(CACHE_NAME);
+
+        return cache.query(new SqlFieldsQuery(sql).setArgs(args)).getAll();
+    }
+
+    /**
+     * @param name Instance name.
+     * @return Node configuration.
+     */
+    private static IgniteConfiguration config(String name) {
+        return new IgniteConfiguration()
+            .setIgniteInstanceName(name)
+            .setLocalHost("127.0.0.1")
+            .setDiscoverySpi(new TcpDiscoverySpi().setIpFinder(IP_FINDER));
+    }
+
+    /**
+     * Cache value.
+     */
+    private static class Val {
+        /** Group. */
+        @QuerySqlField
+        private final int grp;
+
+        /** Value. */
+        @QuerySqlField
+        private final int val;
+
+        /**
+         * @param grp Group.
+         * @param val Value.
+         */
+        Val(int grp, int val) {
+            this.grp = grp;
+            this.val = val;
+        }
+    }
+}
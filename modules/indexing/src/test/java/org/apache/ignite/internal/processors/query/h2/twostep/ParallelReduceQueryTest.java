@@ -0,0 +1,423 @@
+/*
+ * Copyright 2020 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.internal.processors.query.h2.twostep;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteDataStreamer;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cache.CachePeekMode;
+import org.apache.ignite.cache.query.FieldsQueryCursor;
+import org.apache.ignite.cache.query.QueryCancelledException;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+import org.apache.ignite.cache.query.annotations.QuerySqlField;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.internal.IgniteEx;
+import org.apache.ignite.internal.processors.query.h2.IgniteH2Indexing;
+import org.apache.ignite.internal.processors.query.h2.twostep.messages.GridQueryNextPageResponse;
+import org.apache.ignite.internal.util.typedef.X;
+import org.apache.ignite.plugin.extensions.communication.Message;
+import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
+import org.apache.ignite.spi.discovery.tcp.ipfinder.vm.TcpDiscoveryVmIpFinder;
+import org.gridgain.internal.h2.value.Value;
+import org.gridgain.internal.h2.value.ValueInt;
+import org.gridgain.internal.h2.value.ValueString;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.apache.ignite.IgniteSystemProperties.IGNITE_SQL_REDUCE_PARALLELISM;
+import static org.apache.ignite.IgniteSystemProperties.IGNITE_SQL_REDUCE_POOL_SIZE;
+import static org.apache.ignite.cache.CacheMode.PARTITIONED;
+import static org.apache.ignite.internal.processors.query.h2.twostep.msg.GridH2ValueMessageFactory.toMessages;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for parallel reduce ({@code IGNITE_SQL_REDUCE_PARALLELISM > 0}): the results of the merge workers
+ * must be the same as the results of a single reducer thread, and the reduce must finish on every path.
+ */
+public class ParallelReduceQueryTest {
+    /** Cache name. */
+    private static final String CACHE_NAME = "reduce";
+
+    /** Number of rows. */
+    private static final int ROWS = 20_000;
+
+    /** Number of distinct values of the sort column. */
+    private static final int VALS = 1000;
+
+    /** Query parallelism, the number of streams merged by the reducer is servers count * segments. */
+    private static final int SEGMENTS = 8;
+
+    /** Max merge workers of a query. */
+    private static final int PARALLELISM = 4;
+
+    /** Number of server nodes. */
+    private static final int SERVERS = 3;
+
+    /** Wait timeout in milliseconds. */
+    private static final long TIMEOUT = 10_000;
+
+    /** Ordered query. */
+    private static final String ORDERED_SQL = "SELECT _key, val FROM Val ORDER BY val, _key";
+
+    /** IP finder shared by the nodes of the test. */
+    private static final TcpDiscoveryVmIpFinder IP_FINDER =
+        new TcpDiscoveryVmIpFinder().setAddresses(Collections.singletonList("127.0.0.1:47500..47509"));
+
+    /** Server nodes, the reduce pool has enough threads for all the workers. */
+    private static final List<Ignite> servers = new ArrayList<>();
+
+    /** Client node with a single thread reduce pool, rejected workers are merged by the reducer thread. */
+    private static Ignite inlineReducer;
+
+    /**
+     * Start the nodes and load the data.
+     */
+    @BeforeClass
+    public static void startNodes() {
+        System.setProperty(IGNITE_SQL_REDUCE_PARALLELISM, String.valueOf(PARALLELISM));
+
+        for (int i = 0; i < SERVERS; i++)
+            servers.add(Ignition.start(config("server-" + i)));
+
+        System.setProperty(IGNITE_SQL_REDUCE_POOL_SIZE, "1");
+
+        try {
+            inlineReducer = Ignition.start(config("inline-reducer").setClientMode(true));
+        }
+        finally {
+            System.clearProperty(IGNITE_SQL_REDUCE_POOL_SIZE);
+        }
+
+        IgniteCache<Integer, Val> cache = servers.get(0).getOrCreateCache(new CacheConfiguration<Integer, Val>(CACHE_NAME)
+            .setCacheMode(PARTITIONED)
+            .setBackups(1)
+            .setQueryParallelism(SEGMENTS)
+            .setIndexedTypes(Integer.class, Val.class));
+
+        try (IgniteDataStreamer<Integer, Val> streamer = servers.get(0).dataStreamer(cache.getName())) {
+            for (int i = 0; i < ROWS; i++)
+                streamer.addData(i, new Val(value(i)));
+        }
+    }
+
+    /**
+     * Stop the nodes.
+     */
+    @AfterClass
+    public static void stopNodes() {
+        try {
+            if (inlineReducer != null)
+                inlineReducer.close();
+
+            for (Ignite ignite : servers)
+                ignite.close();
+        }
+        finally {
+            System.clearProperty(IGNITE_SQL_REDUCE_PARALLELISM);
+        }
+    }
+
+    /**
+     * Check that merged rows are ordered and limited the same way as by a single reducer thread.
+     */
+    @Test
+    public void testOrderByWithLimit() {
+        List<List<?>> all = query(servers.get(0), ORDERED_SQL);
+
+        assertEquals(expected(0, ROWS), all);
+
+        assertEquals(expected(0, 100), query(servers.get(0), ORDERED_SQL + " LIMIT 100"));
+        assertEquals(expected(5_000, 300), query(servers.get(1), ORDERED_SQL + " LIMIT 300 OFFSET 5000"));
+        assertEquals(expected(ROWS - 10, 10), query(servers.get(2), ORDERED_SQL + " LIMIT 100 OFFSET " + (ROWS - 10)));
+    }
+
+    /**
+     * Check that workers rejected by the full reduce pool are merged by the reducer thread with the same results.
+     */
+    @Test
+    public void testInlineFallback() {
+        assertEquals(expected(0, ROWS), query(inlineReducer, ORDERED_SQL));
+        assertEquals(expected(1_000, 50), query(inlineReducer, ORDERED_SQL + " LIMIT 50 OFFSET 1000"));
+
+        assertReduceFinished(inlineReducer);
+    }
+
+    /**
+     * Check that closing the cursor in the middle of the results cancels the query and stops the workers.
+     */
+    @Test
+    public void testCancel() {
+        Ignite reducer = servers.get(0);
+
+        try (FieldsQueryCursor<List<?>> cur = cache(reducer).query(new SqlFieldsQuery(ORDERED_SQL).setPageSize(16))) {
+            Iterator<List<?>> it = cur.iterator();
+
+            for (int i = 0; i < 100; i++)
+                assertTrue(it.hasNext() && it.next() != null);
+        }
+
+        assertReduceFinished(reducer);
+
+        SqlFieldsQuery slow = new SqlFieldsQuery("SELECT a._key FROM Val a, Val b WHERE a.val <> b.val ORDER BY a.val")
+            .setTimeout(100, TimeUnit.MILLISECONDS);
+
+        try {
+            cache(reducer).query(slow).getAll();
+
+            fail("Query must be cancelled by timeout.");
+        }
+        catch (Exception e) {
+            assertTrue(X.getFullStackTrace(e), X.hasCause(e, QueryCancelledException.class));
+        }
+
+        assertReduceFinished(reducer);
+
+        // Reduce pool threads were released.
+        assertEquals(expected(0, 100), query(reducer, ORDERED_SQL + " LIMIT 100"));
+    }
+
+    /**
+     * Check that the query fails when a map node leaves in the middle of the results and the reduce finishes.
+     */
+    @Test
+    public void testMapNodeFailure() {
+        Ignite reducer = servers.get(0);
+
+        Ignite victim = Ignition.start(config("victim"));
+
+        try {
+            awaitPrimary(victim);
+
+            try (FieldsQueryCursor<List<?>> cur = cache(reducer).query(new SqlFieldsQuery(ORDERED_SQL).setPageSize(10))) {
+                Iterator<List<?>> it = cur.iterator();
+
+                assertTrue(it.hasNext());
+
+                victim.close();
+                victim = null;
+
+                try {
+                    while (it.hasNext())
+                        it.next();
+
+                    fail("Query must fail when a map node leaves.");
+                }
+                catch (Exception e) {
+                    assertNotNull(e.getMessage());
+                }
+            }
+        }
+        finally {
+            if (victim != null)
+                victim.close();
+        }
+
+        assertReduceFinished(reducer);
+
+        // Data has backups, so the remaining nodes return all the rows.
+        assertEquals(expected(0, ROWS), query(reducer, ORDERED_SQL));
+    }
+
+    /**
+     * Check that marshalled page rows are unmarshalled eagerly and plain rows are left as is.
+     *
+     * @throws Exception If failed.
+     */
+    @Test
+    public void testUnmarshalRows() throws Exception {
+        List<Value[]> rows = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++)
+            rows.add(new Value[] {ValueInt.get(i), ValueString.get("v" + i)});
+
+        List<Message> vals = (List<Message>)toMessages(rows, new ArrayList<>(), 2);
+
+        ReduceResultPage page = new ReduceResultPage(((IgniteEx)servers.get(0)).context(), UUID.randomUUID(),
+            new GridQueryNextPageResponse(1, 0, 0, 0, -1, 2, vals, null, true));
+
+        page.unmarshalRows();
+
+        // The rows don't depend on the messages anymore.
+        vals.clear();
+
+        assertEquals(rows.size(), page.rowsInPage());
+
+        Iterator<Value[]> it = page.rows();
+
+        for (Value[] row : rows)
+            assertArrayEquals(row, it.next());
+
+        assertFalse(it.hasNext());
+
+        // Plain rows of a local map node are not copied.
+        List<Value[]> plain = new ArrayList<>(rows);
+
+        page = new ReduceResultPage(((IgniteEx)servers.get(0)).context(), UUID.randomUUID(),
+            new GridQueryNextPageResponse(1, 0, 0, 0, -1, 2, null, plain, true));
+
+        page.unmarshalRows();
+
+        it = page.rows();
+
+        for (Value[] row : rows)
+            assertSame(row, it.next());
+
+        // Dummy last page.
+        page = new ReduceResultPage(((IgniteEx)servers.get(0)).context(), UUID.randomUUID(), null);
+
+        page.unmarshalRows();
+
+        assertFalse(page.rows().hasNext());
+    }
+
+    /**
+     * @param ignite Node.
+     * @param sql Query.
+     * @return Rows.
+     */
+    private static List<List<?>> query(Ignite ignite, String sql) {
+        return cache(ignite).query(new SqlFieldsQuery(sql).setPageSize(64)).getAll();
+    }
+
+    /**
+     * @param ignite Node.
+     * @return Cache.
+     */
+    private static IgniteCache<Integer, Val> cache(Ignite ignite) {
+        return ignite.cache(CACHE_NAME);
+    }
+
+    /**
+     * @param off Offset.
+     * @param limit Limit.
+     * @return Expected rows of {@link #ORDERED_SQL}.
+     */
+    private static List<List<?>> expected(int off, int limit) {
+        List<List<?>> res = new ArrayList<>(ROWS);
+
+        // Keys with the same value are ordered by key.
+        for (int v = 0; v < VALS; v++) {
+            for (int k = v; k < ROWS; k += VALS) {
+                List<Object> row = new ArrayList<>(2);
+
+                row.add(k);
+                row.add(v);
+
+                res.add(row);
+            }
+        }
+
+        return res.subList(off, Math.min(off + limit, res.size()));
+    }
+
+    /**
+     * @param key Key.
+     * @return Value of the sort column.
+     */
+    private static int value(int key) {
+        return key % VALS;
+    }
+
+    /**
+     * Wait until the node has no running queries, i.e. all the reducers are released.
+     *
+     * @param ignite Reducer node.
+     */
+    private static void assertReduceFinished(Ignite ignite) {
+        IgniteH2Indexing indexing = (IgniteH2Indexing)((IgniteEx)ignite).context().query().getIndexing();
+
+        long end = System.currentTimeMillis() + TIMEOUT;
+
+        while (!indexing.runningSqlQueries().isEmpty()) {
+            if (System.currentTimeMillis() > end)
+                fail("Queries are still running: " + indexing.runningSqlQueries());
+
+            try {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                fail("Interrupted.");
+            }
+        }
+    }
+
+    /**
+     * Wait until the node that joined the cluster owns primary partitions, so map queries are sent to it.
+     *
+     * @param ignite Node that joined the cluster.
+     */
+    private static void awaitPrimary(Ignite ignite) {
+        long end = System.currentTimeMillis() + TIMEOUT;
+
+        while (ignite.cache(CACHE_NAME).localSize(CachePeekMode.PRIMARY) == 0) {
+            if (System.currentTimeMillis() > end)
+                fail("Node doesn't own primary partitions.");
+
+            try {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                fail("Interrupted.");
+            }
+        }
+    }
+
+    /**
+     * @param name Instance name.
+     * @return Node configuration.
+     */
+    private static IgniteConfiguration config(String name) {
+        return new IgniteConfiguration()
+            .setIgniteInstanceName(name)
+            .setLocalHost("127.0.0.1")
+            .setDiscoverySpi(new TcpDiscoverySpi().setIpFinder(IP_FINDER));
+    }
+
+    /**
+     * Cache value.
+     */
+    private static class Val {
+        /** Sort column. */
+        @QuerySqlField(index = true)
+        private final int val;
+
+        /**
+         * @param val Value.
+         */
+        Val(int val) {
+            this.val = val;
+        }
+    }
+}
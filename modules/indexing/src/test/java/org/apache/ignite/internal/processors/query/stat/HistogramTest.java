@@ -0,0 +1,216 @@
+/*
+ * Copyright 2020 GridGain Systems, Inc. and Contributors.
+ *
+ * Licensed under the GridGain Community Edition License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.gridgain.com/products/software/community-edition/gridgain-community-edition-license
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ignite.internal.processors.query.stat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.gridgain.internal.h2.table.Column;
+import org.gridgain.internal.h2.value.Value;
+import org.gridgain.internal.h2.value.ValueDouble;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link Histogram}.
+ */
+public class HistogramTest {
+    /** Estimation error. */
+    private static final double DELTA = 0.02;
+
+    /** Estimation error of merged histogram, merge assumes uniform distribution between source buckets. */
+    private static final double MERGE_DELTA = 0.05;
+
+    /**
+     * Check histogram built by uniformly distributed sample.
+     */
+    @Test
+    public void testBuildUniform() {
+        Histogram hist = Histogram.build(range(0, 100), 100, 1000, 10);
+
+        assertEquals(10, hist.buckets());
+        assertEquals(1000, hist.total());
+
+        assertEquals(1, hist.fraction(null, null), 0);
+        assertEquals(0.5, hist.fraction(null, 49.5), DELTA);
+        assertEquals(0.25, hist.fraction(25d, 49.5), DELTA);
+        assertEquals(0, hist.fraction(60d, 40d), 0);
+
+        // Uniform values have no frequent ones, estimation by number of distinct values is expected.
+        assertEquals(-1, hist.equalFraction(10, 100), 0);
+    }
+
+    /**
+     * Check that frequent value gets its own buckets and other values share the rest of rows.
+     */
+    @Test
+    public void testBuildFrequentValue() {
+        double[] sample = new double[100];
+
+        for (int i = 0; i < 50; i++) {
+            sample[i] = i;
+            sample[50 + i] = 7;
+        }
+
+        Histogram hist = Histogram.build(sample, sample.length, 1000, 10);
+
+        double freq = hist.equalFraction(7, 50);
+
+        assertTrue("Frequent value fraction: " + freq, freq >= 0.4);
+
+        double rare = hist.equalFraction(20, 50);
+
+        assertEquals((1 - freq) / 49, rare, 0.005);
+    }
+
+    /**
+     * Check that sample is sorted and only first values are used.
+     */
+    @Test
+    public void testBuildUnsortedSample() {
+        double[] sample = {5, 3, 9, 1, 7, -100};
+
+        Histogram hist = Histogram.build(sample, 5, 50, 4);
+
+        assertEquals(4, hist.buckets());
+        assertEquals(1, hist.fraction(1d, 9d), 0);
+        assertEquals(-1, hist.fraction(-100d, -50d), 0);
+
+        assertNull(Histogram.build(new double[0], 0, 0, 4));
+    }
+
+    /**
+     * Values outside of sampled values must not be estimated as absent: histogram may be stale.
+     */
+    @Test
+    public void testOutOfRange() {
+        Histogram hist = Histogram.build(range(0, 100), 100, 1000, 10);
+
+        assertEquals(-1, hist.equalFraction(-1, 100), 0);
+        assertEquals(-1, hist.equalFraction(1000, 100), 0);
+
+        assertEquals(-1, hist.fraction(200d, 300d), 0);
+        assertEquals(-1, hist.fraction(null, -5d), 0);
+        assertEquals(-1, hist.fraction(150d, null), 0);
+
+        // Partially overlapping range is estimated by the histogram.
+        assertEquals(0.1, hist.fraction(89.1, 500d), DELTA);
+
+        assertEquals(-1, new Histogram(new double[] {0}, new long[0]).fraction(null, null), 0);
+    }
+
+    /**
+     * Check merge of histograms with disjoint ranges.
+     */
+    @Test
+    public void testMergeDisjoint() {
+        Histogram h1 = Histogram.build(range(0, 100), 100, 1000, 10);
+        Histogram h2 = Histogram.build(range(100, 100), 100, 3000, 10);
+
+        Histogram merged = Histogram.merge(Arrays.asList(h1, h2), 10);
+
+        assertEquals(10, merged.buckets());
+        assertEquals(4000, merged.total());
+
+        assertEquals(1, merged.fraction(null, null), 0);
+        assertEquals(0.25, merged.fraction(null, 99d), MERGE_DELTA);
+        assertEquals(0.75, merged.fraction(100d, null), MERGE_DELTA);
+        assertEquals(-1, merged.fraction(300d, null), 0);
+    }
+
+    /**
+     * Check that merge keeps frequent values.
+     */
+    @Test
+    public void testMergeFrequentValue() {
+        double[] sample = new double[100];
+
+        Arrays.fill(sample, 42);
+
+        Histogram freq = Histogram.build(sample, sample.length, 1000, 10);
+        Histogram uniform = Histogram.build(range(0, 100), 100, 1000, 10);
+
+        Histogram merged = Histogram.merge(Arrays.asList(freq, uniform), 20);
+
+        assertEquals(2000, merged.total());
+
+        assertTrue(merged.equalFraction(42, 100) >= 0.45);
+
+        // Half of uniform values and all frequent ones.
+        assertEquals(0.75, merged.fraction(null, 49.5), MERGE_DELTA);
+    }
+
+    /**
+     * Check serialization.
+     */
+    @Test
+    public void testBytes() {
+        Histogram hist = Histogram.build(range(0, 100), 100, 1000, 10);
+
+        assertEquals(hist, Histogram.fromBytes(hist.toBytes()));
+        assertNull(Histogram.fromBytes(null));
+    }
+
+    /**
+     * Check merge of empty histograms.
+     */
+    @Test
+    public void testMergeEmpty() {
+        assertNull(Histogram.merge(Collections.emptyList(), 10));
+    }
+
+    /**
+     * @param from First value.
+     * @param cnt Number of values.
+     * @return Consecutive values.
+     */
+    private static double[] range(int from, int cnt) {
+        double[] res = new double[cnt];
+
+        for (int i = 0; i < cnt; i++)
+            res[i] = from + i;
+
+        return res;
+    }
+
+    /**
+     * Check that NaN and infinite values do not get into the sample the histogram is built from.
+     */
+    @Test
+    public void testCollectorSkipsNonFiniteValues() {
+        ColumnStatisticsCollector collector = new ColumnStatisticsCollector(new Column("VAL", Value.DOUBLE),
+            (a, b) -> a.compareTypeSafe(b, null));
+
+        for (int i = 0; i < 100; i++)
+            collector.add(ValueDouble.get(i));
+
+        collector.add(ValueDouble.get(Double.NaN));
+        collector.add(ValueDouble.get(Double.POSITIVE_INFINITY));
+        collector.add(ValueDouble.get(Double.NEGATIVE_INFINITY));
+
+        Histogram hist = collector.finish().histogram();
+
+        assertEquals(1, hist.fraction(null, null), 0);
+        assertEquals(1, hist.fraction(0d, 99d), DELTA);
+        assertEquals(0.5, hist.fraction(null, 49.5), DELTA);
+
+        // Bounds are finite: values beyond the sampled ones are outside of the histogram.
+        assertEquals(-1, hist.fraction(100d, null), 0);
+        assertEquals(-1, hist.fraction(null, -1d), 0);
+    }
+}
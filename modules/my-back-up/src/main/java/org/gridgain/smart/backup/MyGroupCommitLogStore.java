@@ -0,0 +1,488 @@
+package org.gridgain.smart.backup;
+
+import cn.smart.service.IMyLogTrans;
+import com.google.common.base.Strings;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.IgniteLogger;
+import org.apache.ignite.IgniteState;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.IgnitionListener;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.internal.IgniteEx;
+import org.apache.ignite.internal.processors.metric.MetricRegistry;
+import org.apache.ignite.internal.processors.metric.impl.HistogramMetricImpl;
+import org.apache.ignite.internal.processors.metric.impl.LongAdderMetric;
+import org.apache.ignite.internal.util.typedef.internal.U;
+import org.gridgain.internal.h2.mvstore.MVStore;
+import org.gridgain.internal.h2.mvstore.tx.Transaction;
+import org.gridgain.internal.h2.mvstore.tx.TransactionMap;
+import org.gridgain.internal.h2.mvstore.tx.TransactionStore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 两地三中心的高可用 log，使用组提交的方式写入 MVStore
+ * 1、所有的 session 共用一个 TransactionStore，session 对应的 TransactionMap 和 MyLogStore 的格式相同，MyRecovery 可以直接恢复
+ * 2、createSession、saveTo、commit、rollback 只是把操作放入无锁队列，由一个后台线程按顺序执行
+ * 3、后台线程每隔 myLogFlushFrequency 毫秒，或者队列中的操作达到 myLogFlushSize 条时，把队列中所有的操作一起提交，
+ *    多个 session 的提交只需要一次 MVStore 的 commit
+ * 持久化方式（myLogDurability）：
+ * sync：commit 等待这一组提交并且刷盘后才返回
+ * batch：commit 立即返回，每一组提交后刷盘，宕机最多丢失一个时间间隔内的数据
+ * async：commit 立即返回，每一组提交后不刷盘，由操作系统写入磁盘
+ * 在 IgniteConfiguration 中设置 myLogCls 为这个类的全称即可使用
+ * */
+public class MyGroupCommitLogStore implements IMyLogTrans {
+
+    /** metric 的名字 */
+    static final String MY_LOG_METRIC_GROUP_NAME = "ha.log";
+
+    /** 延迟的统计区间（毫秒） */
+    static final long[] LATENCY_BOUNDS = new long[] {1, 5, 10, 50, 100, 500, 1000};
+
+    /** sync 模式下 commit、rollback 等待组提交的最长时间（秒） */
+    private static final long AWAIT_TIMEOUT = 60;
+
+    private final MyLogDurability durability;
+
+    private final long flushFrequency;
+
+    private final int flushSize;
+
+    private final MVStore mvStore;
+
+    private final TransactionStore transactionStore;
+
+    /** 等待执行的操作 */
+    private final ConcurrentLinkedQueue<MyLogOp> queue = new ConcurrentLinkedQueue<>();
+
+    /** 队列的长度，ConcurrentLinkedQueue.size() 需要遍历整个队列 */
+    private final AtomicInteger queueSize = new AtomicInteger();
+
+    /** 还没有提交的 session，只有后台线程访问 */
+    private final Map<String, MyLogSession> sessions = new HashMap<>();
+
+    private final Thread flusher;
+
+    private volatile boolean stopped;
+
+    /** 后台线程异常退出的原因，之后不能再写入 */
+    private volatile Throwable failure;
+
+    private final IgniteLogger log;
+
+    /** 节点停止后关闭 HA log */
+    private final IgnitionListener stopLsnr;
+
+    private final LongAdderMetric records;
+
+    private final LongAdderMetric flushes;
+
+    private final HistogramMetricImpl commitLatency;
+
+    private final HistogramMetricImpl flushLatency;
+
+    public MyGroupCommitLogStore()
+    {
+        this(Ignition.ignite());
+    }
+
+    public MyGroupCommitLogStore(final Ignite ignite)
+    {
+        IgniteConfiguration cfg = ignite.configuration();
+
+        this.log = ignite.log().getLogger(MyGroupCommitLogStore.class);
+        this.durability = MyLogDurability.valueOf(cfg.getMyLogDurability().toUpperCase());
+        this.flushFrequency = TimeUnit.MILLISECONDS.toNanos(Math.max(1, cfg.getMyLogFlushFrequency()));
+        this.flushSize = Math.max(1, cfg.getMyLogFlushSize());
+
+        this.mvStore = MVStore.open(logPath(cfg));
+        this.transactionStore = new TransactionStore(mvStore);
+        this.transactionStore.init();
+
+        MetricRegistry registry = ((IgniteEx)ignite).context().metric().registry(MY_LOG_METRIC_GROUP_NAME);
+        records = registry.longAdderMetric("records", "Count of records saved to HA log");
+        flushes = registry.longAdderMetric("flushes", "Count of group commits of HA log");
+        commitLatency = registry.histogram("commitLatency", LATENCY_BOUNDS, "Latency in milliseconds from commit request to HA log group commit");
+        flushLatency = registry.histogram("flushLatency", LATENCY_BOUNDS, "Latency in milliseconds of HA log group commit");
+        registry.register("queueSize", queueSize::get, "Count of operations waiting for HA log group commit");
+
+        flusher = new Thread(this::runFlusher, "my-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+
+        // 节点停止以后不会再有新的提交，此时提交剩余的操作并关闭 MVStore
+        String igniteName = ignite.name();
+        stopLsnr = (name, state) -> {
+            if (state != IgniteState.STARTED && Objects.equals(name, igniteName))
+                close();
+        };
+        Ignition.addListener(stopLsnr);
+    }
+
+    @Override
+    public void createSession(final String tranSession) {
+        enqueue(new MyLogOp(MyLogOpType.CREATE, tranSession, null, false));
+    }
+
+    @Override
+    public void saveTo(final String tranSession, final byte[] data) {
+        enqueue(new MyLogOp(MyLogOpType.SAVE, tranSession, data, false));
+    }
+
+    @Override
+    public void commit(final String tranSession) {
+        MyLogOp op = new MyLogOp(MyLogOpType.COMMIT, tranSession, null, durability == MyLogDurability.SYNC);
+        enqueue(op);
+        await(op);
+    }
+
+    @Override
+    public void rollback(final String tranSession) {
+        MyLogOp op = new MyLogOp(MyLogOpType.ROLLBACK, tranSession, null, durability == MyLogDurability.SYNC);
+        enqueue(op);
+        await(op);
+    }
+
+    /**
+     * 提交队列中剩余的操作，并关闭 MVStore
+     * */
+    public synchronized void close()
+    {
+        if (stopped)
+            return;
+
+        stopped = true;
+        Ignition.removeListener(stopLsnr);
+        LockSupport.unpark(flusher);
+
+        try
+        {
+            flusher.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        // 后台线程最后一次提交之后放入队列的操作不会再执行
+        failPending(new IgniteException("HA log 已经关闭！"));
+
+        mvStore.close();
+    }
+
+    private void enqueue(final MyLogOp op)
+    {
+        checkOpen();
+
+        queue.add(op);
+
+        // 放入队列的同时 HA log 被关闭：操作还在队列中时自己取出来并报错，否则由 close 或者后台线程处理它的结果
+        if ((stopped || failure != null) && queue.remove(op))
+        {
+            queueSize.decrementAndGet();
+            checkOpen();
+        }
+
+        if (queueSize.incrementAndGet() >= flushSize || op.future != null)
+            LockSupport.unpark(flusher);
+    }
+
+    private void checkOpen()
+    {
+        Throwable e = failure;
+        if (e != null)
+            throw new IgniteException("HA log 的后台线程已经停止！", e);
+
+        if (stopped)
+            throw new IgniteException("HA log 已经关闭！");
+    }
+
+    /**
+     * sync 模式下等待这一组提交完成
+     * */
+    private static void await(final MyLogOp op)
+    {
+        if (op.future == null)
+            return;
+
+        try
+        {
+            op.future.get(AWAIT_TIMEOUT, TimeUnit.SECONDS);
+        }
+        catch (TimeoutException e)
+        {
+            throw new IgniteException("等待 HA log 提交超过了 " + AWAIT_TIMEOUT + " 秒！", e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IgniteException("等待 HA log 提交被中断！", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IgniteException("HA log 提交失败！", e.getCause());
+        }
+    }
+
+    private void runFlusher()
+    {
+        try
+        {
+            while (true)
+            {
+                boolean stop = stopped;
+
+                if (!stop && queueSize.get() < flushSize)
+                    LockSupport.parkNanos(this, flushFrequency);
+
+                flush();
+
+                if (stop)
+                    break;
+            }
+        }
+        catch (Throwable e)
+        {
+            // 后台线程不能继续执行，队列中等待的操作都失败，之后的写入直接报错
+            failure = e;
+            U.error(log, "HA log 的后台线程异常退出！", e);
+            failPending(e);
+        }
+    }
+
+    /**
+     * 取出队列中剩余的操作，等待结果的操作都失败
+     * */
+    private void failPending(final Throwable e)
+    {
+        MyLogOp op;
+        while ((op = queue.poll()) != null)
+        {
+            queueSize.decrementAndGet();
+
+            if (op.future != null)
+                op.future.completeExceptionally(e);
+            else
+                U.warn(log, "HA log 没有写入的操作被丢弃：" + op.tranSession);
+        }
+    }
+
+    /**
+     * 执行队列中所有的操作，然后一起提交
+     * */
+    private void flush()
+    {
+        List<MyLogOp> group = new ArrayList<>();
+
+        long start;
+        Exception error = null;
+        try
+        {
+            MyLogOp op;
+            while ((op = queue.poll()) != null)
+            {
+                queueSize.decrementAndGet();
+                group.add(op);
+
+                try
+                {
+                    apply(op);
+                }
+                catch (Exception e)
+                {
+                    op.error = e;
+                }
+            }
+
+            if (group.isEmpty())
+                return;
+
+            start = System.nanoTime();
+            try
+            {
+                mvStore.commit();
+
+                if (durability != MyLogDurability.ASYNC)
+                    mvStore.sync();
+            }
+            catch (Exception e)
+            {
+                error = e;
+            }
+        }
+        catch (Throwable e)
+        {
+            // apply 或者 commit 抛出 Error 时这一组的结果未知，等待的操作都失败
+            for (MyLogOp m : group)
+            {
+                if (m.future != null)
+                    m.future.completeExceptionally(e);
+            }
+            throw e;
+        }
+
+        long end = System.nanoTime();
+        flushes.increment();
+        flushLatency.value(TimeUnit.NANOSECONDS.toMillis(end - start));
+
+        for (MyLogOp m : group)
+        {
+            if (m.type == MyLogOpType.COMMIT)
+                commitLatency.value(TimeUnit.NANOSECONDS.toMillis(end - m.startTime));
+
+            if (m.future != null)
+            {
+                Exception e = m.error != null ? m.error : error;
+                if (e != null)
+                    m.future.completeExceptionally(e);
+                else
+                    m.future.complete(null);
+            }
+            else if (m.error != null)
+            {
+                U.error(log, "HA log 写入失败：" + m.tranSession, m.error);
+            }
+        }
+
+        if (error != null && group.stream().noneMatch(m -> m.future != null))
+            U.error(log, "HA log 组提交失败！", error);
+    }
+
+    private void apply(final MyLogOp op)
+    {
+        switch (op.type)
+        {
+            case CREATE: {
+                Transaction transaction = transactionStore.begin();
+                TransactionMap<Integer, byte[]> transactionMap = transaction.openMap(op.tranSession);
+                sessions.put(op.tranSession, new MyLogSession(transaction, transactionMap));
+                break;
+            }
+
+            case SAVE: {
+                MyLogSession m = sessions.get(op.tranSession);
+                if (m == null)
+                    throw new IgniteException("HA log 的 session 不存在：" + op.tranSession);
+
+                m.transactionMap.put(++m.index, op.data);
+                records.increment();
+                break;
+            }
+
+            case COMMIT: {
+                MyLogSession m = sessions.remove(op.tranSession);
+                if (m != null)
+                    m.transaction.commit();
+                break;
+            }
+
+            case ROLLBACK: {
+                MyLogSession m = sessions.remove(op.tranSession);
+                if (m != null)
+                {
+                    m.transaction.rollback();
+                }
+                else
+                {
+                    // 已经提交的 session，删除它的数据
+                    Transaction transaction = transactionStore.begin();
+                    try
+                    {
+                        transaction.<Integer, byte[]>openMap(op.tranSession).clear();
+                        transaction.commit();
+                    }
+                    catch (Exception e)
+                    {
+                        transaction.rollback();
+                        throw e;
+                    }
+                }
+                break;
+            }
+        }
+    }
+
+    private static String logPath(final IgniteConfiguration cfg)
+    {
+        if (!Strings.isNullOrEmpty(cfg.getMyLogPath()))
+            return cfg.getMyLogPath();
+
+        try
+        {
+            File dir = U.resolveWorkDirectory(cfg.getWorkDirectory(), "my_log", false);
+            return new File(dir, "my_log.mv.db").getAbsolutePath();
+        }
+        catch (Exception e)
+        {
+            throw new IgniteException("无法创建 HA log 的目录！", e);
+        }
+    }
+
+    /**
+     * 持久化方式
+     * */
+    public enum MyLogDurability {
+        SYNC, BATCH, ASYNC
+    }
+
+    private enum MyLogOpType {
+        CREATE, SAVE, COMMIT, ROLLBACK
+    }
+
+    /**
+     * 队列中的操作
+     * */
+    private static class MyLogOp {
+        private final MyLogOpType type;
+
+        private final String tranSession;
+
+        private final byte[] data;
+
+        /** sync 模式下 commit 和 rollback 等待的结果 */
+        private final CompletableFuture<Void> future;
+
+        private final long startTime = System.nanoTime();
+
+        private Exception error;
+
+        MyLogOp(final MyLogOpType type, final String tranSession, final byte[] data, final boolean sync)
+        {
+            this.type = type;
+            this.tranSession = tranSession;
+            this.data = data;
+            this.future = sync ? new CompletableFuture<>() : null;
+        }
+    }
+
+    /**
+     * 还没有提交的 session
+     * */
+    private static class MyLogSession {
+        private final Transaction transaction;
+
+        private final TransactionMap<Integer, byte[]> transactionMap;
+
+        private int index;
+
+        MyLogSession(final Transaction transaction, final TransactionMap<Integer, byte[]> transactionMap)
+        {
+            this.transaction = transaction;
+            this.transactionMap = transactionMap;
+        }
+    }
+}
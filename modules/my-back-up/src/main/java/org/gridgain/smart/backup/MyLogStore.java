@@ -10,6 +10,8 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public class MyLogStore {
     private MVStore mvStore;
+    /** 所有的 session 共用一个 TransactionStore */
+    private TransactionStore transactionStore;
     private ConcurrentHashMap<String, MyLogTrans> hashMap;
 
     private static class InstanceHolder {
@@ -22,15 +24,14 @@ public class MyLogStore {
 
     public void setMvStore(final String path) {
         mvStore = MVStore.open(path);
+        transactionStore = new TransactionStore(mvStore);
+        transactionStore.init();
         hashMap = new ConcurrentHashMap<String, MyLogTrans>();
     }
 
     private boolean saveTranSession(String tranSession)
     {
         boolean flag = true;
-        TransactionStore transactionStore = new TransactionStore(mvStore);
-        transactionStore.init();
-
         Transaction transaction = transactionStore.begin();
         TransactionMap<String, Object> transactionMap = transaction.openMap("my_tran_session");
 
@@ -49,7 +50,7 @@ public class MyLogStore {
     }
 
     public void createSession(String tranSession) {
-        this.hashMap.put(tranSession, new MyLogTrans(mvStore, tranSession));
+        this.hashMap.put(tranSession, new MyLogTrans(transactionStore, tranSession));
     }
 
     public void saveTo(String tranSession, byte[] bytes) {
@@ -97,7 +98,7 @@ public class MyLogStore {
 
     private void removeDate(String tranSession)
     {
-        MyLogTrans m = new MyLogTrans(mvStore, tranSession);
+        MyLogTrans m = new MyLogTrans(transactionStore, tranSession);
         try {
             m.getTransactionMap().remove(tranSession);
             m.getTransaction().commit();
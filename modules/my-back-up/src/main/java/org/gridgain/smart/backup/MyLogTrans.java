@@ -12,12 +12,22 @@ public class MyLogTrans {
 
     public MyLogTrans(final MVStore mvStore, final String tranSession)
     {
-        TransactionStore transactionStore = new TransactionStore(mvStore);
-        transactionStore.init();
+        this(initTransactionStore(mvStore), tranSession);
+    }
+
+    public MyLogTrans(final TransactionStore transactionStore, final String tranSession)
+    {
         this.transaction = transactionStore.begin();
         this.transactionMap = transaction.openMap(tranSession);
     }
 
+    private static TransactionStore initTransactionStore(final MVStore mvStore)
+    {
+        TransactionStore transactionStore = new TransactionStore(mvStore);
+        transactionStore.init();
+        return transactionStore;
+    }
+
     public Transaction getTransaction() {
         return transaction;
     }
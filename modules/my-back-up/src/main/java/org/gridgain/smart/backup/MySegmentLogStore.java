@@ -0,0 +1,699 @@
+package org.gridgain.smart.backup;
+
+import cn.smart.service.IMyLogTrans;
+import com.google.common.base.Strings;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.IgniteLogger;
+import org.apache.ignite.IgniteState;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.IgnitionListener;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.internal.IgniteEx;
+import org.apache.ignite.internal.processors.metric.MetricRegistry;
+import org.apache.ignite.internal.processors.metric.impl.HistogramMetricImpl;
+import org.apache.ignite.internal.processors.metric.impl.LongAdderMetric;
+import org.apache.ignite.internal.util.typedef.internal.U;
+import org.apache.ignite.logger.java.JavaLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 两地三中心的高可用 log，使用固定大小的 segment 文件保存
+ * log 只会追加，恢复时按顺序读取，不需要 MVStore 的 B-tree
+ * 1、segment 文件通过 mmap 写入，文件名为 segment-id.log，id 递增
+ * 2、每条记录的格式为：长度(int) + CRC(int) + 类型(byte) + session 的长度(short) + session + 数据
+ *    CRC 包含 segment 的 id，复用的 segment 中残留的旧记录校验不通过，读取到这里就结束；
+ *    恢复时 read 读取每条记录都会再校验一次，重启之后文件被改坏的记录不会写入集群
+ * 3、每个 session 在内存中保存它的记录的位置（segment id + offset）
+ * 4、只有 commit 的 session 才需要恢复，rollback 之后它的记录不再需要，
+ *    segment 中所有的 session 都 rollback 并且比它旧的 segment 都已经复用后，这个 segment 会被复用
+ * 5、重启时按顺序扫描所有的 segment 重建索引，没有 commit 的 session 作为 rollback 处理
+ * 持久化方式和 MyGroupCommitLogStore 一样，由 myLogDurability 指定：
+ * sync：commit 时刷盘，batch：每隔 myLogFlushFrequency 毫秒刷盘，async：不主动刷盘
+ * 在 IgniteConfiguration 中设置 myLogCls 为这个类的全称，myLogPath 为保存 segment 的目录即可使用，
+ * 节点停止时（IgnitionListener）刷盘并停止后台线程，metric 和 MyGroupCommitLogStore 一样在 ha.log 中
+ * 恢复时通过 open(dir) 打开 segment 的目录，交给 MyRecovery 恢复所有已经 commit 的 session
+ * */
+public class MySegmentLogStore implements IMyLogTrans {
+
+    /** segment 文件的默认大小 */
+    public static final int DFLT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /** 记录的头：长度 + CRC */
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte TYPE_DATA = 1;
+
+    private static final byte TYPE_COMMIT = 2;
+
+    private static final byte TYPE_ROLLBACK = 3;
+
+    private final File dir;
+
+    private final int segmentSize;
+
+    private final MyGroupCommitLogStore.MyLogDurability durability;
+
+    /** 正在使用的 segment，按 id 排序 */
+    private final TreeMap<Long, MySegment> segments = new TreeMap<>();
+
+    /** 可以复用的 segment */
+    private final ArrayDeque<MySegment> free = new ArrayDeque<>();
+
+    private final Map<String, MySessionIndex> sessions = new HashMap<>();
+
+    private MySegment current;
+
+    private final Thread flusher;
+
+    private volatile boolean stopped;
+
+    private final IgniteLogger log;
+
+    /** 节点停止后关闭 HA log，没有节点（open(dir) 恢复时）为 null */
+    private final IgnitionListener stopLsnr;
+
+    private final LongAdderMetric records;
+
+    private final LongAdderMetric flushes;
+
+    private final HistogramMetricImpl commitLatency;
+
+    private final HistogramMetricImpl flushLatency;
+
+    public MySegmentLogStore()
+    {
+        this(Ignition.ignite());
+    }
+
+    public MySegmentLogStore(final Ignite ignite)
+    {
+        this(ignite, logDir(ignite.configuration()), DFLT_SEGMENT_SIZE,
+                MyGroupCommitLogStore.MyLogDurability.valueOf(ignite.configuration().getMyLogDurability().toUpperCase()),
+                ignite.configuration().getMyLogFlushFrequency());
+    }
+
+    public MySegmentLogStore(final File dir, final int segmentSize, final MyGroupCommitLogStore.MyLogDurability durability, final long flushFrequency)
+    {
+        this(null, dir, segmentSize, durability, flushFrequency);
+    }
+
+    /**
+     * ignite 为 null 时（不在节点中使用）不监听节点停止，由调用者 close，metric 不注册到节点
+     * */
+    private MySegmentLogStore(final Ignite ignite, final File dir, final int segmentSize, final MyGroupCommitLogStore.MyLogDurability durability, final long flushFrequency)
+    {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.durability = durability;
+        this.log = ignite != null ? ignite.log().getLogger(MySegmentLogStore.class) : new JavaLogger().getLogger(MySegmentLogStore.class);
+
+        String regName = MyGroupCommitLogStore.MY_LOG_METRIC_GROUP_NAME;
+        MetricRegistry registry = ignite != null
+                ? ((IgniteEx)ignite).context().metric().registry(regName)
+                : new MetricRegistry(regName, regName, name -> null, name -> null, log);
+        records = registry.longAdderMetric("records", "Count of records saved to HA log");
+        flushes = registry.longAdderMetric("flushes", "Count of HA log segment flushes");
+        commitLatency = registry.histogram("commitLatency", MyGroupCommitLogStore.LATENCY_BOUNDS, "Latency in milliseconds of HA log commit");
+        flushLatency = registry.histogram("flushLatency", MyGroupCommitLogStore.LATENCY_BOUNDS, "Latency in milliseconds of HA log segment flush");
+
+        try
+        {
+            Files.createDirectories(dir.toPath());
+            load();
+        }
+        catch (IOException e)
+        {
+            throw new IgniteException("无法打开 HA log 的 segment 文件！", e);
+        }
+
+        if (durability == MyGroupCommitLogStore.MyLogDurability.BATCH)
+        {
+            long sleep = Math.max(1, flushFrequency);
+            flusher = new Thread(() -> {
+                while (!stopped)
+                {
+                    try
+                    {
+                        TimeUnit.MILLISECONDS.sleep(sleep);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        break;
+                    }
+                    force();
+                }
+            }, "my-segment-log-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        else
+        {
+            flusher = null;
+        }
+
+        // 节点停止以后不会再有新的提交，此时刷盘并停止后台线程
+        if (ignite != null)
+        {
+            String igniteName = ignite.name();
+            stopLsnr = (name, state) -> {
+                if (state != IgniteState.STARTED && Objects.equals(name, igniteName))
+                    close();
+            };
+            Ignition.addListener(stopLsnr);
+        }
+        else
+        {
+            stopLsnr = null;
+        }
+    }
+
+    /**
+     * 打开已经存在的 segment 目录，用于恢复
+     * segment 的大小从已有的文件中读取，不会改变文件的大小
+     * */
+    public static MySegmentLogStore open(final File dir)
+    {
+        int segmentSize = DFLT_SEGMENT_SIZE;
+
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files != null && files.length > 0)
+        {
+            long len = files[0].length();
+            for (File file : files)
+            {
+                if (file.length() != len)
+                    throw new IgniteException("HA log 的 segment 文件大小不一致：" + file);
+            }
+
+            if (len <= HEADER_SIZE || len > Integer.MAX_VALUE)
+                throw new IgniteException("HA log 的 segment 文件大小错误：" + len);
+
+            segmentSize = (int) len;
+        }
+
+        return new MySegmentLogStore(dir, segmentSize, MyGroupCommitLogStore.MyLogDurability.ASYNC, 0);
+    }
+
+    /**
+     * 保存 segment 的目录
+     * */
+    public File dir()
+    {
+        return dir;
+    }
+
+    @Override
+    public synchronized void createSession(final String tranSession) {
+        sessions.put(tranSession, new MySessionIndex());
+    }
+
+    @Override
+    public synchronized void saveTo(final String tranSession, final byte[] data) {
+        MySessionIndex index = sessions.get(tranSession);
+        if (index == null || index.committed)
+            throw new IgniteException("HA log 的 session 不存在：" + tranSession);
+
+        index.positions.add(append(TYPE_DATA, tranSession, data, index));
+        records.increment();
+    }
+
+    @Override
+    public void commit(final String tranSession) {
+        long start = System.nanoTime();
+        MySegment segment;
+        synchronized (this)
+        {
+            MySessionIndex index = sessions.get(tranSession);
+            if (index == null || index.committed)
+                return;
+
+            if (index.positions.isEmpty())
+            {
+                // 没有记录，不需要恢复
+                sessions.remove(tranSession);
+                return;
+            }
+
+            append(TYPE_COMMIT, tranSession, null, index);
+            index.committed = true;
+            segment = current;
+        }
+
+        if (durability == MyGroupCommitLogStore.MyLogDurability.SYNC)
+            force(segment);
+
+        commitLatency.value(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Override
+    public synchronized void rollback(final String tranSession) {
+        MySessionIndex index = sessions.remove(tranSession);
+        if (index == null)
+            return;
+
+        // 没有 commit 的 session 重启后会被丢弃，不需要写入 rollback
+        if (index.committed)
+            append(TYPE_ROLLBACK, tranSession, null, null);
+
+        for (Long id : index.segments)
+        {
+            MySegment segment = segments.get(id);
+            if (segment != null)
+                segment.sessions.remove(tranSession);
+        }
+        recycle();
+    }
+
+    /**
+     * 已经 commit 的 session
+     * */
+    public synchronized List<String> committedSessions()
+    {
+        List<String> rs = new ArrayList<>();
+        for (Map.Entry<String, MySessionIndex> m : sessions.entrySet())
+        {
+            if (m.getValue().committed)
+                rs.add(m.getKey());
+        }
+        return rs;
+    }
+
+    /**
+     * 按顺序读取 session 的记录
+     * */
+    public synchronized List<byte[]> read(final String tranSession)
+    {
+        int size = size(tranSession);
+
+        List<byte[]> rs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            rs.add(read(tranSession, i));
+        return rs;
+    }
+
+    /**
+     * session 中记录的条数
+     * */
+    public synchronized int size(final String tranSession)
+    {
+        MySessionIndex index = sessions.get(tranSession);
+        return index == null ? 0 : index.positions.size();
+    }
+
+    /**
+     * 读取 session 的第 i 条记录，恢复时逐条读取，不需要把整个 session 读到内存中
+     * 记录的 CRC 校验不通过时抛出异常，不会返回改坏的数据
+     * */
+    public synchronized byte[] read(final String tranSession, final int i)
+    {
+        MySessionIndex index = sessions.get(tranSession);
+        if (index == null || i < 0 || i >= index.positions.size())
+            throw new IgniteException("HA log 的记录不存在：" + tranSession + "[" + i + "]");
+
+        long pos = index.positions.get(i);
+        MySegment segment = segments.get(pos >>> 32);
+        ByteBuffer buf = segment.buffer.duplicate();
+        buf.position((int) pos);
+
+        int len = buf.getInt();
+        int crc = buf.getInt();
+        if (len < 3 || len > segmentSize - HEADER_SIZE - (int) pos || crc != crc(segment.id, segment.buffer, (int) pos + HEADER_SIZE, len))
+        {
+            IgniteException e = new IgniteException("HA log 的记录校验失败：" + tranSession + "[" + i + "]，segment " + segment.file + "，位置 " + (int) pos);
+            U.error(log, e.getMessage(), e);
+            throw e;
+        }
+
+        buf.get();
+        short sessionLen = buf.getShort();
+        buf.position(buf.position() + sessionLen);
+
+        byte[] data = new byte[len - 3 - sessionLen];
+        buf.get(data);
+        return data;
+    }
+
+    /**
+     * 刷盘
+     * */
+    public void force()
+    {
+        MySegment segment;
+        synchronized (this)
+        {
+            segment = current;
+        }
+        force(segment);
+    }
+
+    private void force(final MySegment segment)
+    {
+        long start = System.nanoTime();
+
+        segment.buffer.force();
+
+        flushes.increment();
+        flushLatency.value(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * 停止后台线程并刷盘，节点停止时自动调用
+     * */
+    public synchronized void close()
+    {
+        if (stopped)
+            return;
+
+        stopped = true;
+        if (stopLsnr != null)
+            Ignition.removeListener(stopLsnr);
+
+        if (flusher != null)
+            flusher.interrupt();
+
+        if (durability != MyGroupCommitLogStore.MyLogDurability.ASYNC)
+            force(current);
+    }
+
+    /**
+     * 追加一条记录，返回记录的位置
+     * */
+    private long append(final byte type, final String tranSession, final byte[] data, final MySessionIndex index)
+    {
+        byte[] session = tranSession.getBytes(StandardCharsets.UTF_8);
+        int bodyLen = 3 + session.length + (data == null ? 0 : data.length);
+
+        if (HEADER_SIZE + bodyLen > segmentSize)
+            throw new IgniteException("HA log 的记录超过了 segment 的大小：" + bodyLen);
+
+        if (current.pos + HEADER_SIZE + bodyLen > segmentSize)
+            rollOver();
+
+        MySegment segment = current;
+        int pos = segment.pos;
+
+        ByteBuffer buf = segment.buffer.duplicate();
+        buf.position(pos + HEADER_SIZE);
+        buf.put(type);
+        buf.putShort((short) session.length);
+        buf.put(session);
+        if (data != null)
+            buf.put(data);
+
+        buf.putInt(pos, bodyLen);
+        buf.putInt(pos + 4, crc(segment.id, segment.buffer, pos + HEADER_SIZE, bodyLen));
+
+        segment.pos = pos + HEADER_SIZE + bodyLen;
+
+        if (index != null)
+        {
+            segment.sessions.add(tranSession);
+            if (index.segments.isEmpty() || index.segments.get(index.segments.size() - 1) != segment.id)
+                index.segments.add(segment.id);
+        }
+
+        return (segment.id << 32) | pos;
+    }
+
+    /**
+     * 当前的 segment 写满后，切换到新的 segment
+     * */
+    private void rollOver()
+    {
+        MySegment old = current;
+        if (durability != MyGroupCommitLogStore.MyLogDurability.ASYNC)
+            force(old);
+
+        try
+        {
+            current = newSegment(old.id + 1);
+        }
+        catch (IOException e)
+        {
+            throw new IgniteException("无法创建 HA log 的 segment 文件！", e);
+        }
+
+        recycle();
+    }
+
+    /**
+     * 按顺序复用已经不再需要的 segment，保证 rollback 的记录不会比它对应的数据先被覆盖
+     * */
+    private void recycle()
+    {
+        while (!segments.isEmpty())
+        {
+            MySegment first = segments.firstEntry().getValue();
+            if (first == current || !first.sessions.isEmpty())
+                break;
+
+            segments.pollFirstEntry();
+            free.add(first);
+        }
+    }
+
+    private MySegment newSegment(final long id) throws IOException
+    {
+        File file = segmentFile(id);
+        MySegment segment = free.poll();
+
+        if (segment != null)
+        {
+            try
+            {
+                Files.move(segment.file.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                segment.file = file;
+                segment.id = id;
+                segment.pos = 0;
+                segment.sessions.clear();
+            }
+            catch (IOException e)
+            {
+                segment = null;
+            }
+        }
+
+        if (segment == null)
+            segment = new MySegment(id, file, map(file));
+
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private MappedByteBuffer map(final File file) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            if (raf.length() != segmentSize)
+                raf.setLength(segmentSize);
+
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    /**
+     * 按顺序扫描所有的 segment，重建 session 的索引
+     * */
+    private void load() throws IOException
+    {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+
+        TreeMap<Long, File> sorted = new TreeMap<>();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                String name = file.getName();
+                sorted.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+
+        for (Map.Entry<Long, File> m : sorted.entrySet())
+        {
+            MySegment segment = new MySegment(m.getKey(), m.getValue(), map(m.getValue()));
+            segments.put(segment.id, segment);
+            scan(segment);
+        }
+
+        // 没有 commit 的 session 丢弃
+        Iterator<Map.Entry<String, MySessionIndex>> it = sessions.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<String, MySessionIndex> m = it.next();
+            if (!m.getValue().committed)
+            {
+                for (Long id : m.getValue().segments)
+                    segments.get(id).sessions.remove(m.getKey());
+                it.remove();
+            }
+        }
+
+        if (segments.isEmpty())
+            current = newSegment(1);
+        else
+            current = segments.lastEntry().getValue();
+
+        recycle();
+    }
+
+    private void scan(final MySegment segment)
+    {
+        ByteBuffer buf = segment.buffer.duplicate();
+        int pos = 0;
+
+        while (pos + HEADER_SIZE <= segmentSize)
+        {
+            int bodyLen = buf.getInt(pos);
+            if (bodyLen < 3 || pos + HEADER_SIZE + bodyLen > segmentSize)
+                break;
+
+            if (buf.getInt(pos + 4) != crc(segment.id, segment.buffer, pos + HEADER_SIZE, bodyLen))
+                break;
+
+            byte type = buf.get(pos + HEADER_SIZE);
+            short sessionLen = buf.getShort(pos + HEADER_SIZE + 1);
+            byte[] session = new byte[sessionLen];
+            buf.position(pos + HEADER_SIZE + 3);
+            buf.get(session);
+            String tranSession = new String(session, StandardCharsets.UTF_8);
+
+            MySessionIndex index = sessions.get(tranSession);
+            switch (type)
+            {
+                case TYPE_DATA:
+                    if (index == null)
+                    {
+                        index = new MySessionIndex();
+                        sessions.put(tranSession, index);
+                    }
+                    index.positions.add((segment.id << 32) | pos);
+                    break;
+
+                case TYPE_COMMIT:
+                    if (index != null)
+                        index.committed = true;
+                    break;
+
+                case TYPE_ROLLBACK:
+                    if (index != null)
+                    {
+                        sessions.remove(tranSession);
+                        for (Long id : index.segments)
+                            segments.get(id).sessions.remove(tranSession);
+                        index = null;
+                    }
+                    break;
+            }
+
+            if (index != null && type != TYPE_ROLLBACK)
+            {
+                segment.sessions.add(tranSession);
+                if (index.segments.isEmpty() || index.segments.get(index.segments.size() - 1) != segment.id)
+                    index.segments.add(segment.id);
+            }
+
+            pos += HEADER_SIZE + bodyLen;
+        }
+
+        segment.pos = pos;
+    }
+
+    private static int crc(final long segmentId, final MappedByteBuffer buffer, final int pos, final int len)
+    {
+        CRC32 crc = new CRC32();
+
+        ByteBuffer id = ByteBuffer.allocate(8);
+        id.putLong(0, segmentId);
+        crc.update(id);
+
+        ByteBuffer body = buffer.duplicate();
+        body.position(pos);
+        body.limit(pos + len);
+        crc.update(body);
+
+        return (int) crc.getValue();
+    }
+
+    private File segmentFile(final long id)
+    {
+        return new File(dir, SEGMENT_PREFIX + String.format("%016d", id) + SEGMENT_SUFFIX);
+    }
+
+    private static File logDir(final IgniteConfiguration cfg)
+    {
+        if (!Strings.isNullOrEmpty(cfg.getMyLogPath()))
+            return new File(cfg.getMyLogPath());
+
+        try
+        {
+            return U.resolveWorkDirectory(cfg.getWorkDirectory(), "my_log_segments", false);
+        }
+        catch (Exception e)
+        {
+            throw new IgniteException("无法创建 HA log 的目录！", e);
+        }
+    }
+
+    /**
+     * segment 文件
+     * */
+    private static class MySegment {
+        private long id;
+
+        private File file;
+
+        private final MappedByteBuffer buffer;
+
+        /** 下一条记录写入的位置 */
+        private int pos;
+
+        /** 在这个 segment 中有记录，并且还没有 rollback 的 session */
+        private final Set<String> sessions = new HashSet<>();
+
+        MySegment(final long id, final File file, final MappedByteBuffer buffer)
+        {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * session 的索引
+     * */
+    private static class MySessionIndex {
+        /** 数据记录的位置：segment id << 32 | offset */
+        private final List<Long> positions = new ArrayList<>();
+
+        /** 包含这个 session 的记录的 segment */
+        private final List<Long> segments = new ArrayList<>();
+
+        private boolean committed;
+    }
+}
@@ -1,113 +1,519 @@
 package org.gridgain.smart.recovery;
 
+import org.gridgain.internal.h2.mvstore.MVMap;
 import org.gridgain.internal.h2.mvstore.MVStore;
 import org.gridgain.internal.h2.mvstore.tx.Transaction;
 import org.gridgain.internal.h2.mvstore.tx.TransactionMap;
 import org.gridgain.internal.h2.mvstore.tx.TransactionStore;
 
+import org.gridgain.smart.backup.MySegmentLogStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * 从文件中将数据恢复到集群中
+ * 1、每个线程只打开一个 JDBC 连接，recovery_to_cluster(?) 只 prepare 一次，所有的记录都复用它
+ * 2、多个 session 可以由多个线程并行恢复，同一个 session 中的记录按顺序恢复
+ * 3、恢复的进度保存在 MVStore 的 my_recovery_checkpoint 中，中断后重新恢复时，从上一次的位置继续
+ * 4、HA log 可以是 MVStore 也可以是 MySegmentLogStore 写的 segment 目录（MySegmentLogStore.open(dir)），
+ *    segment 只恢复已经 commit 的 session，进度追加到 segment 目录的 my_recovery_checkpoint.log 中
+ * 5、recovery_to_cluster 不是幂等的（例如 insert、update set a = a + 1），同一条记录不能写入集群两次。
+ *    写入集群和保存进度不在同一个事务中，所以每条记录都记录两次进度：写入前记录这条记录正在写入，写入后记录已经完成。
+ *    中断后重新恢复时，正在写入的记录是否已经写入集群不能确定，这个 session 不会继续恢复（抛出异常），
+ *    在集群中确认后调用 resolveInFlight 指定这条记录是否已经写入，再重新恢复
  * */
 public class MyRecovery {
 
-    private MVStore mvStore;
-    private String tranSession;
-    private String jdbcUrl;
+    private static final String JDBC_DRIVER = "org.apache.ignite.IgniteJdbcDriver";
+
+    /** 保存恢复进度的 map：已经写入集群的最后一条记录的 key */
+    private static final String CHECKPOINT_MAP = "my_recovery_checkpoint";
+
+    /** 正在写入集群的记录的 key，写入前保存，写入后和进度一起删除 */
+    private static final String IN_FLIGHT_MAP = "my_recovery_in_flight";
+
+    /** segment 目录中保存恢复进度的文件 */
+    private static final String CHECKPOINT_FILE = CHECKPOINT_MAP + ".log";
+
+    /** 恢复进度的文件超过这个行数时，重写为每个 session 一行 */
+    private static final int CHECKPOINT_COMPACT_LINES = 64 * 1024;
+
+    private final MVStore mvStore;
+    private final MySegmentLogStore segmentStore;
+    private final List<String> tranSessions;
+    private final String jdbcUrl;
+    private final int workers;
 
     /**
      * 生成不可变对象
      * */
     public MyRecovery(final MVStore mvStore, final String tranSession, final String jdbcUrl)
     {
-        this.mvStore = mvStore;
-        this.tranSession = tranSession;
-        this.jdbcUrl = jdbcUrl;
+        this(mvStore, Collections.singletonList(tranSession), jdbcUrl, 1);
     }
 
     /**
-     * 恢复到集群
+     * 生成不可变对象
+     * @param workers 并行恢复的线程数，最多和 session 的个数相同
      * */
-    public void recoveryToCluster() throws SQLException, ClassNotFoundException {
-        TransactionStore transactionStore = new TransactionStore(mvStore);
-        transactionStore.init();
-
-        Transaction transaction = transactionStore.begin();
-        TransactionMap<Integer, byte[]> transactionMap = transaction.openMap(this.tranSession);
-
-        for (Integer key : transactionMap.keySet())
-        {
-            byte[] vs = transactionMap.get(key);
-            toCluster(vs);
-        }
+    public MyRecovery(final MVStore mvStore, final List<String> tranSessions, final String jdbcUrl, final int workers)
+    {
+        this(mvStore, null, tranSessions, jdbcUrl, workers);
     }
 
     /**
-     * 通过 JDBC 将 数据写到集群
+     * 恢复 segment 中所有已经 commit 的 session
      * */
-    private void toCluster(final byte[] vs) throws ClassNotFoundException, SQLException {
-
-        Class.forName("org.apache.ignite.IgniteJdbcDriver");
-        Connection conn = DriverManager.getConnection(this.jdbcUrl);
-        PreparedStatement stmt = conn.prepareStatement("recovery_to_cluster(?)");
-        stmt.setBytes(1, vs);
-        stmt.executeQuery();
-        stmt.close();
-        conn.close();
+    public MyRecovery(final MySegmentLogStore segmentStore, final String jdbcUrl, final int workers)
+    {
+        this(segmentStore, new ArrayList<>(segmentStore.committedSessions()), jdbcUrl, workers);
     }
-}
-
-
-
-
-
-
-
-
-
-
-
-
 
+    /**
+     * 恢复 segment 中指定的 session，没有 commit 的 session 在 segment 中读不到，会被跳过
+     * */
+    public MyRecovery(final MySegmentLogStore segmentStore, final List<String> tranSessions, final String jdbcUrl, final int workers)
+    {
+        this(null, segmentStore, tranSessions, jdbcUrl, workers);
+    }
 
+    private MyRecovery(final MVStore mvStore, final MySegmentLogStore segmentStore, final List<String> tranSessions, final String jdbcUrl, final int workers)
+    {
+        this.mvStore = mvStore;
+        this.segmentStore = segmentStore;
+        this.tranSessions = tranSessions;
+        this.jdbcUrl = jdbcUrl;
+        this.workers = Math.max(1, Math.min(workers, tranSessions.size()));
+    }
 
+    /**
+     * 恢复到集群
+     * */
+    public void recoveryToCluster() throws SQLException, ClassNotFoundException {
+        Class.forName(JDBC_DRIVER);
 
+        MySessionSource source = segmentStore != null ? new MySegmentSource() : new MyMVStoreSource();
+        try
+        {
+            recoveryToCluster(source);
+        }
+        finally
+        {
+            source.close();
+        }
+    }
 
+    private void recoveryToCluster(final MySessionSource source) throws SQLException {
+        Queue<String> sessions = new ConcurrentLinkedQueue<>(tranSessions);
 
+        if (workers == 1)
+        {
+            recoverySessions(source, sessions);
+            return;
+        }
 
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++)
+            {
+                futures.add(pool.submit(() -> {
+                    recoverySessions(source, sessions);
+                    return null;
+                }));
+            }
+
+            for (Future<Void> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (ExecutionException e)
+                {
+                    // 其它线程不再取新的 session
+                    sessions.clear();
+
+                    if (e.getCause() instanceof SQLException)
+                        throw (SQLException) e.getCause();
+
+                    throw new SQLException("恢复数据到集群失败！", e.getCause());
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    sessions.clear();
+                    throw new SQLException("恢复数据到集群被中断！", e);
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
 
+    /**
+     * 清除 session 的恢复进度，下一次恢复时从头开始
+     * */
+    public void clearCheckpoint(final String tranSession)
+    {
+        if (segmentStore != null)
+        {
+            try (MySegmentSource source = new MySegmentSource())
+            {
+                source.removeCheckpoint(tranSession);
+            }
+            return;
+        }
 
+        MVMap<String, Integer> checkpoint = mvStore.openMap(CHECKPOINT_MAP);
+        MVMap<String, Integer> inFlight = mvStore.openMap(IN_FLIGHT_MAP);
+        checkpoint.remove(tranSession);
+        inFlight.remove(tranSession);
+        mvStore.commit();
+    }
 
+    /**
+     * 上一次恢复中断时 session 中有一条记录正在写入集群，在集群中确认这条记录是否已经写入后调用
+     * @param applied true：已经写入，从下一条记录继续恢复；false：没有写入，从这条记录继续恢复
+     * */
+    public void resolveInFlight(final String tranSession, final boolean applied)
+    {
+        if (segmentStore != null)
+        {
+            try (MySegmentSource source = new MySegmentSource())
+            {
+                source.resolveInFlight(tranSession, applied);
+            }
+            return;
+        }
 
+        MVMap<String, Integer> checkpoint = mvStore.openMap(CHECKPOINT_MAP);
+        MVMap<String, Integer> inFlight = mvStore.openMap(IN_FLIGHT_MAP);
+        Integer key = inFlight.remove(tranSession);
+        if (key != null && applied)
+            checkpoint.put(tranSession, key);
+        mvStore.commit();
+    }
 
+    /**
+     * 一个线程使用一个连接，依次恢复队列中的 session
+     * */
+    private void recoverySessions(final MySessionSource source, final Queue<String> sessions) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(this.jdbcUrl);
+             PreparedStatement stmt = conn.prepareStatement("recovery_to_cluster(?)"))
+        {
+            String tranSession;
+            while ((tranSession = sessions.poll()) != null)
+            {
+                source.recoverySession(stmt, tranSession);
+            }
+        }
+    }
 
+    /**
+     * HA log 的来源，恢复一个 session，跳过已经恢复的记录
+     * */
+    private interface MySessionSource extends AutoCloseable
+    {
+        void recoverySession(final PreparedStatement stmt, final String tranSession) throws SQLException;
 
+        @Override
+        default void close()
+        {
+        }
+    }
 
+    private static SQLException inFlightError(final String tranSession, final Object record)
+    {
+        return new SQLException("session " + tranSession + " 的记录 " + record + " 在上一次恢复中断时正在写入集群，" +
+                "不能确定是否已经写入！在集群中确认后调用 resolveInFlight 再重新恢复。");
+    }
 
+    /**
+     * MVStore 写的 HA log，key 是记录的序号
+     * */
+    private class MyMVStoreSource implements MySessionSource
+    {
+        private final TransactionStore transactionStore;
+        private final MVMap<String, Integer> checkpoint;
+        private final MVMap<String, Integer> inFlight;
 
+        MyMVStoreSource()
+        {
+            transactionStore = new TransactionStore(mvStore);
+            transactionStore.init();
 
+            checkpoint = mvStore.openMap(CHECKPOINT_MAP);
+            inFlight = mvStore.openMap(IN_FLIGHT_MAP);
+        }
 
+        @Override
+        public void recoverySession(final PreparedStatement stmt, final String tranSession) throws SQLException {
+            Integer pending = inFlight.get(tranSession);
+            if (pending != null)
+                throw inFlightError(tranSession, pending);
+
+            Integer done = checkpoint.get(tranSession);
+
+            Transaction transaction = transactionStore.begin();
+            try
+            {
+                TransactionMap<Integer, byte[]> transactionMap = transaction.openMap(tranSession);
+
+                for (Integer key : transactionMap.keySet())
+                {
+                    if (done != null && key <= done)
+                        continue;
+
+                    // 两个 map 在同一次 commit 中保存，不会只保存其中一个
+                    inFlight.put(tranSession, key);
+                    mvStore.commit();
+
+                    toCluster(stmt, transactionMap.get(key));
+
+                    checkpoint.put(tranSession, key);
+                    inFlight.remove(tranSession);
+                    mvStore.commit();
+                }
+            }
+            finally
+            {
+                transaction.commit();
+            }
+        }
+    }
 
+    /**
+     * MySegmentLogStore 写的 HA log，session 中的记录按写入的顺序逐条读取
+     * 进度是已经恢复的记录条数，每条记录写入集群前后各追加一行到进度文件：
+     * "B 序号 session" 表示这条记录正在写入，"D 条数 session" 表示前面的记录都已经写入
+     * 追加一行只有一次 write，中断时没有写完的最后一行（没有换行符）被忽略；
+     * 行数超过 CHECKPOINT_COMPACT_LINES 时，先写临时文件再原子替换为每个 session 一行
+     * */
+    private class MySegmentSource implements MySessionSource
+    {
+        private final File file = new File(segmentStore.dir(), CHECKPOINT_FILE);
 
+        /** 已经恢复的记录条数，多个线程共用，访问时锁 MyRecovery.this */
+        private final Map<String, Integer> done = new HashMap<>();
 
+        /** 正在写入集群的记录的序号 */
+        private final Map<String, Integer> inFlight = new HashMap<>();
 
+        private FileChannel channel;
 
+        private int lines;
 
+        MySegmentSource()
+        {
+            synchronized (MyRecovery.this)
+            {
+                load();
+            }
+        }
 
+        @Override
+        public void recoverySession(final PreparedStatement stmt, final String tranSession) throws SQLException {
+            int size = segmentStore.size(tranSession);
 
+            int i;
+            synchronized (MyRecovery.this)
+            {
+                Integer pending = inFlight.get(tranSession);
+                if (pending != null)
+                    throw inFlightError(tranSession, pending);
 
+                i = done.getOrDefault(tranSession, 0);
+            }
 
+            for (; i < size; i++)
+            {
+                byte[] record = segmentStore.read(tranSession, i);
 
+                append('B', i, tranSession);
 
+                toCluster(stmt, record);
 
+                append('D', i + 1, tranSession);
+            }
+        }
 
+        void removeCheckpoint(final String tranSession)
+        {
+            synchronized (MyRecovery.this)
+            {
+                if (done.containsKey(tranSession) || inFlight.containsKey(tranSession))
+                    append('D', 0, tranSession);
+            }
+        }
 
+        void resolveInFlight(final String tranSession, final boolean applied)
+        {
+            synchronized (MyRecovery.this)
+            {
+                Integer pending = inFlight.get(tranSession);
+                if (pending != null)
+                    append('D', applied ? pending + 1 : pending, tranSession);
+            }
+        }
 
+        @Override
+        public void close()
+        {
+            synchronized (MyRecovery.this)
+            {
+                if (channel != null)
+                {
+                    try
+                    {
+                        channel.close();
+                    }
+                    catch (IOException ignored)
+                    {
+                        // 进度已经写入
+                    }
+                    channel = null;
+                }
+            }
+        }
 
+        /**
+         * 追加一行进度，写入后才会开始（或者继续）写入集群
+         * */
+        private void append(final char type, final int pos, final String tranSession)
+        {
+            synchronized (MyRecovery.this)
+            {
+                try
+                {
+                    if (lines >= CHECKPOINT_COMPACT_LINES)
+                        compact();
+
+                    if (channel == null)
+                        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+                    ByteBuffer buf = ByteBuffer.wrap(line(type, pos, tranSession).getBytes(StandardCharsets.UTF_8));
+                    while (buf.hasRemaining())
+                        channel.write(buf);
+
+                    lines++;
+                }
+                catch (IOException e)
+                {
+                    throw new IllegalStateException("保存恢复进度失败：" + file, e);
+                }
+
+                apply(type, pos, tranSession);
+            }
+        }
 
+        private void apply(final char type, final int pos, final String tranSession)
+        {
+            if (type == 'B')
+            {
+                inFlight.put(tranSession, pos);
+            }
+            else
+            {
+                inFlight.remove(tranSession);
+                if (pos == 0)
+                    done.remove(tranSession);
+                else
+                    done.put(tranSession, pos);
+            }
+        }
 
+        private void load()
+        {
+            if (!file.exists())
+                return;
+
+            String text;
+            try
+            {
+                text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("读取恢复进度失败：" + file, e);
+            }
+
+            int start = 0;
+            for (int end; (end = text.indexOf('\n', start)) >= 0; start = end + 1)
+            {
+                String line = text.substring(start, end);
+                int sp1 = line.indexOf(' ');
+                int sp2 = sp1 < 0 ? -1 : line.indexOf(' ', sp1 + 1);
+                if (sp1 != 1 || sp2 < 0)
+                    throw new IllegalStateException("恢复进度的文件格式错误：" + file + "：" + line);
+
+                apply(line.charAt(0), Integer.parseInt(line.substring(sp1 + 1, sp2)), line.substring(sp2 + 1));
+                lines++;
+            }
+        }
 
+        /**
+         * 重写为每个 session 一行，正在写入的记录也要保留
+         * */
+        private void compact() throws IOException
+        {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, Integer> m : done.entrySet())
+                sb.append(line('D', m.getValue(), m.getKey()));
+            for (Map.Entry<String, Integer> m : inFlight.entrySet())
+                sb.append(line('B', m.getValue(), m.getKey()));
+
+            if (channel != null)
+            {
+                channel.close();
+                channel = null;
+            }
+
+            File tmp = new File(file.getPath() + ".tmp");
+            Files.write(tmp.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            lines = done.size() + inFlight.size();
+        }
 
+        private String line(final char type, final int pos, final String tranSession)
+        {
+            return type + " " + pos + " " + tranSession + "\n";
+        }
+    }
 
+    /**
+     * 通过 JDBC 将 数据写到集群
+     * recovery_to_cluster 是有返回值的函数，不能用 addBatch 或者 streaming 的方式执行，
+     * 所以复用同一个 PreparedStatement，每条记录只有一次网络往返
+     * */
+    private void toCluster(final PreparedStatement stmt, final byte[] vs) throws SQLException {
+        stmt.setBytes(1, vs);
+        try (ResultSet rs = stmt.executeQuery())
+        {
+            // 只需要执行，不需要结果
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.dawn.rpc;
+
+import org.apache.ignite.internal.processors.metric.MetricRegistry;
+import org.apache.ignite.internal.processors.metric.impl.HistogramMetricImpl;
+import org.apache.ignite.internal.processors.metric.impl.LongAdderMetric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RPC 请求的执行器
+ * 请求交给节点的线程池执行（IgniteConfiguration 中名为 dawn-rpc 的自定义线程池，没有配置时为 public 线程池），
+ * 同时执行的请求最多 workers 个，其余的请求在长度为 queueSize 的队列中等待，队列满了以后拒绝新的请求
+ * 1、只在 execute 时拒绝请求，请求执行完成后调度下一个请求时不会抛出异常
+ * 2、节点的线程池拒绝请求时（节点正在停止），执行器关闭，队列中的请求被丢弃并计入 rejected
+ * 3、shutdown 只是不再接收新的请求，不会关闭节点的线程池
+ * */
+public class MyRpcExecutor extends AbstractExecutorService {
+
+    /** 延迟的统计区间（毫秒） */
+    private static final long[] LATENCY_BOUNDS = new long[] {1, 5, 10, 50, 100, 500, 1000, 5000};
+
+    private final Executor pool;
+
+    private final int workers;
+
+    private final int queueSize;
+
+    private final ConcurrentLinkedQueue<MyRpcTask> queue = new ConcurrentLinkedQueue<>();
+
+    /** 队列中等待的请求数 */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /** 正在执行的请求数 */
+    private final AtomicInteger active = new AtomicInteger();
+
+    private volatile boolean shutdown;
+
+    private final LongAdderMetric requests;
+
+    private final LongAdderMetric rejected;
+
+    private final HistogramMetricImpl latency;
+
+    public MyRpcExecutor(final Executor pool, final int workers, final int queueSize, final MetricRegistry registry)
+    {
+        this.pool = pool;
+        this.workers = Math.max(1, workers);
+        this.queueSize = Math.max(1, queueSize);
+
+        requests = registry.longAdderMetric("requests", "Count of executed RPC requests");
+        rejected = registry.longAdderMetric("rejected", "Count of RPC requests rejected because the queue is full or the node is stopping");
+        latency = registry.histogram("requestLatency", LATENCY_BOUNDS, "Latency in milliseconds of RPC requests including queue time");
+        registry.register("queueDepth", queued::get, "Count of RPC requests waiting for execution");
+        registry.register("active", active::get, "Count of RPC requests in execution");
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (shutdown)
+        {
+            rejected.increment();
+            throw new RejectedExecutionException("RPC 服务已经关闭！");
+        }
+
+        if (queued.incrementAndGet() > queueSize)
+        {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw new RejectedExecutionException("RPC 请求的队列已满！");
+        }
+
+        queue.add(new MyRpcTask(command));
+        schedule();
+
+        if (shutdown)
+            throw new RejectedExecutionException("节点正在停止，RPC 服务已经关闭！");
+    }
+
+    /**
+     * 在并发数允许的情况下，把队列中的请求交给节点的线程池
+     * 不抛出异常：节点的线程池拒绝时关闭执行器并丢弃队列中的请求
+     * */
+    private void schedule()
+    {
+        while (!queue.isEmpty())
+        {
+            int cur = active.get();
+            if (cur >= workers)
+                return;
+
+            if (!active.compareAndSet(cur, cur + 1))
+                continue;
+
+            MyRpcTask task = queue.poll();
+            if (task == null)
+            {
+                active.decrementAndGet();
+                continue;
+            }
+
+            queued.decrementAndGet();
+
+            try
+            {
+                pool.execute(task);
+            }
+            catch (RejectedExecutionException e)
+            {
+                active.decrementAndGet();
+                rejected.increment();
+
+                shutdown = true;
+                rejected.add(drain().size());
+                return;
+            }
+        }
+    }
+
+    /**
+     * 取出队列中所有等待的请求
+     * */
+    private List<Runnable> drain()
+    {
+        List<Runnable> lst = new ArrayList<>();
+
+        MyRpcTask task;
+        while ((task = queue.poll()) != null)
+        {
+            queued.decrementAndGet();
+            lst.add(task.command);
+        }
+        return lst;
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        return drain();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && active.get() == 0 && queue.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated())
+        {
+            if (System.nanoTime() - deadline >= 0)
+                return false;
+
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * 记录从进入队列到执行完成的时间，执行完成后调度下一个请求
+     * */
+    private class MyRpcTask implements Runnable {
+        private final Runnable command;
+
+        private final long startTime = System.nanoTime();
+
+        MyRpcTask(final Runnable command)
+        {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            try
+            {
+                command.run();
+            }
+            finally
+            {
+                requests.increment();
+                latency.value(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                active.decrementAndGet();
+                schedule();
+            }
+        }
+    }
+}
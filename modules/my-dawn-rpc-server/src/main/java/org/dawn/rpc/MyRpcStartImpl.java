@@ -1,51 +1,84 @@
 package org.dawn.rpc;
 
 import cn.mysuper.service.IDawnSqlStart;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteLogger;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.internal.GridKernalContext;
+import org.apache.ignite.internal.IgniteEx;
+import org.apache.ignite.internal.util.typedef.internal.U;
 import org.apache.thrift.TProcessor;
 import org.apache.thrift.protocol.TCompactProtocol;
 import org.apache.thrift.protocol.TProtocolFactory;
-import org.apache.thrift.server.TNonblockingServer;
 import org.apache.thrift.server.TServer;
+import org.apache.thrift.server.TThreadedSelectorServer;
 import org.apache.thrift.transport.TFramedTransport;
 import org.apache.thrift.transport.TNonblockingServerSocket;
 import org.apache.thrift.transport.TTransportException;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
+/**
+ * DawnSql 的 RPC 服务
+ * 使用 TThreadedSelectorServer：一个线程接收连接，selector 线程负责读写，
+ * 请求交给节点的线程池执行（名为 dawn-rpc 的自定义线程池，没有配置时为 public 线程池），一个慢的请求不会阻塞其它的客户端
+ * 端口、selector 线程数、同时执行的请求数、队列长度和请求的最大长度在 IgniteConfiguration 中配置
+ * 请求的延迟和队列的长度在 metric 的 rpc 中
+ * */
 public class MyRpcStartImpl implements IDawnSqlStart {
 
+    /** metric 的名字 */
+    static final String RPC_METRIC_GROUP_NAME = "rpc";
+
+    /** 执行 RPC 请求的自定义线程池的名字，在 IgniteConfiguration 的 ExecutorConfiguration 中配置 */
+    static final String RPC_EXECUTOR_NAME = "dawn-rpc";
+
     @Override
     public void start() {
-        ExecutorService singlePool = Executors.newSingleThreadExecutor();
-        singlePool.execute(new Runnable() {
+        Ignite ignite = Ignition.ignite();
+        IgniteConfiguration cfg = ignite.configuration();
+        GridKernalContext ctx = ((IgniteEx)ignite).context();
+        IgniteLogger log = ctx.log(MyRpcStartImpl.class);
+
+        Executor pool = ctx.pools().customExecutor(RPC_EXECUTOR_NAME);
+        if (pool == null)
+            pool = ctx.pools().getExecutorService();
+        Executor rpcPool = pool;
+
+        Thread thread = new Thread(new Runnable() {
             @Override
             public void run() {
                 try {
-                    // 设置传输通道，普通通道
-                    TNonblockingServerSocket serverTransport = new TNonblockingServerSocket(8091);
+                    // 设置传输通道，非阻塞通道
+                    TNonblockingServerSocket serverTransport = new TNonblockingServerSocket(cfg.getRpcPort());
                     // 使用高密度二进制协议
                     TProtocolFactory proFactory = new TCompactProtocol.Factory();
                     // 设置处理器 MyMetaServiceImpl
 
                     TProcessor processor = new MyRpcService.Processor(new MyRpcServiceImpl());
 
-                    TNonblockingServer.Args tnbargs = new TNonblockingServer.Args(serverTransport);
-                    tnbargs.processor(processor);
-                    tnbargs.transportFactory(new TFramedTransport.Factory());
-                    tnbargs.protocolFactory(proFactory);
+                    TThreadedSelectorServer.Args args = new TThreadedSelectorServer.Args(serverTransport);
+                    args.processor(processor);
+                    args.transportFactory(new TFramedTransport.Factory(cfg.getRpcMaxFrameSize()));
+                    args.protocolFactory(proFactory);
+                    args.maxReadBufferBytes = cfg.getRpcMaxFrameSize();
+                    args.selectorThreads(Math.max(1, cfg.getRpcSelectorThreads()));
+                    args.executorService(new MyRpcExecutor(rpcPool, cfg.getRpcWorkerThreads(),
+                            cfg.getRpcQueueSize(), ctx.metric().registry(RPC_METRIC_GROUP_NAME)));
 
                     // 使用非阻塞式IO，服务端和客户端需要指定TFramedTransport数据传输的方式
-                    TServer server = new TNonblockingServer(tnbargs);
-                    //X.println("RPC Server on port "+ String.valueOf(8099) +" ...");
-                    System.out.println("RPC Server on port "+ String.valueOf(8091) +" ...");
-                    server.serve();
-
+                    TServer server = new TThreadedSelectorServer(args);
+                    if (log.isInfoEnabled())
+                        log.info("RPC server started [port=" + cfg.getRpcPort() + ']');
 
+                    server.serve();
                 } catch (TTransportException e) {
-                    e.printStackTrace();
+                    U.error(log, "Failed to start RPC server [port=" + cfg.getRpcPort() + ']', e);
                 }
             }
-        });
+        }, "dawn-rpc-server");
+        thread.setDaemon(true);
+        thread.start();
     }
 }
@@ -0,0 +1,399 @@
+package org.gridgain.myservice;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteAtomicSequence;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.AtomicConfiguration;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * auto_id 的生成
+ * sequence 模式（默认）：
+ * 1、每个表对应一个集群的序列，序列的句柄缓存在本地，不需要每次都查找
+ * 2、每个节点一次从集群预留 autoIdReserveSize 个（可以在 autoIdReserveSizes 中为每个表单独设置），
+ *    预留用完了才需要一次 cache 的事务
+ * 3、每个线程一次从节点的预留中取出 autoIdSliceSize 个，之后在线程内分配，不需要加锁，
+ *    每个线程最多保存 MAX_THREAD_SLICES 个表的区间，按 LRU 淘汰
+ * 节点或者线程没有用完的 id 会被丢弃，所以 id 是唯一的，但不保证连续和全局递增
+ * 序列使用 IgniteConfiguration 中的 AtomicConfiguration，只改变预留的个数
+ * snowflake 模式：
+ * id = 时间戳（41 位毫秒） + 节点号（10 位） + 序号（12 位），在本地生成
+ * 1、节点号在 my_auto_id_worker 中租用，同一时刻只有一个在线的节点使用一个节点号，
+ *    节点离开集群后，它的节点号才能被其它节点租用
+ * 2、租约中保存了节点号用到的时间戳的上限，每秒通过 replace 更新一次，租约被其它节点取走时重新租用节点号；
+ *    租用时跳过上限大于本地时钟的节点号，所有节点号都不能用或者运行中时钟回拨时，拒绝生成 id，直到时钟追上
+ * */
+public class MyAutoIdService {
+
+    private static class InstanceHolder {
+        public static MyAutoIdService instance = new MyAutoIdService();
+    }
+
+    /**
+     * 获取单例模式
+     * */
+    public static MyAutoIdService getInstance() {
+        return InstanceHolder.instance;
+    }
+
+    /** snowflake 的起始时间 2020-01-01 00:00:00 UTC */
+    private static final long SNOWFLAKE_EPOCH = 1577836800000L;
+
+    private static final int WORKER_BITS = 10;
+
+    private static final int SEQ_BITS = 12;
+
+    private static final long WORKER_MASK = (1L << WORKER_BITS) - 1;
+
+    private static final long SEQ_MASK = (1L << SEQ_BITS) - 1;
+
+    /** 保存 snowflake 节点号租约的 cache */
+    static final String WORKER_CACHE = "my_auto_id_worker";
+
+    /** 租约中时间戳上限的提前量（毫秒） */
+    static final long LEASE_AHEAD = 1000;
+
+    /** 每个线程最多保存区间的表的个数，超过时丢弃最久没有使用的区间 */
+    private static final int MAX_THREAD_SLICES = 64;
+
+    private final Ignite ignite;
+
+    private final boolean snowflake;
+
+    private final int reserveSize;
+
+    private final int sliceSize;
+
+    private final Map<String, Integer> reserveSizes;
+
+    /** 表名对应的序列 */
+    private final ConcurrentHashMap<String, IgniteAtomicSequence> sequences = new ConcurrentHashMap<>();
+
+    /** 每个线程中表名对应的 id 区间 [next, end)，ThreadLocal 属于这个实例，被丢弃的区间中的 id 不会再使用 */
+    private final ThreadLocal<Map<String, long[]>> slices = ThreadLocal.withInitial(() -> new LinkedHashMap<String, long[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+            return size() > MAX_THREAD_SLICES;
+        }
+    });
+
+    /** snowflake 当前租用的节点号和租约，第一次生成 id 时租用，租约丢失时换成新的对象 */
+    private volatile MyWorkerSlot slot;
+
+    /** snowflake 最后一次分配的 id（时间戳 + 节点号 + 序号），节点号也参与比较，旧节点号的 CAS 不会成功 */
+    private final AtomicLong snowflakeState = new AtomicLong();
+
+    private MyAutoIdService()
+    {
+        this(Ignition.ignite());
+    }
+
+    public MyAutoIdService(final Ignite ignite)
+    {
+        IgniteConfiguration cfg = ignite.configuration();
+
+        this.ignite = ignite;
+        this.snowflake = "snowflake".equalsIgnoreCase(cfg.getAutoIdMode());
+        this.reserveSize = Math.max(1, cfg.getAutoIdReserveSize());
+        this.sliceSize = Math.max(1, cfg.getAutoIdSliceSize());
+        this.reserveSizes = cfg.getAutoIdReserveSizes() != null ? cfg.getAutoIdReserveSizes() : new HashMap<>();
+    }
+
+    /**
+     * 获取 table 的下一个 id
+     * */
+    public long nextId(final String tableName)
+    {
+        if (snowflake)
+            return nextSnowflakeId();
+
+        Map<String, long[]> m = slices.get();
+        long[] slice = m.get(tableName);
+
+        if (slice == null || slice[0] >= slice[1])
+        {
+            slice = reserveSlice(tableName);
+            m.put(tableName, slice);
+        }
+
+        return slice[0]++;
+    }
+
+    /**
+     * 从节点的预留中为当前线程取出一段 id
+     * */
+    private long[] reserveSlice(final String tableName)
+    {
+        int reserve = reserveSize(tableName);
+        // 超过节点的预留时 getAndAdd 每次都需要 cache 的事务
+        int n = Math.min(sliceSize, reserve);
+
+        while (true)
+        {
+            IgniteAtomicSequence seq = sequence(tableName, reserve);
+
+            try
+            {
+                long start = seq.getAndAdd(n);
+                return new long[] {start + 1, start + n + 1};
+            }
+            catch (IgniteException e)
+            {
+                // 序列已经被删除，例如表被删除后重建
+                if (!seq.removed())
+                    throw e;
+
+                sequences.remove(tableName, seq);
+            }
+        }
+    }
+
+    private IgniteAtomicSequence sequence(final String tableName, final int reserve)
+    {
+        IgniteAtomicSequence seq = sequences.get(tableName);
+
+        if (seq == null || seq.removed())
+        {
+            IgniteAtomicSequence created = ignite.atomicSequence(tableName, atomicConfiguration(reserve), 0, true);
+
+            if (seq == null)
+            {
+                seq = sequences.putIfAbsent(tableName, created);
+                if (seq == null)
+                    seq = created;
+            }
+            else
+            {
+                sequences.put(tableName, created);
+                seq = created;
+            }
+        }
+
+        return seq;
+    }
+
+    /**
+     * 复制节点的 AtomicConfiguration，只改变预留的个数，序列和其它的 atomic 结构在同一个 cache 中
+     * */
+    private AtomicConfiguration atomicConfiguration(final int reserve)
+    {
+        AtomicConfiguration cfg = ignite.configuration().getAtomicConfiguration();
+        if (cfg == null)
+            return new AtomicConfiguration().setAtomicSequenceReserveSize(reserve);
+
+        return new AtomicConfiguration()
+                .setBackups(cfg.getBackups())
+                .setCacheMode(cfg.getCacheMode())
+                .setAffinity(cfg.getAffinity())
+                .setGroupName(cfg.getGroupName())
+                .setAtomicSequenceReserveSize(reserve);
+    }
+
+    private int reserveSize(final String tableName)
+    {
+        Integer size = reserveSizes.get(tableName);
+        return size != null && size > 0 ? size : reserveSize;
+    }
+
+    /**
+     * 同一毫秒内的序号用完时等待下一毫秒，时钟回拨时拒绝生成 id
+     * 每次循环重新读取节点号，只有 snowflakeState 中的节点号和它相同时才分配，
+     * 租约丢失后其它线程重新租用节点号时会重置 snowflakeState，旧节点号的 CAS 不会成功
+     * */
+    private long nextSnowflakeId()
+    {
+        while (true)
+        {
+            MyWorkerSlot s = slot;
+            if (s == null)
+                s = leaseWorker();
+
+            long prev = snowflakeState.get();
+
+            // 重新租用的节点号还没有写到 snowflakeState 中
+            if (((prev >>> SEQ_BITS) & WORKER_MASK) != s.worker)
+            {
+                Thread.yield();
+                continue;
+            }
+
+            long prevTs = prev >>> (WORKER_BITS + SEQ_BITS);
+            long now = System.currentTimeMillis() - SNOWFLAKE_EPOCH;
+
+            if (now < prevTs)
+                throw new IgniteException("时钟回拨了 " + (prevTs - now) + " 毫秒，暂时不能生成 auto_id！");
+
+            long ts;
+            long seq;
+            if (now > prevTs)
+            {
+                ts = now;
+                seq = 0;
+            }
+            else
+            {
+                ts = prevTs;
+                seq = (prev & SEQ_MASK) + 1;
+
+                // 这一毫秒的序号用完了
+                if (seq > SEQ_MASK)
+                {
+                    Thread.yield();
+                    continue;
+                }
+            }
+
+            // 时间戳到了租约的上限，更新租约或者重新租用节点号后再来
+            if (ts >= s.leaseTs)
+            {
+                renewLease(s, ts);
+                continue;
+            }
+
+            long id = (ts << (WORKER_BITS + SEQ_BITS)) | (s.worker << SEQ_BITS) | seq;
+            if (snowflakeState.compareAndSet(prev, id))
+                return id;
+        }
+    }
+
+    private IgniteCache<Integer, MyWorkerLease> workerCache()
+    {
+        CacheConfiguration<Integer, MyWorkerLease> cfg = new CacheConfiguration<>(WORKER_CACHE);
+        cfg.setCacheMode(CacheMode.REPLICATED);
+        return ignite.getOrCreateCache(cfg);
+    }
+
+    /**
+     * 租用一个没有被在线节点使用的节点号
+     * 节点号以前用过的时间戳上限大于当前时钟时，跳过这个节点号；所有可用的节点号都是这样时，说明时钟落后了，拒绝生成 id
+     * */
+    private synchronized MyWorkerSlot leaseWorker()
+    {
+        if (slot != null)
+            return slot;
+
+        IgniteCache<Integer, MyWorkerLease> cache = workerCache();
+        UUID nodeId = ignite.cluster().localNode().id();
+        long now = System.currentTimeMillis() - SNOWFLAKE_EPOCH;
+
+        // 从节点加入集群的顺序开始找，节点重启后通常能拿回原来的节点号
+        int first = (int) (ignite.cluster().localNode().order() & WORKER_MASK);
+        long behind = -1;
+        for (int i = 0; i <= WORKER_MASK; i++)
+        {
+            int id = (int) ((first + i) & WORKER_MASK);
+            MyWorkerLease old = cache.get(id);
+
+            if (old != null && !old.nodeId.equals(nodeId) && ignite.cluster().node(old.nodeId) != null)
+                continue;
+
+            // 时钟落后于节点号上一次使用的时间，找下一个节点号
+            if (old != null && now <= old.lastTs)
+            {
+                behind = behind < 0 ? old.lastTs - now : Math.min(behind, old.lastTs - now);
+                continue;
+            }
+
+            MyWorkerLease lease = new MyWorkerLease(nodeId, now + LEASE_AHEAD);
+            boolean ok = old == null ? cache.putIfAbsent(id, lease) : cache.replace(id, old, lease);
+            if (ok)
+            {
+                // 先重置 snowflakeState 再发布新的节点号，从上一次使用的时间戳之后开始
+                long baseTs = old == null ? 0 : old.lastTs + 1;
+                snowflakeState.set((baseTs << (WORKER_BITS + SEQ_BITS)) | ((long) id << SEQ_BITS));
+                slot = new MyWorkerSlot(id, lease);
+                return slot;
+            }
+        }
+
+        if (behind >= 0)
+            throw new IgniteException("时钟落后于可用的节点号上一次使用的时间 " + behind + " 毫秒，暂时不能生成 auto_id！");
+
+        throw new IgniteException("snowflake 的节点号已经用完，在线的节点不能超过 " + (WORKER_MASK + 1) + " 个！");
+    }
+
+    /**
+     * 时间戳到了租约的上限时，把上限向后推，上限先写到集群中再使用
+     * cache 中的租约不是当前节点持有的租约时（例如节点被认为离开过集群，节点号被其它节点租用），重新租用节点号
+     * s 已经被其它线程换掉时什么都不做，调用者重新读取 slot
+     * */
+    private synchronized void renewLease(final MyWorkerSlot s, final long ts)
+    {
+        if (slot != s || ts < s.leaseTs)
+            return;
+
+        MyWorkerLease renewed = new MyWorkerLease(ignite.cluster().localNode().id(), ts + LEASE_AHEAD);
+        if (workerCache().replace((int) s.worker, s.lease, renewed))
+        {
+            slot = new MyWorkerSlot(s.worker, renewed);
+            return;
+        }
+
+        slot = null;
+        leaseWorker();
+    }
+
+    /**
+     * 节点号和当前节点持有的租约，不可变，租约更新时整体替换
+     * */
+    private static class MyWorkerSlot
+    {
+        private final long worker;
+
+        private final MyWorkerLease lease;
+
+        /** 租约中保存的时间戳上限，生成的时间戳不会超过它 */
+        private final long leaseTs;
+
+        MyWorkerSlot(final long worker, final MyWorkerLease lease)
+        {
+            this.worker = worker;
+            this.lease = lease;
+            this.leaseTs = lease.lastTs;
+        }
+    }
+
+    /**
+     * 节点号的租约：使用它的节点，用到的时间戳的上限
+     * */
+    static class MyWorkerLease implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final UUID nodeId;
+
+        private final long lastTs;
+
+        MyWorkerLease(final UUID nodeId, final long lastTs)
+        {
+            this.nodeId = nodeId;
+            this.lastTs = lastTs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            MyWorkerLease that = (MyWorkerLease) o;
+            return lastTs == that.lastTs && nodeId.equals(that.nodeId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(nodeId, lastTs);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.gridgain.myservice;
+
+import java.util.UUID;
+
+/**
+ * 定时任务的一次执行记录，在系统视图 SYS.CRON_HISTORY 中
+ * */
+public class MyCronExecution {
+
+    private final String jobName;
+
+    private final UUID nodeId;
+
+    /** 计划执行的时间 */
+    private final long scheduledTime;
+
+    private final long startTime;
+
+    /** 执行的时间（毫秒） */
+    private final long duration;
+
+    /** 补执行时，错过的次数 */
+    private final int missed;
+
+    private final boolean success;
+
+    private final String error;
+
+    public MyCronExecution(final String jobName, final UUID nodeId, final long scheduledTime, final long startTime,
+                           final long duration, final int missed, final Throwable error)
+    {
+        this.jobName = jobName;
+        this.nodeId = nodeId;
+        this.scheduledTime = scheduledTime;
+        this.startTime = startTime;
+        this.duration = duration;
+        this.missed = missed;
+        this.success = error == null;
+        this.error = error == null ? null : error.toString();
+    }
+
+    public String jobName() {
+        return jobName;
+    }
+
+    public UUID nodeId() {
+        return nodeId;
+    }
+
+    public long scheduledTime() {
+        return scheduledTime;
+    }
+
+    public long startTime() {
+        return startTime;
+    }
+
+    public long duration() {
+        return duration;
+    }
+
+    public int missed() {
+        return missed;
+    }
+
+    public boolean success() {
+        return success;
+    }
+
+    public String error() {
+        return error;
+    }
+}
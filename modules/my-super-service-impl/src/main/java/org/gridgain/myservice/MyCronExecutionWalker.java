@@ -0,0 +1,40 @@
+package org.gridgain.myservice;
+
+import org.apache.ignite.spi.systemview.view.SystemViewRowAttributeWalker;
+
+import java.util.UUID;
+
+/**
+ * 系统视图 SYS.CRON_HISTORY 的列
+ * */
+public class MyCronExecutionWalker implements SystemViewRowAttributeWalker<MyCronExecution> {
+
+    @Override
+    public void visitAll(AttributeVisitor v) {
+        v.accept(0, "jobName", String.class);
+        v.accept(1, "nodeId", UUID.class);
+        v.accept(2, "scheduledTime", long.class);
+        v.accept(3, "startTime", long.class);
+        v.accept(4, "duration", long.class);
+        v.accept(5, "missed", int.class);
+        v.accept(6, "success", boolean.class);
+        v.accept(7, "error", String.class);
+    }
+
+    @Override
+    public void visitAll(MyCronExecution row, AttributeWithValueVisitor v) {
+        v.accept(0, "jobName", String.class, row.jobName());
+        v.accept(1, "nodeId", UUID.class, row.nodeId());
+        v.acceptLong(2, "scheduledTime", row.scheduledTime());
+        v.acceptLong(3, "startTime", row.startTime());
+        v.acceptLong(4, "duration", row.duration());
+        v.acceptInt(5, "missed", row.missed());
+        v.acceptBoolean(6, "success", row.success());
+        v.accept(7, "error", String.class, row.error());
+    }
+
+    @Override
+    public int count() {
+        return 8;
+    }
+}
@@ -0,0 +1,97 @@
+package org.gridgain.myservice;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 集群中的定时任务
+ * 保存在复制模式的 cache my_cron_job 中，key 为 用户组的 ID + "/" + 任务名称（key()），
+ * 到时间后在负责它的节点上以所属用户组的身份调用 methodName
+ * kind 为 SCENES 时按场景调用（my_invoke），权限由场景在每次调用时按用户组检查；为 FUNC 时按方法调用（my_fun）
+ * 任务中只保存用户组的 ID（MY_META.MY_USERS_GROUP），执行时才查出它的 userToken，
+ * 用户组被删除后任务不能再执行
+ * catchUp 为 true 时，节点宕机或者任务还在执行而错过的时间点，会在下一次检查时补执行一次；
+ * 为 false 时错过的时间点直接跳过
+ * */
+public class MyCronJob implements Serializable {
+
+    private static final long serialVersionUID = -3390284471263904628L;
+
+    /** 任务名称 */
+    private String name;
+
+    /** cron 表达式，例如：*\/5 * * * * */
+    private String cron;
+
+    /** 调用方式，FUNC 或者 SCENES */
+    private MyFuncInvoker.MyFuncKind kind;
+
+    /** 调用的方法或者场景 */
+    private String methodName;
+
+    /** 任务所属的用户组，也是执行任务的用户组 */
+    private long groupId;
+
+    private List<Object> ps;
+
+    private boolean catchUp;
+
+    public MyCronJob(final String name, final String cron, final MyFuncInvoker.MyFuncKind kind, final String methodName,
+                     final long groupId, final boolean catchUp, final List<Object> ps)
+    {
+        this.name = name;
+        this.cron = cron;
+        this.kind = kind;
+        this.methodName = methodName;
+        this.groupId = groupId;
+        this.catchUp = catchUp;
+        this.ps = ps == null ? new ArrayList<>() : new ArrayList<>(ps);
+    }
+
+    /**
+     * 任务在 my_cron_job、my_cron_state 中的 key
+     * */
+    public static String key(final long groupId, final String name)
+    {
+        return groupId + "/" + name;
+    }
+
+    public String key()
+    {
+        return key(groupId, name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCron() {
+        return cron;
+    }
+
+    public MyFuncInvoker.MyFuncKind getKind() {
+        return kind;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public long getGroupId() {
+        return groupId;
+    }
+
+    public List<Object> getPs() {
+        return ps;
+    }
+
+    public boolean isCatchUp() {
+        return catchUp;
+    }
+
+    @Override
+    public String toString() {
+        return "MyCronJob{name='" + name + "', cron='" + cron + "', kind=" + kind + ", methodName='" + methodName + "', groupId=" + groupId + ", catchUp=" + catchUp + "}";
+    }
+}
@@ -0,0 +1,550 @@
+package org.gridgain.myservice;
+
+import it.sauronsoftware.cron4j.SchedulingPattern;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.IgniteLogger;
+import org.apache.ignite.IgniteState;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.IgnitionListener;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.cache.CachePeekMode;
+import org.apache.ignite.cache.affinity.Affinity;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.internal.GridKernalContext;
+import org.apache.ignite.internal.IgniteEx;
+import org.apache.ignite.internal.managers.communication.GridIoPolicy;
+import org.apache.ignite.internal.processors.metric.MetricRegistry;
+import org.apache.ignite.internal.processors.metric.impl.HistogramMetricImpl;
+import org.apache.ignite.internal.processors.metric.impl.LongAdderMetric;
+import org.apache.ignite.internal.processors.timeout.GridTimeoutProcessor;
+import org.apache.ignite.internal.util.typedef.internal.U;
+import org.apache.ignite.thread.IgniteThreadPoolExecutor;
+
+import javax.cache.Cache;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 集群中的定时任务
+ * 1、任务保存在复制模式的 cache my_cron_job 中，key 为 用户组的 ID + 任务名称，每个任务由 key 的主节点执行，
+ *    任务平均分布在所有的节点上，节点离开集群后，它的任务自动由新的主节点执行
+ * 2、每个任务的状态（MyCronState：最后一次执行的时间点和正在执行的节点）保存在 my_cron_state 中，通过 replace 更新，
+ *    同一个时间点只有一个节点执行；正在执行的节点还在集群中时，其它节点不会再执行这个任务
+ * 3、每秒检查一次，从最后一次执行的时间点到现在，错过的时间点在 catchUp 为 true 时补执行一次
+ * 4、每秒的检查在 Ignite 的 public 线程池中执行，任务在 Ignite 的线程池 my-cron 中执行，
+ *    每个节点同时执行的任务最多 cronMaxConcurrentJobs 个
+ * 5、执行记录在系统视图 SYS.CRON_HISTORY 中，次数和延迟在 metric 的 cron 中
+ * 6、通过 add_cron_job、add_cron_fun_job、remove_cron_job 添加和删除任务，userToken 为调用者的 token，
+ *    任务属于调用者所在的用户组，只能由这个用户组修改和删除，任务名称在集群中唯一，其它用户组的同名任务不能添加；
+ *    任务中只保存用户组的 ID，不保存 userToken，执行时查出用户组当前的 userToken，以这个用户组的身份调用
+ * 7、单例属于当前的节点，节点停止时停止检查任务并清除单例，同一个 JVM 中重新启动的节点使用新的实例
+ * */
+public class MyCronScheduler {
+
+    private static volatile MyCronScheduler instance;
+
+    /**
+     * 获取单例模式，节点停止后重新创建
+     * */
+    public static MyCronScheduler getInstance() {
+        MyCronScheduler scheduler = instance;
+        if (scheduler != null)
+            return scheduler;
+
+        synchronized (MyCronScheduler.class)
+        {
+            if (instance == null)
+                instance = new MyCronScheduler(Ignition.ignite());
+            return instance;
+        }
+    }
+
+    /** 保存任务的 cache */
+    static final String CRON_JOB_CACHE_NAME = "my_cron_job";
+
+    /** 保存任务最后一次执行时间点的 cache */
+    static final String CRON_STATE_CACHE_NAME = "my_cron_state";
+
+    /** metric 的名字 */
+    static final String CRON_METRIC_GROUP_NAME = "cron";
+
+    /** 系统视图的名字 */
+    static final String CRON_HISTORY_VIEW = "cronHistory";
+
+    private static final long MINUTE = 60_000L;
+
+    /** userToken 对应的用户组 */
+    private static final String GROUP_ID_SQL = "SELECT ID FROM MY_META.MY_USERS_GROUP WHERE USER_TOKEN = ?";
+
+    /** 用户组的 userToken */
+    private static final String GROUP_TOKEN_SQL = "SELECT USER_TOKEN FROM MY_META.MY_USERS_GROUP WHERE ID = ?";
+
+    /** 补执行时最多往前找的时间 */
+    private static final long MAX_CATCH_UP = TimeUnit.DAYS.toMillis(1);
+
+    /** 延迟的统计区间（毫秒） */
+    private static final long[] LATENCY_BOUNDS = new long[] {10, 100, 1000, 10_000, 60_000, 600_000};
+
+    private final Ignite ignite;
+
+    private final GridKernalContext ctx;
+
+    private final IgniteLogger log;
+
+    private final int historySize;
+
+    private final IgniteCache<String, MyCronJob> jobs;
+
+    private final IgniteCache<String, MyCronState> state;
+
+    private final Affinity<String> affinity;
+
+    /** 执行任务的线程池 */
+    private final IgniteThreadPoolExecutor executor;
+
+    /** 每秒触发一次检查 */
+    private volatile GridTimeoutProcessor.CancelableTask timer;
+
+    /** 上一次检查还没有完成时跳过这一次 */
+    private final AtomicBoolean ticking = new AtomicBoolean();
+
+    /** 节点停止后停止检查任务 */
+    private final IgnitionListener stopLsnr;
+
+    /** 当前节点正在执行的任务，只用于 metric，是否在执行以 my_cron_state 为准 */
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentHashMap<String, SchedulingPattern> patterns = new ConcurrentHashMap<>();
+
+    private final ConcurrentLinkedDeque<MyCronExecution> history = new ConcurrentLinkedDeque<>();
+
+    private final AtomicInteger historyCnt = new AtomicInteger();
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private final LongAdderMetric executions;
+
+    private final LongAdderMetric failures;
+
+    private final LongAdderMetric skipped;
+
+    private final HistogramMetricImpl latency;
+
+    public MyCronScheduler(final Ignite ignite)
+    {
+        IgniteConfiguration cfg = ignite.configuration();
+        GridKernalContext ctx = ((IgniteEx)ignite).context();
+
+        this.ignite = ignite;
+        this.ctx = ctx;
+        this.log = ctx.log(MyCronScheduler.class);
+        this.historySize = Math.max(1, cfg.getCronHistorySize());
+
+        this.jobs = ignite.getOrCreateCache(new CacheConfiguration<String, MyCronJob>(CRON_JOB_CACHE_NAME)
+                .setCacheMode(CacheMode.REPLICATED).setReadFromBackup(true));
+        this.state = ignite.getOrCreateCache(new CacheConfiguration<String, MyCronState>(CRON_STATE_CACHE_NAME)
+                .setCacheMode(CacheMode.REPLICATED).setReadFromBackup(true));
+        this.affinity = ignite.affinity(CRON_JOB_CACHE_NAME);
+
+        int workers = Math.max(1, cfg.getCronMaxConcurrentJobs());
+        this.executor = new IgniteThreadPoolExecutor("my-cron", ignite.name(), workers, workers, 0,
+                new LinkedBlockingQueue<>());
+
+        MetricRegistry registry = ctx.metric().registry(CRON_METRIC_GROUP_NAME);
+        executions = registry.longAdderMetric("executions", "Count of cron job executions");
+        failures = registry.longAdderMetric("failures", "Count of failed cron job executions");
+        skipped = registry.longAdderMetric("skipped", "Count of cron job firings skipped because the previous execution is still running in the cluster");
+        latency = registry.histogram("latency", LATENCY_BOUNDS, "Duration in milliseconds of cron job executions");
+        registry.register("running", running::size, "Count of cron jobs running on this node");
+
+        ctx.systemView().registerView(CRON_HISTORY_VIEW, "Cron job executions on this node", new MyCronExecutionWalker(),
+                history, Function.identity());
+
+        String igniteName = ignite.name();
+        stopLsnr = (name, st) -> {
+            if (st != IgniteState.STARTED && Objects.equals(name, igniteName))
+                stop();
+        };
+        Ignition.addListener(stopLsnr);
+    }
+
+    /**
+     * 开始检查任务，可以重复调用
+     * */
+    public void start()
+    {
+        if (!started.compareAndSet(false, true))
+            return;
+
+        long now = System.currentTimeMillis();
+        timer = ctx.timeout().schedule(this::scheduleTick, 1000 - now % 1000, 1000);
+    }
+
+    /**
+     * 停止检查任务，正在执行的任务会继续执行完，节点停止时自动调用
+     * */
+    public void stop()
+    {
+        Ignition.removeListener(stopLsnr);
+
+        GridTimeoutProcessor.CancelableTask t = timer;
+        if (t != null)
+            t.close();
+
+        executor.shutdown();
+
+        synchronized (MyCronScheduler.class)
+        {
+            if (instance == this)
+                instance = null;
+        }
+    }
+
+    /**
+     * 添加或者修改任务，任务属于 userToken（调用者）所在的用户组，以这个用户组的身份执行
+     * 同名的任务属于其它用户组时不能添加
+     * */
+    public void addJob(final String name, final String cron, final MyFuncInvoker.MyFuncKind kind, final String methodName,
+                       final String userToken, final boolean catchUp, final List<Object> ps)
+    {
+        if (name == null || name.isEmpty())
+            throw new IgniteException("定时任务的名称不能为空！");
+
+        if (methodName == null || methodName.isEmpty())
+            throw new IgniteException("定时任务 " + name + " 的方法名不能为空！");
+
+        long groupId = groupId(name, userToken);
+
+        MyCronJob other = findJob(name);
+        if (other != null && other.getGroupId() != groupId)
+            throw new IgniteException("定时任务 " + name + " 已经属于其它用户组！");
+
+        addJob(new MyCronJob(name, cron, kind, methodName, groupId, catchUp, ps));
+    }
+
+    /**
+     * 添加或者修改任务，从下一分钟开始执行
+     * */
+    public void addJob(final MyCronJob job)
+    {
+        if (!SchedulingPattern.validate(job.getCron()))
+            throw new IgniteException("定时任务 " + job.getName() + " 的 cron 表达式不正确：" + job.getCron());
+
+        String key = job.key();
+
+        // 修改正在执行的任务时保留执行的节点
+        MyCronState old = state.get(key);
+        state.put(key, new MyCronState(currentMinute(), old == null ? null : old.getRunner()));
+        jobs.put(key, job);
+    }
+
+    /**
+     * 删除任务，只有任务所属的用户组可以删除
+     * */
+    public void removeJob(final String name, final String userToken)
+    {
+        long groupId = groupId(name, userToken);
+
+        MyCronJob job = findJob(name);
+        if (job == null)
+            return;
+
+        if (job.getGroupId() != groupId)
+            throw new IgniteException("定时任务 " + name + " 属于其它用户组，不能删除！");
+
+        jobs.remove(job.key());
+        state.remove(job.key());
+    }
+
+    /**
+     * 按名称查找任务，任务名称在集群中唯一，不存在时返回 null
+     * my_cron_job 是复制模式的，在当前节点上查找
+     * */
+    public MyCronJob findJob(final String name)
+    {
+        for (Cache.Entry<String, MyCronJob> e : jobs.localEntries(CachePeekMode.ALL))
+        {
+            if (e.getValue().getName().equals(name))
+                return e.getValue();
+        }
+        return null;
+    }
+
+    public List<MyCronJob> getJobs()
+    {
+        List<MyCronJob> lst = new ArrayList<>();
+        for (Cache.Entry<String, MyCronJob> e : jobs)
+            lst.add(e.getValue());
+        return lst;
+    }
+
+    /**
+     * 任务的描述，任务不存在时返回 null
+     * */
+    public String describe(final String name)
+    {
+        MyCronJob job = findJob(name);
+        if (job == null)
+            return null;
+
+        ClusterNode node = affinity.mapKeyToNode(job.key());
+        MyCronState st = state.get(job.key());
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("任务名称：" + name);
+        sb.append(" cron：" + job.getCron());
+        sb.append(" 执行节点：" + (node == null ? "" : node.id()));
+        sb.append(" 是否在运行：" + (st != null && isRunning(st)));
+        sb.append(" 最后执行时间：" + (st == null ? "" : fmt.format(new Date(st.getLast()))));
+        return sb.toString();
+    }
+
+    /**
+     * userToken 所在的用户组，userToken 为空或者不存在时抛出异常
+     * */
+    private long groupId(final String name, final String userToken)
+    {
+        if (userToken == null || userToken.isEmpty())
+            throw new IgniteException("定时任务 " + name + " 需要调用者的 userToken！");
+
+        Object id = queryOne(GROUP_ID_SQL, userToken);
+        if (id == null)
+            throw new IgniteException("定时任务 " + name + " 的 userToken 不存在！");
+
+        return ((Number) id).longValue();
+    }
+
+    /**
+     * 超时线程只提交检查，读写 cache 的检查在 public 线程池中执行
+     * */
+    private void scheduleTick()
+    {
+        if (!ticking.compareAndSet(false, true))
+            return;
+
+        try
+        {
+            ctx.closure().runLocalSafe(this::tick, GridIoPolicy.PUBLIC_POOL);
+        }
+        catch (RuntimeException ex)
+        {
+            ticking.set(false);
+            U.error(log, "检查定时任务失败！", ex);
+        }
+    }
+
+    /**
+     * 检查当前节点负责的任务
+     * */
+    private void tick()
+    {
+        try
+        {
+            long minute = currentMinute();
+            ClusterNode local = ignite.cluster().localNode();
+
+            for (Cache.Entry<String, MyCronJob> e : jobs.localEntries(CachePeekMode.PRIMARY))
+            {
+                if (!affinity.isPrimary(local, e.getKey()))
+                    continue;
+
+                try
+                {
+                    check(e.getValue(), minute);
+                }
+                catch (Exception ex)
+                {
+                    U.error(log, "检查定时任务 " + e.getKey() + " 失败！", ex);
+                }
+            }
+        }
+        catch (Exception ex)
+        {
+            U.error(log, "检查定时任务失败！", ex);
+        }
+        finally
+        {
+            ticking.set(false);
+        }
+    }
+
+    private void check(final MyCronJob job, final long minute)
+    {
+        String key = job.key();
+        MyCronState st = state.get(key);
+        Long last = st == null ? null : st.getLast();
+
+        if (last != null && last >= minute)
+            return;
+
+        SchedulingPattern pattern = patterns.computeIfAbsent(job.getCron(), SchedulingPattern::new);
+
+        // 从上一次执行到现在的时间点中，符合 cron 的个数
+        long from = last == null ? minute : Math.max(last + MINUTE, minute - MAX_CATCH_UP);
+        int matched = 0;
+        for (long t = from; t <= minute; t += MINUTE)
+        {
+            if (pattern.match(t))
+                matched++;
+        }
+
+        boolean fireNow = pattern.match(minute);
+
+        UUID runner = st == null ? null : st.getRunner();
+
+        if (matched == 0 || (!fireNow && !job.isCatchUp()))
+        {
+            advance(key, st, new MyCronState(minute, runner));
+            return;
+        }
+
+        // 上一次执行还没有完成（可能在主节点变化前的节点上）
+        if (st != null && isRunning(st))
+        {
+            skipped.increment();
+
+            // 需要补执行时保留 state，等上一次执行完
+            if (!job.isCatchUp())
+                advance(key, st, new MyCronState(minute, runner));
+            return;
+        }
+
+        // 其它节点已经执行了这个时间点
+        MyCronState claimed = new MyCronState(minute, ignite.cluster().localNode().id());
+        if (!advance(key, st, claimed))
+            return;
+
+        running.add(key);
+        int missed = fireNow ? matched - 1 : matched;
+        try
+        {
+            executor.execute(() -> run(job, minute, missed));
+        }
+        catch (RuntimeException ex)
+        {
+            running.remove(key);
+            finish(key);
+            throw ex;
+        }
+    }
+
+    private boolean advance(final String key, final MyCronState old, final MyCronState st)
+    {
+        return old == null ? state.putIfAbsent(key, st) : state.replace(key, old, st);
+    }
+
+    /**
+     * 执行的节点还在集群中时任务正在执行，节点离开后它的执行不再阻止新的执行
+     * */
+    private boolean isRunning(final MyCronState st)
+    {
+        return st.getRunner() != null && ctx.discovery().alive(st.getRunner());
+    }
+
+    /**
+     * 执行完成后清除 my_cron_state 中的执行节点
+     * */
+    private void finish(final String key)
+    {
+        UUID locId = ignite.cluster().localNode().id();
+
+        for (;;)
+        {
+            MyCronState st = state.get(key);
+
+            if (st == null || !locId.equals(st.getRunner()))
+                return;
+
+            if (state.replace(key, st, new MyCronState(st.getLast(), null)))
+                return;
+        }
+    }
+
+    private void run(final MyCronJob job, final long scheduledTime, final int missed)
+    {
+        long start = System.currentTimeMillis();
+        Throwable error = null;
+        try
+        {
+            MyFuncInvoker invoker = MyPlusFuncImpl.getInstance().getFuncInvoker();
+            Object[] ps = job.getPs().toArray();
+
+            // 每次执行时查出用户组当前的 userToken，用户组被删除后任务不能再执行
+            String userToken = (String) queryOne(GROUP_TOKEN_SQL, job.getGroupId());
+            if (userToken == null)
+                throw new IgniteException("定时任务 " + job.getName() + " 的用户组 " + job.getGroupId() + " 不存在！");
+
+            MyFuncInvoker.MyFuncKind kind = job.getKind() == MyFuncInvoker.MyFuncKind.SCENES ?
+                    MyFuncInvoker.MyFuncKind.SCENES : MyFuncInvoker.MyFuncKind.FUNC;
+
+            invoker.invoke(kind, job.getMethodName(), userToken, ps);
+        }
+        catch (Throwable e)
+        {
+            error = e;
+            failures.increment();
+            U.error(log, "定时任务 " + job.getName() + " 执行失败！", e);
+        }
+        finally
+        {
+            running.remove(job.key());
+
+            try
+            {
+                finish(job.key());
+            }
+            catch (Exception e)
+            {
+                U.error(log, "定时任务 " + job.getName() + " 的状态更新失败！", e);
+            }
+
+            long duration = System.currentTimeMillis() - start;
+            executions.increment();
+            latency.value(duration);
+
+            addHistory(new MyCronExecution(job.getName(), ignite.cluster().localNode().id(), scheduledTime, start,
+                    duration, missed, error));
+        }
+    }
+
+    /**
+     * 查询 MY_META 中的一个值，没有结果时返回 null
+     * */
+    private Object queryOne(final String sql, final Object arg)
+    {
+        List<List<?>> rows = ctx.query().querySqlFields(new SqlFieldsQuery(sql).setArgs(arg), false).getAll();
+        return rows.isEmpty() ? null : rows.get(0).get(0);
+    }
+
+    private void addHistory(final MyCronExecution execution)
+    {
+        history.addLast(execution);
+
+        if (historyCnt.incrementAndGet() > historySize && history.pollFirst() != null)
+            historyCnt.decrementAndGet();
+    }
+
+    private static long currentMinute()
+    {
+        long now = System.currentTimeMillis();
+        return now - now % MINUTE;
+    }
+}
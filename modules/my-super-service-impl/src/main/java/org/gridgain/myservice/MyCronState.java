@@ -0,0 +1,56 @@
+package org.gridgain.myservice;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * 定时任务在集群中的状态，保存在复制模式的 cache my_cron_state 中，通过 replace 更新
+ * last 为最后一次执行（或者跳过）的时间点，runner 为正在执行任务的节点，没有在执行时为 null
+ * 协调节点或者主节点变化后，新的节点通过 runner 知道任务还在执行，同一个任务不会同时执行两次
+ * */
+public class MyCronState implements Serializable {
+
+    private static final long serialVersionUID = 4215893094125763610L;
+
+    private final long last;
+
+    private final UUID runner;
+
+    public MyCronState(final long last, final UUID runner)
+    {
+        this.last = last;
+        this.runner = runner;
+    }
+
+    public long getLast() {
+        return last;
+    }
+
+    public UUID getRunner() {
+        return runner;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+
+        if (o == null || getClass() != o.getClass())
+            return false;
+
+        MyCronState other = (MyCronState) o;
+
+        return last == other.last && Objects.equals(runner, other.runner);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(last) + Objects.hashCode(runner);
+    }
+
+    @Override
+    public String toString() {
+        return "MyCronState{last=" + last + ", runner=" + runner + "}";
+    }
+}
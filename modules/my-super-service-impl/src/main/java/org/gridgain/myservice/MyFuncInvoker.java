@@ -0,0 +1,475 @@
+package org.gridgain.myservice;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.internal.IgniteEx;
+import org.apache.ignite.internal.processors.metric.GridMetricManager;
+import org.apache.ignite.internal.processors.metric.MetricRegistry;
+import org.apache.ignite.internal.processors.metric.impl.HistogramMetricImpl;
+import org.apache.ignite.internal.processors.metric.impl.LongAdderMetric;
+import org.gridgain.plus.dml.MySmartScenes;
+import org.gridgain.plus.sql.jdbc.SmartJdbcFunc;
+
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.EventType;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * my_fun、my_invoke、my_invoke_link、my_invoke_all 的调用
+ * 1、每个 方法名 + 调用方式 对应一个调用点，调用点中缓存解析后的调用目标，之后的调用不再按方法名查找：
+ *    my_fun 的方法按 MY_META.MY_FUNC 中的 CLS_NAME、JAVA_METHOD_NAME 解析一次为 MethodHandle（绑定一个实例），
+ *    参数数组直接传给 MethodHandle，不生成 List；
+ *    MY_FUNC 中没有这个方法（例如快照还没有加载）时，调用目标为 MySmartScenes.invokeFunc，下一次调用时再解析；
+ *    场景（my_invoke 等）由 MySmartScenes、SmartJdbcFunc 编译和执行，调用目标是绑定了方法名的入口
+ * 2、传给场景的参数是 H2 传入的数组的视图，被调用的方法增加或者删除参数时才复制
+ * 3、每个调用点记录调用次数、失败次数和延迟，在 metric 的 my.func.<调用方式>.<方法名> 中，
+ *    方法第一次调用成功后才缓存调用点和创建 metric，不存在的方法名不会产生 metric
+ * 4、MY_META 中定义方法或者场景的行（有 METHOD_NAME 字段）被修改时（MyMetaCatalog），这个方法名的调用目标失效，下一次调用时重新解析；
+ *    行被删除或者改名时删除旧方法名的调用点和它的 metric；整个表变化时所有的调用目标失效
+ * */
+public class MyFuncInvoker {
+
+    /** metric 的前缀 */
+    static final String MY_FUNC_METRIC_GROUP_NAME = "my.func";
+
+    /** 方法或者场景的名称的字段，SQL 创建的表字段名为大写 */
+    static final String METHOD_NAME_FIELD = "METHOD_NAME";
+
+    /** my_fun 的方法定义所在的表 */
+    static final String FUNC_TABLE = "MY_FUNC";
+
+    /** 实现方法的类 */
+    static final String CLS_NAME_FIELD = "CLS_NAME";
+
+    /** 实现方法的 java 方法名，类中不能重载 */
+    static final String JAVA_METHOD_NAME_FIELD = "JAVA_METHOD_NAME";
+
+    /** 延迟的统计区间（微秒） */
+    private static final long[] LATENCY_BOUNDS = new long[] {10, 100, 1000, 10_000, 100_000, 1_000_000};
+
+    private final Ignite ignite;
+
+    private final GridMetricManager metric;
+
+    private final MySmartScenes mySmartScenes;
+
+    private final MyMetaCatalog catalog;
+
+    private final ConcurrentHashMap<MyFuncKey, MyFuncCallSite> callSites = new ConcurrentHashMap<>();
+
+    public MyFuncInvoker(final Ignite ignite, final MySmartScenes mySmartScenes, final MyMetaCatalog catalog)
+    {
+        this.ignite = ignite;
+        this.metric = ((IgniteEx)ignite).context().metric();
+        this.mySmartScenes = mySmartScenes;
+        this.catalog = catalog;
+
+        catalog.addListener(this::onMetaChange);
+    }
+
+    /**
+     * 调用方法或者场景
+     * */
+    public List invoke(final MyFuncKind kind, final String methodName, final String userToken, final Object... ps)
+    {
+        MyFuncKey key = new MyFuncKey(kind, methodName);
+
+        Object[] args = ps == null ? new Object[0] : ps;
+
+        MyFuncCallSite site = callSites.get(key);
+        if (site != null)
+            return site.invoke(userToken, args);
+
+        // 调用成功后才缓存调用点，不存在的方法名不会留在 callSites 中
+        site = new MyFuncCallSite(key, key.metricName());
+        List rs = site.invoke(userToken, args);
+        callSites.putIfAbsent(key, site);
+        return rs;
+    }
+
+    /**
+     * MY_META 中的数据变化：方法修改时调用目标失效，方法被删除或者改名时删除旧方法名的调用点和 metric
+     * 整个表变化时（changes 为 null）不能确定方法名，所有的调用目标失效
+     * */
+    private void onMetaChange(final String tableName, final List<CacheEntryEvent<?, ?>> changes)
+    {
+        if (changes == null)
+        {
+            for (MyFuncCallSite site : callSites.values())
+                site.invalidate();
+            return;
+        }
+
+        for (CacheEntryEvent<?, ?> evt : changes)
+        {
+            String newName = methodName(evt.getValue());
+            String oldName = methodName(evt.getOldValue());
+
+            if (evt.getEventType() == EventType.REMOVED || evt.getEventType() == EventType.EXPIRED)
+            {
+                String name = oldName != null ? oldName : newName;
+                if (name != null)
+                    remove(name);
+                continue;
+            }
+
+            // 修改时方法名本身可能变化，旧的方法名相当于被删除
+            if (oldName != null && !oldName.equals(newName))
+                remove(oldName);
+
+            if (newName != null)
+                invalidate(newName);
+        }
+    }
+
+    /**
+     * 方法被重新定义，所有调用方式的调用目标失效，下一次调用时重新解析
+     * */
+    private void invalidate(final String methodName)
+    {
+        for (MyFuncKind kind : MyFuncKind.values())
+        {
+            MyFuncCallSite site = callSites.get(new MyFuncKey(kind, methodName));
+            if (site != null)
+                site.invalidate();
+        }
+    }
+
+    /**
+     * 方法被删除，删除所有调用方式的调用点和 metric
+     * */
+    private void remove(final String methodName)
+    {
+        for (MyFuncKind kind : MyFuncKind.values())
+        {
+            MyFuncKey key = new MyFuncKey(kind, methodName);
+            if (callSites.remove(key) != null)
+                metric.remove(key.metricName());
+        }
+    }
+
+    private static String methodName(final Object row)
+    {
+        if (row instanceof BinaryObject && ((BinaryObject)row).hasField(METHOD_NAME_FIELD))
+        {
+            Object name = ((BinaryObject)row).field(METHOD_NAME_FIELD);
+            return name == null ? null : name.toString();
+        }
+        return null;
+    }
+
+    /**
+     * 解析调用目标
+     * my_fun 的方法在 MY_FUNC 中有定义时解析为 MethodHandle，返回 null 表示暂时不能解析，这一次通过 MySmartScenes 调用
+     * */
+    private MyFuncTarget resolve(final MyFuncKey key)
+    {
+        switch (key.kind)
+        {
+            case FUNC:
+                return resolveFunc(key.methodName);
+
+            case SCENES:
+                return (userToken, ps) -> mySmartScenes.invokeScenes(ignite, userToken, key.methodName, new MyArgList(ps));
+
+            case SCENES_LINK:
+                return (userToken, ps) -> mySmartScenes.invokeScenesLink(ignite, userToken, key.methodName, new MyArgList(ps));
+
+            default:
+                return (userToken, ps) -> SmartJdbcFunc.invokeAllFuncScenes(ignite, userToken, key.methodName, new MyArgList(ps));
+        }
+    }
+
+    /**
+     * 按 MY_FUNC 中的定义找到 java 方法：类必须有默认构造函数，方法名不能重载，每个调用目标创建一个实例
+     * */
+    private MyFuncTarget resolveFunc(final String methodName)
+    {
+        MyMetaCatalog.MyMetaTable funcs = catalog.snapshot().table(FUNC_TABLE);
+        List<Object> rows = funcs == null ? Collections.emptyList() : funcs.find(METHOD_NAME_FIELD, methodName);
+
+        if (rows.size() != 1 || !(rows.get(0) instanceof BinaryObject))
+            return null;
+
+        BinaryObject row = (BinaryObject) rows.get(0);
+        Object clsName = row.hasField(CLS_NAME_FIELD) ? row.field(CLS_NAME_FIELD) : null;
+        Object javaName = row.hasField(JAVA_METHOD_NAME_FIELD) ? row.field(JAVA_METHOD_NAME_FIELD) : null;
+
+        if (clsName == null || javaName == null)
+            return null;
+
+        try
+        {
+            Class<?> cls = Class.forName(clsName.toString(), true, Thread.currentThread().getContextClassLoader());
+
+            Method method = null;
+            for (Method m : cls.getMethods())
+            {
+                if (m.getName().equals(javaName.toString()))
+                {
+                    if (method != null)
+                        throw new IgniteException("自定义方法不能重载：" + clsName + "." + javaName);
+                    method = m;
+                }
+            }
+
+            if (method == null)
+                throw new IgniteException("自定义方法不存在：" + clsName + "." + javaName);
+
+            MethodHandle mh = MethodHandles.publicLookup().unreflect(method);
+            if (!Modifier.isStatic(method.getModifiers()))
+                mh = mh.bindTo(cls.getConstructor().newInstance());
+
+            int arity = method.getParameterCount();
+            MethodHandle spread = mh.asType(MethodType.genericMethodType(arity)).asSpreader(Object[].class, arity);
+
+            return (userToken, ps) -> {
+                // 参数个数不同时由 MySmartScenes 处理，保持原来的错误信息
+                if (ps.length != arity)
+                    return mySmartScenes.invokeFunc(ignite, methodName, new MyArgList(ps));
+
+                Object rs;
+                try
+                {
+                    rs = (Object) spread.invokeExact(ps);
+                }
+                catch (RuntimeException | Error e)
+                {
+                    throw e;
+                }
+                catch (Throwable e)
+                {
+                    throw new IgniteException(e);
+                }
+
+                return rs instanceof List ? (List) rs : new ArrayList<>(Collections.singletonList(rs));
+            };
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IgniteException("无法解析自定义方法 " + methodName + "：" + clsName + "." + javaName, e);
+        }
+    }
+
+    /**
+     * 调用方式
+     * */
+    public enum MyFuncKind {
+        /** my_fun */
+        FUNC,
+
+        /** my_invoke */
+        SCENES,
+
+        /** my_invoke_link */
+        SCENES_LINK,
+
+        /** my_invoke_all */
+        ALL_FUNC_SCENES
+    }
+
+    private interface MyFuncTarget {
+        List invoke(final String userToken, final Object[] ps);
+    }
+
+    /**
+     * 调用点
+     * */
+    private class MyFuncCallSite {
+        private final MyFuncKey key;
+
+        private final String metricName;
+
+        /** 解析后的调用目标，失效后为 null，下一次调用时重新解析 */
+        private volatile MyFuncTarget target;
+
+        /** 失效的次数，解析期间失效时不缓存解析的结果 */
+        private volatile int generation;
+
+        /** 方法第一次调用成功后才创建 */
+        private volatile MyFuncMetrics metrics;
+
+        MyFuncCallSite(final MyFuncKey key, final String metricName)
+        {
+            this.key = key;
+            this.metricName = metricName;
+        }
+
+        synchronized void invalidate()
+        {
+            generation++;
+            target = null;
+        }
+
+        List invoke(final String userToken, final Object[] ps)
+        {
+            long start = System.nanoTime();
+            boolean ok = false;
+            try
+            {
+                MyFuncTarget t = target;
+                if (t == null)
+                {
+                    int gen = generation;
+                    t = resolve(key);
+
+                    if (t != null)
+                    {
+                        synchronized (this)
+                        {
+                            if (gen == generation)
+                                target = t;
+                        }
+                    }
+                    else
+                        t = (token, args) -> mySmartScenes.invokeFunc(ignite, key.methodName, new MyArgList(args));
+                }
+
+                List rs = t.invoke(userToken, ps);
+                ok = true;
+                return rs;
+            }
+            finally
+            {
+                MyFuncMetrics m = metrics;
+                if (m == null && ok)
+                    m = resolved();
+
+                if (m != null)
+                {
+                    if (!ok)
+                        m.errors.increment();
+
+                    m.calls.increment();
+                    m.latency.value(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                }
+            }
+        }
+
+        private synchronized MyFuncMetrics resolved()
+        {
+            if (metrics == null)
+                metrics = new MyFuncMetrics(metric.registry(metricName));
+
+            return metrics;
+        }
+    }
+
+    /**
+     * 调用点的 metric
+     * */
+    private static class MyFuncMetrics {
+        private final LongAdderMetric calls;
+
+        private final LongAdderMetric errors;
+
+        private final HistogramMetricImpl latency;
+
+        MyFuncMetrics(final MetricRegistry registry)
+        {
+            calls = registry.longAdderMetric("calls", "Count of calls of the function");
+            errors = registry.longAdderMetric("errors", "Count of failed calls of the function");
+            latency = registry.histogram("latency", LATENCY_BOUNDS, "Latency in microseconds of calls of the function");
+        }
+    }
+
+    /**
+     * 参数数组的视图，读取时不复制；被调用的方法修改参数（set、add、remove）时才复制到 ArrayList 中，
+     * 不会修改 H2 传入的数组
+     * */
+    static class MyArgList extends AbstractList<Object> implements RandomAccess {
+        private final Object[] ps;
+
+        private ArrayList<Object> copy;
+
+        MyArgList(final Object[] ps)
+        {
+            this.ps = ps;
+        }
+
+        @Override
+        public Object get(int index) {
+            return copy != null ? copy.get(index) : ps[index];
+        }
+
+        @Override
+        public int size() {
+            return copy != null ? copy.size() : ps.length;
+        }
+
+        @Override
+        public Object set(int index, Object element) {
+            return copy().set(index, element);
+        }
+
+        @Override
+        public void add(int index, Object element) {
+            copy().add(index, element);
+            modCount++;
+        }
+
+        @Override
+        public Object remove(int index) {
+            modCount++;
+            return copy().remove(index);
+        }
+
+        private ArrayList<Object> copy()
+        {
+            if (copy == null)
+                copy = new ArrayList<>(Arrays.asList(ps));
+            return copy;
+        }
+    }
+
+    /**
+     * 调用点的 key
+     * */
+    private static class MyFuncKey {
+        private final MyFuncKind kind;
+
+        private final String methodName;
+
+        MyFuncKey(final MyFuncKind kind, final String methodName)
+        {
+            this.kind = kind;
+            this.methodName = methodName;
+        }
+
+        String metricName()
+        {
+            return MY_FUNC_METRIC_GROUP_NAME + "." + kind.name().toLowerCase() + "." + methodName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+
+            if (o == null || getClass() != o.getClass())
+                return false;
+
+            MyFuncKey other = (MyFuncKey) o;
+
+            return kind == other.kind && methodName.equals(other.methodName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * kind.hashCode() + methodName.hashCode();
+        }
+    }
+}
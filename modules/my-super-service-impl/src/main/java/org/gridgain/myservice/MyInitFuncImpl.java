@@ -10,7 +10,10 @@ import org.apache.ignite.configuration.CacheConfiguration;
 import org.apache.ignite.internal.GridKernalContext;
 import org.apache.ignite.internal.IgniteEx;
 import org.apache.ignite.internal.processors.query.h2.ConnectionManager;
+import org.apache.ignite.internal.processors.query.h2.H2PooledConnection;
+import org.apache.ignite.internal.processors.query.h2.H2Utils;
 import org.apache.ignite.internal.processors.query.h2.IgniteH2Indexing;
+import org.gridgain.internal.h2.engine.Database;
 import org.gridgain.nosql.MyNoSqlUtil;
 import org.gridgain.plus.SmartFunc;
 import org.gridgain.plus.init.PlusInit;
@@ -23,105 +26,97 @@ import java.util.logging.Logger;
 
 public class MyInitFuncImpl implements IInitFunc {
 
+    /**
+     * 自定义方法：ALIAS 的名字，方法的全称
+     * */
+    private static final String[][] MY_FUNCS = new String[][] {
+            {"auto_id", "org.tools.MyPlusFunc.auto_id"},
+            {"smartSql", "org.tools.MyPlusFunc.smartSql"},
+            {"my_fun", "org.tools.MyPlusFunc.myFun"},
+            {"my_invoke", "org.tools.MyPlusFunc.myInvoke"},
+            {"my_invoke_link", "org.tools.MyPlusFunc.myInvokeLink"},
+            {"my_invoke_all", "org.tools.MyPlusFunc.myInvokeAllFuncScenes"},
+            {"show_msg", "org.tools.MyPlusFunc.showMsg"},
+            {"get_scheduler", "org.tools.MyPlusFunc.getScheduler"},
+            {"add_cron_job", "org.tools.MyPlusFunc.addCronJob"},
+            {"add_cron_fun_job", "org.tools.MyPlusFunc.addCronFunJob"},
+            {"remove_cron_job", "org.tools.MyPlusFunc.removeCronJob"},
+            {"hasConnPermission", "org.tools.MyPlusFunc.hasConnPermission"},
+            {"show_train_data", "org.tools.MyPlusFunc.showTrainData"},
+            {"showTrainData", "org.tools.MyPlusFunc.showTrainData"},
+            {"train_matrix_single", "org.tools.MyPlusFunc.train_matrix_single"}
+    };
+
+    /**
+     * 初始化的步骤，和原来的顺序一样逐个执行
+     * 语法树、Meta 表、自定义方法、Meta 的 cache 和 Meta 的监听是关键步骤，完成后节点才接收 SQL 连接，
+     * NoSql、定时任务、SmartInit 和 startAppCls 在后台继续执行
+     * 关键步骤失败时抛出 IgniteException，节点的激活失败，由 failure handler 终止启动，
+     * 后台步骤失败时只记录日志，后面的步骤不再执行
+     * */
     @Override
     public void initFunc() {
         Ignite ignite = Ignition.ignite();
 
-        MyInitCache myInitCache = new MyInitCache();
-        myInitCache.InitCache(ignite);
-        System.out.println("语法树的初始化");
-
-        PlusInit plusInit = new PlusInit(ignite);
-        plusInit.initialization();
-        System.out.println("Meta 表的初始化");
-
         GridKernalContext ctx = ((IgniteEx)ignite).context();
         IgniteH2Indexing h2Indexing = (IgniteH2Indexing)ctx.query().getIndexing();
         ConnectionManager connMgr = h2Indexing.connections();
-        System.out.println("自定义方法的初始化");
-
-        try {
-            String clause = "CREATE ALIAS IF NOT EXISTS auto_id FOR \"org.tools.MyPlusFunc.auto_id\"";
-            connMgr.executeStatement("PUBLIC", clause);
-            //System.out.println("自定义方法：auto_id 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS smartSql FOR \"org.tools.MyPlusFunc.smartSql\"";
-            connMgr.executeStatement("PUBLIC", clause);
-            //System.out.println("自定义方法：smartSql 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS my_fun FOR \"org.tools.MyPlusFunc.myFun\"";
-            connMgr.executeStatement("PUBLIC", clause);
-            //System.out.println("自定义方法：my_fun 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS my_invoke FOR \"org.tools.MyPlusFunc.myInvoke\"";
-            connMgr.executeStatement("PUBLIC", clause);
-            //System.out.println("自定义方法：my_invoke 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS my_invoke_link FOR \"org.tools.MyPlusFunc.myInvokeLink\"";
-            connMgr.executeStatement("PUBLIC", clause);
-            //System.out.println("自定义方法：my_invoke_link 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS my_invoke_all FOR \"org.tools.MyPlusFunc.myInvokeAllFuncScenes\"";
-            connMgr.executeStatement("PUBLIC", clause);
-            //System.out.println("自定义方法：my_invoke_all 初始化成功！");
-
-//            clause = "CREATE ALIAS IF NOT EXISTS nth FOR \"org.tools.MyPlusFunc.nth\"";
-//            connMgr.executeStatement("PUBLIC", clause);
-//            System.out.println("自定义方法：nth 初始化成功！");
-//
-//            clause = "CREATE ALIAS IF NOT EXISTS first FOR \"org.tools.MyPlusFunc.first\"";
-//            connMgr.executeStatement("PUBLIC", clause);
-//            System.out.println("自定义方法：first 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS show_msg FOR \"org.tools.MyPlusFunc.showMsg\"";
-            connMgr.executeStatement("PUBLIC", clause);
-            //System.out.println("自定义方法：show_msg 初始化成功！");
 
-            clause = "CREATE ALIAS IF NOT EXISTS get_scheduler FOR \"org.tools.MyPlusFunc.getScheduler\"";
-            connMgr.executeStatement("PUBLIC", clause);
-            //System.out.println("自定义方法：get_scheduler 初始化成功！");
+        MyStartupSteps steps = new MyStartupSteps(ctx);
 
-            clause = "CREATE ALIAS IF NOT EXISTS hasConnPermission FOR \"org.tools.MyPlusFunc.hasConnPermission\"";
-            connMgr.executeStatement("PUBLIC", clause);
-            //System.out.println("自定义方法：hasConnPermission 初始化成功！");
+        // 语法树的初始化
+        steps.critical("syntaxTree", () -> new MyInitCache().InitCache(ignite));
 
+        // Meta 表的初始化，PlusInit 会初始化 PUBLIC 和 MY_META
+        steps.critical("meta", () -> new PlusInit(ignite).initialization());
 
-            clause = "CREATE ALIAS IF NOT EXISTS show_train_data FOR \"org.tools.MyPlusFunc.showTrainData\"";
-            connMgr.executeStatement("PUBLIC", clause);
-            System.out.println("自定义方法：showTrainData 初始化成功！");
+        // 自定义方法只在 PUBLIC 中注册一次，其它的 schema 只能通过 PUBLIC 找到 MY_FUNCS 中的方法，
+        // 租户在 PUBLIC 中创建的其它 ALIAS 不会被别的 schema 看到
+        steps.critical("funcs", () -> {
+            try (H2PooledConnection conn = connMgr.connection("PUBLIC"))
+            {
+                Database database = H2Utils.session(conn).getDatabase();
+                for (String[] func : MY_FUNCS)
+                {
+                    database.addGlobalFunctionAlias(func[0]);
+                }
+            }
 
-            clause = "CREATE ALIAS IF NOT EXISTS train_matrix_single FOR \"org.tools.MyPlusFunc.train_matrix_single\"";
-            connMgr.executeStatement("PUBLIC", clause);
-            System.out.println("自定义方法：train_matrix_single 初始化成功！");
+            for (String[] func : MY_FUNCS)
+            {
+                connMgr.executeStatement("PUBLIC", "CREATE ALIAS IF NOT EXISTS " + func[0] + " FOR \"" + func[1] + "\"");
+            }
+        });
 
+        // MY_META 的 cache 模板和 Meta 的 cache
+        steps.critical("metaCaches", () -> {
             CacheConfiguration<?, ?> template_cfg = new CacheConfiguration<>("MyMeta_template*").setSqlSchema("MY_META");
             template_cfg.setCacheMode(CacheMode.REPLICATED);
             template_cfg.setReadFromBackup(true);
             ignite.addCacheConfiguration(template_cfg);
 
-            //CacheConfiguration<?, ?> cacheCfg = new CacheConfiguration<>("public_meta").setSqlSchema("PUBLIC");
             ignite.getOrCreateCache(new CacheConfiguration<>("public_meta").setSqlSchema("PUBLIC"));
             ignite.getOrCreateCache(new CacheConfiguration<>("my_meta_table").setSqlSchema("MY_META"));
-            initSchemaFunc(ignite, "MY_META");
+        });
 
-            //IgniteCache<MyCachePK, MyCaches> my_caches = ignite.cache("my_caches");
-            MyNoSqlUtil.initCaches(ignite);
-            System.out.println("NoSql init!");
-            // 加载定时任务
+        // 监听 MY_META 中元数据的变化，不扫描表的数据
+        // 是关键步骤：权限和 superSql 改写结果的缓存依赖它失效，接收 SQL 之前必须注册 continuous query
+        steps.critical("metaCatalog", () -> MyPlusFuncImpl.getInstance().getMetaCatalog().start());
+
+        steps.background("nosql", () -> MyNoSqlUtil.initCaches(ignite));
+
+        // 加载定时任务
+        steps.background("jobs", () -> {
             SmartFunc.initJob(ignite);
-            System.out.println("Job init!");
-            // (SmartInit/mySmartInit ignite)
-            SmartInit.mySmartInit(ignite);
-            System.out.println("SmartInit init!");
+            MyCronScheduler.getInstance().start();
+        });
 
-            // 加载一开始就执行的程序
-            loadAppCls(ignite);
-            System.out.println("loadAppCls init!");
-            System.out.println("加载完成！");
-        } catch (IgniteCheckedException var5) {
-            var5.printStackTrace();
-        }
+        steps.background("smartInit", () -> SmartInit.mySmartInit(ignite));
 
+        // 加载一开始就执行的程序
+        steps.background("appCls", () -> loadAppCls(ignite));
+
+        steps.run();
     }
 
     // 加载一开始就执行的程序
@@ -143,127 +138,18 @@ public class MyInitFuncImpl implements IInitFunc {
         }
     }
 
+    /**
+     * PUBLIC 中 MY_FUNCS 的自定义方法是全局的，任何 schema 中都可以直接使用，不需要再为每个 schema 创建 ALIAS
+     * */
     @Override
     public void initSchemaFunc(Object ignite, String schemaName) {
-        GridKernalContext ctx = ((IgniteEx)ignite).context();
-        IgniteH2Indexing h2Indexing = (IgniteH2Indexing)ctx.query().getIndexing();
-        ConnectionManager connMgr = h2Indexing.connections();
-        //System.out.println(schemaName + ": 自定义方法的初始化");
-
-        schemaName = schemaName.toUpperCase();
-
-        try {
-            String clause = "CREATE ALIAS IF NOT EXISTS auto_id FOR \"org.tools.MyPlusFunc.auto_id\"";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：auto_id 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS my_fun FOR \"org.tools.MyPlusFunc.myFun\"";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：my_fun 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS my_invoke FOR \"org.tools.MyPlusFunc.myInvoke\"";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：my_invoke 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS my_invoke_link FOR \"org.tools.MyPlusFunc.myInvokeLink\"";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + "：my_invoke_link 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS my_invoke_all FOR \"org.tools.MyPlusFunc.myInvokeAllFuncScenes\"";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + "：my_invoke_all 初始化成功！");
-
-//            clause = "CREATE ALIAS IF NOT EXISTS nth FOR \"org.tools.MyPlusFunc.nth\"";
-//            connMgr.executeStatement(schemaName, clause);
-//            //System.out.println(schemaName + ": 自定义方法：nth 初始化成功！");
-//
-//            clause = "CREATE ALIAS IF NOT EXISTS first FOR \"org.tools.MyPlusFunc.first\"";
-//            connMgr.executeStatement(schemaName, clause);
-//            //System.out.println(schemaName + ": 自定义方法：first 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS show_msg FOR \"org.tools.MyPlusFunc.showMsg\"";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：show_msg 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS get_scheduler FOR \"org.tools.MyPlusFunc.getScheduler\"";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：get_scheduler 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS hasConnPermission FOR \"org.tools.MyPlusFunc.hasConnPermission\"";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：hasConnPermission 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS smartSql FOR \"org.tools.MyPlusFunc.smartSql\"";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：smartSql 初始化成功！");
-
-            clause = "CREATE ALIAS IF NOT EXISTS showTrainData FOR \"org.tools.MyPlusFunc.showTrainData\"";
-            connMgr.executeStatement(schemaName, clause);
-
-            clause = "CREATE ALIAS IF NOT EXISTS train_matrix_single FOR \"org.tools.MyPlusFunc.train_matrix_single\"";
-            connMgr.executeStatement(schemaName, clause);
-
-//            clause = "CREATE ALIAS IF NOT EXISTS my_line_binary FOR \"org.tools.MyPlusFunc.my_line_binary\"";
-//            connMgr.executeStatement(schemaName, clause);
-//            //System.out.println(schemaName + ": 自定义方法：my_line_binary 初始化成功！（这个方法是用作测试的）");
-        } catch (IgniteCheckedException var5) {
-            var5.printStackTrace();
-        }
     }
 
+    /**
+     * 自定义方法没有在 schema 中创建，删除 schema 时不需要删除
+     * */
     @Override
     public void dropSchemaFunc(Object ignite, String schemaName) {
-        GridKernalContext ctx = ((IgniteEx)ignite).context();
-        IgniteH2Indexing h2Indexing = (IgniteH2Indexing)ctx.query().getIndexing();
-        ConnectionManager connMgr = h2Indexing.connections();
-
-        schemaName = schemaName.toUpperCase();
-
-        try {
-            String clause = "DROP ALIAS IF EXISTS auto_id";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：auto_id 删除成功！");
-            clause = "DROP ALIAS IF EXISTS my_fun";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：my_fun 删除成功！");
-            clause = "DROP ALIAS IF EXISTS my_invoke";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：my_invoke 删除成功！");
-
-            clause = "DROP ALIAS IF EXISTS my_invoke_link";
-            connMgr.executeStatement(schemaName, clause);
-
-            clause = "DROP ALIAS IF EXISTS my_invoke_all";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：my_invoke_link 删除成功！");
-
-//            clause = "DROP ALIAS IF EXISTS nth FOR \"org.tools.MyPlusFunc.nth\"";
-//            connMgr.executeStatement(schemaName, clause);
-//            System.out.println("自定义方法：nth 初始化成功！");
-//            clause = "DROP ALIAS IF EXISTS first FOR \"org.tools.MyPlusFunc.first\"";
-//            connMgr.executeStatement(schemaName, clause);
-//            System.out.println("自定义方法：first 初始化成功！");
-            clause = "DROP ALIAS IF EXISTS show_msg";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：show_msg 删除成功！");
-            clause = "DROP ALIAS IF EXISTS get_scheduler";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：get_scheduler 删除成功！");
-            clause = "DROP ALIAS IF EXISTS hasConnPermission";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：hasConnPermission 删除成功！");
-            clause = "DROP ALIAS IF EXISTS smartSql";
-            connMgr.executeStatement(schemaName, clause);
-            //System.out.println(schemaName + ": 自定义方法：smartSql 删除成功！");
-            clause = "DROP ALIAS IF EXISTS showTrainData";
-            connMgr.executeStatement(schemaName, clause);
-
-            clause = "DROP ALIAS IF EXISTS train_matrix_single";
-            connMgr.executeStatement(schemaName, clause);
-//            System.out.println("自定义方法：my_line_binary 初始化成功！（这个方法是用作测试的）");
-        } catch (IgniteCheckedException var5) {
-            var5.printStackTrace();
-        }
     }
 
 //    protected IgniteLogger log;
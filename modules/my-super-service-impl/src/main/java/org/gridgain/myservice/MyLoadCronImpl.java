@@ -8,5 +8,7 @@ public class MyLoadCronImpl implements IMyLoadCron {
     @Override
     public void loadCronFromDb() {
         SmartFunc.initJob(Ignition.ignite());
+        // 集群中的定时任务
+        MyCronScheduler.getInstance().start();
     }
 }
@@ -0,0 +1,821 @@
+package org.gridgain.myservice;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteLogger;
+import org.apache.ignite.binary.BinaryObject;
+import org.apache.ignite.cache.QueryEntity;
+import org.apache.ignite.cache.query.ContinuousQuery;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.cluster.ClusterNode;
+import org.apache.ignite.internal.GridKernalContext;
+import org.apache.ignite.internal.IgniteEx;
+import org.apache.ignite.internal.processors.cache.DynamicCacheDescriptor;
+import org.apache.ignite.internal.processors.metric.MetricRegistry;
+import org.apache.ignite.internal.processors.metric.impl.LongAdderMetric;
+import org.apache.ignite.internal.processors.query.QueryUtils;
+import org.apache.ignite.internal.processors.query.h2.IgniteH2Indexing;
+import org.apache.ignite.internal.util.typedef.internal.U;
+
+import javax.cache.Cache;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.EventType;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.apache.ignite.events.EventType.EVT_NODE_FAILED;
+import static org.apache.ignite.events.EventType.EVT_NODE_LEFT;
+
+/**
+ * MY_META 中元数据（表、列、视图、方法、权限等）在当前节点的快照，每个节点一份
+ * 1、启动时（start）为 MY_META 中的每个表注册 continuous query，通过 initial query 扫描一次表的数据，
+ * 之后由 continuous query 增量更新；DDL 改变 schema 的版本后，在后台线程中为新的表注册 continuous query，
+ * 关闭已删除的表的 continuous query
+ * 2、快照（snapshot）是不可变的，读取时不需要加锁，所有改写 sql 的线程共用，不需要每次读取 MY_META 的 cache。
+ * 表的行按 key 分成 BUCKETS 个桶，数据变化时只复制变化的行所在的桶，其它的桶（和桶上按字段的索引）由新旧快照共用；
+ * 收到的变化先放入队列，拿到锁的线程把队列中所有表的变化一起应用，只替换一次快照
+ * 3、数据变化时调用 addListener 注册的回调，回调收到表名和变化的行，各自的缓存按行失效（例如按 userToken）
+ * 4、版本：schema 的版本 + MY_META 数据的版本，两者都是集群范围的（DistributedSqlConfiguration），
+ * MY_META 数据的版本由协调节点在数据变化后增加，所有节点上的版本相同，JDBC 客户端连接任何节点都可以比较
+ * 5、代价：每个节点都为每个 MY_META 表注册 continuous query，每次变化都会发送给所有的节点，
+ * 启动和新建表时每个节点都扫描一次整个表；变化在数据所在的节点上按 CQ_PAGE_SIZE 条或者 CQ_TIME_INTERVAL 毫秒合并发送，
+ * 所以快照最多落后 CQ_TIME_INTERVAL 毫秒。MY_META 的表应该保持小而且很少修改
+ * */
+public class MyMetaCatalog {
+
+    /** metric 的名字 */
+    static final String META_CATALOG_METRIC_GROUP_NAME = "sql.meta.catalog";
+
+    /** 元数据表所在的 schema */
+    private static final String META_SCHEMA = "MY_META";
+
+    /** 用户组 token 的字段，SQL 创建的表字段名为大写 */
+    static final String USER_TOKEN_FIELD = "USER_TOKEN";
+
+    /** 表的行按 key 的 hash 分成的桶数，必须是 2 的幂 */
+    static final int BUCKETS = 64;
+
+    /** continuous query 在数据所在的节点上合并的变化的条数 */
+    private static final int CQ_PAGE_SIZE = 256;
+
+    /** continuous query 在数据所在的节点上合并变化的最长时间（毫秒） */
+    private static final long CQ_TIME_INTERVAL = 50;
+
+    private final Ignite ignite;
+
+    private final GridKernalContext ctx;
+
+    private final IgniteH2Indexing h2Indexing;
+
+    private final IgniteLogger log;
+
+    /** 注册了 continuous query 的 cache */
+    private final Map<String, MyListenedTable> listened = new ConcurrentHashMap<>();
+
+    /** 当前的快照 */
+    private volatile MyMetaSnapshot snapshot = new MyMetaSnapshot(0, Collections.emptyMap());
+
+    /** 正在扫描的表，扫描完成前收到的变化先保存在这里 */
+    private final Map<String, List<CacheEntryEvent<?, ?>>> pending = new HashMap<>();
+
+    /** 收到的还没有应用到快照的变化，按收到的顺序 */
+    private final Queue<MyMetaChanges> queued = new ConcurrentLinkedQueue<>();
+
+    /** 生成新快照的锁，读取快照不需要 */
+    private final ReentrantLock updLock = new ReentrantLock();
+
+    /** 已经提交了重新查找 MY_META 中的表的任务，还没有开始执行 */
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    /** 已经提交了增加 MY_META 数据版本的任务，还没有开始执行 */
+    private final AtomicBoolean bumpScheduled = new AtomicBoolean();
+
+    /** 已经注册了 schema 版本和节点离开的监听，重新激活集群时不再重复注册 */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /** 当前节点是否是协调节点 */
+    private volatile boolean crd;
+
+    /** 数据变化时的回调 */
+    private final List<MyMetaListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdderMetric scans;
+
+    private final LongAdderMetric updates;
+
+    public MyMetaCatalog(final Ignite ignite)
+    {
+        this.ignite = ignite;
+        this.ctx = ((IgniteEx)ignite).context();
+        this.h2Indexing = (IgniteH2Indexing)ctx.query().getIndexing();
+        this.log = ctx.log(MyMetaCatalog.class);
+
+        MetricRegistry registry = ctx.metric().registry(META_CATALOG_METRIC_GROUP_NAME);
+        scans = registry.longAdderMetric("scans", "Count of MY_META tables loaded into the snapshot by a full scan");
+        updates = registry.longAdderMetric("updates", "Count of MY_META changes applied to the snapshot");
+        registry.register("version", this::version, "Cluster wide version of MY_META metadata");
+        registry.register("tables", () -> snapshot.tables.size(), "Count of tables in the MY_META snapshot");
+    }
+
+    /**
+     * 启动时调用：为 MY_META 中的表注册 continuous query，之后由 schema 版本的变化触发
+     * 每次激活集群都会调用，监听只注册一次，已经注册了 continuous query 的表不会重复注册
+     * */
+    public void start()
+    {
+        if (!started.compareAndSet(false, true))
+        {
+            refresh();
+            return;
+        }
+
+        h2Indexing.distributedConfiguration().listenSchemaVersion((name, oldVer, newVer) -> scheduleRefresh());
+
+        crd = isCoordinator();
+
+        // 原来的协调节点可能在增加版本之前离开，新的协调节点增加一次版本
+        ctx.event().addLocalEventListener(evt -> {
+            boolean wasCrd = crd;
+
+            crd = isCoordinator();
+
+            if (!wasCrd && crd)
+                scheduleBump();
+        }, EVT_NODE_LEFT, EVT_NODE_FAILED);
+
+        refresh();
+    }
+
+    /**
+     * 当前的版本
+     * */
+    public long version()
+    {
+        return h2Indexing.schemaVersion() + h2Indexing.metaVersion();
+    }
+
+    /**
+     * 当前节点的快照，不可变，读取时不需要加锁
+     * */
+    public MyMetaSnapshot snapshot()
+    {
+        return snapshot;
+    }
+
+    /**
+     * 注册 MY_META 中数据变化时的回调
+     * */
+    public void addListener(final MyMetaListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    private void scheduleRefresh()
+    {
+        if (refreshScheduled.compareAndSet(false, true))
+        {
+            ctx.closure().runLocalSafe(() -> {
+                refreshScheduled.set(false);
+                refresh();
+            });
+        }
+    }
+
+    /**
+     * 查找 MY_META 中的表，新的表扫描一次并注册 continuous query，删除的表关闭 continuous query 并从快照中删除
+     * 表的集合变化时，回调收到的变化的行为 null，表示整个表都可能变化
+     * */
+    private synchronized void refresh()
+    {
+        for (DynamicCacheDescriptor desc : ctx.cache().cacheDescriptors().values())
+        {
+            String cacheName = desc.cacheName();
+            String schema = desc.cacheConfiguration().getSqlSchema();
+
+            if (schema == null || !META_SCHEMA.equalsIgnoreCase(schema.replace("\"", "")) || listened.containsKey(cacheName))
+                continue;
+
+            try
+            {
+                listen(cacheName, tableName(desc));
+            }
+            catch (Exception e)
+            {
+                U.error(log, "Failed to listen MY_META table [cache=" + cacheName + ']', e);
+            }
+        }
+
+        // 表被删除后关闭对应的 continuous query
+        List<String> dropped = new ArrayList<>();
+        listened.entrySet().removeIf(e -> {
+            if (ctx.cache().cacheDescriptor(e.getKey()) != null)
+                return false;
+
+            U.closeQuiet(e.getValue().cursor);
+            dropped.add(e.getValue().name);
+            return true;
+        });
+
+        if (!dropped.isEmpty())
+        {
+            updLock.lock();
+            try
+            {
+                Map<String, MyMetaTable> tables = new HashMap<>(snapshot.tables);
+                tables.keySet().removeAll(dropped);
+                swap(tables);
+            }
+            finally
+            {
+                updLock.unlock();
+            }
+        }
+
+        for (String tableName : dropped)
+            notifyListeners(tableName, null);
+    }
+
+    /**
+     * 注册 continuous query，通过 initial query 扫描一次表中已有的数据
+     * */
+    private void listen(final String cacheName, final String tableName)
+    {
+        updLock.lock();
+        try
+        {
+            pending.put(tableName, new ArrayList<>());
+        }
+        finally
+        {
+            updLock.unlock();
+        }
+
+        IgniteCache<Object, Object> metaCache = ignite.cache(cacheName).withKeepBinary();
+
+        ContinuousQuery<Object, Object> qry = new ContinuousQuery<>();
+        qry.setInitialQuery(new ScanQuery<>());
+        qry.setLocalListener(evts -> onMetaChange(tableName, evts));
+        qry.setPageSize(CQ_PAGE_SIZE);
+        qry.setTimeInterval(CQ_TIME_INTERVAL);
+
+        QueryCursor<Cache.Entry<Object, Object>> cursor = null;
+        Map<Object, Object> rows = new HashMap<>();
+        try
+        {
+            cursor = metaCache.query(qry);
+
+            for (Cache.Entry<Object, Object> e : cursor)
+                rows.put(e.getKey(), e.getValue());
+        }
+        catch (RuntimeException e)
+        {
+            U.closeQuiet(cursor);
+
+            updLock.lock();
+            try
+            {
+                pending.remove(tableName);
+            }
+            finally
+            {
+                updLock.unlock();
+            }
+            throw e;
+        }
+
+        listened.put(cacheName, new MyListenedTable(tableName, cursor));
+        scans.increment();
+
+        List<MyMetaChanges> drained = new ArrayList<>();
+
+        updLock.lock();
+        try
+        {
+            // 队列中这个表的变化先进入 pending
+            applyQueued(drained);
+
+            // 扫描过程中收到的变化比扫描的结果新
+            for (CacheEntryEvent<?, ?> evt : pending.remove(tableName))
+                apply(rows, evt);
+
+            Map<String, MyMetaTable> tables = new HashMap<>(snapshot.tables);
+            tables.put(tableName, new MyMetaTable(tableName, cacheName, rows));
+            swap(tables);
+        }
+        finally
+        {
+            updLock.unlock();
+        }
+
+        onApplied(drained);
+
+        // 注册之前的变化没有收到
+        notifyListeners(tableName, null);
+    }
+
+    /**
+     * continuous query 的回调：变化放入队列后应用，等待锁的线程的变化由持有锁的线程一起应用
+     * */
+    private void onMetaChange(final String tableName, final Iterable<CacheEntryEvent<?, ?>> evts)
+    {
+        List<CacheEntryEvent<?, ?>> changes = new ArrayList<>();
+        for (CacheEntryEvent<?, ?> evt : evts)
+            changes.add(evt);
+
+        queued.add(new MyMetaChanges(tableName, changes));
+
+        List<MyMetaChanges> drained = new ArrayList<>();
+
+        updLock.lock();
+        try
+        {
+            applyQueued(drained);
+        }
+        finally
+        {
+            updLock.unlock();
+        }
+
+        onApplied(drained);
+    }
+
+    /**
+     * 把队列中的变化应用到快照，调用时持有 updLock
+     * 每个表的变化合并后生成一次新的表，所有的表只替换一次快照；正在扫描的表的变化放入 pending
+     * */
+    private void applyQueued(final List<MyMetaChanges> drained)
+    {
+        Map<String, List<CacheEntryEvent<?, ?>>> byTable = new HashMap<>();
+
+        for (MyMetaChanges c; (c = queued.poll()) != null; )
+        {
+            drained.add(c);
+
+            List<CacheEntryEvent<?, ?>> buf = pending.get(c.tableName);
+            if (buf != null)
+                buf.addAll(c.changes);
+            else
+                byTable.computeIfAbsent(c.tableName, k -> new ArrayList<>()).addAll(c.changes);
+        }
+
+        Map<String, MyMetaTable> tables = null;
+        for (Map.Entry<String, List<CacheEntryEvent<?, ?>>> e : byTable.entrySet())
+        {
+            MyMetaTable table = snapshot.tables.get(e.getKey());
+            if (table == null)
+                continue;
+
+            if (tables == null)
+                tables = new HashMap<>(snapshot.tables);
+
+            tables.put(e.getKey(), table.apply(e.getValue()));
+        }
+
+        if (tables != null)
+            swap(tables);
+    }
+
+    /**
+     * 变化应用到快照以后调用，不持有 updLock
+     * */
+    private void onApplied(final List<MyMetaChanges> drained)
+    {
+        if (drained.isEmpty())
+            return;
+
+        // 每个节点都会收到变化，只由协调节点增加集群范围的版本
+        if (crd)
+            scheduleBump();
+
+        for (MyMetaChanges c : drained)
+        {
+            updates.add(c.changes.size());
+            notifyListeners(c.tableName, c.changes);
+        }
+    }
+
+    /**
+     * 替换快照，调用时持有 updLock
+     * */
+    private void swap(final Map<String, MyMetaTable> tables)
+    {
+        snapshot = new MyMetaSnapshot(snapshot.seq + 1, tables);
+    }
+
+    /**
+     * 返回行数的变化
+     * */
+    private static int apply(final Map<Object, Object> rows, final CacheEntryEvent<?, ?> evt)
+    {
+        if (evt.getEventType() == EventType.REMOVED || evt.getEventType() == EventType.EXPIRED)
+            return rows.remove(evt.getKey()) == null ? 0 : -1;
+
+        return rows.put(evt.getKey(), evt.getValue()) == null ? 1 : 0;
+    }
+
+    private void notifyListeners(final String tableName, final List<CacheEntryEvent<?, ?>> changes)
+    {
+        for (MyMetaListener listener : listeners)
+        {
+            try
+            {
+                listener.onChange(tableName, changes);
+            }
+            catch (RuntimeException e)
+            {
+                U.error(log, "MY_META listener failed [table=" + tableName + ']', e);
+            }
+        }
+    }
+
+    /**
+     * 增加 MY_META 数据的版本需要等待 discovery 的消息，不能在 continuous query 的线程中执行，
+     * 还没有开始执行的任务会合并
+     * */
+    private void scheduleBump()
+    {
+        if (bumpScheduled.compareAndSet(false, true))
+        {
+            ctx.closure().runLocalSafe(() -> {
+                bumpScheduled.set(false);
+                h2Indexing.onMetaChanged();
+            });
+        }
+    }
+
+    private boolean isCoordinator()
+    {
+        ClusterNode oldest = U.oldest(ctx.discovery().aliveServerNodes(), null);
+
+        return oldest != null && oldest.isLocal();
+    }
+
+    /**
+     * 变化的行所属的 userToken（新值和旧值中的 USER_TOKEN 字段）
+     * changes 为 null、有一行不能确定 userToken（没有这个字段，或者修改时没有旧值）时返回 null，这时需要全部失效
+     * */
+    public static Set<String> userTokens(final List<CacheEntryEvent<?, ?>> changes)
+    {
+        if (changes == null)
+            return null;
+
+        Set<String> tokens = new HashSet<>();
+        for (CacheEntryEvent<?, ?> evt : changes)
+        {
+            String newToken = userToken(evt.getValue());
+            String oldToken = userToken(evt.getOldValue());
+
+            if (newToken == null && oldToken == null)
+                return null;
+
+            // 修改时 USER_TOKEN 本身可能变化，需要旧值
+            if (evt.getEventType() == EventType.UPDATED && oldToken == null)
+                return null;
+
+            if (newToken != null)
+                tokens.add(newToken);
+
+            if (oldToken != null)
+                tokens.add(oldToken);
+        }
+        return tokens;
+    }
+
+    private static String userToken(final Object row)
+    {
+        if (row instanceof BinaryObject && ((BinaryObject)row).hasField(USER_TOKEN_FIELD))
+        {
+            Object token = ((BinaryObject)row).field(USER_TOKEN_FIELD);
+            return token == null ? null : token.toString();
+        }
+        return null;
+    }
+
+    private static String tableName(final DynamicCacheDescriptor desc)
+    {
+        Collection<QueryEntity> entities = desc.schema().entities();
+        if (entities != null && !entities.isEmpty())
+            return QueryUtils.tableName(entities.iterator().next()).toUpperCase();
+
+        return desc.cacheName().toUpperCase();
+    }
+
+    /**
+     * 元数据的快照，不可变
+     * */
+    public static class MyMetaSnapshot {
+        /** 当前节点上快照的序号，每次替换时增加 */
+        private final long seq;
+
+        private final Map<String, MyMetaTable> tables;
+
+        MyMetaSnapshot(final long seq, final Map<String, MyMetaTable> tables)
+        {
+            this.seq = seq;
+            this.tables = Collections.unmodifiableMap(tables);
+        }
+
+        public long seq()
+        {
+            return seq;
+        }
+
+        /**
+         * 获取表，快照中没有这个表时返回 null
+         * */
+        public MyMetaTable table(final String tableName)
+        {
+            return tables.get(tableName.toUpperCase());
+        }
+
+        public Collection<MyMetaTable> tables()
+        {
+            return tables.values();
+        }
+    }
+
+    /**
+     * 快照中的一个表，value 保持 binary 格式
+     * 行按 key 分成 BUCKETS 个不可变的桶，新版本的表只复制变化的行所在的桶
+     * */
+    public static class MyMetaTable {
+        private final String name;
+
+        private final String cacheName;
+
+        private final MyMetaBucket[] buckets;
+
+        private final int size;
+
+        /** 所有桶的只读视图 */
+        private final Map<Object, Object> rows = new MyRowsView();
+
+        MyMetaTable(final String name, final String cacheName, final Map<Object, Object> rows)
+        {
+            this.name = name;
+            this.cacheName = cacheName;
+            this.size = rows.size();
+
+            List<Map<Object, Object>> split = new ArrayList<>(BUCKETS);
+            for (int i = 0; i < BUCKETS; i++)
+                split.add(new HashMap<>());
+
+            for (Map.Entry<Object, Object> e : rows.entrySet())
+                split.get(bucket(e.getKey())).put(e.getKey(), e.getValue());
+
+            buckets = new MyMetaBucket[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++)
+                buckets[i] = MyMetaBucket.of(split.get(i));
+        }
+
+        private MyMetaTable(final MyMetaTable prev, final MyMetaBucket[] buckets, final int size)
+        {
+            this.name = prev.name;
+            this.cacheName = prev.cacheName;
+            this.buckets = buckets;
+            this.size = size;
+        }
+
+        /**
+         * 应用变化后的新版本，没有变化的桶和这个版本共用
+         * */
+        MyMetaTable apply(final List<CacheEntryEvent<?, ?>> changes)
+        {
+            MyMetaBucket[] copy = buckets.clone();
+            Map<Integer, Map<Object, Object>> touched = new HashMap<>();
+            int newSize = size;
+
+            for (CacheEntryEvent<?, ?> evt : changes)
+            {
+                Map<Object, Object> bucketRows = touched.computeIfAbsent(bucket(evt.getKey()),
+                    i -> new HashMap<>(buckets[i].rows));
+
+                newSize += MyMetaCatalog.apply(bucketRows, evt);
+            }
+
+            for (Map.Entry<Integer, Map<Object, Object>> e : touched.entrySet())
+                copy[e.getKey()] = MyMetaBucket.of(e.getValue());
+
+            return new MyMetaTable(this, copy, newSize);
+        }
+
+        public String name()
+        {
+            return name;
+        }
+
+        public String cacheName()
+        {
+            return cacheName;
+        }
+
+        public int size()
+        {
+            return size;
+        }
+
+        /**
+         * 按 key 获取一行
+         * */
+        public Object get(final Object key)
+        {
+            return buckets[bucket(key)].rows.get(key);
+        }
+
+        public Map<Object, Object> rows()
+        {
+            return rows;
+        }
+
+        /**
+         * 按字段的值查找，字段在 value 或者 key 中，名字区分大小写
+         * 索引按桶生成，没有变化的桶的索引由新旧版本共用
+         * */
+        public List<Object> find(final String field, final Object value)
+        {
+            List<Object> res = Collections.emptyList();
+            boolean copied = false;
+
+            for (MyMetaBucket bucket : buckets)
+            {
+                List<Object> found = bucket.find(field, value);
+                if (found.isEmpty())
+                    continue;
+
+                if (res.isEmpty())
+                {
+                    res = found;
+                }
+                else
+                {
+                    if (!copied)
+                    {
+                        res = new ArrayList<>(res);
+                        copied = true;
+                    }
+                    res.addAll(found);
+                }
+            }
+            return copied ? Collections.unmodifiableList(res) : res;
+        }
+
+        private static int bucket(final Object key)
+        {
+            int h = key.hashCode();
+            return (h ^ (h >>> 16)) & (BUCKETS - 1);
+        }
+
+        /**
+         * 所有桶的行的只读视图
+         * */
+        private class MyRowsView extends AbstractMap<Object, Object> {
+            @Override
+            public Object get(final Object key)
+            {
+                return key == null ? null : MyMetaTable.this.get(key);
+            }
+
+            @Override
+            public boolean containsKey(final Object key)
+            {
+                return get(key) != null;
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+
+            @Override
+            public Set<Entry<Object, Object>> entrySet()
+            {
+                return new AbstractSet<Entry<Object, Object>>() {
+                    @Override
+                    public Iterator<Entry<Object, Object>> iterator()
+                    {
+                        return Arrays.stream(buckets)
+                            .flatMap(b -> b.rows.entrySet().stream())
+                            .iterator();
+                    }
+
+                    @Override
+                    public int size()
+                    {
+                        return size;
+                    }
+                };
+            }
+        }
+    }
+
+    /**
+     * 表的一个桶，不可变，字段的值到行的索引在第一次按字段查找时生成
+     * */
+    private static class MyMetaBucket {
+        private static final MyMetaBucket EMPTY = new MyMetaBucket(Collections.emptyMap());
+
+        private final Map<Object, Object> rows;
+
+        private final ConcurrentHashMap<String, Map<Object, List<Object>>> indexes = new ConcurrentHashMap<>();
+
+        private MyMetaBucket(final Map<Object, Object> rows)
+        {
+            this.rows = Collections.unmodifiableMap(rows);
+        }
+
+        static MyMetaBucket of(final Map<Object, Object> rows)
+        {
+            return rows.isEmpty() ? EMPTY : new MyMetaBucket(rows);
+        }
+
+        List<Object> find(final String field, final Object value)
+        {
+            if (rows.isEmpty())
+                return Collections.emptyList();
+
+            return indexes.computeIfAbsent(field, this::index).getOrDefault(value, Collections.emptyList());
+        }
+
+        private Map<Object, List<Object>> index(final String field)
+        {
+            Map<Object, List<Object>> idx = new HashMap<>();
+            for (Map.Entry<Object, Object> e : rows.entrySet())
+            {
+                Object v = field(e.getValue(), field);
+                if (v == null)
+                    v = field(e.getKey(), field);
+
+                if (v != null)
+                    idx.computeIfAbsent(v, k -> new ArrayList<>()).add(e.getValue());
+            }
+            return idx;
+        }
+
+        private static Object field(final Object obj, final String field)
+        {
+            if (obj instanceof BinaryObject && ((BinaryObject)obj).hasField(field))
+                return ((BinaryObject)obj).field(field);
+
+            return null;
+        }
+    }
+
+    /**
+     * 一次回调收到的一个表的变化
+     * */
+    private static class MyMetaChanges {
+        private final String tableName;
+
+        private final List<CacheEntryEvent<?, ?>> changes;
+
+        MyMetaChanges(final String tableName, final List<CacheEntryEvent<?, ?>> changes)
+        {
+            this.tableName = tableName;
+            this.changes = changes;
+        }
+    }
+
+    /**
+     * 注册了 continuous query 的表
+     * */
+    private static class MyListenedTable {
+        private final String name;
+
+        private final QueryCursor<?> cursor;
+
+        MyListenedTable(final String name, final QueryCursor<?> cursor)
+        {
+            this.name = name;
+            this.cursor = cursor;
+        }
+    }
+
+    /**
+     * MY_META 中数据变化的回调
+     * */
+    public interface MyMetaListener {
+        /**
+         * tableName 为大写的表名，changes 中 value 保持 binary 格式，
+         * changes 为 null 时表示整个表都可能变化（表刚开始监听或者被删除）
+         * */
+        void onChange(final String tableName, final List<CacheEntryEvent<?, ?>> changes);
+    }
+}
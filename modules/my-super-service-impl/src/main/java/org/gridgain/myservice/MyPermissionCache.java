@@ -0,0 +1,139 @@
+package org.gridgain.myservice;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.internal.IgniteEx;
+import org.apache.ignite.internal.processors.metric.MetricRegistry;
+import org.apache.ignite.internal.processors.metric.impl.HistogramMetricImpl;
+import org.apache.ignite.internal.processors.metric.impl.LongAdderMetric;
+import org.apache.ignite.internal.util.GridBoundedConcurrentLinkedHashMap;
+
+import javax.cache.event.CacheEntryEvent;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+
+/**
+ * userToken 对应的用户组权限的缓存，每个节点一份
+ * 1、最多保存 CACHE_SIZE 个 userToken，按 LRU 淘汰；只缓存有权限的结果，没有权限的 token 每次都重新读取，
+ * 不存在的 token 不会占满缓存，新建的用户组也可以立即连接
+ * 2、MY_META 中的数据有变化时（MyMetaCatalog），按变化的行中的 userToken 失效，不能确定 userToken 时全部失效
+ * 3、读取过程中有失效时，这次读取的结果不保存
+ * 命中率和结果的新旧程度在 metric 的 sql.permission.cache 中
+ * */
+public class MyPermissionCache {
+
+    /** metric 的名字 */
+    static final String PERMISSION_CACHE_METRIC_GROUP_NAME = "sql.permission.cache";
+
+    /** 缓存的最大条数 */
+    private static final int CACHE_SIZE = 4096;
+
+    /** 结果存在时间的统计区间（毫秒） */
+    private static final long[] STALENESS_BOUNDS = new long[] {1000, 10_000, 60_000, 600_000, 3_600_000};
+
+    /** 有权限的 userToken 和读取的时间 */
+    private final GridBoundedConcurrentLinkedHashMap<String, Long> cache = new GridBoundedConcurrentLinkedHashMap<>(CACHE_SIZE);
+
+    /** 失效的次数，读取前后不同时结果不保存 */
+    private final AtomicLong invalidateCnt = new AtomicLong();
+
+    private final LongAdderMetric hits;
+
+    private final LongAdderMetric misses;
+
+    private final LongAdderMetric invalidations;
+
+    private final HistogramMetricImpl staleness;
+
+    public MyPermissionCache(final Ignite ignite, final MyMetaCatalog catalog)
+    {
+        catalog.addListener(this::onMetaChange);
+
+        MetricRegistry registry = ((IgniteEx)ignite).context().metric().registry(PERMISSION_CACHE_METRIC_GROUP_NAME);
+        hits = registry.longAdderMetric("hits", "Count of hits for user token permission cache");
+        misses = registry.longAdderMetric("misses", "Count of misses for user token permission cache");
+        invalidations = registry.longAdderMetric("invalidations", "Count of user tokens invalidated by MY_META changes, full clears count as one");
+        staleness = registry.histogram("staleness", STALENESS_BOUNDS, "Age in milliseconds of permissions served from the cache");
+        registry.register("hitRate", (DoubleSupplier)this::hitRate, "Hit rate of user token permission cache");
+        registry.register("size", cache::sizex, "Count of entries in user token permission cache");
+    }
+
+    /**
+     * 获取 userToken 的权限，缓存中没有时调用 loader，有权限时保存结果
+     * */
+    public Boolean hasConnPermission(final String userToken, final Function<String, Boolean> loader)
+    {
+        if (userToken == null)
+            return loader.apply(null);
+
+        Long loadTime = cache.get(userToken);
+        if (loadTime != null)
+        {
+            hits.increment();
+            staleness.value(System.currentTimeMillis() - loadTime);
+            return true;
+        }
+
+        misses.increment();
+
+        long cnt = invalidateCnt.get();
+
+        Boolean allowed = loader.apply(userToken);
+
+        if (Boolean.TRUE.equals(allowed))
+        {
+            cache.put(userToken, System.currentTimeMillis());
+
+            // 读取过程中有失效，结果可能是旧的
+            if (invalidateCnt.get() != cnt)
+                cache.remove(userToken);
+        }
+        return allowed;
+    }
+
+    /**
+     * 清空当前节点的缓存
+     * */
+    public void clear()
+    {
+        invalidateCnt.incrementAndGet();
+        cache.clear();
+    }
+
+    /**
+     * 删除 userToken 的结果
+     * */
+    public void invalidate(final String userToken)
+    {
+        invalidateCnt.incrementAndGet();
+        cache.remove(userToken);
+    }
+
+    private void onMetaChange(final String tableName, final List<CacheEntryEvent<?, ?>> changes)
+    {
+        Set<String> tokens = MyMetaCatalog.userTokens(changes);
+
+        if (tokens == null)
+        {
+            invalidations.increment();
+            clear();
+            return;
+        }
+
+        for (String token : tokens)
+        {
+            invalidations.increment();
+            invalidate(token);
+        }
+    }
+
+    private double hitRate()
+    {
+        long h = hits.value();
+        long total = h + misses.value();
+
+        return total == 0 ? 0 : (double)h / total;
+    }
+}
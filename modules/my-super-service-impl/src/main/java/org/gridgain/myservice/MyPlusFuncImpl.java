@@ -2,15 +2,14 @@ package org.gridgain.myservice;
 
 import cn.mysuper.service.IMyPlusFunc;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.ignite.Ignition;
 import org.apache.ignite.scheduler.SchedulerFuture;
 import org.gridgain.plus.dml.MySmartScenes;
 import org.gridgain.plus.sql.MySuperSql;
-import org.gridgain.plus.sql.jdbc.SmartJdbcFunc;
 import org.gridgain.smart.ml.MyTrianDataUtil;
+import org.tools.MyLineToBinary;
 import org.tools.MyPlusUtil;
 
 public class MyPlusFuncImpl implements IMyPlusFunc {
@@ -26,15 +25,84 @@ public class MyPlusFuncImpl implements IMyPlusFunc {
         return InstanceHolder.instance;
     }
 
+    /** 用户组的表 */
+    private static final String USERS_GROUP_TABLE = "MY_USERS_GROUP";
+
     private MySmartScenes mySmartScenes;
 
+    /**
+     * superSql 改写结果的缓存
+     * */
+    private MySmartSqlCache mySmartSqlCache;
+
+    /**
+     * my_fun、my_invoke 等方法的调用点
+     * */
+    private MyFuncInvoker myFuncInvoker;
+
+    /**
+     * MY_META 中元数据的变化和版本
+     * */
+    private MyMetaCatalog myMetaCatalog;
+
+    /**
+     * userToken 对应的用户组权限的缓存
+     * */
+    private MyPermissionCache myPermissionCache;
+
     private MyPlusFuncImpl()
     {
         mySmartScenes = new MySmartScenes();
+        myMetaCatalog = new MyMetaCatalog(Ignition.ignite());
+        mySmartSqlCache = new MySmartSqlCache(Ignition.ignite(), myMetaCatalog);
+        myFuncInvoker = new MyFuncInvoker(Ignition.ignite(), mySmartScenes, myMetaCatalog);
+        // MY_META 中的数据变化后，权限可能发生变化，两个缓存都按 userToken 失效
+        myPermissionCache = new MyPermissionCache(Ignition.ignite(), myMetaCatalog);
+    }
+
+    /**
+     * 获取 superSql 改写结果的缓存
+     * DDL 或者 MY_META 变化后集群范围的元数据版本变化，旧的结果不再命中；MY_META 变化后立即按 userToken 失效
+     * */
+    public MySmartSqlCache getSmartSqlCache() {
+        return mySmartSqlCache;
+    }
+
+    /**
+     * 获取 my_fun、my_invoke 等方法的调用点
+     * */
+    public MyFuncInvoker getFuncInvoker() {
+        return myFuncInvoker;
+    }
+
+    /**
+     * 获取 MY_META 中元数据的变化和版本，权限和 superSql 改写结果的缓存通过它失效
+     * */
+    public MyMetaCatalog getMetaCatalog() {
+        return myMetaCatalog;
+    }
+
+    /**
+     * 获取 userToken 对应的用户组权限的缓存
+     * */
+    public MyPermissionCache getPermissionCache() {
+        return myPermissionCache;
     }
 
     @Override
     public Boolean hasConnPermission(String userToken) {
+        return myPermissionCache.hasConnPermission(userToken, this::loadConnPermission);
+    }
+
+    /**
+     * 先查找 MY_META 的快照中的用户组，快照中没有时（启动过程中还没有加载，或者不是用户组中的 token）读取 MY_META
+     * */
+    private Boolean loadConnPermission(final String userToken)
+    {
+        MyMetaCatalog.MyMetaTable groups = myMetaCatalog.snapshot().table(USERS_GROUP_TABLE);
+        if (userToken != null && groups != null && !groups.find(MyMetaCatalog.USER_TOKEN_FIELD, userToken).isEmpty())
+            return true;
+
         return MySuperSql.getGroupId(Ignition.ignite(), userToken);
     }
 
@@ -42,6 +110,11 @@ public class MyPlusFuncImpl implements IMyPlusFunc {
     public String getScheduler(String schedulerName) {
         StringBuilder sb = new StringBuilder();
         SchedulerFuture schedulerFuture = (SchedulerFuture)MyPlusUtil.getIgniteScheduleProcessor(Ignition.ignite()).getScheduledFutures().get(schedulerName);
+        if (schedulerFuture == null) {
+            // 集群中的定时任务
+            return MyCronScheduler.getInstance().describe(schedulerName);
+        }
+
         sb.append("任务名称：" + schedulerName);
         sb.append(" 是否在运行：" + schedulerFuture.isRunning());
         sb.append(" 开始时间：" + schedulerFuture.createTime());
@@ -56,12 +129,7 @@ public class MyPlusFuncImpl implements IMyPlusFunc {
 
     @Override
     public List myFun(String methodName, Object... ps) {
-        List<Object> lst = new ArrayList<>();
-        for (Object m : ps)
-        {
-            lst.add(m);
-        }
-        return mySmartScenes.invokeFunc(Ignition.ignite(), methodName, lst);
+        return myFuncInvoker.invoke(MyFuncInvoker.MyFuncKind.FUNC, methodName, null, ps);
     }
 
 //    @Override
@@ -76,12 +144,7 @@ public class MyPlusFuncImpl implements IMyPlusFunc {
 
     @Override
     public List myInvoke(String methodName, String user_token, Object... ps) {
-        List<Object> lst = new ArrayList<>();
-        for (Object m : ps)
-        {
-            lst.add(m);
-        }
-        return mySmartScenes.invokeScenes(Ignition.ignite(), user_token, methodName, lst);
+        return myFuncInvoker.invoke(MyFuncInvoker.MyFuncKind.SCENES, methodName, user_token, ps);
     }
 
 //    @Override
@@ -97,13 +160,7 @@ public class MyPlusFuncImpl implements IMyPlusFunc {
 
     @Override
     public List myInvokeLink(String methodName, String user_token, Object... ps) {
-        List<Object> lst = new ArrayList<>();
-        for (Object m : ps)
-        {
-            lst.add(m);
-        }
-
-        return mySmartScenes.invokeScenesLink(Ignition.ignite(), user_token, methodName, lst);
+        return myFuncInvoker.invoke(MyFuncInvoker.MyFuncKind.SCENES_LINK, methodName, user_token, ps);
     }
 
 //    @Override
@@ -119,13 +176,7 @@ public class MyPlusFuncImpl implements IMyPlusFunc {
 
     @Override
     public List myInvokeAllFuncScenes(String methodName, String user_token, Object... ps) {
-        List<Object> lst = new ArrayList<>();
-        for (Object m : ps)
-        {
-            lst.add(m);
-        }
-
-        return SmartJdbcFunc.invokeAllFuncScenes(Ignition.ignite(), user_token, methodName, lst);
+        return myFuncInvoker.invoke(MyFuncInvoker.MyFuncKind.ALL_FUNC_SCENES, methodName, user_token, ps);
     }
 
 //    @Override
@@ -155,7 +206,16 @@ public class MyPlusFuncImpl implements IMyPlusFunc {
 //        {
 //            System.out.println(r);
 //        }
-        return MySuperSql.superSql(Ignition.ignite(), userToken, sql);
+        // MySuperSql 只能识别 java 序列化的格式，只有在缓存没有命中时才需要转换：
+        // 分段使用缓存已经解码的结果，不再解码一次；老版本客户端的 java 序列化数据直接使用
+        return mySmartSqlCache.superSql(userToken, sql, (token, bytes, segments) -> MySuperSql.superSql(Ignition.ignite(),
+                MyLineToBinary.toJavaBytes(token),
+                MyLineToBinary.isCompactBytes(bytes) ? MyLineToBinary.objToBytes(segments) : bytes));
+    }
+
+    @Override
+    public long smartSqlVersion() {
+        return mySmartSqlCache.version();
     }
 
     @Override
@@ -0,0 +1,332 @@
+package org.gridgain.myservice;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.internal.IgniteEx;
+import org.apache.ignite.internal.processors.metric.MetricRegistry;
+import org.apache.ignite.internal.processors.metric.impl.LongAdderMetric;
+import org.apache.ignite.internal.util.GridBoundedConcurrentLinkedHashMap;
+import org.tools.MyLineToBinary;
+
+import javax.cache.event.CacheEntryEvent;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * superSql 改写结果的缓存
+ * key 为：userToken + smart sql 的分段（已经去掉了多余的空白） + 元数据的版本，userToken 和分段都是客户端发送的字节，不需要还原
+ * 1、元数据的版本（MyMetaCatalog.version()）是集群范围的：schema 的版本 + MY_META 数据的版本，
+ * 执行 DDL 或者 MY_META 中的数据变化后在所有节点上变化，旧的结果不再命中，由 LRU 淘汰
+ * 2、MY_META 中的数据变化后（用户组的权限变化），每个节点立即删除变化的行所属的 userToken 的结果，不需要等待版本的变化，
+ * 不能确定 userToken 时清空所有的结果
+ * 只缓存查询语句，其它语句在 superSql 中可能会有副作用，每次都需要重新执行
+ * 按 userToken 失效时通过 userToken -> key 的索引只删除这个 userToken 的结果，不遍历整个缓存；
+ * 被 LRU 淘汰的 key 在索引中的条数超过 2 * CACHE_SIZE 时统一清理
+ * 淘汰的次数 = 放入的条数 - 主动删除的条数 - 当前的条数，不包括覆盖和失效
+ * version() 返回改写结果的版本，所有节点上相同，JDBC 客户端连接任何节点都可以根据它让自己缓存的改写结果失效
+ * */
+public class MySmartSqlCache {
+
+    /** 缓存的最大条数 */
+    private static final int CACHE_SIZE = 4096;
+
+    /** metric 的名字 */
+    static final String SMART_SQL_CACHE_METRIC_GROUP_NAME = "sql.smart.rewrite.cache";
+
+    private final GridBoundedConcurrentLinkedHashMap<MySmartSqlKey, String> cache =
+            new GridBoundedConcurrentLinkedHashMap<>(CACHE_SIZE);
+
+    /** MY_META 中元数据的变化和版本 */
+    private final MyMetaCatalog catalog;
+
+    private final LongAdderMetric hits;
+
+    private final LongAdderMetric misses;
+
+    /** userToken -> 缓存中这个 userToken 的 key，包括已经被淘汰还没有清理的 key */
+    private final ConcurrentHashMap<String, Set<MySmartSqlKey>> keysByToken = new ConcurrentHashMap<>();
+
+    /** keysByToken 中 key 的条数 */
+    private final AtomicInteger indexedCnt = new AtomicInteger();
+
+    /** 正在清理 keysByToken */
+    private final AtomicBoolean pruning = new AtomicBoolean();
+
+    /** 新放入缓存的条数 */
+    private final AtomicLong insertedCnt = new AtomicLong();
+
+    /** clear 和 invalidate 删除的条数 */
+    private final AtomicLong removedCnt = new AtomicLong();
+
+    /** 失效的次数，改写前后不同时结果不保存 */
+    private final AtomicLong invalidateCnt = new AtomicLong();
+
+    public MySmartSqlCache(final Ignite ignite, final MyMetaCatalog catalog)
+    {
+        this.catalog = catalog;
+
+        catalog.addListener(this::onMetaChange);
+
+        MetricRegistry registry = ((IgniteEx)ignite).context().metric().registry(SMART_SQL_CACHE_METRIC_GROUP_NAME);
+        hits = registry.longAdderMetric("hits", "Count of hits for smart sql rewrite cache");
+        misses = registry.longAdderMetric("misses", "Count of misses for smart sql rewrite cache");
+        registry.register("evictions", this::evictions, "Count of evictions from smart sql rewrite cache");
+        registry.register("size", cache::sizex, "Count of entries in smart sql rewrite cache");
+    }
+
+    /**
+     * 获取改写后的 sql，缓存中没有时，调用 superSql 并保存结果
+     * */
+    public String superSql(final byte[] userToken, final byte[] sql, final MySmartSqlRewriter rewriter)
+    {
+        // 先取版本再改写，改写过程中元数据有变化时，这条结果不会被使用
+        MySmartSqlKey key = new MySmartSqlKey(userToken, sql, catalog.version());
+
+        String rs = cache.get(key);
+        if (rs != null)
+        {
+            hits.increment();
+            return rs;
+        }
+
+        misses.increment();
+
+        // 分段只解码一次，改写和判断是否是查询都使用解码后的结果
+        Object segments = MyLineToBinary.restore(sql);
+
+        long cnt = invalidateCnt.get();
+
+        rs = rewriter.rewrite(userToken, sql, segments);
+
+        if (rs != null && isQuery(segments))
+        {
+            // 先加入索引再放入缓存，invalidate 不会漏掉这个 key
+            index(key);
+
+            if (cache.put(key, rs) == null)
+                insertedCnt.incrementAndGet();
+
+            key.cached = true;
+
+            // 改写过程中有失效，结果可能是旧的
+            if (invalidateCnt.get() != cnt)
+                remove(key);
+        }
+        return rs;
+    }
+
+    /**
+     * 清空当前节点的缓存
+     * */
+    public void clear()
+    {
+        invalidateCnt.incrementAndGet();
+
+        for (String token : keysByToken.keySet())
+            invalidate(token);
+
+        // 不在索引中的 key（放入缓存和加入索引之间被清理掉的）
+        for (MySmartSqlKey key : cache.keySet())
+            remove(key);
+    }
+
+    /**
+     * 删除 userTokens 的结果
+     * */
+    public void invalidate(final Set<String> userTokens)
+    {
+        invalidateCnt.incrementAndGet();
+
+        for (String token : userTokens)
+            invalidate(token);
+    }
+
+    private void invalidate(final String token)
+    {
+        Set<MySmartSqlKey> keys = keysByToken.remove(token);
+        if (keys == null)
+            return;
+
+        indexedCnt.addAndGet(-keys.size());
+
+        for (MySmartSqlKey key : keys)
+            remove(key);
+    }
+
+    private void remove(final MySmartSqlKey key)
+    {
+        if (cache.remove(key) != null)
+            removedCnt.incrementAndGet();
+    }
+
+    /**
+     * 把 key 加入 userToken 的索引，索引中的条数太多时删除已经被淘汰的 key
+     * */
+    private void index(final MySmartSqlKey key)
+    {
+        keysByToken.compute(key.token(), (t, keys) -> {
+            if (keys == null)
+                keys = ConcurrentHashMap.newKeySet();
+
+            if (keys.add(key))
+                indexedCnt.incrementAndGet();
+
+            return keys;
+        });
+
+        if (indexedCnt.get() > 2 * CACHE_SIZE && pruning.compareAndSet(false, true))
+        {
+            try
+            {
+                prune();
+            }
+            finally
+            {
+                pruning.set(false);
+            }
+        }
+    }
+
+    private void prune()
+    {
+        for (String token : keysByToken.keySet())
+        {
+            keysByToken.computeIfPresent(token, (t, keys) -> {
+                // 还没有放入缓存的 key 不删除
+                keys.removeIf(k -> {
+                    if (!k.cached || cache.containsKey(k))
+                        return false;
+
+                    indexedCnt.decrementAndGet();
+                    return true;
+                });
+
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private long evictions()
+    {
+        return Math.max(0, insertedCnt.get() - removedCnt.get() - cache.sizex());
+    }
+
+    private void onMetaChange(final String tableName, final List<CacheEntryEvent<?, ?>> changes)
+    {
+        Set<String> tokens = MyMetaCatalog.userTokens(changes);
+
+        if (tokens == null)
+            clear();
+        else if (!tokens.isEmpty())
+            invalidate(tokens);
+    }
+
+    /**
+     * 改写结果的版本，集群范围的元数据版本，只会增加
+     * */
+    public long version()
+    {
+        return catalog.version();
+    }
+
+    /**
+     * 是否全部都是查询语句
+     * */
+    private static boolean isQuery(final Object segments)
+    {
+        if (segments instanceof String)
+        {
+            return isSelect((String) segments);
+        }
+
+        if (segments instanceof List)
+        {
+            for (Object m : (List) segments)
+            {
+                if (!(m instanceof List) || ((List) m).isEmpty() || !isSelect(String.valueOf(((List) m).get(0))))
+                {
+                    return false;
+                }
+            }
+            return !((List) segments).isEmpty();
+        }
+        return false;
+    }
+
+    private static boolean isSelect(final String line)
+    {
+        return line.trim().toLowerCase().startsWith("select");
+    }
+
+    /**
+     * 调用 superSql 改写 sql，segments 是 sql 解码后的分段
+     * */
+    public interface MySmartSqlRewriter {
+        String rewrite(final byte[] userToken, final byte[] sql, final Object segments);
+    }
+
+    /**
+     * 缓存的 key
+     * */
+    private static class MySmartSqlKey {
+        private final byte[] userToken;
+
+        private final byte[] sql;
+
+        private final long metaVer;
+
+        private final int hash;
+
+        /** 还原后的 userToken，按 userToken 失效时才需要 */
+        private volatile String token;
+
+        /** 已经放入过缓存，不在缓存中说明被淘汰或者删除了 */
+        private volatile boolean cached;
+
+        MySmartSqlKey(final byte[] userToken, final byte[] sql, final long metaVer)
+        {
+            this.userToken = userToken;
+            this.sql = sql;
+            this.metaVer = metaVer;
+
+            int h = Arrays.hashCode(userToken);
+            h = 31 * h + Arrays.hashCode(sql);
+            h = 31 * h + Long.hashCode(metaVer);
+            this.hash = h;
+        }
+
+        String token()
+        {
+            String t = token;
+            if (t == null)
+            {
+                t = String.valueOf(MyLineToBinary.restore(userToken));
+                token = t;
+            }
+            return t;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+
+            if (o == null || getClass() != o.getClass())
+                return false;
+
+            MySmartSqlKey other = (MySmartSqlKey) o;
+
+            return metaVer == other.metaVer && hash == other.hash &&
+                    Arrays.equals(userToken, other.userToken) && Arrays.equals(sql, other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.gridgain.myservice;
+
+import org.apache.ignite.IgniteException;
+import org.apache.ignite.IgniteLogger;
+import org.apache.ignite.internal.GridKernalContext;
+import org.apache.ignite.internal.managers.communication.GridIoPolicy;
+import org.apache.ignite.internal.processors.metric.MetricRegistry;
+import org.apache.ignite.internal.processors.metric.impl.AtomicLongMetric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点启动时的初始化步骤
+ * 1、关键步骤（critical）按添加的顺序在调用 run() 的线程中执行，全部完成后 run() 返回，节点才接收 SQL 连接；
+ *    关键步骤失败时 run() 抛出异常，后面的步骤不再执行
+ * 2、后台步骤在关键步骤完成后按添加的顺序在 Ignite 的 public 线程池中执行，
+ *    失败时只记录日志，后面的后台步骤不再执行
+ * 步骤之间保持原来的先后顺序，不并行执行：它们大多是 PlusInit、SmartInit 等外部的类，相互之间的依赖无法确定
+ * 每个步骤的执行时间在日志和 metric 的 startup 中
+ * */
+public class MyStartupSteps {
+
+    /** metric 的名字 */
+    static final String STARTUP_METRIC_GROUP_NAME = "startup";
+
+    private final GridKernalContext ctx;
+
+    private final IgniteLogger log;
+
+    private final MetricRegistry registry;
+
+    private final List<MyStartupStep> critical = new ArrayList<>();
+
+    private final List<MyStartupStep> background = new ArrayList<>();
+
+    public MyStartupSteps(final GridKernalContext ctx)
+    {
+        this.ctx = ctx;
+        this.log = ctx.log(MyStartupSteps.class);
+        this.registry = ctx.metric().registry(STARTUP_METRIC_GROUP_NAME);
+    }
+
+    /**
+     * 添加关键步骤，接收 SQL 之前必须完成
+     * */
+    public MyStartupSteps critical(final String name, final MyStartupTask task)
+    {
+        critical.add(step(name, task));
+        return this;
+    }
+
+    /**
+     * 添加后台步骤，在所有的关键步骤之后执行
+     * */
+    public MyStartupSteps background(final String name, final MyStartupTask task)
+    {
+        background.add(step(name, task));
+        return this;
+    }
+
+    private MyStartupStep step(final String name, final MyStartupTask task)
+    {
+        return new MyStartupStep(name, task, registry.longMetric(name + "Duration", "Duration in milliseconds of startup step " + name));
+    }
+
+    /**
+     * 执行关键步骤，然后在后台执行其它的步骤
+     * */
+    public void run()
+    {
+        long start = System.nanoTime();
+
+        AtomicLongMetric totalDuration = registry.longMetric("totalDuration", "Duration in milliseconds of all startup steps");
+        AtomicLongMetric criticalDuration = registry.longMetric("criticalDuration", "Duration in milliseconds of critical startup steps");
+
+        for (MyStartupStep step : critical)
+            step.execute(log);
+
+        criticalDuration.value(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("关键的启动步骤完成，可以接收 SQL [duration=" + criticalDuration.value() + "ms]");
+
+        ctx.closure().runLocalSafe(() -> {
+            try
+            {
+                for (MyStartupStep step : background)
+                    step.execute(log);
+
+                totalDuration.value(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                log.info("启动步骤全部完成 [duration=" + totalDuration.value() + "ms]");
+            }
+            catch (IgniteException e)
+            {
+                log.error("后台的启动步骤失败，后面的步骤不再执行", e);
+            }
+        }, GridIoPolicy.PUBLIC_POOL);
+    }
+
+    /**
+     * 启动步骤
+     * */
+    public interface MyStartupTask {
+        void run() throws Exception;
+    }
+
+    private static class MyStartupStep {
+        private final String name;
+
+        private final MyStartupTask task;
+
+        private final AtomicLongMetric duration;
+
+        MyStartupStep(final String name, final MyStartupTask task, final AtomicLongMetric duration)
+        {
+            this.name = name;
+            this.task = task;
+            this.duration = duration;
+        }
+
+        void execute(final IgniteLogger log)
+        {
+            long start = System.nanoTime();
+            try
+            {
+                task.run();
+            }
+            catch (Exception e)
+            {
+                log.error("启动步骤失败 [step=" + name + "]", e);
+                throw new IgniteException("启动步骤 " + name + " 失败！", e);
+            }
+            finally
+            {
+                duration.value(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+
+            log.info("启动步骤完成 [step=" + name + ", duration=" + duration.value() + "ms]");
+        }
+    }
+}
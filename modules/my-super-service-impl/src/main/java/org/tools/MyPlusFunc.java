@@ -5,14 +5,17 @@ import cn.myservice.MyPlusFuncService;
 import cn.mysuper.service.IMyPlusFunc;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import org.apache.ignite.Ignition;
 import org.gridgain.dml.util.MyCacheExUtil;
 import org.gridgain.internal.h2.tools.SimpleResultSet;
+import org.gridgain.myservice.MyAutoIdService;
+import org.gridgain.myservice.MyCronScheduler;
+import org.gridgain.myservice.MyFuncInvoker;
 import org.gridgain.myservice.MyPlusFuncImpl;
 import org.gridgain.plus.dml.MySmartSql;
 
 import java.io.Serializable;
 import java.sql.ResultSet;
+import java.util.Arrays;
 import java.util.List;
 
 public class MyPlusFunc implements Serializable {
@@ -25,7 +28,7 @@ public class MyPlusFunc implements Serializable {
      * 获取 table 的自增长
      * */
     public static Object auto_id(final String tableName) {
-        return Ignition.ignite().atomicSequence(tableName, 0, true).incrementAndGet();
+        return MyAutoIdService.getInstance().nextId(tableName);
     }
 
     /**
@@ -58,6 +61,37 @@ public class MyPlusFunc implements Serializable {
         return myPlusFunc.getScheduler(schedulerName);
     }
 
+    /**
+     * 添加或者修改集群中的定时任务，按场景调用 methodName
+     * 任务属于 user_token 所在的用户组，执行时以这个用户组的身份调用；catch_up 为 true 时补执行错过的时间点
+     * */
+    public static Boolean addCronJob(final String jobName, final String cron, final String methodName, final String user_token, final Boolean catch_up, final Object... ps)
+    {
+        MyCronScheduler.getInstance().addJob(jobName, cron, MyFuncInvoker.MyFuncKind.SCENES, methodName, user_token,
+                catch_up == null || catch_up, ps == null ? null : Arrays.asList(ps));
+        return true;
+    }
+
+    /**
+     * 添加或者修改集群中的定时任务，按方法调用 methodName（my_fun）
+     * 任务属于 user_token 所在的用户组，只能由这个用户组修改和删除
+     * */
+    public static Boolean addCronFunJob(final String jobName, final String cron, final String methodName, final String user_token, final Boolean catch_up, final Object... ps)
+    {
+        MyCronScheduler.getInstance().addJob(jobName, cron, MyFuncInvoker.MyFuncKind.FUNC, methodName, user_token,
+                catch_up == null || catch_up, ps == null ? null : Arrays.asList(ps));
+        return true;
+    }
+
+    /**
+     * 删除集群中的定时任务，只有任务所属的用户组可以删除
+     * */
+    public static Boolean removeCronJob(final String jobName, final String user_token)
+    {
+        MyCronScheduler.getInstance().removeJob(jobName, user_token);
+        return true;
+    }
+
     /**
      * 自定义函数的要求
      * 1、必须有一个默认构造函数
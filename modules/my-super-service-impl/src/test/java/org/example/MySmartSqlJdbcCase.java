@@ -0,0 +1,87 @@
+package org.example;
+
+import cn.myservice.MyPlusFuncService;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.ClientConnectorConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.gridgain.myservice.MyPlusFuncImpl;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * superSql 在服务端改写并执行（一次 JDBC 请求）
+ * */
+public class MySmartSqlJdbcCase {
+
+    private static final int PORT = 10899;
+
+    private static final String TOKEN = "dafu";
+
+    private static Ignite ignite;
+
+    @BeforeClass
+    public static void startNode()
+    {
+        IgniteConfiguration cfg = new IgniteConfiguration();
+        cfg.setIgniteInstanceName("smart-sql-jdbc");
+        // 超级管理员的 token，不需要 MY_META 中的用户组就有权限执行
+        cfg.setRoot_token(TOKEN);
+        cfg.setClientConnectorConfiguration(new ClientConnectorConfiguration().setPort(PORT).setPortRange(0));
+
+        ignite = Ignition.start(cfg);
+    }
+
+    @AfterClass
+    public static void stopNode()
+    {
+        if (ignite != null)
+            ignite.close();
+    }
+
+    /**
+     * 服务端通过 MyPlusFuncService 取得 MyPlusFuncImpl 的单例
+     * */
+    @Test
+    public void myPlusFuncServiceCase()
+    {
+        MyPlusFuncService service = MyPlusFuncService.getInstance();
+
+        assertNotNull(service);
+        assertSame(MyPlusFuncImpl.getInstance(), service.getiMyPlusFunc());
+    }
+
+    /**
+     * 握手时协商 smart sql 的版本，select 语句作为 smart sql 在一次请求中改写并执行，失败时测试失败
+     * */
+    @Test
+    public void mySmartSqlRoundTripCase() throws SQLException
+    {
+        String url = "jdbc:ignite:thin://127.0.0.1:" + PORT + "/public?userToken=" + TOKEN;
+
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement())
+        {
+            assertTrue(stmt.execute("select 1"));
+
+            try (ResultSet rs = stmt.getResultSet())
+            {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+                assertFalse(rs.next());
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.gridgain.myservice;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
+import org.apache.ignite.spi.discovery.tcp.ipfinder.vm.TcpDiscoveryVmIpFinder;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * snowflake 模式的 auto_id：多个线程同时生成 id 时节点号的租约被其它节点取走
+ * */
+public class MyAutoIdServiceCase {
+
+    private static final long SNOWFLAKE_EPOCH = 1577836800000L;
+
+    private static final int THREADS = 8;
+
+    private static Ignite ignite;
+
+    /** 在线的另一个节点，用它的 id 抢走节点号的租约 */
+    private static Ignite other;
+
+    @BeforeClass
+    public static void startNodes()
+    {
+        ignite = Ignition.start(config("auto-id-0"));
+        other = Ignition.start(config("auto-id-1"));
+    }
+
+    @AfterClass
+    public static void stopNodes()
+    {
+        if (other != null)
+            other.close();
+
+        if (ignite != null)
+            ignite.close();
+    }
+
+    private static IgniteConfiguration config(final String name)
+    {
+        TcpDiscoveryVmIpFinder ipFinder = new TcpDiscoveryVmIpFinder();
+        ipFinder.setAddresses(Collections.singletonList("127.0.0.1:47500..47509"));
+
+        IgniteConfiguration cfg = new IgniteConfiguration();
+        cfg.setIgniteInstanceName(name);
+        cfg.setAutoIdMode("snowflake");
+        cfg.setDiscoverySpi(new TcpDiscoverySpi().setIpFinder(ipFinder));
+        return cfg;
+    }
+
+    /**
+     * 租约被取走之后，旧节点号只能用在取走之前已经写到集群中的时间戳上限以内，
+     * 之后生成的 id 使用新的节点号，所有的 id 都不重复
+     * */
+    @Test
+    public void leaseLostCase() throws Exception
+    {
+        MyAutoIdService service = new MyAutoIdService(ignite);
+
+        long stolen = worker(service.nextId("t"));
+
+        CountDownLatch started = new CountDownLatch(THREADS);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<List<Long>> results = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        // 取走租约后再生成三个租约提前量的时间，保证每个线程都需要更新租约
+        long stopAt = System.currentTimeMillis() + 500 + 3 * MyAutoIdService.LEASE_AHEAD;
+
+        for (int i = 0; i < THREADS; i++)
+        {
+            List<Long> ids = new ArrayList<>();
+            results.add(ids);
+
+            Thread t = new Thread(() -> {
+                started.countDown();
+                try
+                {
+                    while (System.currentTimeMillis() < stopAt)
+                        ids.add(service.nextId("t"));
+                }
+                catch (Throwable e)
+                {
+                    error.compareAndSet(null, e);
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+
+        started.await();
+        Thread.sleep(500);
+
+        // 另一个在线的节点抢走节点号，租约的上限远大于当前节点已经持有的上限
+        long stealTs = System.currentTimeMillis() - SNOWFLAKE_EPOCH;
+        IgniteCache<Integer, MyAutoIdService.MyWorkerLease> cache = ignite.cache(MyAutoIdService.WORKER_CACHE);
+        cache.put((int) stolen, new MyAutoIdService.MyWorkerLease(other.cluster().localNode().id(), stealTs + 10 * MyAutoIdService.LEASE_AHEAD));
+
+        for (Thread t : threads)
+            t.join();
+
+        assertNull(String.valueOf(error.get()), error.get());
+
+        Set<Long> all = new HashSet<>();
+        Set<Long> workers = new HashSet<>();
+        for (List<Long> ids : results)
+        {
+            for (Long id : ids)
+            {
+                assertTrue("重复的 id " + id, all.add(id));
+
+                long worker = worker(id);
+                workers.add(worker);
+
+                // 当前节点持有的上限不会超过 取走时的时间戳 + 提前量
+                if (worker == stolen)
+                    assertTrue("租约丢失后仍然用旧节点号生成了 id " + id, timestamp(id) < stealTs + MyAutoIdService.LEASE_AHEAD);
+            }
+        }
+
+        assertEquals(2, workers.size());
+    }
+
+    private static long worker(final long id)
+    {
+        return (id >>> 12) & 1023;
+    }
+
+    private static long timestamp(final long id)
+    {
+        return id >>> 22;
+    }
+}
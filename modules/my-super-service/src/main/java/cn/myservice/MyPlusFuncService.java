@@ -2,6 +2,8 @@ package cn.myservice;
 
 import cn.mysuper.service.IMyPlusFunc;
 
+import java.lang.reflect.InvocationTargetException;
+
 /**
  * 实例化 IMyPlusFunc 接口
  * */
@@ -19,7 +21,9 @@ public class MyPlusFuncService {
                 e.printStackTrace();
             } catch (IllegalAccessException e) {
                 e.printStackTrace();
-            } catch (InstantiationException e) {
+            } catch (NoSuchMethodException e) {
+                e.printStackTrace();
+            } catch (InvocationTargetException e) {
                 e.printStackTrace();
             }
         }
@@ -34,10 +38,11 @@ public class MyPlusFuncService {
 
     /**
      * 构造函数设置为私有，只能通过 getInstance() 方法获取
+     * MyPlusFuncImpl 的构造函数是私有的，它持有每个节点一份的缓存，使用它的单例 getInstance()
      * */
-    private MyPlusFuncService() throws ClassNotFoundException, IllegalAccessException, InstantiationException {
+    private MyPlusFuncService() throws ClassNotFoundException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
         Class<?> cls = Class.forName("org.gridgain.myservice.MyPlusFuncImpl");
-        iMyPlusFunc = (IMyPlusFunc) cls.newInstance();
+        iMyPlusFunc = (IMyPlusFunc) cls.getMethod("getInstance").invoke(null);
     }
 
     public IMyPlusFunc getiMyPlusFunc() {
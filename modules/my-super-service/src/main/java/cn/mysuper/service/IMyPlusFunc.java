@@ -47,6 +47,12 @@ public interface IMyPlusFunc {
     //public Object myInvokeAllFuncScenes(final String methodName, final Long group_id, final Object... ps);
 
     public String superSql(final byte[] var1, final byte[] var2);
+
+    /**
+     * superSql 改写结果的版本，schema 或者用户组的权限变化后会改变，集群中所有节点上的版本相同
+     * 客户端缓存的改写结果在版本变化后失效
+     * */
+    public long smartSqlVersion();
     //public String superSql(final String userToken, final String sql);
 
     /**
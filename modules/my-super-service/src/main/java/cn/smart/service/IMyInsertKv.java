@@ -0,0 +1,24 @@
+package cn.smart.service;
+
+import java.util.Hashtable;
+import java.util.List;
+
+/**
+ * streaming 模式下，把 insert 语句转换为 key-value
+ * */
+public interface IMyInsertKv {
+
+    /**
+     * 转换一条语句，每个 Hashtable 包括：cache_name、key、value
+     * */
+    public List<Hashtable<String, Object>> getInsertKvAgrs(final String userToken, final String sql, final Object[] ps);
+
+    /**
+     * 编译 insert 语句，每个批次调用一次
+     * 这是批量转换唯一的扩展点：实现类应该重写这个方法，语句只解析一次，每一行直接调用 MyInsertKvBatch.add 生成 key-value
+     * 默认的实现只是兼容旧的实现类，每一行仍然调用 getInsertKvAgrs 生成 Hashtable，缓存它没有收益
+     * */
+    public default IMyInsertKvPlan getInsertKvPlan(final String userToken, final String sql) {
+        return (batch, statement, ps) -> batch.addAll(statement, getInsertKvAgrs(userToken, sql, ps));
+    }
+}
@@ -0,0 +1,13 @@
+package cn.smart.service;
+
+/**
+ * 编译后的 insert 语句，一个批次只生成一次
+ * 每一行参数直接转换为 key-value 加到 MyInsertKvBatch 中
+ * */
+public interface IMyInsertKvPlan {
+
+    /**
+     * 转换一行参数，ps 为 null 表示语句中没有参数
+     * */
+    public void addTo(final MyInsertKvBatch batch, final int statement, final Object[] ps);
+}
@@ -12,4 +12,10 @@ public interface IMyLoadScript {
     public String loadCode(final String code);
 
     public void loadCsv(final Object client, final String dataset_name, final String table_name, final String value);
+
+    /**
+     * 流式导入整个 csv 文件，返回导入的行数
+     * 失败后再次调用会从失败的地方继续
+     * */
+    public long loadCsvFile(final Object client, final String dataset_name, final String table_name, final String csvPath);
 }
@@ -0,0 +1,96 @@
+package cn.smart.service;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个批次的 insert 语句转换后的 key-value
+ * key-value 按 cache 分组，同一个 cache 中的 keys 和 values 按顺序一一对应，
+ * counts 为每一条语句生成的 key-value 的个数
+ * */
+public class MyInsertKvBatch {
+
+    private final Map<String, MyCacheKvs> caches = new LinkedHashMap<>();
+
+    private final long[] counts;
+
+    private int size;
+
+    /** 上一次添加的 cache，同一个批次通常只有一个 cache，不需要每一行都查 map */
+    private MyCacheKvs last;
+
+    public MyInsertKvBatch(final int statements) {
+        this.counts = new long[statements];
+    }
+
+    public void add(final int statement, final String cacheName, final Object key, final Object value) {
+        MyCacheKvs kvs = last;
+        if (kvs == null || !kvs.cacheName.equals(cacheName)) {
+            kvs = caches.computeIfAbsent(cacheName, MyCacheKvs::new);
+            last = kvs;
+        }
+
+        kvs.keys.add(key);
+        kvs.values.add(value);
+        counts[statement]++;
+        size++;
+    }
+
+    /**
+     * 添加 getInsertKvAgrs 的结果，只用于 IMyInsertKv.getInsertKvPlan 的默认实现
+     * */
+    public void addAll(final int statement, final List<Hashtable<String, Object>> lst) {
+        if (lst == null)
+            return;
+
+        for (Hashtable<String, Object> m : lst) {
+            add(statement, m.get("cache_name").toString(), m.get("key"), m.get("value"));
+        }
+    }
+
+    /**
+     * 按 cache 分组的 key-value
+     * */
+    public Iterable<MyCacheKvs> getCaches() {
+        return caches.values();
+    }
+
+    public long[] getCounts() {
+        return counts;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 一个 cache 的 key-value
+     * */
+    public static class MyCacheKvs {
+
+        private final String cacheName;
+
+        private final List<Object> keys = new ArrayList<>();
+
+        private final List<Object> values = new ArrayList<>();
+
+        MyCacheKvs(final String cacheName) {
+            this.cacheName = cacheName;
+        }
+
+        public String getCacheName() {
+            return cacheName;
+        }
+
+        public List<Object> getKeys() {
+            return keys;
+        }
+
+        public List<Object> getValues() {
+            return values;
+        }
+    }
+}
@@ -6,8 +6,39 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+/**
+ * userToken 和 smart sql 分段的编码
+ * 1、objToBytes：java 序列化，老版本的服务器只能识别这种格式
+ * 2、objToCompactBytes：紧凑的二进制格式，只支持 null、String 和 List（可以嵌套）
+ *    格式为：MAGIC + VERSION + 值，值的第一个字节为类型，String 和 List 的长度用 varint 表示
+ * restore 可以识别这两种格式
+ * 紧凑格式的数据来自客户端，解码时检查每个长度，格式错误时抛出 MyFormatException
+ * */
 public class MyLineToBinary {
+
+    /** 紧凑格式的魔数，java 序列化的数据以 0xACED 开头，不会冲突 */
+    private static final byte MAGIC = (byte) 0xD5;
+
+    /** 紧凑格式的版本 */
+    private static final byte VERSION = 1;
+
+    private static final byte TYPE_NULL = 0;
+
+    private static final byte TYPE_STRING = 1;
+
+    private static final byte TYPE_LIST = 2;
+
+    /** varint 最多的字节数，int 只需要 5 个字节 */
+    private static final int MAX_VARINT_BYTES = 5;
+
+    /** List 最多的嵌套层数，smart sql 的分段只有两层 */
+    private static final int MAX_DEPTH = 32;
+
     public MyLineToBinary() {
     }
 
@@ -45,7 +76,36 @@ public class MyLineToBinary {
         return null;
     }
 
+    /**
+     * 紧凑格式的编码
+     * 不支持的类型使用 java 序列化
+     * */
+    public static byte[] objToCompactBytes(Object obj) {
+        if (!isCompact(obj)) {
+            return objToBytes(obj);
+        }
+
+        Writer writer = new Writer();
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION);
+        writer.writeValue(obj);
+        return writer.toByteArray();
+    }
+
     public static Object restore(byte[] bytes) {
+        if (isCompactBytes(bytes)) {
+            if (bytes[1] != VERSION) {
+                throw new MyFormatException("不支持的编码版本：" + bytes[1]);
+            }
+
+            Reader reader = new Reader(bytes, 2);
+            Object rs = reader.readValue(0);
+            if (reader.remaining() != 0) {
+                throw new MyFormatException("数据结束后还有 " + reader.remaining() + " 个字节");
+            }
+            return rs;
+        }
+
         ByteArrayInputStream byteArrayInputStream = null;
         ObjectInputStream objectInputStream = null;
 
@@ -77,5 +137,190 @@ public class MyLineToBinary {
 
         return null;
     }
-}
 
+    /**
+     * 转换为 java 序列化的格式
+     * 给只能识别 java 序列化的调用者使用
+     * */
+    public static byte[] toJavaBytes(byte[] bytes) {
+        if (isCompactBytes(bytes)) {
+            return objToBytes(restore(bytes));
+        }
+        return bytes;
+    }
+
+    /**
+     * 是否是紧凑格式的数据
+     * */
+    public static boolean isCompactBytes(byte[] bytes) {
+        return bytes != null && bytes.length > 1 && bytes[0] == MAGIC;
+    }
+
+    private static boolean isCompact(Object obj) {
+        if (obj == null || obj instanceof String) {
+            return true;
+        }
+
+        if (obj instanceof List) {
+            for (Object m : (List) obj) {
+                if (!isCompact(m)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 编码
+     * */
+    private static class Writer {
+        private byte[] buf = new byte[256];
+
+        private int pos;
+
+        void writeValue(Object obj) {
+            if (obj == null) {
+                writeByte(TYPE_NULL);
+            }
+            else if (obj instanceof String) {
+                writeByte(TYPE_STRING);
+                byte[] bytes = ((String) obj).getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length);
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, buf, pos, bytes.length);
+                pos += bytes.length;
+            }
+            else {
+                List lst = (List) obj;
+                writeByte(TYPE_LIST);
+                writeVarInt(lst.size());
+                for (Object m : lst) {
+                    writeValue(m);
+                }
+            }
+        }
+
+        void writeByte(byte b) {
+            ensureCapacity(1);
+            buf[pos++] = b;
+        }
+
+        void writeVarInt(int val) {
+            while ((val & ~0x7F) != 0) {
+                writeByte((byte) ((val & 0x7F) | 0x80));
+                val >>>= 7;
+            }
+            writeByte((byte) val);
+        }
+
+        private void ensureCapacity(int len) {
+            if (pos + len > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + len));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    /**
+     * 解码
+     * */
+    private static class Reader {
+        private final byte[] buf;
+
+        private int pos;
+
+        Reader(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        Object readValue(final int depth) {
+            byte type = readByte();
+            switch (type) {
+                case TYPE_NULL:
+                    return null;
+
+                case TYPE_STRING: {
+                    int len = readLength(1);
+                    String rs = new String(buf, pos, len, StandardCharsets.UTF_8);
+                    pos += len;
+                    return rs;
+                }
+
+                case TYPE_LIST: {
+                    if (depth >= MAX_DEPTH) {
+                        throw new MyFormatException("List 的嵌套超过了 " + MAX_DEPTH + " 层");
+                    }
+
+                    // 每个元素至少有一个字节的类型
+                    int size = readLength(1);
+                    List<Object> lst = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        lst.add(readValue(depth + 1));
+                    }
+                    return lst;
+                }
+
+                default:
+                    throw new MyFormatException("不支持的类型：" + type);
+            }
+        }
+
+        int remaining() {
+            return buf.length - pos;
+        }
+
+        private byte readByte() {
+            if (pos >= buf.length) {
+                throw new MyFormatException("数据不完整，位置：" + pos);
+            }
+            return buf[pos++];
+        }
+
+        /**
+         * 读取长度，长度不能超过剩余的字节数能表示的数量
+         * minBytes：每个单位最少占用的字节数
+         * */
+        private int readLength(final int minBytes) {
+            int len = readVarInt();
+            if (len < 0 || (long) len * minBytes > remaining()) {
+                throw new MyFormatException("长度 " + len + " 超过了剩余的字节数 " + remaining());
+            }
+            return len;
+        }
+
+        private int readVarInt() {
+            int rs = 0;
+            for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+                byte b = readByte();
+
+                // 第 5 个字节只能用低 4 位，否则超出了 int 的范围
+                if (i == MAX_VARINT_BYTES - 1 && (b & 0x70) != 0) {
+                    throw new MyFormatException("varint 超出了 int 的范围");
+                }
+
+                rs |= (b & 0x7F) << (7 * i);
+                if ((b & 0x80) == 0) {
+                    return rs;
+                }
+            }
+            throw new MyFormatException("varint 超过了 " + MAX_VARINT_BYTES + " 个字节");
+        }
+    }
+
+    /**
+     * 紧凑格式的数据格式错误
+     * */
+    public static class MyFormatException extends IllegalArgumentException {
+        private static final long serialVersionUID = 0L;
+
+        public MyFormatException(final String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.tools;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * userToken 和 smart sql 分段的紧凑编码：往返编码和来自客户端的错误数据
+ * */
+public class MyLineToBinaryTest {
+
+    private static final byte MAGIC = (byte) 0xD5;
+
+    private static final byte VERSION = 1;
+
+    private static final byte TYPE_STRING = 1;
+
+    private static final byte TYPE_LIST = 2;
+
+    @Test
+    public void roundTripCase()
+    {
+        List<Object> segments = new ArrayList<>();
+        segments.add(Arrays.asList("select", "*", "from", "t", "where", "name", "=", "'中文'"));
+        segments.add(Collections.emptyList());
+        segments.add(Arrays.asList("let", "a", null, ""));
+
+        byte[] bytes = MyLineToBinary.objToCompactBytes(segments);
+
+        assertTrue(MyLineToBinary.isCompactBytes(bytes));
+        assertEquals(segments, MyLineToBinary.restore(bytes));
+
+        assertEquals("dafu", MyLineToBinary.restore(MyLineToBinary.objToCompactBytes("dafu")));
+        assertNull(MyLineToBinary.restore(MyLineToBinary.objToCompactBytes(null)));
+    }
+
+    /**
+     * 超过一个字节的 varint 长度
+     * */
+    @Test
+    public void longStringCase()
+    {
+        char[] chars = new char[100_000];
+        Arrays.fill(chars, 'x');
+        String line = new String(chars);
+
+        assertEquals(line, MyLineToBinary.restore(MyLineToBinary.objToCompactBytes(line)));
+    }
+
+    /**
+     * 不支持的类型使用 java 序列化，restore 也能识别
+     * */
+    @Test
+    public void javaFallbackCase()
+    {
+        List<Object> lst = Arrays.asList("a", 1L);
+
+        byte[] bytes = MyLineToBinary.objToCompactBytes(lst);
+
+        assertFalse(MyLineToBinary.isCompactBytes(bytes));
+        assertEquals(lst, MyLineToBinary.restore(bytes));
+        assertArrayEquals(bytes, MyLineToBinary.toJavaBytes(bytes));
+    }
+
+    @Test
+    public void truncatedCase()
+    {
+        byte[] bytes = MyLineToBinary.objToCompactBytes(Arrays.asList("select", "1"));
+
+        for (int len = 2; len < bytes.length; len++)
+            assertMalformed(Arrays.copyOf(bytes, len));
+    }
+
+    /**
+     * 长度超过了剩余的字节数
+     * */
+    @Test
+    public void lengthOverflowCase()
+    {
+        assertMalformed(new byte[] {MAGIC, VERSION, TYPE_STRING, 10, 'a'});
+        assertMalformed(new byte[] {MAGIC, VERSION, TYPE_LIST, 3, 0});
+    }
+
+    @Test
+    public void overlongVarIntCase()
+    {
+        // 6 个字节的 varint
+        assertMalformed(new byte[] {MAGIC, VERSION, TYPE_STRING, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0});
+
+        // 第 5 个字节超出了 int 的范围
+        assertMalformed(new byte[] {MAGIC, VERSION, TYPE_STRING, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F});
+
+        // 负数的长度
+        assertMalformed(new byte[] {MAGIC, VERSION, TYPE_LIST, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F});
+    }
+
+    @Test
+    public void maxDepthCase()
+    {
+        assertEquals(nested(32), MyLineToBinary.restore(MyLineToBinary.objToCompactBytes(nested(32))));
+
+        assertMalformed(MyLineToBinary.objToCompactBytes(nested(33)));
+
+        // 没有结束的嵌套不能造成栈溢出
+        byte[] bytes = new byte[2 + 2 * 100_000];
+        bytes[0] = MAGIC;
+        bytes[1] = VERSION;
+        for (int i = 2; i < bytes.length; i += 2)
+        {
+            bytes[i] = TYPE_LIST;
+            bytes[i + 1] = 1;
+        }
+        assertMalformed(bytes);
+    }
+
+    @Test
+    public void badHeaderCase()
+    {
+        // 不支持的版本
+        assertMalformed(new byte[] {MAGIC, 2, TYPE_STRING, 0});
+
+        // 不支持的类型
+        assertMalformed(new byte[] {MAGIC, VERSION, 9});
+
+        // 数据结束后还有多余的字节
+        assertMalformed(new byte[] {MAGIC, VERSION, TYPE_STRING, 0, 0});
+
+        // 没有魔数的数据按 java 序列化处理，格式错误时返回 null
+        assertFalse(MyLineToBinary.isCompactBytes(new byte[] {1, VERSION, TYPE_STRING, 0}));
+        assertNull(MyLineToBinary.restore(new byte[] {1, VERSION, TYPE_STRING, 0}));
+    }
+
+    private static Object nested(final int depth)
+    {
+        Object rs = "x";
+        for (int i = 0; i < depth; i++)
+            rs = Collections.singletonList(rs);
+        return rs;
+    }
+
+    private static void assertMalformed(final byte[] bytes)
+    {
+        try
+        {
+            MyLineToBinary.restore(bytes);
+            fail("格式错误的数据被解码了：" + Arrays.toString(bytes));
+        }
+        catch (MyLineToBinary.MyFormatException e)
+        {
+            // 期望的结果
+        }
+    }
+}
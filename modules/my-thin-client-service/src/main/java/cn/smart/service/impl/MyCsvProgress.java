@@ -0,0 +1,123 @@
+package cn.smart.service.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * loadCsv 的进度文件，用于失败后继续导入
+ * 每一批数据对应文件中连续的行，一行记录一个事件：
+ * R 开始行 key的起始值 行数：这一批预留的 key，只预留实际的行数，最后一个不满的批次也不会在 key 中留下空洞
+ * A 开始行 最后的key：这一批已经写入成功，以及写入成功的最后一个 key
+ * 重新导入时，已经成功的批次直接跳过，没有成功的批次使用原来预留的 key，重复写入不会产生重复的数据
+ * */
+public class MyCsvProgress implements Closeable {
+
+    private final Path path;
+
+    /** 开始行 -> 预留的 key 的起始值 */
+    private final Map<Long, Long> reserved = new HashMap<>();
+
+    /** 开始行 -> 预留的 key 的个数 */
+    private final Map<Long, Integer> reservedCount = new HashMap<>();
+
+    /** 写入成功的最后一个 key，没有则为 -1 */
+    private long lastKey = -1L;
+
+    /** 已经写入成功的批次的开始行 */
+    private final Set<Long> acked = new HashSet<>();
+
+    private final BufferedWriter writer;
+
+    public MyCsvProgress(final Path path) throws IOException {
+        this.path = path;
+
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] vs = line.split(" ");
+                    if (vs.length == 4 && vs[0].equals("R")) {
+                        long rowStart = Long.parseLong(vs[1]);
+                        reserved.put(rowStart, Long.parseLong(vs[2]));
+                        reservedCount.put(rowStart, Integer.parseInt(vs[3]));
+                    }
+                    else if (vs.length == 3 && vs[0].equals("A")) {
+                        acked.add(Long.parseLong(vs[1]));
+                        lastKey = Math.max(lastKey, Long.parseLong(vs[2]));
+                    }
+                }
+            }
+        }
+
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 是否是继续上一次的导入
+     * */
+    public boolean isResume() {
+        return !reserved.isEmpty();
+    }
+
+    /**
+     * 这一批是否已经写入成功
+     * */
+    public boolean isAcked(final long rowStart) {
+        return acked.contains(rowStart);
+    }
+
+    /**
+     * 上一次导入时，这一批预留的 key，没有或者预留的个数和这一批的行数不同则返回 null
+     * */
+    public Long reservedKey(final long rowStart, final int count) {
+        Integer cnt = reservedCount.get(rowStart);
+        if (cnt == null || cnt != count) {
+            return null;
+        }
+        return reserved.get(rowStart);
+    }
+
+    /**
+     * 写入成功的最后一个 key，没有则为 -1
+     * */
+    public synchronized long lastKey() {
+        return lastKey;
+    }
+
+    public synchronized void reserve(final long rowStart, final long keyStart, final int count) throws IOException {
+        reserved.put(rowStart, keyStart);
+        reservedCount.put(rowStart, count);
+        writer.write("R " + rowStart + " " + keyStart + " " + count + "\n");
+        writer.flush();
+    }
+
+    public synchronized void ack(final long rowStart, final long key) throws IOException {
+        acked.add(rowStart);
+        lastKey = Math.max(lastKey, key);
+        writer.write("A " + rowStart + " " + key + "\n");
+        writer.flush();
+    }
+
+    /**
+     * 导入完成后删除进度文件
+     * */
+    public void finish() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -5,22 +5,51 @@ import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.ignite.IgniteCheckedException;
 import org.apache.ignite.client.ClientAtomicLong;
 import org.apache.ignite.client.ClientCache;
 import org.apache.ignite.client.IgniteClient;
+import org.apache.ignite.client.IgniteClientFuture;
+import org.apache.ignite.internal.util.typedef.internal.U;
 import org.apache.ignite.ml.math.primitives.vector.Vector;
 import org.apache.ignite.ml.math.primitives.vector.VectorUtils;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class MyLoadScriptImpl implements IMyLoadScript {
+
+    private static final Logger LOG = Logger.getLogger(MyLoadScriptImpl.class.getName());
+
+    /** 进度文件所在的目录，在工作目录下 */
+    private static final String CSV_PROGRESS_DIR = "csv_progress";
+
+    /** loadCsv 每一批写入的行数，也是每次预留的 key 的个数 */
+    private static final int CSV_BATCH_SIZE = 1024;
+
+    /** loadCsv 同时写入的批次 */
+    private static final int CSV_MAX_IN_FLIGHT = 4;
+
+    /** loadCsv 报告进度的时间间隔（毫秒） */
+    private static final long CSV_PROGRESS_INTERVAL = 5000L;
+
     @Override
     public String loadFromNative(String smartPath) {
         String code = getFileString(smartPath);
@@ -55,6 +84,150 @@ public class MyLoadScriptImpl implements IMyLoadScript {
         cache.put(key, vs);
     }
 
+    /**
+     * 流式导入 csv 文件
+     * 1、逐行读取文件，不需要把整个文件读到内存中
+     * 2、每一批数据一次性从 atomicLong 中预留 key，用 putAllAsync 写入，最多同时写入 CSV_MAX_IN_FLIGHT 批
+     * 3、进度记录在工作目录的 csv_progress 下，失败后再次导入会从失败的地方继续
+     * */
+    @Override
+    public long loadCsvFile(Object client, String dataset_name, String table_name, String csvPath) {
+        IgniteClient igniteClient = (IgniteClient) client;
+        String cacheName = "sm_ml_" + dataset_name + "_" + table_name;
+        ClientCache<Long, Vector> cache = igniteClient.cache(cacheName);
+        ClientAtomicLong atomicLong = igniteClient.atomicLong(cacheName + "_key", 0L, true);
+
+        Deque<IgniteClientFuture<Void>> futs = new ArrayDeque<>();
+        // 每一个元素为：开始行、最后的 key
+        Deque<long[]> futRows = new ArrayDeque<>();
+
+        long rows = 0L;
+        long startTime = System.currentTimeMillis();
+        long reportTime = startTime;
+
+        try (MyCsvProgress progress = new MyCsvProgress(progressPath(cacheName, csvPath));
+             BufferedReader reader = Files.newBufferedReader(Paths.get(csvPath), StandardCharsets.UTF_8)) {
+            if (progress.isResume()) {
+                LOG.info("继续导入：" + csvPath + "，已经写入的最后一个 key：" + progress.lastKey());
+            }
+
+            List<double[]> batch = new ArrayList<>(CSV_BATCH_SIZE);
+            long batchStart = 0L;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                long row = rows++;
+                long rowStart = row - row % CSV_BATCH_SIZE;
+
+                // 上一次已经写入成功的批次
+                if (progress.isAcked(rowStart)) {
+                    continue;
+                }
+
+                if (batch.isEmpty()) {
+                    batchStart = rowStart;
+                }
+
+                batch.add(parseCsvLine(line));
+
+                if (batch.size() == CSV_BATCH_SIZE) {
+                    putCsvBatch(cache, atomicLong, progress, batchStart, batch, futs, futRows);
+                    batch = new ArrayList<>(CSV_BATCH_SIZE);
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - reportTime >= CSV_PROGRESS_INTERVAL) {
+                    reportTime = now;
+                    LOG.info("导入 " + csvPath + "：" + rows + " 行，" + rows * 1000 / Math.max(now - startTime, 1) + " 行/秒");
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                putCsvBatch(cache, atomicLong, progress, batchStart, batch, futs, futRows);
+            }
+
+            while (!futs.isEmpty()) {
+                futs.poll().get();
+                long[] acked = futRows.poll();
+                progress.ack(acked[0], acked[1]);
+            }
+
+            progress.finish();
+        } catch (IOException | IgniteCheckedException | InterruptedException | ExecutionException e) {
+            LOG.log(Level.SEVERE, "导入 " + csvPath + " 失败，已经处理 " + rows + " 行", e);
+            throw new RuntimeException("导入 " + csvPath + " 失败，已经处理 " + rows + " 行，再次导入会从失败的地方继续", e);
+        }
+
+        long time = Math.max(System.currentTimeMillis() - startTime, 1);
+        LOG.info("导入 " + csvPath + " 完成：" + rows + " 行，" + rows * 1000 / time + " 行/秒");
+        return rows;
+    }
+
+    /**
+     * 进度文件：工作目录/csv_progress/cache名称_csv路径的hash.progress
+     * 不写在 csv 文件的旁边，csv 所在的目录可能是只读的
+     * */
+    private static Path progressPath(String cacheName, String csvPath) throws IgniteCheckedException {
+        File dir = U.resolveWorkDirectory(U.defaultWorkDirectory(), CSV_PROGRESS_DIR, false);
+        String csv = Paths.get(csvPath).toAbsolutePath().normalize().toString();
+        return new File(dir, cacheName + "_" + Integer.toHexString(csv.hashCode()) + ".progress").toPath();
+    }
+
+    /**
+     * 写入一批数据，超过 CSV_MAX_IN_FLIGHT 时等待最早的一批写入完成
+     * */
+    private static void putCsvBatch(ClientCache<Long, Vector> cache, ClientAtomicLong atomicLong, MyCsvProgress progress,
+                                   long batchStart, List<double[]> batch, Deque<IgniteClientFuture<Void>> futs,
+                                   Deque<long[]> futRows) throws IOException, InterruptedException, ExecutionException {
+        Long keyStart = progress.reservedKey(batchStart, batch.size());
+        if (keyStart == null) {
+            // 只预留这一批实际的行数：keyStart + 1 到 keyStart + batch.size()
+            keyStart = atomicLong.getAndAdd(batch.size());
+            progress.reserve(batchStart, keyStart, batch.size());
+        }
+
+        Map<Long, Vector> map = new HashMap<>(batch.size() * 2);
+        for (int i = 0; i < batch.size(); i++) {
+            map.put(keyStart + i + 1, VectorUtils.of(batch.get(i)));
+        }
+
+        while (futs.size() >= CSV_MAX_IN_FLIGHT) {
+            futs.poll().get();
+            long[] acked = futRows.poll();
+            progress.ack(acked[0], acked[1]);
+        }
+
+        futs.add(cache.putAllAsync(map));
+        futRows.add(new long[] {batchStart, keyStart + batch.size()});
+    }
+
+    /**
+     * 解析 csv 的一行，不需要装箱
+     * */
+    private static double[] parseCsvLine(String line) {
+        int cnt = 1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == ',') {
+                cnt++;
+            }
+        }
+
+        double[] rs = new double[cnt];
+        int start = 0;
+        for (int i = 0; i < cnt; i++) {
+            int end = line.indexOf(',', start);
+            if (end < 0) {
+                end = line.length();
+            }
+            rs[i] = Double.parseDouble(line.substring(start, end));
+            start = end + 1;
+        }
+        return rs;
+    }
+
     private String getUrlString(String url) throws IOException {
 
         CloseableHttpClient httpclient = HttpClients.createDefault();